@@ -1,6 +1,14 @@
+import controller.AdminController;
+import controller.PortfolioController;
+import controller.StockController;
+import controller.UserController;
+import util.LedgerJournal;
+import util.StartupTimeline;
 import view.MainFrame;
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * NepseInsiderApp - Main entry point for the application
@@ -22,44 +30,81 @@ public class NepseInsiderApp {
         // Set system properties for better rendering
         System.setProperty("awt.useSystemAAFontSettings", "on");
         System.setProperty("swing.aatext", "true");
+        StartupTimeline.mark("main");
+        
+        preloadStocks();
+        openLedger();
+        StartupTimeline.mark("ledger opened");
         
         // Run on EDT
         SwingUtilities.invokeLater(() -> {
             try {
                 // Use system look and feel
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-
+                
                 // Set custom UI properties for dark theme
                 UIManager.put("Panel.background", new Color(15, 23, 42));
-
+                
                 // OptionPane (dialogs) - use light theme for readability
                 UIManager.put("OptionPane.background", new Color(240, 240, 240));
                 UIManager.put("OptionPane.messageForeground", Color.BLACK);
                 UIManager.put("Panel.background", new Color(240, 240, 240));
-
+                
                 // TextField in dialogs - white bg, black text
                 UIManager.put("TextField.background", Color.WHITE);
                 UIManager.put("TextField.foreground", Color.BLACK);
                 UIManager.put("TextField.caretForeground", Color.BLACK);
-
+                
                 // ComboBox - white bg, black text
                 UIManager.put("ComboBox.background", Color.WHITE);
                 UIManager.put("ComboBox.foreground", Color.BLACK);
-
+                
                 // Buttons in dialogs - white bg, black text
                 UIManager.put("Button.background", Color.WHITE);
                 UIManager.put("Button.foreground", Color.BLACK);
                 UIManager.put("Button.focus", new Color(200, 200, 200));
-
+                
                 // Labels
                 UIManager.put("Label.foreground", Color.BLACK);
-
+            
             } catch (Exception e) {
                 e.printStackTrace();
             }
             
+            StartupTimeline.mark("look and feel set");
+            
             // Create and show main frame
             new MainFrame();
         });
     }
+    
+    // Map in (or build) the stock universe while the ledger is replayed and the look and
+    // feel is set up; the home page then finds it ready instead of loading it on the EDT
+    private static void preloadStocks() {
+        Thread loader = new Thread(() -> {
+            StockController.getInstance();
+            StartupTimeline.mark("stocks loaded");
+        }, "stock-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    // Recover admin, user and portfolio state from the ledger journal, then keep journaling changes.
+    // Without it the app still runs, in memory only.
+    private static void openLedger() {
+        try {
+            LedgerJournal journal = LedgerJournal.open(
+                    Paths.get(System.getProperty("nepse.data.dir", "data"), "ledger"),
+                    AdminController.getInstance(), UserController.getInstance(), PortfolioController.getInstance());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "ledger-shutdown"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
@@ -1,44 +1,56 @@
 package controller;
 
 import model.*;
+import model.Transaction.TransactionStatus;
 import model.User;
+import util.DataStructures.IdTable;
+import util.DataStructures.StatusTable;
+import util.LedgerJournal;
+import util.PrimitiveCollections.IntIntMap;
 import util.ValidationUtils;
 import util.ValidationUtils.ValidationResult;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * AdminController - Manages all admin-related operations
+ * State changes are recorded in the ledger journal once it is attached
  */
-public class AdminController {
+public class AdminController implements LedgerJournal.Participant {
     
     private static AdminController instance;
     
-    private List<Category> categories;
-    private List<SubCategory> subCategories;
-    private List<MarketData> markets;
-    private List<UpcomingMarket> upcomingMarkets;
-    private List<DepositTransaction> deposits;
-    private List<WithdrawalTransaction> withdrawals;
-    private List<SupportTicket> supportTickets;
-    private List<CommentData> comments;
-    private List<Subscriber> subscribers;
+    // Insertion-ordered, with O(1) lookup and removal by id
+    private IdTable<Category> categories;
+    private IdTable<SubCategory> subCategories;
+    private IdTable<MarketData> markets;
+    private IdTable<UpcomingMarket> upcomingMarkets;
+    private IdTable<Subscriber> subscribers;
+    
+    // Also partitioned by status, so pending views and counts skip the history
+    private StatusTable<DepositTransaction, TransactionStatus> deposits;
+    private StatusTable<WithdrawalTransaction, TransactionStatus> withdrawals;
+    private StatusTable<SupportTicket, TicketStatus> supportTickets;
+    private StatusTable<CommentData, CommentStatus> comments;
     
     private int nextId = 1;
     private SystemSettings systemSettings;
+    private LedgerJournal journal;
     
     private AdminController() {
-        categories = new ArrayList<>();
-        subCategories = new ArrayList<>();
-        markets = new ArrayList<>();
-        upcomingMarkets = new ArrayList<>();
-        deposits = new ArrayList<>();
-        withdrawals = new ArrayList<>();
-        supportTickets = new ArrayList<>();
-        comments = new ArrayList<>();
-        subscribers = new ArrayList<>();
+        categories = new IdTable<>(c -> c.id);
+        subCategories = new IdTable<>(s -> s.id);
+        markets = new IdTable<>(m -> m.id);
+        upcomingMarkets = new IdTable<>(u -> u.id);
+        subscribers = new IdTable<>(s -> s.id);
+        deposits = new StatusTable<>(TransactionStatus.class, d -> d.id, d -> d.status, (d, s) -> d.status = s);
+        withdrawals = new StatusTable<>(TransactionStatus.class, w -> w.id, w -> w.status, (w, s) -> w.status = s);
+        supportTickets = new StatusTable<>(TicketStatus.class, t -> t.id, t -> t.status, (t, s) -> t.status = s);
+        comments = new StatusTable<>(CommentStatus.class, c -> c.id, c -> c.status, (c, s) -> c.status = s);
         systemSettings = SystemSettings.getInstance();
         
         initializeSampleData();
@@ -92,22 +104,22 @@ public class AdminController {
         upcomingMarkets.add(new UpcomingMarket(nextId++, "XYZ Finance", "XYZF", "FPO", "2025-03-01", 150.00, 500000));
         
         // Deposits
-        deposits.add(new DepositTransaction(nextId++, "john", 10000, "Bank Transfer", "PENDING", LocalDateTime.now().minusHours(2)));
-        deposits.add(new DepositTransaction(nextId++, "ram", 25000, "eSewa", "APPROVED", LocalDateTime.now().minusDays(1)));
-        deposits.add(new DepositTransaction(nextId++, "khrishman", 50000, "Khalti", "PENDING", LocalDateTime.now().minusMinutes(30)));
+        deposits.add(new DepositTransaction(nextId++, "john", 10000, "Bank Transfer", TransactionStatus.PENDING, LocalDateTime.now().minusHours(2)));
+        deposits.add(new DepositTransaction(nextId++, "ram", 25000, "eSewa", TransactionStatus.APPROVED, LocalDateTime.now().minusDays(1)));
+        deposits.add(new DepositTransaction(nextId++, "khrishman", 50000, "Khalti", TransactionStatus.PENDING, LocalDateTime.now().minusMinutes(30)));
         
         // Withdrawals
-        withdrawals.add(new WithdrawalTransaction(nextId++, "john", 5000, "Nabil Bank", "1234567890", "PENDING", LocalDateTime.now().minusHours(3)));
-        withdrawals.add(new WithdrawalTransaction(nextId++, "ram", 8000, "NIC Asia", "0987654321", "APPROVED", LocalDateTime.now().minusDays(2)));
+        withdrawals.add(new WithdrawalTransaction(nextId++, "john", 5000, "Nabil Bank", "1234567890", TransactionStatus.PENDING, LocalDateTime.now().minusHours(3)));
+        withdrawals.add(new WithdrawalTransaction(nextId++, "ram", 8000, "NIC Asia", "0987654321", TransactionStatus.APPROVED, LocalDateTime.now().minusDays(2)));
         
         // Support Tickets
-        supportTickets.add(new SupportTicket(nextId++, "john", "Login Issue", "Cannot login to account", "OPEN", LocalDateTime.now().minusHours(1)));
-        supportTickets.add(new SupportTicket(nextId++, "khrishman", "Deposit Not Credited", "My deposit is pending for 2 days", "IN_PROGRESS", LocalDateTime.now().minusDays(1)));
+        supportTickets.add(new SupportTicket(nextId++, "john", "Login Issue", "Cannot login to account", TicketStatus.OPEN, LocalDateTime.now().minusHours(1)));
+        supportTickets.add(new SupportTicket(nextId++, "khrishman", "Deposit Not Credited", "My deposit is pending for 2 days", TicketStatus.IN_PROGRESS, LocalDateTime.now().minusDays(1)));
         
         // Comments
-        comments.add(new CommentData(nextId++, "john", "NABIL", "Great stock for investment!", "APPROVED"));
-        comments.add(new CommentData(nextId++, "ram", "NICA", "Good quarterly results", "PENDING"));
-        comments.add(new CommentData(nextId++, "khrishman", "UPPER", "Hydro sector is booming", "PENDING"));
+        comments.add(new CommentData(nextId++, "john", "NABIL", "Great stock for investment!", CommentStatus.APPROVED));
+        comments.add(new CommentData(nextId++, "ram", "NICA", "Good quarterly results", CommentStatus.PENDING));
+        comments.add(new CommentData(nextId++, "khrishman", "UPPER", "Hydro sector is booming", CommentStatus.PENDING));
         
         // Subscribers
         subscribers.add(new Subscriber(nextId++, "subscriber1@email.com", true));
@@ -116,236 +128,500 @@ public class AdminController {
     }
     
     // ==================== Categories ====================
-    public List<Category> getAllCategories() { return new ArrayList<>(categories); }
+    public List<Category> getAllCategories() { return categories.toList(); }
     
     public ValidationResult addCategory(String name, String description) {
-        if (ValidationUtils.isEmpty(name)) return ValidationResult.error("Name is required");
-        categories.add(new Category(nextId++, name, description, true));
-        return ValidationResult.success();
+        return commit(() -> {
+            if (ValidationUtils.isEmpty(name)) return ValidationResult.error("Name is required");
+            Category category = new Category(nextId++, name, description, true);
+            category.createdDate = now();
+            categories.add(category);
+            return ValidationResult.success();
+        }, "addCategory", name, description);
     }
     
     public ValidationResult updateCategory(int id, String name, String description, boolean active) {
-        for (Category c : categories) {
-            if (c.id == id) {
-                c.name = name;
-                c.description = description;
-                c.active = active;
-                return ValidationResult.success();
-            }
-        }
-        return ValidationResult.error("Category not found");
+        return commit(() -> {
+            Category c = categories.get(id);
+            if (c == null) return ValidationResult.error("Category not found");
+            c.name = name;
+            c.description = description;
+            c.active = active;
+            return ValidationResult.success();
+        }, "updateCategory", id, name, description, active);
     }
     
     public ValidationResult deleteCategory(int id) {
-        return categories.removeIf(c -> c.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> categories.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteCategory", id);
     }
     
     // ==================== SubCategories ====================
-    public List<SubCategory> getAllSubCategories() { return new ArrayList<>(subCategories); }
+    public List<SubCategory> getAllSubCategories() { return subCategories.toList(); }
     
     public ValidationResult addSubCategory(int categoryId, String name, String description) {
-        if (ValidationUtils.isEmpty(name)) return ValidationResult.error("Name is required");
-        subCategories.add(new SubCategory(nextId++, categoryId, name, description));
-        return ValidationResult.success();
+        return commit(() -> {
+            if (ValidationUtils.isEmpty(name)) return ValidationResult.error("Name is required");
+            subCategories.add(new SubCategory(nextId++, categoryId, name, description));
+            return ValidationResult.success();
+        }, "addSubCategory", categoryId, name, description);
     }
     
     public ValidationResult deleteSubCategory(int id) {
-        return subCategories.removeIf(s -> s.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> subCategories.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteSubCategory", id);
     }
     
     // ==================== Markets ====================
-    public List<MarketData> getAllMarkets() { return new ArrayList<>(markets); }
-    public MarketData getPrimaryMarket() { return markets.isEmpty() ? null : markets.get(0); }
+    public List<MarketData> getAllMarkets() { return markets.toList(); }
+    public MarketData getPrimaryMarket() { return markets.isEmpty() ? null : markets.iterator().next(); }
     
     public ValidationResult updateMarketIndex(int id, double value, double change) {
-        for (MarketData m : markets) {
-            if (m.id == id) {
-                m.setIndexValue(value);
-                m.setChange(change);
-                m.setChangePercent((change / (value - change)) * 100);
-                return ValidationResult.success();
-            }
-        }
-        return ValidationResult.error("Market not found");
+        return commit(() -> {
+            MarketData m = markets.get(id);
+            if (m == null) return ValidationResult.error("Market not found");
+            m.setIndexValue(value);
+            m.setChange(change);
+            m.setChangePercent((change / (value - change)) * 100);
+            return ValidationResult.success();
+        }, "updateMarketIndex", id, value, change);
     }
     
     // ==================== Upcoming Markets ====================
-    public List<UpcomingMarket> getAllUpcomingMarkets() { return new ArrayList<>(upcomingMarkets); }
+    public List<UpcomingMarket> getAllUpcomingMarkets() { return upcomingMarkets.toList(); }
     
     public ValidationResult addUpcomingMarket(String company, String symbol, String type, String date, double price, long units) {
-        upcomingMarkets.add(new UpcomingMarket(nextId++, company, symbol, type, date, price, units));
-        return ValidationResult.success();
+        return commit(() -> {
+            upcomingMarkets.add(new UpcomingMarket(nextId++, company, symbol, type, date, price, units));
+            return ValidationResult.success();
+        }, "addUpcomingMarket", company, symbol, type, date, price, units);
     }
     
     public ValidationResult deleteUpcomingMarket(int id) {
-        return upcomingMarkets.removeIf(u -> u.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> upcomingMarkets.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteUpcomingMarket", id);
+    }
+    
+    /**
+     * Allot a scheduled bonus share event to the current holders of its symbol.
+     * Holdings are credited inside this journaled change, so replay credits them again.
+     */
+    public ValidationResult allotBonusShares(int id, double percent) {
+        return commit(() -> {
+            UpcomingMarket u = upcomingMarkets.get(id);
+            if (u == null) return ValidationResult.error("Not found");
+            if (!u.type.toUpperCase().startsWith("BONUS")) return ValidationResult.error("Not a bonus share event");
+            if (!"SCHEDULED".equals(u.status)) return ValidationResult.error("Already " + u.status.toLowerCase());
+            if (percent <= 0) return ValidationResult.error("Bonus percent must be positive");
+            PortfolioController.getInstance().allotBonusShares(u.symbol.toUpperCase(), percent, now());
+            u.status = "ALLOTTED";
+            return ValidationResult.success();
+        }, "allotBonusShares", id, percent);
     }
     
     // ==================== Deposits ====================
-    public List<DepositTransaction> getAllDeposits() { return new ArrayList<>(deposits); }
-    public List<DepositTransaction> getPendingDeposits() {
-        List<DepositTransaction> pending = new ArrayList<>();
-        for (DepositTransaction d : deposits) if ("PENDING".equals(d.status)) pending.add(d);
-        return pending;
-    }
+    public List<DepositTransaction> getAllDeposits() { return deposits.toList(); }
+    public List<DepositTransaction> getPendingDeposits() { return deposits.withStatus(TransactionStatus.PENDING); }
+    public int getPendingDepositCount() { return deposits.count(TransactionStatus.PENDING); }
     
     public ValidationResult createDeposit(String username, double amount, String method) {
-        if (amount <= 0) return ValidationResult.error("Amount must be positive");
-        deposits.add(new DepositTransaction(nextId++, username, amount, method, "PENDING", LocalDateTime.now()));
-        return ValidationResult.success();
+        return commit(() -> {
+            if (amount <= 0) return ValidationResult.error("Amount must be positive");
+            deposits.add(new DepositTransaction(nextId++, username, amount, method, TransactionStatus.PENDING, now()));
+            return ValidationResult.success();
+        }, "createDeposit", username, amount, method);
     }
     
     public ValidationResult approveDeposit(int id) {
-        for (DepositTransaction d : deposits) {
-            if (d.id == id) { 
-                d.status = "APPROVED"; 
-                d.processedDate = LocalDateTime.now();
-                // Credit user balance
-                User user = UserController.getInstance().getUser(d.username);
-                if (user != null) user.deposit(d.amount);
-                return ValidationResult.success(); 
+        return commit(() -> {
+            DepositTransaction d = deposits.get(id);
+            if (d == null) return ValidationResult.error("Not found");
+            if (d.status != TransactionStatus.PENDING) return ValidationResult.error("Deposit is not pending");
+            deposits.setStatus(d, TransactionStatus.APPROVED);
+            d.processedDate = now();
+            // Credit user balance
+            User user = UserController.getInstance().getUser(d.username);
+            if (user != null) user.deposit(d.amount);
+            return ValidationResult.success();
+        }, "approveDeposit", id);
+    }
+    
+    /**
+     * Approve many deposits at once, all or nothing. The whole batch is checked
+     * before anything changes. Each user's balance is then credited once with
+     * their total, and the batch is journaled as one record.
+     */
+    public ValidationResult approveDeposits(int[] ids) {
+        if (ids.length == 0) return ValidationResult.success();
+        return commit(() -> {
+            List<DepositTransaction> batch = new ArrayList<>(ids.length);
+            IntIntMap seen = new IntIntMap(ids.length, 0);
+            Map<String, long[]> totals = new HashMap<>();
+            for (int id : ids) {
+                DepositTransaction d = deposits.get(id);
+                if (d == null) return ValidationResult.error("Deposit " + id + " not found");
+                if (d.status != TransactionStatus.PENDING) return ValidationResult.error("Deposit " + id + " is not pending");
+                if (seen.get(id) != 0) return ValidationResult.error("Deposit " + id + " is listed twice");
+                seen.put(id, 1);
+                batch.add(d);
+                totals.computeIfAbsent(d.username, u -> new long[1])[0] += User.toPaisa(d.amount);
             }
-        }
-        return ValidationResult.error("Not found");
+            
+            LocalDateTime processed = now();
+            for (DepositTransaction d : batch) {
+                deposits.setStatus(d, TransactionStatus.APPROVED);
+                d.processedDate = processed;
+            }
+            UserController users = UserController.getInstance();
+            for (Map.Entry<String, long[]> total : totals.entrySet()) {
+                User user = users.getUser(total.getKey());
+                if (user != null) user.depositPaisa(total.getValue()[0]);
+            }
+            return ValidationResult.success();
+        }, "approveDeposits", ids);
     }
     
     public ValidationResult rejectDeposit(int id, String reason) {
-        for (DepositTransaction d : deposits) {
-            if (d.id == id) { d.status = "REJECTED"; d.remarks = reason; d.processedDate = LocalDateTime.now(); return ValidationResult.success(); }
-        }
-        return ValidationResult.error("Not found");
+        return commit(() -> {
+            DepositTransaction d = deposits.get(id);
+            if (d == null) return ValidationResult.error("Not found");
+            if (d.status != TransactionStatus.PENDING) return ValidationResult.error("Deposit is not pending");
+            deposits.setStatus(d, TransactionStatus.REJECTED); d.remarks = reason; d.processedDate = now();
+            return ValidationResult.success();
+        }, "rejectDeposit", id, reason);
     }
     
     public ValidationResult deleteDeposit(int id) {
-        return deposits.removeIf(d -> d.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> deposits.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteDeposit", id);
     }
     
     // ==================== Withdrawals ====================
-    public List<WithdrawalTransaction> getAllWithdrawals() { return new ArrayList<>(withdrawals); }
-    public List<WithdrawalTransaction> getPendingWithdrawals() {
-        List<WithdrawalTransaction> pending = new ArrayList<>();
-        for (WithdrawalTransaction w : withdrawals) if ("PENDING".equals(w.status)) pending.add(w);
-        return pending;
-    }
+    public List<WithdrawalTransaction> getAllWithdrawals() { return withdrawals.toList(); }
+    public List<WithdrawalTransaction> getPendingWithdrawals() { return withdrawals.withStatus(TransactionStatus.PENDING); }
+    public int getPendingWithdrawalCount() { return withdrawals.count(TransactionStatus.PENDING); }
     
     public ValidationResult createWithdrawal(String username, double amount, String bank, String account) {
-        if (amount <= 0) return ValidationResult.error("Amount must be positive");
-        withdrawals.add(new WithdrawalTransaction(nextId++, username, amount, bank, account, "PENDING", LocalDateTime.now()));
-        return ValidationResult.success();
+        return commit(() -> {
+            if (amount <= 0) return ValidationResult.error("Amount must be positive");
+            withdrawals.add(new WithdrawalTransaction(nextId++, username, amount, bank, account, TransactionStatus.PENDING, now()));
+            return ValidationResult.success();
+        }, "createWithdrawal", username, amount, bank, account);
     }
     
     public ValidationResult approveWithdrawal(int id) {
-        for (WithdrawalTransaction w : withdrawals) {
-            if (w.id == id) { 
-                w.status = "APPROVED"; 
-                w.processedDate = LocalDateTime.now();
-                // Deduct from user balance
-                User user = UserController.getInstance().getUser(w.username);
-                if (user != null) user.withdraw(w.amount);
-                return ValidationResult.success(); 
+        return commit(() -> {
+            WithdrawalTransaction w = withdrawals.get(id);
+            if (w == null) return ValidationResult.error("Not found");
+            if (w.status != TransactionStatus.PENDING) return ValidationResult.error("Withdrawal is not pending");
+            // Deduct from user balance first; the withdrawal stays pending if it cannot be covered
+            User user = UserController.getInstance().getUser(w.username);
+            if (user != null && !user.withdraw(w.amount)) return ValidationResult.error("Insufficient balance");
+            withdrawals.setStatus(w, TransactionStatus.APPROVED);
+            w.processedDate = now();
+            return ValidationResult.success();
+        }, "approveWithdrawal", id);
+    }
+    
+    /**
+     * Approve many withdrawals at once, all or nothing. Fails without changes if any
+     * withdrawal is not pending or any user's balance cannot cover their total.
+     * Each balance is debited once (compare-and-set, so a trade racing the batch is
+     * never overdrawn; debits already taken are refunded if a later one fails) and
+     * the batch is journaled as one record.
+     */
+    public ValidationResult approveWithdrawals(int[] ids) {
+        if (ids.length == 0) return ValidationResult.success();
+        return commit(() -> {
+            List<WithdrawalTransaction> batch = new ArrayList<>(ids.length);
+            IntIntMap seen = new IntIntMap(ids.length, 0);
+            Map<String, long[]> totals = new HashMap<>();
+            for (int id : ids) {
+                WithdrawalTransaction w = withdrawals.get(id);
+                if (w == null) return ValidationResult.error("Withdrawal " + id + " not found");
+                if (w.status != TransactionStatus.PENDING) return ValidationResult.error("Withdrawal " + id + " is not pending");
+                if (seen.get(id) != 0) return ValidationResult.error("Withdrawal " + id + " is listed twice");
+                seen.put(id, 1);
+                batch.add(w);
+                totals.computeIfAbsent(w.username, u -> new long[1])[0] += User.toPaisa(w.amount);
             }
-        }
-        return ValidationResult.error("Not found");
+            UserController users = UserController.getInstance();
+            List<User> debited = new ArrayList<>(totals.size());
+            List<long[]> amounts = new ArrayList<>(totals.size());
+            for (Map.Entry<String, long[]> total : totals.entrySet()) {
+                User user = users.getUser(total.getKey());
+                if (user == null) continue;
+                if (!user.withdrawPaisa(total.getValue()[0])) {
+                    for (int i = 0; i < debited.size(); i++) debited.get(i).depositPaisa(amounts.get(i)[0]);
+                    return ValidationResult.error("Insufficient balance for " + total.getKey());
+                }
+                debited.add(user);
+                amounts.add(total.getValue());
+            }
+            
+            LocalDateTime processed = now();
+            for (WithdrawalTransaction w : batch) {
+                withdrawals.setStatus(w, TransactionStatus.APPROVED);
+                w.processedDate = processed;
+            }
+            return ValidationResult.success();
+        }, "approveWithdrawals", ids);
     }
     
     public ValidationResult rejectWithdrawal(int id, String reason) {
-        for (WithdrawalTransaction w : withdrawals) {
-            if (w.id == id) { w.status = "REJECTED"; w.remarks = reason; w.processedDate = LocalDateTime.now(); return ValidationResult.success(); }
-        }
-        return ValidationResult.error("Not found");
+        return commit(() -> {
+            WithdrawalTransaction w = withdrawals.get(id);
+            if (w == null) return ValidationResult.error("Not found");
+            if (w.status != TransactionStatus.PENDING) return ValidationResult.error("Withdrawal is not pending");
+            withdrawals.setStatus(w, TransactionStatus.REJECTED); w.remarks = reason; w.processedDate = now();
+            return ValidationResult.success();
+        }, "rejectWithdrawal", id, reason);
     }
     
     public ValidationResult deleteWithdrawal(int id) {
-        return withdrawals.removeIf(w -> w.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> withdrawals.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteWithdrawal", id);
     }
     
     // ==================== Support Tickets ====================
-    public List<SupportTicket> getAllTickets() { return new ArrayList<>(supportTickets); }
+    public List<SupportTicket> getAllTickets() { return supportTickets.toList(); }
     public List<SupportTicket> getOpenTickets() {
-        List<SupportTicket> open = new ArrayList<>();
-        for (SupportTicket t : supportTickets) if ("OPEN".equals(t.status) || "IN_PROGRESS".equals(t.status)) open.add(t);
+        // Partitions are in the order tickets reached the status, so sort by id for creation order
+        List<SupportTicket> open = new ArrayList<>(supportTickets.withStatus(TicketStatus.OPEN));
+        open.addAll(supportTickets.withStatus(TicketStatus.IN_PROGRESS));
+        open.sort(Comparator.comparingInt(t -> t.id));
         return open;
     }
+    public int getOpenTicketCount() {
+        return supportTickets.count(TicketStatus.OPEN) + supportTickets.count(TicketStatus.IN_PROGRESS);
+    }
     
     public ValidationResult updateTicketStatus(int id, String status) {
-        for (SupportTicket t : supportTickets) {
-            if (t.id == id) { t.status = status; return ValidationResult.success(); }
+        TicketStatus parsed;
+        try {
+            parsed = TicketStatus.valueOf(status.trim().toUpperCase().replace(' ', '_'));
+        } catch (RuntimeException e) {
+            return ValidationResult.error("Unknown ticket status: " + status);
         }
-        return ValidationResult.error("Not found");
+        return updateTicketStatus(id, parsed);
+    }
+    
+    public ValidationResult updateTicketStatus(int id, TicketStatus status) {
+        return commit(() -> {
+            SupportTicket t = supportTickets.get(id);
+            if (t == null) return ValidationResult.error("Not found");
+            supportTickets.setStatus(t, status);
+            return ValidationResult.success();
+        }, "updateTicketStatus", id, status);
     }
     
     public ValidationResult replyToTicket(int id, String reply) {
-        for (SupportTicket t : supportTickets) {
-            if (t.id == id) { t.adminReply = reply; t.status = "REPLIED"; return ValidationResult.success(); }
-        }
-        return ValidationResult.error("Not found");
+        return commit(() -> {
+            SupportTicket t = supportTickets.get(id);
+            if (t == null) return ValidationResult.error("Not found");
+            t.adminReply = reply; supportTickets.setStatus(t, TicketStatus.REPLIED);
+            return ValidationResult.success();
+        }, "replyToTicket", id, reply);
     }
     
     public ValidationResult deleteTicket(int id) {
-        return supportTickets.removeIf(t -> t.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> supportTickets.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteTicket", id);
     }
     
     // ==================== Comments ====================
-    public List<CommentData> getAllComments() { return new ArrayList<>(comments); }
-    public List<CommentData> getPendingComments() {
-        List<CommentData> pending = new ArrayList<>();
-        for (CommentData c : comments) if ("PENDING".equals(c.status)) pending.add(c);
-        return pending;
-    }
+    public List<CommentData> getAllComments() { return comments.toList(); }
+    public List<CommentData> getPendingComments() { return comments.withStatus(CommentStatus.PENDING); }
+    public int getPendingCommentCount() { return comments.count(CommentStatus.PENDING); }
     
     public ValidationResult approveComment(int id) {
-        for (CommentData c : comments) {
-            if (c.id == id) { c.status = "APPROVED"; return ValidationResult.success(); }
-        }
-        return ValidationResult.error("Not found");
+        return commit(() -> {
+            CommentData c = comments.get(id);
+            if (c == null) return ValidationResult.error("Not found");
+            comments.setStatus(c, CommentStatus.APPROVED);
+            return ValidationResult.success();
+        }, "approveComment", id);
     }
     
     public ValidationResult rejectComment(int id) {
-        for (CommentData c : comments) {
-            if (c.id == id) { c.status = "REJECTED"; return ValidationResult.success(); }
-        }
-        return ValidationResult.error("Not found");
+        return commit(() -> {
+            CommentData c = comments.get(id);
+            if (c == null) return ValidationResult.error("Not found");
+            comments.setStatus(c, CommentStatus.REJECTED);
+            return ValidationResult.success();
+        }, "rejectComment", id);
     }
     
     public ValidationResult deleteComment(int id) {
-        return comments.removeIf(c -> c.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> comments.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "deleteComment", id);
     }
     
     // ==================== Subscribers ====================
-    public List<Subscriber> getAllSubscribers() { return new ArrayList<>(subscribers); }
-    public int getActiveSubscribersCount() { return (int) subscribers.stream().filter(s -> s.active).count(); }
+    public List<Subscriber> getAllSubscribers() { return subscribers.toList(); }
+    public int getActiveSubscribersCount() {
+        int count = 0;
+        for (Subscriber s : subscribers) if (s.active) count++;
+        return count;
+    }
     
     public ValidationResult addSubscriber(String email) {
-        if (!ValidationUtils.validateEmail(email).isValid()) return ValidationResult.error("Invalid email");
-        for (Subscriber s : subscribers) if (s.email.equalsIgnoreCase(email)) return ValidationResult.error("Already subscribed");
-        subscribers.add(new Subscriber(nextId++, email, true));
-        return ValidationResult.success();
+        return commit(() -> {
+            if (!ValidationUtils.validateEmail(email).isValid()) return ValidationResult.error("Invalid email");
+            for (Subscriber s : subscribers) if (s.email.equalsIgnoreCase(email)) return ValidationResult.error("Already subscribed");
+            Subscriber subscriber = new Subscriber(nextId++, email, true);
+            subscriber.subscribedDate = now();
+            subscribers.add(subscriber);
+            return ValidationResult.success();
+        }, "addSubscriber", email);
     }
     
     public ValidationResult removeSubscriber(int id) {
-        return subscribers.removeIf(s -> s.id == id) ? ValidationResult.success() : ValidationResult.error("Not found");
+        return commit(() -> subscribers.remove(id) != null ? ValidationResult.success() : ValidationResult.error("Not found"), "removeSubscriber", id);
     }
     
     // ==================== System Settings ====================
     public SystemSettings getSystemSettings() { return systemSettings; }
     
+    // ==================== Ledger Journal ====================
+    
+    /**
+     * Start recording state changes (called by LedgerJournal before recovery)
+     */
+    @Override
+    public void attach(LedgerJournal journal) {
+        this.journal = journal;
+    }
+    
+    @Override
+    public String journalName() {
+        return "admin";
+    }
+    
+    @Override
+    public Serializable snapshotState() {
+        LedgerState state = new LedgerState();
+        state.categories = categories.toList();
+        state.subCategories = subCategories.toList();
+        state.markets = markets.toList();
+        state.upcomingMarkets = upcomingMarkets.toList();
+        state.deposits = deposits.toList();
+        state.withdrawals = withdrawals.toList();
+        state.supportTickets = supportTickets.toList();
+        state.comments = comments.toList();
+        state.subscribers = subscribers.toList();
+        state.nextId = nextId;
+        return state;
+    }
+    
+    @Override
+    public void restoreState(Serializable snapshot) {
+        LedgerState state = (LedgerState) snapshot;
+        reload(categories, state.categories);
+        reload(subCategories, state.subCategories);
+        reload(markets, state.markets);
+        reload(upcomingMarkets, state.upcomingMarkets);
+        reload(deposits, state.deposits);
+        reload(withdrawals, state.withdrawals);
+        reload(supportTickets, state.supportTickets);
+        reload(comments, state.comments);
+        reload(subscribers, state.subscribers);
+        nextId = state.nextId;
+    }
+    
+    @Override
+    public ValidationResult replay(String op, Object[] a) {
+        switch (op) {
+            case "addCategory": return addCategory((String) a[0], (String) a[1]);
+            case "updateCategory": return updateCategory((Integer) a[0], (String) a[1], (String) a[2], (Boolean) a[3]);
+            case "deleteCategory": return deleteCategory((Integer) a[0]);
+            case "addSubCategory": return addSubCategory((Integer) a[0], (String) a[1], (String) a[2]);
+            case "deleteSubCategory": return deleteSubCategory((Integer) a[0]);
+            case "updateMarketIndex": return updateMarketIndex((Integer) a[0], (Double) a[1], (Double) a[2]);
+            case "addUpcomingMarket": return addUpcomingMarket((String) a[0], (String) a[1], (String) a[2], (String) a[3], (Double) a[4], (Long) a[5]);
+            case "deleteUpcomingMarket": return deleteUpcomingMarket((Integer) a[0]);
+            case "allotBonusShares": return allotBonusShares((Integer) a[0], (Double) a[1]);
+            case "createDeposit": return createDeposit((String) a[0], (Double) a[1], (String) a[2]);
+            case "approveDeposit": return approveDeposit((Integer) a[0]);
+            case "approveDeposits": return approveDeposits((int[]) a[0]);
+            case "rejectDeposit": return rejectDeposit((Integer) a[0], (String) a[1]);
+            case "deleteDeposit": return deleteDeposit((Integer) a[0]);
+            case "createWithdrawal": return createWithdrawal((String) a[0], (Double) a[1], (String) a[2], (String) a[3]);
+            case "approveWithdrawal": return approveWithdrawal((Integer) a[0]);
+            case "approveWithdrawals": return approveWithdrawals((int[]) a[0]);
+            case "rejectWithdrawal": return rejectWithdrawal((Integer) a[0], (String) a[1]);
+            case "deleteWithdrawal": return deleteWithdrawal((Integer) a[0]);
+            case "updateTicketStatus": return updateTicketStatus((Integer) a[0], (String) a[1]);
+            case "replyToTicket": return replyToTicket((Integer) a[0], (String) a[1]);
+            case "deleteTicket": return deleteTicket((Integer) a[0]);
+            case "approveComment": return approveComment((Integer) a[0]);
+            case "rejectComment": return rejectComment((Integer) a[0]);
+            case "deleteComment": return deleteComment((Integer) a[0]);
+            case "addSubscriber": return addSubscriber((String) a[0]);
+            case "removeSubscriber": return removeSubscriber((Integer) a[0]);
+            default: throw new IllegalArgumentException("Unknown admin command: " + op);
+        }
+    }
+    
+    private static <T> void reload(IdTable<T> table, List<T> items) {
+        table.clear();
+        for (T item : items) table.add(item);
+    }
+    
+    private static <T, S extends Enum<S>> void reload(StatusTable<T, S> table, List<T> items) {
+        table.clear();
+        for (T item : items) table.add(item);
+    }
+    
+    // Apply a change and journal it if it succeeds (durable on a successful return;
+    // an error if the journal could not be written)
+    private ValidationResult commit(Supplier<ValidationResult> change, String op, Object... args) {
+        return journal != null ? journal.commit(this, change, op, args) : change.get();
+    }
+    
+    // Replayed changes keep their original time
+    private LocalDateTime now() {
+        return journal != null ? journal.now() : LocalDateTime.now();
+    }
+    
     // ==================== Dashboard Stats ====================
     public Map<String, Object> getDashboardStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalCategories", categories.size());
         stats.put("totalSubCategories", subCategories.size());
         stats.put("totalMarkets", markets.size());
-        stats.put("pendingDeposits", getPendingDeposits().size());
-        stats.put("pendingWithdrawals", getPendingWithdrawals().size());
-        stats.put("openTickets", getOpenTickets().size());
-        stats.put("pendingComments", getPendingComments().size());
+        stats.put("pendingDeposits", getPendingDepositCount());
+        stats.put("pendingWithdrawals", getPendingWithdrawalCount());
+        stats.put("openTickets", getOpenTicketCount());
+        stats.put("pendingComments", getPendingCommentCount());
         stats.put("totalSubscribers", subscribers.size());
         stats.put("activeSubscribers", getActiveSubscribersCount());
         return stats;
     }
     
     // ==================== Data Classes ====================
-    public static class Category {
+    
+    public enum TicketStatus {
+        OPEN, IN_PROGRESS, REPLIED, RESOLVED, CLOSED
+    }
+    
+    public enum CommentStatus {
+        PENDING, APPROVED, REJECTED
+    }
+    
+    /**
+     * Snapshot of every ledger list
+     */
+    private static class LedgerState implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        List<Category> categories;
+        List<SubCategory> subCategories;
+        List<MarketData> markets;
+        List<UpcomingMarket> upcomingMarkets;
+        List<DepositTransaction> deposits;
+        List<WithdrawalTransaction> withdrawals;
+        List<SupportTicket> supportTickets;
+        List<CommentData> comments;
+        List<Subscriber> subscribers;
+        int nextId;
+    }
+    public static class Category implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         public int id;
         public String name;
         public String description;
@@ -358,7 +634,9 @@ public class AdminController {
         }
     }
     
-    public static class SubCategory {
+    public static class SubCategory implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         public int id;
         public int categoryId;
         public String name;
@@ -370,7 +648,9 @@ public class AdminController {
         }
     }
     
-    public static class MarketData {
+    public static class MarketData implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         public int id;
         public String name;
         public String description;
@@ -397,7 +677,9 @@ public class AdminController {
         public void setStatus(String s) { this.status = s; }
     }
     
-    public static class UpcomingMarket {
+    public static class UpcomingMarket implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         public int id;
         public String companyName;
         public String symbol;
@@ -413,69 +695,79 @@ public class AdminController {
         }
     }
     
-    public static class DepositTransaction {
+    public static class DepositTransaction implements Serializable {
+        private static final long serialVersionUID = 2L;
+        
         public int id;
         public String username;
         public double amount;
         public String paymentMethod;
-        public String status;
+        public TransactionStatus status;
         public String remarks;
         public LocalDateTime createdDate;
         public LocalDateTime processedDate;
         
-        public DepositTransaction(int id, String username, double amount, String method, String status, LocalDateTime created) {
+        public DepositTransaction(int id, String username, double amount, String method, TransactionStatus status, LocalDateTime created) {
             this.id = id; this.username = username; this.amount = amount; this.paymentMethod = method;
             this.status = status; this.createdDate = created;
         }
     }
     
-    public static class WithdrawalTransaction {
+    public static class WithdrawalTransaction implements Serializable {
+        private static final long serialVersionUID = 2L;
+        
         public int id;
         public String username;
         public double amount;
         public String bankName;
         public String accountNumber;
-        public String status;
+        public TransactionStatus status;
         public String remarks;
         public LocalDateTime createdDate;
         public LocalDateTime processedDate;
         
-        public WithdrawalTransaction(int id, String username, double amount, String bank, String account, String status, LocalDateTime created) {
+        public WithdrawalTransaction(int id, String username, double amount, String bank, String account, TransactionStatus status, LocalDateTime created) {
             this.id = id; this.username = username; this.amount = amount; this.bankName = bank;
             this.accountNumber = account; this.status = status; this.createdDate = created;
         }
     }
     
-    public static class SupportTicket {
+    public static class SupportTicket implements Serializable {
+        private static final long serialVersionUID = 2L;
+        
         public int id;
         public String username;
         public String subject;
         public String description;
-        public String status;
+        public TicketStatus status;
         public String adminReply;
         public LocalDateTime createdDate;
         
-        public SupportTicket(int id, String username, String subject, String desc, String status, LocalDateTime created) {
+        public SupportTicket(int id, String username, String subject, String desc, TicketStatus status, LocalDateTime created) {
             this.id = id; this.username = username; this.subject = subject; this.description = desc;
             this.status = status; this.createdDate = created;
         }
     }
     
-    public static class CommentData {
+    public static class CommentData implements Serializable {
+        private static final long serialVersionUID = 2L;
+        
         public int id;
         public String username;
         public String stockSymbol;
         public String content;
-        public String status;
+        public CommentStatus status;
         public LocalDateTime createdDate;
         
-        public CommentData(int id, String username, String symbol, String content, String status) {
+        public CommentData(int id, String username, String symbol, String content, CommentStatus status) {
             this.id = id; this.username = username; this.stockSymbol = symbol; this.content = content;
             this.status = status; this.createdDate = LocalDateTime.now();
         }
     }
     
-    public static class Subscriber {
+    public static class Subscriber implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         public int id;
         public String email;
         public boolean active;
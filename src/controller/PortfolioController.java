@@ -0,0 +1,420 @@
+package controller;
+
+import model.Portfolio;
+import model.Portfolio.PortfolioItem;
+import model.Portfolio.TradeRecord;
+import model.Portfolio.Valuation;
+import model.Stock;
+import model.User;
+import util.LedgerJournal;
+import util.PrimitiveCollections.IntSet;
+import util.ValidationUtils.ValidationResult;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Portfolio Controller for NepseInsider
+ * Owns every user's Portfolio, so holdings and trade history outlive the dashboards
+ * that show them. Fills arrive from the matching engine's loop threads, and the
+ * valuation is computed once per change (of holdings or of prices) and shared by
+ * every view that asks for it.
+ *
+ * A reverse index maps each symbol to the ids of the users holding it (a primitive
+ * int set per symbol). A price change is pushed only to those holders, which adjust
+ * their running value by the delta, so a tick costs O(holders) rather than a walk
+ * over every portfolio. Corporate actions (bonus shares) fan out the same way.
+ * The index changes under the portfolio's lock together with its holdings, so a
+ * tick can never fall between a holding appearing and its subscription.
+ *
+ * Holdings and trade history are kept by the ledger journal: each order's fills are
+ * settled through settle(), one command covering the cash and shares of both sides
+ * of every fill, snapshots
+ * store holdings by symbol, and the sample holdings are seeded once, when the
+ * journal is created. Share reservations for pending sells are not journaled.
+ */
+public class PortfolioController implements LedgerJournal.Participant {
+    
+    private final StockController stockController;
+    private final Map<Integer, Portfolio> portfolios = new ConcurrentHashMap<>();
+    // Symbol -> ids of users holding it; each set is guarded by its own monitor
+    private final Map<String, IntSet> holders = new ConcurrentHashMap<>();
+    private LedgerJournal journal;
+    
+    private PortfolioController() {
+        stockController = StockController.getInstance();
+        stockController.addPriceListener(this::priceChanged);
+    }
+    
+    private static class Holder {
+        static final PortfolioController INSTANCE = new PortfolioController();
+    }
+    
+    public static PortfolioController getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    /**
+     * The user's portfolio, created empty on first use (an empty, unsaved one if user is null)
+     */
+    public Portfolio getPortfolio(User user) {
+        if (user == null) {
+            return new Portfolio(0, null, "Portfolio");
+        }
+        Portfolio portfolio = portfolios.get(user.getId());
+        if (portfolio != null) {
+            return portfolio;
+        }
+        Portfolio created = new Portfolio(user.getId(), user.getUsername(), user.getFullName() + "'s Portfolio");
+        Portfolio raced = portfolios.putIfAbsent(user.getId(), created);
+        return raced != null ? raced : created;
+    }
+    
+    /**
+     * Holdings at their last marks; the same instance is returned until a trade or
+     * a price change of a held symbol
+     */
+    public Valuation getValuation(User user) {
+        return getPortfolio(user).valuate();
+    }
+    
+    /**
+     * Ids of the users currently holding a symbol
+     */
+    public int[] getHolders(String symbol) {
+        IntSet set = holders.get(symbol);
+        if (set == null) {
+            return new int[0];
+        }
+        synchronized (set) {
+            return set.toArray();
+        }
+    }
+    
+    public int getHolderCount(String symbol) {
+        IntSet set = holders.get(symbol);
+        if (set == null) {
+            return 0;
+        }
+        synchronized (set) {
+            return set.size();
+        }
+    }
+    
+    public List<PortfolioItem> getHoldings(User user) {
+        return getPortfolio(user).getHoldings();
+    }
+    
+    public List<TradeRecord> getTrades(User user) {
+        return user == null ? Collections.emptyList() : getPortfolio(user).getTrades();
+    }
+    
+    // ==================== Trades ====================
+    
+    /**
+     * Settle the fills of one order event as a single journaled command: the incoming
+     * order and every resting order it traded with, so both sides of each fill change
+     * together and survive a restart together. Each leg is one account's side: a
+     * positive quantity bought shares, paid out of the account's reserved funds; a
+     * negative one sold reserved shares for the proceeds. Every leg is checked before
+     * any is applied, so the command settles all of them or none.
+     * Called by the matching engine on its loop thread, which does not wait for the
+     * disk: onDurable hears from the journal once the record is on disk.
+     * @param notionals Sum of price * quantity over each leg's fills, in paisa
+     * @param onDurable Told whether the record reached disk (null when replaying)
+     */
+    public ValidationResult settle(String symbol, String[] usernames, int[] quantities, long[] notionals,
+            Consumer<ValidationResult> onDurable) {
+        if (usernames.length == 0 || usernames.length != quantities.length || usernames.length != notionals.length) {
+            return ValidationResult.error("Nothing to settle");
+        }
+        return commit(() -> {
+            Stock stock = stockController.getStock(symbol);
+            if (stock == null) {
+                return ValidationResult.error("Unknown symbol " + symbol);
+            }
+            // Per account: {paisa to pay, shares to sell}
+            User[] users = new User[usernames.length];
+            Map<User, long[]> owed = new HashMap<>();
+            for (int i = 0; i < usernames.length; i++) {
+                users[i] = UserController.getInstance().getUser(usernames[i]);
+                if (users[i] == null) {
+                    return ValidationResult.error("User not found: " + usernames[i]);
+                }
+                if (quantities[i] == 0 || notionals[i] < 0) {
+                    return ValidationResult.error("Nothing to settle");
+                }
+                long[] owes = owed.computeIfAbsent(users[i], u -> new long[2]);
+                if (quantities[i] > 0) {
+                    owes[0] += notionals[i];
+                } else {
+                    owes[1] -= quantities[i];
+                }
+            }
+            for (Map.Entry<User, long[]> entry : owed.entrySet()) {
+                if (entry.getKey().getBalancePaisa() < entry.getValue()[0]) {
+                    return ValidationResult.error("Insufficient balance: " + entry.getKey().getUsername());
+                }
+                PortfolioItem item = getPortfolio(entry.getKey()).getHolding(symbol);
+                if ((item == null ? 0 : item.getQuantity()) < entry.getValue()[1]) {
+                    return ValidationResult.error("Not enough " + symbol + " shares: " + entry.getKey().getUsername());
+                }
+            }
+            for (int i = 0; i < users.length; i++) {
+                int quantity = Math.abs(quantities[i]);
+                double price = notionals[i] / 100.0 / quantity;
+                Portfolio portfolio = getPortfolio(users[i]);
+                if (quantities[i] > 0) {
+                    users[i].spendReservedPaisa(notionals[i]);
+                    synchronized (portfolio) {
+                        subscribe(symbol, portfolio);
+                        portfolio.buy(stock, quantity, price, now());
+                    }
+                } else {
+                    synchronized (portfolio) {
+                        portfolio.sell(symbol, quantity, price, now());
+                        if (portfolio.getHolding(symbol) == null) {
+                            unsubscribe(symbol, portfolio);
+                        }
+                    }
+                    users[i].depositPaisa(notionals[i]);
+                }
+            }
+            return ValidationResult.success();
+        }, onDurable, "settle", symbol, usernames, quantities, notionals);
+    }
+    
+    /**
+     * Hold back shares for a sell order so they cannot be sold twice while it is pending
+     * (called by the matching engine before the order reaches the book)
+     */
+    public ValidationResult reserveShares(User user, String symbol, int quantity) {
+        if (quantity <= 0) {
+            return ValidationResult.error("Quantity must be positive");
+        }
+        Portfolio portfolio = getPortfolio(user);
+        synchronized (portfolio) {
+            if (!portfolio.reserve(symbol, quantity)) {
+                PortfolioItem item = portfolio.getHolding(symbol);
+                return ValidationResult.error("You only have " + (item == null ? 0 : item.getAvailable()) + " shares available");
+            }
+        }
+        return ValidationResult.success();
+    }
+    
+    /**
+     * Give back reserved shares a sell order did not sell
+     */
+    public void releaseShares(User user, String symbol, int quantity) {
+        if (user != null && quantity > 0) {
+            getPortfolio(user).release(symbol, quantity);
+        }
+    }
+    
+    // ==================== Corporate Actions ====================
+    
+    /**
+     * Credit bonus shares to every holder of a symbol. Not journaled here: it runs
+     * inside the caller's journaled change (AdminController.allotBonusShares), so a
+     * replay of that change credits the holders again.
+     * @param percent Bonus shares per 100 held
+     * @param date Date of the bonus trades
+     * @return Number of users credited
+     */
+    public int allotBonusShares(String symbol, double percent, LocalDateTime date) {
+        int credited = 0;
+        for (int id : getHolders(symbol)) {
+            Portfolio portfolio = portfolios.get(id);
+            if (portfolio != null && portfolio.allotBonus(symbol, percent, date) > 0) {
+                credited++;
+            }
+        }
+        return credited;
+    }
+    
+    // ==================== Price Updates ====================
+    
+    // Runs on the thread that wrote the price, with the stock's row locked. The holder
+    // ids are copied out first, because marking takes portfolio locks and subscribing
+    // takes the set lock while a portfolio lock is held.
+    private void priceChanged(String symbol, double oldPrice, double newPrice) {
+        for (int id : getHolders(symbol)) {
+            Portfolio portfolio = portfolios.get(id);
+            if (portfolio != null) {
+                portfolio.markPrice(symbol, newPrice);
+            }
+        }
+    }
+    
+    private void subscribe(String symbol, Portfolio portfolio) {
+        IntSet set = holders.computeIfAbsent(symbol, k -> new IntSet());
+        synchronized (set) {
+            set.add(portfolio.getId());
+        }
+    }
+    
+    private void unsubscribe(String symbol, Portfolio portfolio) {
+        IntSet set = holders.get(symbol);
+        if (set != null) {
+            synchronized (set) {
+                set.remove(portfolio.getId());
+            }
+        }
+    }
+    
+    // ==================== Journal ====================
+    
+    @Override
+    public void attach(LedgerJournal journal) {
+        this.journal = journal;
+    }
+    
+    @Override
+    public String journalName() {
+        return "portfolios";
+    }
+    
+    // Stocks are stored by symbol and looked up again on restore
+    @Override
+    public Serializable snapshotState() {
+        PortfolioState state = new PortfolioState();
+        for (Portfolio portfolio : portfolios.values()) {
+            SavedPortfolio saved = new SavedPortfolio();
+            synchronized (portfolio) {
+                saved.id = portfolio.getId();
+                saved.username = portfolio.getUserId();
+                saved.name = portfolio.getPortfolioName();
+                for (PortfolioItem item : portfolio.getHoldings()) {
+                    saved.holdings.add(new SavedHolding(item));
+                }
+                saved.trades = new ArrayList<>(portfolio.getTrades());
+            }
+            state.portfolios.add(saved);
+        }
+        return state;
+    }
+    
+    @Override
+    public void restoreState(Serializable snapshot) {
+        PortfolioState state = (PortfolioState) snapshot;
+        portfolios.clear();
+        holders.clear();
+        for (SavedPortfolio saved : state.portfolios) {
+            Portfolio portfolio = new Portfolio(saved.id, saved.username, saved.name);
+            synchronized (portfolio) {
+                for (SavedHolding holding : saved.holdings) {
+                    Stock stock = stockController.getStock(holding.symbol);
+                    if (stock != null) {   // Skip stocks delisted since the snapshot
+                        subscribe(holding.symbol, portfolio);
+                        portfolio.addHolding(new PortfolioItem(stock, holding.quantity, holding.buyPrice, holding.purchaseDate));
+                    }
+                }
+                for (TradeRecord trade : saved.trades) {
+                    portfolio.addTrade(trade.getType(), trade.getSymbol(), trade.getQuantity(), trade.getPrice(), trade.getDate());
+                }
+            }
+            portfolios.put(saved.id, portfolio);
+        }
+    }
+    
+    @Override
+    public ValidationResult replay(String op, Object[] a) {
+        switch (op) {
+            case "settle": return settle((String) a[0], (String[]) a[1], (int[]) a[2], (long[]) a[3], null);
+            default: throw new IllegalArgumentException("Unknown portfolio command: " + op);
+        }
+    }
+    
+    // Apply a change and journal it if it succeeds (durable on a successful return;
+    // an error if the journal could not be written)
+    private ValidationResult commit(Supplier<ValidationResult> change, String op, Object... args) {
+        return journal != null ? journal.commit(this, change, op, args) : change.get();
+    }
+    
+    // Same, without waiting for the disk: onDurable hears once the record is durable
+    private ValidationResult commit(Supplier<ValidationResult> change, Consumer<ValidationResult> onDurable,
+            String op, Object... args) {
+        if (journal != null) {
+            return journal.commit(this, change, onDurable, op, args);
+        }
+        ValidationResult result = change.get();
+        if (result.isValid() && onDurable != null) {
+            onDurable.accept(result);
+        }
+        return result;
+    }
+    
+    // Replayed changes keep their original time
+    private LocalDateTime now() {
+        return journal != null ? journal.now() : LocalDateTime.now();
+    }
+    
+    // A new journal starts every user with the sample holdings
+    @Override
+    public void seed() {
+        for (User user : UserController.getInstance().getAllUsers()) {
+            if (!user.isAdmin()) {
+                Portfolio portfolio = getPortfolio(user);
+                synchronized (portfolio) {
+                    seedSampleHoldings(portfolio);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Snapshot of every portfolio
+     */
+    private static class PortfolioState implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        ArrayList<SavedPortfolio> portfolios = new ArrayList<>();
+    }
+    
+    private static class SavedPortfolio implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        int id;
+        String username;
+        String name;
+        ArrayList<SavedHolding> holdings = new ArrayList<>();
+        ArrayList<TradeRecord> trades;
+    }
+    
+    private static class SavedHolding implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        String symbol;
+        int quantity;
+        double buyPrice;
+        LocalDateTime purchaseDate;
+        
+        SavedHolding(PortfolioItem item) {
+            symbol = item.getStock().getSymbol();
+            quantity = item.getQuantity();
+            buyPrice = item.getBuyPrice();
+            purchaseDate = item.getPurchaseDate();
+        }
+    }
+    
+    // ==================== Sample Data ====================
+    
+    private void seedSampleHoldings(Portfolio portfolio) {
+        Stock nabil = stockController.getStock("NABIL");
+        Stock nica = stockController.getStock("NICA");
+        Stock upper = stockController.getStock("UPPER");
+        if (nabil != null) { subscribe("NABIL", portfolio); portfolio.addHolding(new PortfolioItem(nabil, 50, 1200.00)); }
+        if (nica != null) { subscribe("NICA", portfolio); portfolio.addHolding(new PortfolioItem(nica, 100, 820.00)); }
+        if (upper != null) { subscribe("UPPER", portfolio); portfolio.addHolding(new PortfolioItem(upper, 75, 560.00)); }
+        portfolio.addTrade("BUY", "NABIL", 50, 1200.00, LocalDateTime.now().minusDays(5));
+        portfolio.addTrade("BUY", "NICA", 100, 820.00, LocalDateTime.now().minusDays(3));
+    }
+}
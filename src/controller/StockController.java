@@ -1,69 +1,195 @@
 package controller;
 
+import model.Candle;
 import model.Stock;
+import util.BarAggregator;
+import util.BarAggregator.Resolution;
 import util.DataStructures.*;
+import util.MappedStockFile;
 import util.SearchAlgorithms.*;
 import util.SortAlgorithms.*;
+import util.SortedIndex;
+import util.StockSearchIndex;
+import util.StockStore;
+import util.TickJournal;
+import util.TickStore;
 import util.ValidationUtils;
 import util.ValidationUtils.ValidationResult;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
 /**
  * StockController - Manages all stock-related operations
+ * Stock data lives in a columnar StockStore; the Stock objects handed out are views over it.
+ *
+ * Safe to use from several threads: readers work on an immutable snapshot of the
+ * display order and never lock, price and field updates go through the store's
+ * striped writers, and add/delete/sort republish the snapshot under one lock.
+ *
+ * The universe and today's ticks are persisted in memory-mapped files under the
+ * nepse.data.dir directory (default "data"). A restart maps them back in instead of
+ * rebuilding the sample data. If the files cannot be used, the controller runs in memory.
  */
 public class StockController {
     
-    private ArrayList<Stock> stocks;
-    private HashMap<String, Stock> stocksBySymbol;
-    private StockQueue<Stock> recentlyAddedStocks;
-    private int nextStockId;
-    private static StockController instance;
+    private static final LongSupplier CLOCK = System::currentTimeMillis;
+    
+    private final StockStore store;
+    private final MappedStockFile stockFile;   // null when running in memory only
+    private final TickJournal tickJournal;     // null when running in memory only
+    private final SortedIndex changeIndex;   // Rows ordered by change %, for top gainers/losers
+    private final SortedIndex priceIndex;
+    private final SortedIndex yearIndex;
+    private final SortedIndex marketCapIndex;
+    private final SortedIndex volumeIndex;
+    private final StockSearchIndex searchIndex;   // Symbol trie + name trigrams
+    private final TickStore tickStore;   // Intraday ticks, one per executed trade
+    private final BarAggregator bars;   // OHLCV bars, updated from the same events
+    private volatile List<Stock> stocks;   // Display order snapshot (views into the store)
+    private volatile DisplayPositions displayPositions;   // For the last snapshot searched in display order
+    private final Object structureLock = new Object();
+    private final StockQueue<Stock> recentlyAddedStocks;
+    private final AtomicInteger nextStockId;
     
     private StockController() {
-        stocks = new ArrayList<>();
-        stocksBySymbol = new HashMap<>();
+        Path dataDir = Paths.get(System.getProperty("nepse.data.dir", "data"));
+        stockFile = openStockFile(dataDir.resolve("stocks.dat"));
+        StockStore restored = stockFile != null && stockFile.hasData() ? restore(stockFile) : null;
+        store = restored != null ? restored : new StockStore();
+        
+        changeIndex = new SortedIndex(store, StockStore.Field.CHANGE_PERCENT);
+        priceIndex = new SortedIndex(store, StockStore.Field.PRICE);
+        yearIndex = new SortedIndex(store, StockStore.Field.YEAR_LISTED);
+        marketCapIndex = new SortedIndex(store, StockStore.Field.MARKET_CAP);
+        volumeIndex = new SortedIndex(store, StockStore.Field.VOLUME);
+        searchIndex = new StockSearchIndex();
+        tickStore = new TickStore(store, TickStore.DEFAULT_SEGMENT_SIZE, CLOCK);
+        bars = new BarAggregator(store, CLOCK);
+        stocks = Collections.emptyList();
         recentlyAddedStocks = new StockQueue<>(5);
-        nextStockId = 1;
-        initializeSampleData();
+        nextStockId = new AtomicInteger(1);
+        
+        if (restored != null) {
+            publishRestored();
+        } else {
+            initializeSampleData();
+        }
+        if (stockFile != null) {
+            stockFile.attach(store);
+        }
+        tickJournal = openTickJournal(dataDir, restored != null);
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "stock-flush"));
     }
     
-    public static StockController getInstance() {
-        if (instance == null) {
-            instance = new StockController();
+    private static MappedStockFile openStockFile(Path path) {
+        try {
+            return MappedStockFile.open(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Loads into a fresh store so a damaged file cannot leave a half-filled universe behind
+    private static StockStore restore(MappedStockFile file) {
+        try {
+            StockStore loaded = new StockStore();
+            file.loadInto(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    private TickJournal openTickJournal(Path dataDir, boolean replay) {
+        TickJournal journal = new TickJournal(dataDir, store, CLOCK);
+        try {
+            if (replay) {
+                journal.replay(tickStore, bars);
+            } else {
+                journal.truncate();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
         }
-        return instance;
+        journal.attach();
+        return journal;
+    }
+    
+    // Rebuild the in-memory views of a universe loaded from disk
+    private void publishRestored() {
+        List<Stock> views = store.views();
+        int maxId = 0;
+        for (int row = 0; row < store.size(); row++) {
+            maxId = Math.max(maxId, store.id(row));
+        }
+        for (Stock view : views) {
+            searchIndex.add(store.find(view.getSymbol()), view.getSymbol(), view.getCompanyName());
+            recentlyAddedStocks.enqueue(view);
+        }
+        stocks = Collections.unmodifiableList(views);
+        nextStockId.set(maxId + 1);
+    }
+    
+    /**
+     * Force persisted stock records and today's ticks to disk
+     */
+    public void flush() {
+        if (stockFile != null) {
+            stockFile.flush();
+        }
+        if (tickJournal != null) {
+            tickJournal.flush();
+        }
+    }
+    
+    // Initialization-on-demand holder: lazy and thread-safe without locking on every call
+    private static class Holder {
+        static final StockController INSTANCE = new StockController();
+    }
+    
+    public static StockController getInstance() {
+        return Holder.INSTANCE;
     }
     
     private void initializeSampleData() {
         // Banking Sector
-        addStockInternal(new Stock(nextStockId++, "NABIL", "Nabil Bank Limited", "Commercial Bank", 1250.00, 50000000000.0, 125000, 1984));
-        addStockInternal(new Stock(nextStockId++, "NICA", "NIC Asia Bank Limited", "Commercial Bank", 850.00, 35000000000.0, 89000, 1998));
-        addStockInternal(new Stock(nextStockId++, "SBL", "Siddhartha Bank Limited", "Commercial Bank", 420.00, 18000000000.0, 65000, 2002));
-        addStockInternal(new Stock(nextStockId++, "GBIME", "Global IME Bank Limited", "Commercial Bank", 385.00, 42000000000.0, 78000, 2007));
-        addStockInternal(new Stock(nextStockId++, "SANIMA", "Sanima Bank Limited", "Commercial Bank", 410.00, 25000000000.0, 45000, 2004));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NABIL", "Nabil Bank Limited", "Commercial Bank", 1250.00, 50000000000.0, 125000, 1984));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NICA", "NIC Asia Bank Limited", "Commercial Bank", 850.00, 35000000000.0, 89000, 1998));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "SBL", "Siddhartha Bank Limited", "Commercial Bank", 420.00, 18000000000.0, 65000, 2002));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "GBIME", "Global IME Bank Limited", "Commercial Bank", 385.00, 42000000000.0, 78000, 2007));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "SANIMA", "Sanima Bank Limited", "Commercial Bank", 410.00, 25000000000.0, 45000, 2004));
         
         // Development Banks
-        addStockInternal(new Stock(nextStockId++, "LBBL", "Lumbini Bikas Bank", "Development Bank", 480.00, 8000000000.0, 35000, 2005));
-        addStockInternal(new Stock(nextStockId++, "MNBBL", "Muktinath Bikas Bank", "Development Bank", 520.00, 12000000000.0, 42000, 2007));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "LBBL", "Lumbini Bikas Bank", "Development Bank", 480.00, 8000000000.0, 35000, 2005));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "MNBBL", "Muktinath Bikas Bank", "Development Bank", 520.00, 12000000000.0, 42000, 2007));
         
         // Hydropower
-        addStockInternal(new Stock(nextStockId++, "NHPC", "Nepal Hydro Power", "Hydropower", 680.00, 15000000000.0, 55000, 1996));
-        addStockInternal(new Stock(nextStockId++, "CHCL", "Chilime Hydropower", "Hydropower", 720.00, 22000000000.0, 68000, 2003));
-        addStockInternal(new Stock(nextStockId++, "AKPL", "Arun Kabeli Power", "Hydropower", 385.00, 5000000000.0, 25000, 2010));
-        addStockInternal(new Stock(nextStockId++, "UPPER", "Upper Tamakoshi", "Hydropower", 580.00, 35000000000.0, 85000, 2011));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NHPC", "Nepal Hydro Power", "Hydropower", 680.00, 15000000000.0, 55000, 1996));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "CHCL", "Chilime Hydropower", "Hydropower", 720.00, 22000000000.0, 68000, 2003));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "AKPL", "Arun Kabeli Power", "Hydropower", 385.00, 5000000000.0, 25000, 2010));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "UPPER", "Upper Tamakoshi", "Hydropower", 580.00, 35000000000.0, 85000, 2011));
         
         // Insurance
-        addStockInternal(new Stock(nextStockId++, "NLIC", "Nepal Life Insurance", "Life Insurance", 1850.00, 28000000000.0, 95000, 2001));
-        addStockInternal(new Stock(nextStockId++, "SICL", "Shikhar Insurance", "Non-Life Insurance", 920.00, 12000000000.0, 48000, 2004));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NLIC", "Nepal Life Insurance", "Life Insurance", 1850.00, 28000000000.0, 95000, 2001));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "SICL", "Shikhar Insurance", "Non-Life Insurance", 920.00, 12000000000.0, 48000, 2004));
         
         // Others
-        addStockInternal(new Stock(nextStockId++, "NTC", "Nepal Telecom", "Trading", 850.00, 85000000000.0, 150000, 1995));
-        addStockInternal(new Stock(nextStockId++, "NRIC", "Nepal Reinsurance", "Insurance", 1200.00, 18000000000.0, 62000, 2015));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NTC", "Nepal Telecom", "Trading", 850.00, 85000000000.0, 150000, 1995));
+        addStockInternal(new Stock(nextStockId.getAndIncrement(), "NRIC", "Nepal Reinsurance", "Insurance", 1200.00, 18000000000.0, 62000, 2015));
         
         // Set price changes
         stocks.get(0).setChangePercent(2.50);
@@ -79,9 +205,21 @@ public class StockController {
     }
     
     private void addStockInternal(Stock stock) {
-        stocks.add(stock);
-        stocksBySymbol.put(stock.getSymbol().toUpperCase(), stock);
-        recentlyAddedStocks.enqueue(stock);
+        synchronized (structureLock) {
+            publishAdded(store.add(stock));
+        }
+    }
+    
+    // Caller holds structureLock
+    private void publishAdded(Stock view) {
+        searchIndex.add(store.find(view.getSymbol()), view.getSymbol(), view.getCompanyName());
+        List<Stock> next = new ArrayList<>(stocks.size() + 1);
+        next.addAll(stocks);
+        next.add(view);
+        stocks = Collections.unmodifiableList(next);
+        synchronized (recentlyAddedStocks) {
+            recentlyAddedStocks.enqueue(view);
+        }
     }
     
     public ValidationResult addStock(String symbol, String companyName, String sector, 
@@ -93,60 +231,218 @@ public class StockController {
         ValidationResult nameResult = ValidationUtils.validateCompanyName(companyName);
         if (!nameResult.isValid()) return nameResult;
         
-        if (stocksBySymbol.containsKey(symbol.toUpperCase())) {
-            return ValidationResult.error("Stock with symbol " + symbol + " already exists");
+        synchronized (structureLock) {
+            if (store.find(symbol) >= 0) {
+                return ValidationResult.error("Stock with symbol " + symbol + " already exists");
+            }
+            
+            publishAdded(store.add(nextStockId.getAndIncrement(), symbol.toUpperCase(), companyName, sector,
+                    price, marketCap, volume, year));
         }
         
-        Stock stock = new Stock(nextStockId++, symbol.toUpperCase(), companyName, sector, price, marketCap, volume, year);
-        stocks.add(stock);
-        stocksBySymbol.put(symbol.toUpperCase(), stock);
-        recentlyAddedStocks.enqueue(stock);
-        
         return ValidationResult.success();
     }
     
     public ValidationResult updateStock(String symbol, String companyName, String sector, 
             double price, double marketCap, long volume, int year) {
         
-        Stock stock = stocksBySymbol.get(symbol.toUpperCase());
-        if (stock == null) {
-            return ValidationResult.error("Stock not found: " + symbol);
+        // Under structureLock so a concurrent delete cannot free the row between the
+        // lookup and the index update (which would bring the dead row back into search)
+        synchronized (structureLock) {
+            int row = store.find(symbol);
+            if (row < 0) {
+                return ValidationResult.error("Stock not found: " + symbol);
+            }
+            
+            // One stripe lock for the whole row, so readers never see a half-applied edit
+            store.update(row, companyName, sector, price, marketCap, volume, year);
+            searchIndex.update(row, store.symbol(row), companyName);
+            if (stockFile != null) {
+                stockFile.writeRow(row);   // Text fields are not covered by store events
+            }
         }
         
-        stock.setCompanyName(companyName);
-        stock.setSector(sector);
-        stock.setCurrentPrice(price);
-        stock.setMarketCap(marketCap);
-        stock.setVolume(volume);
-        stock.setYearListed(year);
+        return ValidationResult.success();
+    }
+    
+    /**
+     * Change a stock's symbol. Renames go through here rather than the store so the
+     * search index and the stock file follow the new symbol.
+     */
+    public ValidationResult renameStock(String symbol, String newSymbol) {
+        ValidationResult symbolResult = ValidationUtils.validateStockSymbol(newSymbol);
+        if (!symbolResult.isValid()) return symbolResult;
+        
+        synchronized (structureLock) {
+            int row = store.find(symbol);
+            if (row < 0) {
+                return ValidationResult.error("Stock not found: " + symbol);
+            }
+            int existing = store.find(newSymbol);
+            if (existing >= 0 && existing != row) {
+                return ValidationResult.error("Stock with symbol " + newSymbol.toUpperCase() + " already exists");
+            }
+            
+            store.setSymbol(row, newSymbol);
+            searchIndex.update(row, store.symbol(row), store.companyName(row));
+            if (stockFile != null) {
+                stockFile.writeRow(row);
+            }
+        }
         
         return ValidationResult.success();
     }
     
     public ValidationResult deleteStock(String symbol) {
-        Stock stock = stocksBySymbol.remove(symbol.toUpperCase());
-        if (stock == null) {
-            return ValidationResult.error("Stock not found: " + symbol);
+        synchronized (structureLock) {
+            int row = store.find(symbol);
+            if (row < 0) {
+                return ValidationResult.error("Stock not found: " + symbol);
+            }
+            Stock stock = store.get(row);
+            store.remove(row);
+            searchIndex.remove(row);
+            List<Stock> next = new ArrayList<>(stocks);
+            next.remove(stock);
+            stocks = Collections.unmodifiableList(next);
         }
-        stocks.remove(stock);
         return ValidationResult.success();
     }
     
+    /**
+     * Apply an executed trade to a stock's price and volume (called by the matching engine)
+     * @return false if the symbol is not listed
+     */
+    public boolean recordTrade(String symbol, double price, long quantity) {
+        int row = store.find(symbol);
+        if (row < 0) {
+            return false;
+        }
+        store.recordTrade(row, price, quantity);
+        return true;
+    }
+    
+    /**
+     * The columnar store behind the stock views, for models that read or follow
+     * its columns directly
+     */
+    public StockStore getStore() {
+        return store;
+    }
+    
+    /**
+     * Receives every price change. Called on the writing thread while the stock's
+     * row is locked, so it must be quick and must not write stock data back.
+     */
+    public interface PriceListener {
+        void priceChanged(String symbol, double oldPrice, double newPrice);
+    }
+    
+    public void addPriceListener(PriceListener listener) {
+        store.addListener(new StockStore.Listener() {
+            @Override
+            public void rowAdded(int row) {
+            }
+            
+            @Override
+            public void rowRemoved(int row) {
+            }
+            
+            @Override
+            public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+                if (field == StockStore.Field.PRICE) {
+                    listener.priceChanged(store.symbol(row), oldValue, newValue);
+                }
+            }
+        });
+    }
+    
     public Stock getStock(String symbol) {
-        return stocksBySymbol.get(symbol.toUpperCase());
+        int row = store.find(symbol);
+        return row < 0 ? null : store.get(row);
     }
     
     public List<Stock> getAllStocks() {
         return new ArrayList<>(stocks);
     }
     
+    /**
+     * The current display order without copying it. The list is read-only and never
+     * changes: adds, removes and sorts publish a new one, so the same instance means
+     * the same stocks in the same order.
+     */
+    public List<Stock> getDisplayOrder() {
+        return stocks;
+    }
+    
     public int getTotalStocks() {
-        return stocks.size();
+        return store.liveCount();
     }
     
     // Search operations
+    
+    /**
+     * Symbol / company name search, best matches first (exact symbol, symbol prefix, ...)
+     */
     public List<Stock> searchByName(String query) {
-        return LinearSearch.searchByName(stocks, query);
+        return searchByName(query, Integer.MAX_VALUE);
+    }
+    
+    public List<Stock> searchByName(String query, int limit) {
+        return toStocks(searchIndex.search(query, limit));
+    }
+    
+    /**
+     * Symbol / company name matches listed in the given display order (a list from
+     * getDisplayOrder()) instead of by rank. The index finds the k matches and they
+     * are sorted by their place in that order: O(k log k), plus one pass over the
+     * order the first time a new snapshot is searched.
+     */
+    public List<Stock> searchByName(String query, List<Stock> order) {
+        int[] position = displayPositions(order);
+        int[] rows = searchIndex.search(query, Integer.MAX_VALUE);
+        long[] keyed = new long[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            // Rows added after this snapshot was published are not in it
+            if (row < position.length && position[row] >= 0) {
+                keyed[count++] = (long) position[row] << 32 | row;
+            }
+        }
+        Arrays.sort(keyed, 0, count);
+        List<Stock> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(store.get((int) keyed[i]));
+        }
+        return result;
+    }
+    
+    // Row -> place in the display order, worked out once per snapshot
+    private int[] displayPositions(List<Stock> order) {
+        DisplayPositions cached = displayPositions;
+        if (cached == null || cached.order != order) {
+            int[] position = new int[store.size()];
+            Arrays.fill(position, -1);
+            for (int i = 0; i < order.size(); i++) {
+                int row = store.rowOf(order.get(i));
+                if (row >= 0 && row < position.length) {
+                    position[row] = i;
+                }
+            }
+            cached = new DisplayPositions(order, position);
+            displayPositions = cached;
+        }
+        return cached.position;
+    }
+    
+    private static final class DisplayPositions {
+        final List<Stock> order;
+        final int[] position;
+        
+        DisplayPositions(List<Stock> order, int[] position) {
+            this.order = order;
+            this.position = position;
+        }
     }
     
     public List<Stock> searchBySector(String sector) {
@@ -154,54 +450,129 @@ public class StockController {
     }
     
     public List<Stock> searchMultipleCriteria(String name, String sector, double minPrice, double maxPrice) {
-        return LinearSearch.searchMultipleCriteria(stocks, name, sector, minPrice, maxPrice);
+        return store.filter(name, sector, minPrice, maxPrice);
+    }
+    
+    // Range queries - O(log n + k) on the sorted indexes, lowest value first
+    public List<Stock> getStocksByPrice(double price) {
+        return toStocks(priceIndex.range(price, price));
     }
     
-    // Sort operations
+    public List<Stock> getStocksByPriceRange(double minPrice, double maxPrice) {
+        return toStocks(priceIndex.range(minPrice, maxPrice));
+    }
+    
+    public List<Stock> getStocksByYear(int year) {
+        return toStocks(yearIndex.range(year, year));
+    }
+    
+    public List<Stock> getStocksByYearRange(int fromYear, int toYear) {
+        return toStocks(yearIndex.range(fromYear, toYear));
+    }
+    
+    public List<Stock> getStocksByMarketCapRange(double minMarketCap, double maxMarketCap) {
+        return toStocks(marketCapIndex.range(minMarketCap, maxMarketCap));
+    }
+    
+    public List<Stock> getStocksByVolumeRange(long minVolume, long maxVolume) {
+        return toStocks(volumeIndex.range(minVolume, maxVolume));
+    }
+    
+    // Sort operations (sort a copy, then publish it as the new display order)
     public void sortByPrice(SortOrder order) {
-        QuickSort.sortByPrice(stocks, order);
+        synchronized (structureLock) {
+            List<Stock> next = new ArrayList<>(stocks);
+            QuickSort.sortByPrice(next, order);
+            stocks = Collections.unmodifiableList(next);
+        }
     }
     
     public void sortByMarketCap(SortOrder order) {
-        QuickSort.sortByMarketCap(stocks, order);
+        synchronized (structureLock) {
+            List<Stock> next = new ArrayList<>(stocks);
+            QuickSort.sortByMarketCap(next, order);
+            stocks = Collections.unmodifiableList(next);
+        }
     }
     
     public void sortByChangePercent(SortOrder order) {
-        QuickSort.sortByChangePercent(stocks, order);
+        synchronized (structureLock) {
+            List<Stock> next = new ArrayList<>(stocks);
+            QuickSort.sortByChangePercent(next, order);
+            stocks = Collections.unmodifiableList(next);
+        }
+    }
+    
+    /**
+     * Sort by several keys, e.g. SortPlan.of(SECTOR, ASCENDING).then(CHANGE_PERCENT, DESCENDING)
+     */
+    public void sortBy(SortPlan plan) {
+        synchronized (structureLock) {
+            List<Stock> next = new ArrayList<>(stocks);
+            KeySort.sort(next, plan);
+            stocks = Collections.unmodifiableList(next);
+        }
     }
     
-    // Get top gainers/losers
+    // Get top gainers/losers - O(limit) walks of the change % index
     public List<Stock> getTopGainers(int limit) {
-        return LinearSearch.findTopGainers(stocks, limit);
+        return toStocks(changeIndex.highest(limit, 0.0));
     }
     
     public List<Stock> getTopLosers(int limit) {
-        return LinearSearch.findTopLosers(stocks, limit);
+        return toStocks(changeIndex.lowest(limit, 0.0));
+    }
+    
+    private List<Stock> toStocks(int[] rows) {
+        List<Stock> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(store.get(row));
+        }
+        return result;
+    }
+    
+    /**
+     * Intraday ticks for a symbol with fromMillis <= timestamp < toMillis
+     * @return Ticks in time order (empty if the symbol is unknown)
+     */
+    public TickStore.Ticks getTicks(String symbol, long fromMillis, long toMillis) {
+        int row = store.find(symbol);
+        return row < 0 ? new TickStore.Ticks() : tickStore.range(row, fromMillis, toMillis);
+    }
+    
+    /**
+     * OHLCV bars for a symbol that start in [fromMillis, toMillis), oldest first
+     */
+    public List<Candle> getBars(String symbol, Resolution resolution, long fromMillis, long toMillis) {
+        List<Candle> candles = new ArrayList<>();
+        int row = store.find(symbol);
+        if (row < 0) {
+            return candles;
+        }
+        String key = store.symbol(row);
+        BarAggregator.Bars range = bars.range(row, resolution, fromMillis, toMillis);
+        for (int i = 0; i < range.size(); i++) {
+            candles.add(new Candle(key, range.getStart(i), resolution.getMillis(), range.getOpen(i),
+                    range.getHigh(i), range.getLow(i), range.getClose(i), range.getVolume(i)));
+        }
+        return candles;
     }
     
     public LinkedList<Stock> getRecentlyAddedStocks() {
-        return recentlyAddedStocks.getAll();
+        synchronized (recentlyAddedStocks) {
+            return recentlyAddedStocks.getAll();
+        }
     }
     
     public Map<String, Integer> getStocksBySector() {
-        Map<String, Integer> sectorCount = new HashMap<>();
-        for (Stock stock : stocks) {
-            sectorCount.merge(stock.getSector(), 1, Integer::sum);
-        }
-        return sectorCount;
+        return store.countBySector();
     }
     
     public double getTotalMarketCap() {
-        return stocks.stream().mapToDouble(Stock::getMarketCap).sum();
+        return store.totalMarketCap();
     }
     
     public List<String> getAllSectors() {
-        List<String> sectors = new ArrayList<>();
-        for (Stock stock : stocks) {
-            if (!sectors.contains(stock.getSector())) {
-                sectors.add(stock.getSector());
-            }
-        }
-        return sectors;
+        return store.sectorNames();
     }
 }
@@ -3,23 +3,31 @@ package controller;
 import model.User;
 import model.User.UserRole;
 import model.User.UserStatus;
+import util.LedgerJournal;
 import util.ValidationUtils;
 import util.ValidationUtils.ValidationResult;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * UserController - Manages user authentication and operations
+ * Account changes are recorded in the ledger journal once it is attached
  */
-public class UserController {
+public class UserController implements LedgerJournal.Participant {
     
     private Map<String, User> users;
     private User currentUser;
     private int nextUserId;
+    private LedgerJournal journal;
+    private final List<Consumer<User>> deleteListeners = new CopyOnWriteArrayList<>();
     private static UserController instance;
     
     private UserController() {
@@ -80,9 +88,10 @@ public class UserController {
             return ValidationResult.error("Your account has been suspended");
         }
         
-        currentUser = user;
+        // Not journaled: a login is not a ledger change and should not wait for an fsync.
+        // The time is kept in memory and reaches disk with the next snapshot.
         user.setLastLogin(LocalDateTime.now());
-        
+        currentUser = user;
         return ValidationResult.success();
     }
     
@@ -104,20 +113,21 @@ public class UserController {
             return ValidationResult.error("Full name cannot be empty");
         }
         
-        if (users.containsKey(username.toLowerCase())) {
-            return ValidationResult.error("Username already exists");
-        }
-        
-        for (User user : users.values()) {
-            if (user.getEmail() != null && user.getEmail().equalsIgnoreCase(email)) {
-                return ValidationResult.error("Email already registered");
+        return commit(() -> {
+            if (users.containsKey(username.toLowerCase())) {
+                return ValidationResult.error("Username already exists");
             }
-        }
-        
-        User newUser = new User(nextUserId++, username.toLowerCase(), password, email, fullName);
-        users.put(username.toLowerCase(), newUser);
-        
-        return ValidationResult.success();
+            
+            for (User user : users.values()) {
+                if (user.getEmail() != null && user.getEmail().equalsIgnoreCase(email)) {
+                    return ValidationResult.error("Email already registered");
+                }
+            }
+            
+            User newUser = new User(nextUserId++, username.toLowerCase(), password, email, fullName);
+            users.put(username.toLowerCase(), newUser);
+            return ValidationResult.success();
+        }, "register", username, password, email, fullName);
     }
     
     public User getCurrentUser() {
@@ -141,25 +151,22 @@ public class UserController {
     }
     
     public ValidationResult updateUserStatus(String username, UserStatus status) {
-        User user = users.get(username.toLowerCase());
-        if (user == null) {
-            return ValidationResult.error("User not found");
-        }
-        
         if (currentUser != null && currentUser.getUsername().equalsIgnoreCase(username) 
                 && status != UserStatus.ACTIVE) {
             return ValidationResult.error("Cannot change your own status");
         }
         
-        user.setStatus(status);
-        return ValidationResult.success();
+        return commit(() -> {
+            User user = users.get(username.toLowerCase());
+            if (user == null) {
+                return ValidationResult.error("User not found");
+            }
+            user.setStatus(status);
+            return ValidationResult.success();
+        }, "updateUserStatus", username, status);
     }
     
     public ValidationResult deleteUser(String username) {
-        if (!users.containsKey(username.toLowerCase())) {
-            return ValidationResult.error("User not found");
-        }
-        
         if (currentUser != null && currentUser.getUsername().equalsIgnoreCase(username)) {
             return ValidationResult.error("Cannot delete your own account");
         }
@@ -168,20 +175,35 @@ public class UserController {
             return ValidationResult.error("Cannot delete admin account");
         }
         
-        users.remove(username.toLowerCase());
-        return ValidationResult.success();
+        User user = users.get(username.toLowerCase());
+        if (user != null && (journal == null || !journal.isReplaying())) {
+            for (Consumer<User> listener : deleteListeners) {
+                listener.accept(user);
+            }
+        }
+        return commit(() -> users.remove(username.toLowerCase()) != null
+                ? ValidationResult.success() : ValidationResult.error("User not found"), "deleteUser", username);
+    }
+    
+    /**
+     * Be told just before a user is deleted (not on replay), so anything that still
+     * acts for the account, such as its resting orders, can be stopped first
+     */
+    public void addDeleteListener(Consumer<User> listener) {
+        deleteListeners.add(listener);
     }
     
     public ValidationResult addUser(String username, String password, String email, String fullName, UserRole role) {
-        if (users.containsKey(username.toLowerCase())) {
-            return ValidationResult.error("Username already exists");
-        }
-        
-        User newUser = new User(nextUserId++, username.toLowerCase(), password, email, fullName);
-        newUser.setRole(role);
-        users.put(username.toLowerCase(), newUser);
-        
-        return ValidationResult.success();
+        return commit(() -> {
+            if (users.containsKey(username.toLowerCase())) {
+                return ValidationResult.error("Username already exists");
+            }
+            
+            User newUser = new User(nextUserId++, username.toLowerCase(), password, email, fullName);
+            newUser.setRole(role);
+            users.put(username.toLowerCase(), newUser);
+            return ValidationResult.success();
+        }, "addUser", username, password, email, fullName, role);
     }
     
     public int getTotalUsers() {
@@ -191,4 +213,59 @@ public class UserController {
     public int getActiveUsers() {
         return (int) users.values().stream().filter(User::isActive).count();
     }
+    
+    // ==================== Ledger Journal ====================
+    
+    @Override
+    public void attach(LedgerJournal journal) {
+        this.journal = journal;
+    }
+    
+    @Override
+    public String journalName() {
+        return "users";
+    }
+    
+    @Override
+    public Serializable snapshotState() {
+        AccountState state = new AccountState();
+        state.users = new HashMap<>(users);
+        state.nextUserId = nextUserId;
+        return state;
+    }
+    
+    @Override
+    public void restoreState(Serializable snapshot) {
+        AccountState state = (AccountState) snapshot;
+        users = state.users;
+        nextUserId = state.nextUserId;
+        currentUser = null;
+    }
+    
+    @Override
+    public ValidationResult replay(String op, Object[] a) {
+        switch (op) {
+            case "register": return register((String) a[0], (String) a[1], (String) a[2], (String) a[3]);
+            case "updateUserStatus": return updateUserStatus((String) a[0], UserStatus.valueOf((String) a[1]));
+            case "deleteUser": return deleteUser((String) a[0]);
+            case "addUser": return addUser((String) a[0], (String) a[1], (String) a[2], (String) a[3], UserRole.valueOf((String) a[4]));
+            default: throw new IllegalArgumentException("Unknown user command: " + op);
+        }
+    }
+    
+    // Apply a change and journal it if it succeeds (durable on a successful return;
+    // an error if the journal could not be written)
+    private ValidationResult commit(Supplier<ValidationResult> change, String op, Object... args) {
+        return journal != null ? journal.commit(this, change, op, args) : change.get();
+    }
+    
+    /**
+     * Snapshot of the account table
+     */
+    private static class AccountState implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        HashMap<String, User> users;
+        int nextUserId;
+    }
 }
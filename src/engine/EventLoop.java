@@ -0,0 +1,160 @@
+package engine;
+
+import engine.OrderBook.Side;
+import model.User;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Event Loop for NepseInsider
+ * Single-writer loop for one partition of symbols, fed through a pre-allocated ring
+ * of event slots in the style of the LMAX Disruptor. Any thread may publish: it
+ * claims the next sequence, fills that slot in place and marks it published. One
+ * dedicated thread consumes the slots strictly in sequence order, so everything that
+ * touches a symbol's book happens on that thread, in one well-defined order, without
+ * locks.
+ *
+ * Publishing allocates nothing. When the ring is full, publishers wait for the loop
+ * to free a slot rather than dropping events. The loop spins briefly when idle, then
+ * yields, then parks until a publisher wakes it.
+ */
+final class EventLoop {
+    
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 1_000_000;
+    
+    enum Type {
+        ORDER, CANCEL, CLOSE
+    }
+    
+    /**
+     * One ring slot, reused for every event that lands on it
+     */
+    static final class Event {
+        Type type;
+        String symbol;
+        Side side;
+        long limit;
+        long quantity;
+        User account;
+        boolean immediateOrCancel;
+        long orderId;
+        Consumer<OrderBook.Execution> callback;
+        Runnable done;   // CLOSE: run once handled
+        
+        // Drop references once handled so the ring does not keep them alive
+        void clear() {
+            symbol = null;
+            account = null;
+            callback = null;
+            done = null;
+        }
+    }
+    
+    interface Handler {
+        void onEvent(Event event, long sequence);
+        
+        /** onEvent threw; the loop carries on with the next event */
+        void onFailure(Event event, long sequence, RuntimeException e);
+    }
+    
+    private final Event[] ring;
+    private final int mask;
+    private final Handler handler;
+    private final Thread thread;
+    private final AtomicLong claimed = new AtomicLong(-1);   // Last sequence handed to a publisher
+    private final AtomicLongArray published;                 // Sequence each slot holds once readable
+    private volatile long consumed = -1;                     // Last sequence the loop finished
+    private volatile boolean sleeping;
+    
+    /**
+     * @param capacity Ring size, rounded up to a power of two
+     */
+    EventLoop(String name, int capacity, Handler handler) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        this.handler = handler;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+    
+    void start() {
+        thread.start();
+    }
+    
+    // ==================== Publishing ====================
+    
+    /**
+     * Claim the next sequence, waiting while the ring is full
+     */
+    long claim() {
+        long sequence = claimed.incrementAndGet();
+        while (sequence - ring.length > consumed) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(1000);
+        }
+        return sequence;
+    }
+    
+    /**
+     * Slot for a claimed sequence; fill it, then publish()
+     */
+    Event slot(long sequence) {
+        return ring[(int) sequence & mask];
+    }
+    
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    // ==================== Loop Thread ====================
+    
+    private void run() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            int index = (int) next & mask;
+            if (published.get(index) == next) {
+                Event event = ring[index];
+                try {
+                    handler.onEvent(event, next);
+                } catch (RuntimeException e) {
+                    try {
+                        handler.onFailure(event, next, e);
+                    } catch (RuntimeException again) {
+                        again.printStackTrace();
+                    }
+                }
+                event.clear();
+                consumed = next++;
+                idle = 0;
+            } else if (idle < SPIN_TRIES) {
+                idle++;
+                Thread.onSpinWait();
+            } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                idle++;
+                Thread.yield();
+            } else {
+                sleeping = true;
+                // Check again after announcing, so a publish in between is never missed
+                if (published.get(index) != next) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package engine;
+
+import controller.PortfolioController;
+import controller.StockController;
+import controller.UserController;
+import engine.OrderBook.Execution;
+import engine.OrderBook.Side;
+import model.Stock;
+import model.User;
+import util.ValidationUtils.ValidationResult;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Matching Engine for NepseInsider
+ * Routes orders to one price-time priority OrderBook per symbol. Symbols are split
+ * into partitions by hash, and each partition has a single EventLoop thread that owns
+ * its books. Callers (the UI, or any API thread) only publish events into the
+ * partition's ring; the loop reserves the account's balance (buys) or shares (sells),
+ * matches the order and applies fills between accounts to the stock's price and
+ * volume through StockController. The cash and holdings of everyone in the order's
+ * fills (the order itself and the resting orders it hit) are then settled by one
+ * journaled command, PortfolioController.settle. The loop does not wait for that
+ * record to reach disk: the Execution is handed back on the Swing event thread once
+ * it has.
+ *
+ * Events for a symbol are therefore processed one at a time in sequence order, with
+ * no locks around the books, and each Execution carries its sequence number.
+ *
+ * There is no outside market to trade with, so each book is seeded with house
+ * liquidity around the stock's current price when first used. The house side is
+ * topped up again around the stock's price whenever trading thins it out. Fills
+ * against the house settle the account but are not trades on the tape: they move
+ * neither the stock's price nor its volume, so invented liquidity cannot set prices.
+ */
+public class MatchingEngine {
+    
+    public static final int HOUSE = 0;           // Owner id of seeded liquidity
+    public static final long TICK = 10;          // Price step in paisa (Rs. 0.10)
+    public static final int SEED_LEVELS = 10;    // House levels per side
+    public static final long SEED_QUANTITY = 1000;   // Shares per house level
+    public static final int RING_SIZE = 4096;    // Event slots per partition
+    
+    private final StockController stocks;
+    private final PortfolioController portfolios;
+    private final Partition[] partitions;
+    private volatile Executor callbackExecutor = SwingUtilities::invokeLater;
+    
+    private MatchingEngine() {
+        stocks = StockController.getInstance();
+        portfolios = PortfolioController.getInstance();
+        int count = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i);
+        }
+        UserController.getInstance().addDeleteListener(this::closeAccount);
+    }
+    
+    private static class Holder {
+        static final MatchingEngine INSTANCE = new MatchingEngine();
+    }
+    
+    public static MatchingEngine getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    /**
+     * Where completion callbacks run (the Swing event thread unless replaced)
+     */
+    public void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor;
+    }
+    
+    // ==================== Orders ====================
+    
+    /**
+     * Publish a limit order. A buy first reserves what it can cost from the account:
+     * the exact cost of walking the asks if it is immediate-or-cancel, otherwise
+     * limit * quantity. It gets back whatever its fills did not use. A sell first
+     * reserves the shares from the account's holdings and is credited with its
+     * proceeds, including later fills of a resting remainder.
+     * @param limit Limit price in paisa (OrderBook.marketPrice for a market order,
+     *              which must be immediate-or-cancel)
+     * @param account Account to settle against (null trades for the house)
+     * @param immediateOrCancel Cancel the unfilled remainder instead of resting it
+     * @param callback Receives the execution once its settlement is on disk (rejected
+     *                 if the symbol is not listed, the account is closed, the balance
+     *                 or holding is short, the order value overflows, or the ledger
+     *                 refused the settlement); may be null
+     */
+    public void submit(String symbol, Side side, long limit, long quantity, User account,
+            boolean immediateOrCancel, Consumer<Execution> callback) {
+        if (symbol == null || side == null || quantity <= 0 || limit < 0) {
+            complete(callback, Execution.rejected(quantity, "Invalid order"));
+            return;
+        }
+        String key = symbol.toUpperCase();
+        EventLoop loop = partitionFor(key).loop;
+        long sequence = loop.claim();
+        EventLoop.Event event = loop.slot(sequence);
+        event.type = EventLoop.Type.ORDER;
+        event.symbol = key;
+        event.side = side;
+        event.limit = limit;
+        event.quantity = quantity;
+        event.account = account;
+        event.immediateOrCancel = immediateOrCancel;
+        event.callback = callback;
+        loop.publish(sequence);
+    }
+    
+    /**
+     * Buy immediately at prices up to limit; whatever cannot fill is cancelled
+     */
+    public void buy(String symbol, User account, long quantity, long limit, Consumer<Execution> callback) {
+        submit(symbol, Side.BUY, limit, quantity, account, true, callback);
+    }
+    
+    /**
+     * Sell immediately at prices down to limit; whatever cannot fill is cancelled
+     */
+    public void sell(String symbol, User account, long quantity, long limit, Consumer<Execution> callback) {
+        submit(symbol, Side.SELL, limit, quantity, account, true, callback);
+    }
+    
+    /**
+     * Cancel a resting order (nothing happens if it is no longer resting)
+     */
+    public void cancel(String symbol, long orderId) {
+        String key = symbol.toUpperCase();
+        EventLoop loop = partitionFor(key).loop;
+        long sequence = loop.claim();
+        EventLoop.Event event = loop.slot(sequence);
+        event.type = EventLoop.Type.CANCEL;
+        event.symbol = key;
+        event.orderId = orderId;
+        loop.publish(sequence);
+    }
+    
+    /**
+     * Stop trading for an account that is being deleted: cancel its resting orders in
+     * every partition (handing back what they reserved) and reject its later orders.
+     * Returns once every partition has done so, so nothing can settle against the
+     * account afterwards. Not to be called from a loop thread.
+     */
+    public void closeAccount(User account) {
+        CountDownLatch closed = new CountDownLatch(partitions.length);
+        for (Partition partition : partitions) {
+            EventLoop loop = partition.loop;
+            long sequence = loop.claim();
+            EventLoop.Event event = loop.slot(sequence);
+            event.type = EventLoop.Type.CLOSE;
+            event.account = account;
+            event.done = closed::countDown;
+            loop.publish(sequence);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                closed.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // ==================== Book Queries ====================
+    
+    /**
+     * Best bid and ask in paisa as {bid, ask} after the last processed event
+     * (0 where a side is empty or the symbol has not traded yet)
+     */
+    public long[] quote(String symbol) {
+        String key = symbol.toUpperCase();
+        Market market = partitionFor(key).markets.get(key);
+        if (market == null) {
+            return new long[] {0, 0};
+        }
+        return new long[] {market.bestBid, market.bestAsk};
+    }
+    
+    // ==================== Internals ====================
+    
+    private Partition partitionFor(String key) {
+        return partitions[Math.floorMod(key.hashCode(), partitions.length)];
+    }
+    
+    private void finish(Consumer<Execution> callback, long sequence, Execution execution) {
+        execution.setSequence(sequence);
+        complete(callback, execution);
+    }
+    
+    private void complete(Consumer<Execution> callback, Execution execution) {
+        if (callback != null) {
+            callbackExecutor.execute(() -> callback.accept(execution));
+        }
+    }
+    
+    private static long roundToTick(long paisa) {
+        return Math.max(TICK, Math.round((double) paisa / TICK) * TICK);
+    }
+    
+    /**
+     * A group of symbols and the single thread that owns their books
+     */
+    private final class Partition implements EventLoop.Handler {
+        // Written only by the loop thread; read by quote()
+        final Map<String, Market> markets = new ConcurrentHashMap<>();
+        // Accounts closed by closeAccount(); loop thread only
+        final Set<User> closed = Collections.newSetFromMap(new IdentityHashMap<>());
+        final EventLoop loop;
+        
+        Partition(int index) {
+            loop = new EventLoop("trading-core-" + index, RING_SIZE, this);
+            loop.start();
+        }
+        
+        @Override
+        public void onEvent(EventLoop.Event event, long sequence) {
+            if (event.type == EventLoop.Type.CLOSE) {
+                closed.add(event.account);
+                for (Market market : markets.values()) {
+                    market.cancelAll(event.account);
+                }
+                event.done.run();
+                return;
+            }
+            Market market = marketFor(event.symbol);
+            if (event.type == EventLoop.Type.CANCEL) {
+                if (market != null) {
+                    market.cancel(event.orderId);
+                }
+                return;
+            }
+            if (market == null) {
+                finish(event.callback, sequence, Execution.rejected(event.quantity, "Unknown symbol " + event.symbol));
+            } else if (event.account != null && closed.contains(event.account)) {
+                finish(event.callback, sequence, Execution.rejected(event.quantity, "Account closed"));
+            } else {
+                market.execute(event, sequence);
+            }
+        }
+        
+        // The handler threw: whatever it reserved has been handed back, so report the
+        // order as rejected rather than leaving its caller waiting
+        @Override
+        public void onFailure(EventLoop.Event event, long sequence, RuntimeException e) {
+            e.printStackTrace();
+            if (event.type == EventLoop.Type.ORDER) {
+                finish(event.callback, sequence, Execution.rejected(event.quantity, "Order failed: " + e));
+            } else if (event.type == EventLoop.Type.CLOSE) {
+                event.done.run();
+            }
+        }
+        
+        private Market marketFor(String key) {
+            Market market = markets.get(key);
+            if (market == null) {
+                Stock stock = stocks.getStock(key);
+                if (stock == null) {
+                    return null;
+                }
+                market = new Market(key, stock);
+                market.seed(roundToTick(User.toPaisa(stock.getCurrentPrice())));
+                markets.put(key, market);
+            }
+            return market;
+        }
+    }
+    
+    /**
+     * An account's order left resting on a book, settled as makers fill it
+     */
+    private static final class RestingOrder {
+        final User account;
+        final Side side;
+        final long limit;
+        long open;
+        
+        RestingOrder(User account, Side side, long limit, long open) {
+            this.account = account;
+            this.side = side;
+            this.limit = limit;
+            this.open = open;
+        }
+    }
+    
+    /**
+     * One account's side of an event's fills, as settled by PortfolioController.settle
+     */
+    private static final class Leg {
+        final User account;
+        final boolean buy;
+        final long quantity;
+        final long notional;
+        
+        Leg(User account, boolean buy, long quantity, long notional) {
+            this.account = account;
+            this.buy = buy;
+            this.quantity = quantity;
+            this.notional = notional;
+        }
+    }
+    
+    /**
+     * A symbol's book plus the listener that applies its fills to the stock.
+     * Only used from its partition's loop thread, apart from the quote fields.
+     */
+    private final class Market implements OrderBook.TradeListener {
+        final OrderBook book;
+        final Stock stock;
+        final Map<Long, RestingOrder> resting = new HashMap<>();
+        final List<Leg> makerLegs = new ArrayList<>();   // Resting orders filled by the current event
+        long seedPrice;
+        volatile long bestBid;
+        volatile long bestAsk;
+        
+        Market(String symbol, Stock stock) {
+            book = new OrderBook(symbol);
+            this.stock = stock;
+        }
+        
+        // House asks from the price upward, bids one tick below it downward
+        void seed(long price) {
+            seedPrice = price;
+            for (int i = 0; i < SEED_LEVELS; i++) {
+                book.submit(Side.SELL, price + i * TICK, SEED_QUANTITY, HOUSE, false, null);
+            }
+            for (int i = 1; i <= SEED_LEVELS && price - i * TICK > 0; i++) {
+                book.submit(Side.BUY, price - i * TICK, SEED_QUANTITY, HOUSE, false, null);
+            }
+            publishQuote();
+        }
+        
+        // Reserve, match, then settle every account in the fills with one ledger record.
+        // The loop does not wait for the record to reach disk: the callback runs once it has.
+        void execute(EventLoop.Event event, long sequence) {
+            Consumer<Execution> callback = event.callback;
+            User account = event.account;
+            long reserved = 0;
+            if (account != null) {
+                if (event.quantity > Integer.MAX_VALUE) {
+                    finish(callback, sequence, Execution.rejected(event.quantity, "Quantity too large"));
+                    return;
+                }
+                if (event.side == Side.BUY) {
+                    if (!event.immediateOrCancel && event.limit >= OrderBook.marketPrice(Side.BUY)) {
+                        finish(callback, sequence, Execution.rejected(event.quantity, "Market orders must be immediate-or-cancel"));
+                        return;
+                    }
+                    try {
+                        // An IOC buy can only take what rests now, so its walk is its exact cost
+                        reserved = event.immediateOrCancel
+                                ? book.costToBuy(event.limit, event.quantity)
+                                : Math.multiplyExact(event.limit, event.quantity);
+                    } catch (ArithmeticException e) {
+                        finish(callback, sequence, Execution.rejected(event.quantity, "Order value too large"));
+                        return;
+                    }
+                    if (!account.reservePaisa(reserved)) {
+                        finish(callback, sequence, Execution.rejected(event.quantity, "Insufficient balance"));
+                        return;
+                    }
+                } else {
+                    ValidationResult shares = portfolios.reserveShares(account, book.getSymbol(), (int) event.quantity);
+                    if (!shares.isValid()) {
+                        finish(callback, sequence, Execution.rejected(event.quantity, shares.getErrorMessage()));
+                        return;
+                    }
+                }
+            }
+            
+            makerLegs.clear();
+            Execution execution = null;
+            boolean settling = false;
+            try {
+                execution = book.submit(event.side, event.limit, event.quantity,
+                        account == null ? HOUSE : account.getId(), event.immediateOrCancel, this);
+                execution.setSequence(sequence);
+                if (account != null) {
+                    // A resting remainder keeps its share of the reservation
+                    if (event.side == Side.BUY) {
+                        account.releasePaisa(reserved - execution.getNotional() - execution.getResting() * event.limit);
+                    } else {
+                        portfolios.releaseShares(account, book.getSymbol(), (int) execution.getCancelled());
+                    }
+                    if (execution.getResting() > 0) {
+                        resting.put(execution.getOrderId(),
+                                new RestingOrder(account, event.side, event.limit, execution.getResting()));
+                    }
+                }
+                settling = settle(account, event.side, execution, callback);
+            } catch (RuntimeException e) {
+                // Nothing was settled: hand back everything the order and its makers held
+                if (execution == null) {
+                    unreserve(account, event.side, event.side == Side.BUY ? reserved : event.quantity);
+                } else {
+                    unreserve(account, event.side, event.side == Side.BUY ? execution.getNotional() : execution.getFilled());
+                }
+                for (Leg leg : makerLegs) {
+                    unreserve(leg.account, leg.buy ? Side.BUY : Side.SELL, leg.buy ? leg.notional : leg.quantity);
+                }
+                throw e;
+            }
+            replenish();
+            publishQuote();
+            if (!settling) {
+                finish(callback, sequence, execution);
+            }
+        }
+        
+        // Record one settlement for the taker and its makers. Returns whether the
+        // callback now waits for the record; if the ledger refused it, every leg's
+        // reservation is handed back and the execution carries the reason.
+        private boolean settle(User account, Side side, Execution execution, Consumer<Execution> callback) {
+            List<Leg> legs = new ArrayList<>(makerLegs.size() + 1);
+            if (account != null && execution.getFilled() > 0) {
+                legs.add(new Leg(account, side == Side.BUY, execution.getFilled(), execution.getNotional()));
+            }
+            legs.addAll(makerLegs);
+            if (legs.isEmpty()) {
+                return false;
+            }
+            String[] usernames = new String[legs.size()];
+            int[] quantities = new int[legs.size()];
+            long[] notionals = new long[legs.size()];
+            for (int i = 0; i < legs.size(); i++) {
+                Leg leg = legs.get(i);
+                usernames[i] = leg.account.getUsername();
+                quantities[i] = (int) (leg.buy ? leg.quantity : -leg.quantity);
+                notionals[i] = leg.notional;
+            }
+            ValidationResult result = portfolios.settle(book.getSymbol(), usernames, quantities, notionals, durable -> {
+                if (!durable.isValid()) {
+                    execution.fail(durable.getErrorMessage());
+                }
+                finish(callback, execution.getSequence(), execution);
+            });
+            if (result.isValid()) {
+                return true;
+            }
+            for (Leg leg : legs) {
+                unreserve(leg.account, leg.buy ? Side.BUY : Side.SELL, leg.buy ? leg.notional : leg.quantity);
+            }
+            execution.fail(result.getErrorMessage());
+            return false;
+        }
+        
+        // Hand back cash (buys, in paisa) or shares (sells) an order held
+        private void unreserve(User account, Side side, long amount) {
+            if (account == null || amount <= 0) {
+                return;
+            }
+            if (side == Side.BUY) {
+                account.releasePaisa(amount);
+            } else {
+                portfolios.releaseShares(account, book.getSymbol(), (int) amount);
+            }
+        }
+        
+        void cancel(long orderId) {
+            long open = book.cancel(orderId);
+            RestingOrder order = resting.remove(orderId);
+            if (order != null) {
+                unreserve(order.account, order.side, order.side == Side.BUY ? open * order.limit : open);
+            }
+            publishQuote();
+        }
+        
+        // Cancel every order an account has resting on this book
+        void cancelAll(User account) {
+            List<Long> orderIds = new ArrayList<>();
+            for (Map.Entry<Long, RestingOrder> entry : resting.entrySet()) {
+                if (entry.getValue().account == account) {
+                    orderIds.add(entry.getKey());
+                }
+            }
+            for (long orderId : orderIds) {
+                cancel(orderId);
+            }
+        }
+        
+        // Top up the house side of the book once trading has thinned it to half, around
+        // the stock's public price (house fills never move it)
+        private void replenish() {
+            long anchor = stock.getCurrentPrice() > 0 ? roundToTick(User.toPaisa(stock.getCurrentPrice())) : seedPrice;
+            if (book.levelCount(Side.SELL) < SEED_LEVELS / 2) {
+                long start = Math.max(anchor, book.bestBid() + TICK);
+                for (int i = 0; i < SEED_LEVELS; i++) {
+                    book.submit(Side.SELL, start + i * TICK, SEED_QUANTITY, HOUSE, false, null);
+                }
+            }
+            if (book.levelCount(Side.BUY) < SEED_LEVELS / 2) {
+                long start = anchor - TICK;
+                if (book.bestAsk() > 0) {
+                    start = Math.min(start, book.bestAsk() - TICK);
+                }
+                for (int i = 0; i < SEED_LEVELS && start - i * TICK > 0; i++) {
+                    book.submit(Side.BUY, start - i * TICK, SEED_QUANTITY, HOUSE, false, null);
+                }
+            }
+        }
+        
+        private void publishQuote() {
+            bestBid = book.bestBid();
+            bestAsk = book.bestAsk();
+        }
+        
+        // A resting buy fills at its own limit, which is what it reserved. The maker is
+        // settled with the taker, in execute().
+        @Override
+        public void onTrade(long takerOrderId, long makerOrderId, int takerOwner, int makerOwner, Side takerSide, long price, long quantity) {
+            if (makerOwner != HOUSE && takerOwner != HOUSE) {
+                // Only trades between accounts go on the tape
+                stocks.recordTrade(book.getSymbol(), price / 100.0, quantity);
+            }
+            RestingOrder maker = makerOwner == HOUSE ? null : resting.get(makerOrderId);
+            if (maker == null) {
+                return;
+            }
+            makerLegs.add(new Leg(maker.account, maker.side == Side.BUY, quantity, price * quantity));
+            maker.open -= quantity;
+            if (maker.open == 0) {
+                resting.remove(makerOrderId);
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package engine;
+
+import util.PrimitiveCollections.LongIntMap;
+
+import java.util.Arrays;
+
+/**
+ * Order Book for NepseInsider
+ * Price-time priority limit order book for one symbol. Prices are whole paisa.
+ *
+ * Each side keeps its price levels in primitive arrays sorted so that the best
+ * price is last: taking from the top of the book and removing an emptied best
+ * level are O(1), and new levels are placed by binary search. Orders live in a
+ * pooled set of parallel arrays and are chained into per-level FIFO lists through
+ * next/prev slot indexes (intrusive lists), so resting and filling orders
+ * allocates nothing once the pool has grown.
+ *
+ * Not thread-safe: each book is only touched by its partition's EventLoop thread.
+ */
+public class OrderBook {
+    
+    public enum Side {
+        BUY, SELL
+    }
+    
+    private static final int NONE = -1;
+    
+    private final String symbol;
+    private final Levels bids = new Levels(true);
+    private final Levels asks = new Levels(false);
+    
+    // Order pool, indexed by slot
+    private long[] orderIds = new long[64];
+    private long[] prices = new long[64];
+    private long[] remaining = new long[64];
+    private int[] owners = new int[64];
+    private boolean[] buys = new boolean[64];
+    private int[] next = new int[64];
+    private int[] prev = new int[64];
+    private int used;
+    private int freeSlot = NONE;
+    private final LongIntMap slotByOrderId = new LongIntMap(NONE);
+    
+    private long nextOrderId = 1;
+    private long lastTradePrice;
+    
+    /**
+     * Receives each fill as it happens
+     */
+    public interface TradeListener {
+        /**
+         * @param price Execution price in paisa (the resting order's price)
+         */
+        void onTrade(long takerOrderId, long makerOrderId, int takerOwner, int makerOwner, Side takerSide, long price, long quantity);
+    }
+    
+    /**
+     * Outcome of one submitted order
+     */
+    public static class Execution {
+        private final long orderId;
+        private final long requested;
+        private long filled;
+        private long notional;   // Sum of price * quantity over fills, in paisa
+        private long resting;
+        private long sequence = -1;
+        private String rejectReason;
+        
+        Execution(long orderId, long requested) {
+            this.orderId = orderId;
+            this.requested = requested;
+        }
+        
+        // An order that never reached the book
+        static Execution rejected(long requested, String reason) {
+            Execution execution = new Execution(0, requested);
+            execution.rejectReason = reason;
+            return execution;
+        }
+        
+        public long getOrderId() { return orderId; }
+        public long getRequested() { return requested; }
+        public long getFilled() { return filled; }
+        public long getNotional() { return notional; }
+        public long getResting() { return resting; }
+        public long getCancelled() { return requested - filled - resting; }
+        public boolean isRejected() { return rejectReason != null; }
+        public String getRejectReason() { return rejectReason; }
+        
+        // Position in the partition's event sequence (-1 if not run through an event loop)
+        public long getSequence() { return sequence; }
+        
+        void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+        
+        // Matched but could not be settled (the ledger refused the change)
+        void fail(String reason) {
+            rejectReason = reason;
+        }
+        
+        // Average fill price in paisa (0 if nothing filled)
+        public long getAveragePrice() {
+            return filled == 0 ? 0 : Math.round((double) notional / filled);
+        }
+    }
+    
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    // ==================== Orders ====================
+    
+    /**
+     * Match an order against the opposite side, then rest any remainder (unless IOC)
+     * @param price Limit in paisa; use marketPrice(side) for a market order
+     * @param immediateOrCancel Cancel whatever does not fill at once instead of resting it
+     */
+    public Execution submit(Side side, long price, long quantity, int owner, boolean immediateOrCancel, TradeListener listener) {
+        if (quantity <= 0 || price < 0) {
+            throw new IllegalArgumentException("Quantity must be positive and price non-negative");
+        }
+        boolean buy = side == Side.BUY;
+        Execution execution = new Execution(nextOrderId++, quantity);
+        Levels opposite = buy ? asks : bids;
+        long left = quantity;
+        
+        while (left > 0 && opposite.count > 0) {
+            int level = opposite.count - 1;
+            long levelPrice = opposite.price(level);
+            if (buy ? levelPrice > price : levelPrice < price) {
+                break;
+            }
+            int slot = opposite.heads[level];
+            while (slot != NONE && left > 0) {
+                long fill = Math.min(left, remaining[slot]);
+                remaining[slot] -= fill;
+                opposite.quantities[level] -= fill;
+                left -= fill;
+                execution.filled += fill;
+                execution.notional += fill * levelPrice;
+                lastTradePrice = levelPrice;
+                if (listener != null) {
+                    listener.onTrade(execution.orderId, orderIds[slot], owner, owners[slot], side, levelPrice, fill);
+                }
+                int following = next[slot];
+                if (remaining[slot] == 0) {
+                    unlink(opposite, level, slot);
+                    release(slot);
+                }
+                slot = following;
+            }
+            if (opposite.heads[level] == NONE) {
+                opposite.removeLevel(level);
+            }
+        }
+        
+        if (left > 0 && !immediateOrCancel) {
+            rest(execution.orderId, buy, price, left, owner);
+            execution.resting = left;
+        }
+        return execution;
+    }
+    
+    /**
+     * Cancel a resting order
+     * @return Quantity that was still open, or 0 if the order is not resting
+     */
+    public long cancel(long orderId) {
+        int slot = slotByOrderId.get(orderId);
+        if (slot == NONE) {
+            return 0;
+        }
+        Levels side = buys[slot] ? bids : asks;
+        int level = side.find(prices[slot]);
+        long open = remaining[slot];
+        side.quantities[level] -= open;
+        unlink(side, level, slot);
+        if (side.heads[level] == NONE) {
+            side.removeLevel(level);
+        }
+        release(slot);
+        return open;
+    }
+    
+    /**
+     * Exact cost in paisa of an immediate-or-cancel buy against the asks resting now:
+     * the walk it would make, up to quantity shares at prices up to limit
+     * @throws ArithmeticException if the cost does not fit in a long
+     */
+    public long costToBuy(long limit, long quantity) {
+        long cost = 0;
+        long left = quantity;
+        for (int level = asks.count - 1; level >= 0 && left > 0; level--) {
+            long levelPrice = asks.price(level);
+            if (levelPrice > limit) {
+                break;
+            }
+            long fill = Math.min(left, asks.quantities[level]);
+            cost = Math.addExact(cost, Math.multiplyExact(fill, levelPrice));
+            left -= fill;
+        }
+        return cost;
+    }
+    
+    /**
+     * Limit that makes an order a market order (it crosses every level)
+     */
+    public static long marketPrice(Side side) {
+        return side == Side.BUY ? Long.MAX_VALUE / 4 : 0;
+    }
+    
+    // ==================== Book Queries ====================
+    
+    public long bestBid() {
+        return bids.count == 0 ? 0 : bids.price(bids.count - 1);
+    }
+    
+    public long bestAsk() {
+        return asks.count == 0 ? 0 : asks.price(asks.count - 1);
+    }
+    
+    public long lastTradePrice() {
+        return lastTradePrice;
+    }
+    
+    public int levelCount(Side side) {
+        return (side == Side.BUY ? bids : asks).count;
+    }
+    
+    /**
+     * Price of the n-th best level (0 = best), or 0 if there are fewer levels
+     */
+    public long levelPrice(Side side, int depth) {
+        Levels levels = side == Side.BUY ? bids : asks;
+        return depth < levels.count ? levels.price(levels.count - 1 - depth) : 0;
+    }
+    
+    /**
+     * Open quantity at the n-th best level (0 = best)
+     */
+    public long levelQuantity(Side side, int depth) {
+        Levels levels = side == Side.BUY ? bids : asks;
+        return depth < levels.count ? levels.quantities[levels.count - 1 - depth] : 0;
+    }
+    
+    public int openOrders() {
+        return slotByOrderId.size();
+    }
+    
+    // ==================== Internals ====================
+    
+    private void rest(long orderId, boolean buy, long price, long quantity, int owner) {
+        int slot = allocate();
+        orderIds[slot] = orderId;
+        prices[slot] = price;
+        remaining[slot] = quantity;
+        owners[slot] = owner;
+        buys[slot] = buy;
+        slotByOrderId.put(orderId, slot);
+        
+        Levels side = buy ? bids : asks;
+        int level = side.levelFor(price);
+        // Append at the tail: later orders at a price fill after earlier ones
+        int tail = side.tails[level];
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            side.heads[level] = slot;
+        } else {
+            next[tail] = slot;
+        }
+        side.tails[level] = slot;
+        side.quantities[level] += quantity;
+    }
+    
+    private void unlink(Levels side, int level, int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            side.heads[level] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            side.tails[level] = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+    
+    private int allocate() {
+        if (freeSlot != NONE) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (used == orderIds.length) {
+            int capacity = used * 2;
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            remaining = Arrays.copyOf(remaining, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            buys = Arrays.copyOf(buys, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+        return used++;
+    }
+    
+    // Freed slots are chained through next[]
+    private void release(int slot) {
+        slotByOrderId.remove(orderIds[slot]);
+        remaining[slot] = 0;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+    }
+    
+    /**
+     * One side's price levels, best last. Keys are ascending: the price for bids
+     * (best = highest) and the negated price for asks (best = lowest).
+     */
+    private static final class Levels {
+        final boolean bid;
+        long[] keys = new long[16];
+        int[] heads = new int[16];
+        int[] tails = new int[16];
+        long[] quantities = new long[16];
+        int count;
+        
+        Levels(boolean bid) {
+            this.bid = bid;
+        }
+        
+        long price(int level) {
+            return bid ? keys[level] : -keys[level];
+        }
+        
+        int find(long price) {
+            return Arrays.binarySearch(keys, 0, count, bid ? price : -price);
+        }
+        
+        // Index of the level for a price, inserting an empty one if needed
+        int levelFor(long price) {
+            long key = bid ? price : -price;
+            int at;
+            if (count == 0 || keys[count - 1] < key) {
+                at = count;   // New best price (the common case near the touch)
+            } else {
+                at = Arrays.binarySearch(keys, 0, count, key);
+                if (at >= 0) {
+                    return at;
+                }
+                at = -at - 1;
+            }
+            if (count == keys.length) {
+                int capacity = count * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                heads = Arrays.copyOf(heads, capacity);
+                tails = Arrays.copyOf(tails, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            int moved = count - at;
+            System.arraycopy(keys, at, keys, at + 1, moved);
+            System.arraycopy(heads, at, heads, at + 1, moved);
+            System.arraycopy(tails, at, tails, at + 1, moved);
+            System.arraycopy(quantities, at, quantities, at + 1, moved);
+            keys[at] = key;
+            heads[at] = NONE;
+            tails[at] = NONE;
+            quantities[at] = 0;
+            count++;
+            return at;
+        }
+        
+        void removeLevel(int level) {
+            int moved = count - level - 1;
+            System.arraycopy(keys, level + 1, keys, level, moved);
+            System.arraycopy(heads, level + 1, heads, level, moved);
+            System.arraycopy(tails, level + 1, tails, level, moved);
+            System.arraycopy(quantities, level + 1, quantities, level, moved);
+            count--;
+        }
+    }
+}
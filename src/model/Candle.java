@@ -0,0 +1,57 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * Candle Model - One OHLCV bar of a stock's price history
+ * Covers the interval [startTime, startTime + duration) in epoch milliseconds
+ */
+public class Candle implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String symbol;
+    private long startTime;
+    private long durationMillis;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private long volume;
+    
+    public Candle(String symbol, long startTime, long durationMillis,
+                  double open, double high, double low, double close, long volume) {
+        this.symbol = symbol;
+        this.startTime = startTime;
+        this.durationMillis = durationMillis;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+    
+    // Getters
+    public String getSymbol() { return symbol; }
+    public long getStartTime() { return startTime; }
+    public long getEndTime() { return startTime + durationMillis; }
+    public long getDurationMillis() { return durationMillis; }
+    public double getOpen() { return open; }
+    public double getHigh() { return high; }
+    public double getLow() { return low; }
+    public double getClose() { return close; }
+    public long getVolume() { return volume; }
+    
+    public boolean isBullish() {
+        return close >= open;
+    }
+    
+    public double getChangePercent() {
+        if (open == 0) return 0;
+        return ((close - open) / open) * 100;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s O:%.2f H:%.2f L:%.2f C:%.2f V:%d", symbol, open, high, low, close, volume);
+    }
+}
@@ -3,27 +3,45 @@ package model;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Portfolio Model - Represents a user's stock portfolio
  * Manages portfolio holdings and calculates portfolio value
+ *
+ * Holdings are keyed by symbol, so a trade finds its holding in O(1). All methods
+ * lock the portfolio, so fills arriving on different threads update it safely.
+ *
+ * The portfolio is marked to market incrementally: it keeps a running value in
+ * paisa and the price each holding was last marked at. A price tick moves the value
+ * by quantity * (new mark - old mark) in O(1); only trades re-add the holdings.
  */
 public class Portfolio implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private int id;
     private String userId;
     private String portfolioName;
-    private List<PortfolioItem> holdings;
+    private Map<String, PortfolioItem> holdings;
+    private List<TradeRecord> trades;
     private LocalDateTime createdDate;
     private LocalDateTime lastUpdated;
+    private long version;        // Moves on every trade and every mark
+    private long valuePaisa;     // Sum of quantity * mark over the holdings
+    private double invested;     // Sum of quantity * buy price over the holdings
+    
+    private transient Valuation valuation;
+    private transient long valuedVersion = -1;
     
     public Portfolio(int id, String userId, String portfolioName) {
         this.id = id;
         this.userId = userId;
         this.portfolioName = portfolioName;
-        this.holdings = new ArrayList<>();
+        this.holdings = new LinkedHashMap<>();
+        this.trades = new ArrayList<>();
         this.createdDate = LocalDateTime.now();
         this.lastUpdated = LocalDateTime.now();
     }
@@ -38,62 +56,219 @@ public class Portfolio implements Serializable {
     public String getPortfolioName() { return portfolioName; }
     public void setPortfolioName(String portfolioName) { this.portfolioName = portfolioName; }
     
-    public List<PortfolioItem> getHoldings() { return holdings; }
-    public void setHoldings(List<PortfolioItem> holdings) { this.holdings = holdings; }
+    // Copy of the holdings in the order they were first bought
+    public synchronized List<PortfolioItem> getHoldings() { return new ArrayList<>(holdings.values()); }
+    
+    public synchronized void setHoldings(List<PortfolioItem> items) {
+        holdings.clear();
+        for (PortfolioItem item : items) {
+            holdings.put(item.getStock().getSymbol(), item);
+        }
+        touch();
+    }
+    
+    public synchronized PortfolioItem getHolding(String symbol) { return holdings.get(symbol); }
+    
+    // Copy of the trade history, oldest first
+    public synchronized List<TradeRecord> getTrades() { return new ArrayList<>(trades); }
     
     public LocalDateTime getCreatedDate() { return createdDate; }
-    public LocalDateTime getLastUpdated() { return lastUpdated; }
+    public synchronized LocalDateTime getLastUpdated() { return lastUpdated; }
     
     // Add stock to portfolio
-    public void addHolding(PortfolioItem item) {
-        holdings.add(item);
-        this.lastUpdated = LocalDateTime.now();
+    public synchronized void addHolding(PortfolioItem item) {
+        holdings.put(item.getStock().getSymbol(), item);
+        touch();
     }
     
     // Remove stock from portfolio
-    public boolean removeHolding(String symbol) {
-        boolean removed = holdings.removeIf(item -> item.getStock().getSymbol().equals(symbol));
+    public synchronized boolean removeHolding(String symbol) {
+        boolean removed = holdings.remove(symbol) != null;
         if (removed) {
-            this.lastUpdated = LocalDateTime.now();
+            touch();
         }
         return removed;
     }
     
-    // Calculate total portfolio value
-    public double getTotalValue() {
-        return holdings.stream()
-                .mapToDouble(item -> item.getStock().getCurrentPrice() * item.getQuantity())
-                .sum();
+    // ==================== Trades ====================
+    
+    /**
+     * Add bought shares, averaging the buy price with any existing holding
+     */
+    public synchronized void buy(Stock stock, int quantity, double price, LocalDateTime date) {
+        PortfolioItem item = holdings.get(stock.getSymbol());
+        if (item == null) {
+            holdings.put(stock.getSymbol(), new PortfolioItem(stock, quantity, price));
+        } else {
+            int newQty = item.getQuantity() + quantity;
+            item.setBuyPrice((item.getBuyPrice() * item.getQuantity() + price * quantity) / newQty);
+            item.setQuantity(newQty);
+        }
+        trades.add(new TradeRecord(trades.size() + 1, "BUY", stock.getSymbol(), quantity, price, date));
+        touch();
+    }
+    
+    /**
+     * Hold back shares for a sell order so they cannot be sold twice. The shares stay
+     * in the holding (and in its value) until sell() takes them out.
+     * @return false if fewer than quantity shares are unreserved
+     */
+    public synchronized boolean reserve(String symbol, int quantity) {
+        PortfolioItem item = holdings.get(symbol);
+        if (item == null || quantity <= 0 || item.getAvailable() < quantity) {
+            return false;
+        }
+        item.reserved += quantity;
+        return true;
     }
     
-    // Calculate total profit/loss
-    public double getTotalProfitLoss() {
-        return holdings.stream()
-                .mapToDouble(PortfolioItem::getProfitLoss)
-                .sum();
+    /**
+     * Give back reserved shares that a sell order did not use
+     */
+    public synchronized void release(String symbol, int quantity) {
+        PortfolioItem item = holdings.get(symbol);
+        if (item != null) {
+            item.reserved = Math.max(0, item.reserved - quantity);
+        }
+    }
+    
+    /**
+     * Remove sold shares, using up their reservation (if any), and record the sale
+     * @return false (and no change) if fewer than quantity shares are held
+     */
+    public synchronized boolean sell(String symbol, int quantity, double price, LocalDateTime date) {
+        PortfolioItem item = holdings.get(symbol);
+        if (item == null || quantity <= 0 || item.getQuantity() < quantity) {
+            return false;
+        }
+        item.setQuantity(item.getQuantity() - quantity);
+        item.reserved = Math.max(0, item.reserved - quantity);
+        if (item.getQuantity() == 0) {
+            holdings.remove(symbol);
+        }
+        trades.add(new TradeRecord(trades.size() + 1, "SELL", symbol, quantity, price, date));
+        touch();
+        return true;
+    }
+    
+    /**
+     * Credit bonus shares on a holding: quantity grows by percent (rounded down) and
+     * the cost is spread over the new quantity
+     * @return Shares credited (0 if the symbol is not held)
+     */
+    public synchronized int allotBonus(String symbol, double percent, LocalDateTime date) {
+        PortfolioItem item = holdings.get(symbol);
+        if (item == null) {
+            return 0;
+        }
+        int bonus = (int) Math.floor(item.getQuantity() * percent / 100);
+        if (bonus <= 0) {
+            return 0;
+        }
+        int newQty = item.getQuantity() + bonus;
+        item.setBuyPrice(item.getInvestedAmount() / newQty);
+        item.setQuantity(newQty);
+        trades.add(new TradeRecord(trades.size() + 1, "BONUS", symbol, bonus, 0, date));
+        touch();
+        return bonus;
+    }
+    
+    /**
+     * Record a past trade without changing holdings (used for seeded history)
+     */
+    public synchronized void addTrade(String type, String symbol, int quantity, double price, LocalDateTime date) {
+        trades.add(new TradeRecord(trades.size() + 1, type, symbol, quantity, price, date));
+        touch();
+    }
+    
+    // ==================== Valuation ====================
+    
+    /**
+     * Valuation at the last marks, reused until a trade or a price change of a held symbol
+     */
+    public synchronized Valuation valuate() {
+        if (valuation == null || valuedVersion != version) {
+            valuation = new Valuation(holdings.values(), valuePaisa / 100.0, invested);
+            valuedVersion = version;
+        }
+        return valuation;
+    }
+    
+    /**
+     * Move a holding to a new price (called for every price change of a held symbol)
+     */
+    public synchronized void markPrice(String symbol, double price) {
+        PortfolioItem item = holdings.get(symbol);
+        if (item == null) {
+            return;
+        }
+        long mark = User.toPaisa(price);
+        valuePaisa += item.getQuantity() * (mark - item.markPaisa);
+        item.markPaisa = mark;
+        version++;
+    }
+    
+    // Total portfolio value at the last marks
+    public synchronized double getTotalValue() {
+        return valuePaisa / 100.0;
+    }
+    
+    public synchronized double getTotalInvested() {
+        return invested;
+    }
+    
+    // Total profit/loss at the last marks
+    public synchronized double getTotalProfitLoss() {
+        return valuePaisa / 100.0 - invested;
+    }
+    
+    // Moves on every trade and every mark of a held symbol
+    public synchronized long getVersion() {
+        return version;
     }
     
     // Get number of holdings
-    public int getHoldingsCount() {
+    public synchronized int getHoldingsCount() {
         return holdings.size();
     }
     
+    // After a trade: re-mark every holding at its current price and re-add the totals
+    private void touch() {
+        long value = 0;
+        double cost = 0;
+        for (PortfolioItem item : holdings.values()) {
+            item.markPaisa = User.toPaisa(item.getStock().getCurrentPrice());
+            value += item.getQuantity() * item.markPaisa;
+            cost += item.getInvestedAmount();
+        }
+        valuePaisa = value;
+        invested = cost;
+        version++;
+        lastUpdated = LocalDateTime.now();
+    }
+    
     /**
      * Inner class representing a portfolio holding
      */
     public static class PortfolioItem implements Serializable {
-        private static final long serialVersionUID = 1L;
+        private static final long serialVersionUID = 2L;
         
         private Stock stock;
         private int quantity;
         private double buyPrice;
         private LocalDateTime purchaseDate;
+        private long markPaisa;   // Price the owning portfolio last valued this at
+        private transient int reserved;   // Held for pending sell orders; not saved, as orders are not
         
         public PortfolioItem(Stock stock, int quantity, double buyPrice) {
+            this(stock, quantity, buyPrice, LocalDateTime.now());
+        }
+        
+        public PortfolioItem(Stock stock, int quantity, double buyPrice, LocalDateTime purchaseDate) {
             this.stock = stock;
             this.quantity = quantity;
             this.buyPrice = buyPrice;
-            this.purchaseDate = LocalDateTime.now();
+            this.purchaseDate = purchaseDate;
         }
         
         public Stock getStock() { return stock; }
@@ -102,6 +277,11 @@ public class Portfolio implements Serializable {
         public int getQuantity() { return quantity; }
         public void setQuantity(int quantity) { this.quantity = quantity; }
         
+        public int getReserved() { return reserved; }
+        
+        // Shares not held for a pending sell
+        public int getAvailable() { return quantity - reserved; }
+        
         public double getBuyPrice() { return buyPrice; }
         public void setBuyPrice(double buyPrice) { this.buyPrice = buyPrice; }
         
@@ -128,4 +308,101 @@ public class Portfolio implements Serializable {
             return buyPrice * quantity;
         }
     }
+    
+    /**
+     * One executed buy or sell
+     */
+    public static class TradeRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private final int id;
+        private final String type;
+        private final String symbol;
+        private final int quantity;
+        private final double price;
+        private final LocalDateTime date;
+        
+        public TradeRecord(int id, String type, String symbol, int quantity, double price, LocalDateTime date) {
+            this.id = id;
+            this.type = type;
+            this.symbol = symbol;
+            this.quantity = quantity;
+            this.price = price;
+            this.date = date;
+        }
+        
+        public int getId() { return id; }
+        public String getType() { return type; }
+        public String getSymbol() { return symbol; }
+        public int getQuantity() { return quantity; }
+        public double getPrice() { return price; }
+        public LocalDateTime getDate() { return date; }
+    }
+    
+    /**
+     * Immutable valuation of a portfolio at its marks, shared by every view
+     */
+    public static class Valuation {
+        private final List<Line> lines;
+        private final double invested;
+        private final double value;
+        
+        Valuation(Iterable<PortfolioItem> items, double value, double invested) {
+            List<Line> computed = new ArrayList<>();
+            for (PortfolioItem item : items) {
+                if (item.getQuantity() > 0) {
+                    computed.add(new Line(item));
+                }
+            }
+            this.lines = Collections.unmodifiableList(computed);
+            this.invested = invested;
+            this.value = value;
+        }
+        
+        public List<Line> getLines() { return lines; }
+        public int getHoldingsCount() { return lines.size(); }
+        public double getInvested() { return invested; }
+        public double getValue() { return value; }
+        public double getProfitLoss() { return value - invested; }
+        
+        public double getProfitLossPercent() {
+            return invested == 0 ? 0 : (value - invested) / invested * 100;
+        }
+        
+        /**
+         * One holding priced at valuation time
+         */
+        public static class Line {
+            private final String symbol;
+            private final String companyName;
+            private final int quantity;
+            private final double buyPrice;
+            private final double currentPrice;
+            private final double invested;
+            private final double value;
+            
+            Line(PortfolioItem item) {
+                Stock stock = item.getStock();
+                this.symbol = stock.getSymbol();
+                this.companyName = stock.getCompanyName();
+                this.quantity = item.getQuantity();
+                this.buyPrice = item.getBuyPrice();
+                this.currentPrice = item.markPaisa / 100.0;
+                this.invested = buyPrice * quantity;
+                this.value = currentPrice * quantity;
+            }
+            
+            public String getSymbol() { return symbol; }
+            public String getCompanyName() { return companyName; }
+            public int getQuantity() { return quantity; }
+            public double getBuyPrice() { return buyPrice; }
+            public double getCurrentPrice() { return currentPrice; }
+            public double getValue() { return value; }
+            public double getProfitLoss() { return value - invested; }
+            
+            public double getProfitLossPercent() {
+                return buyPrice == 0 ? 0 : (currentPrice - buyPrice) / buyPrice * 100;
+            }
+        }
+    }
 }
@@ -47,14 +47,13 @@ public class Stock implements Serializable, Comparable<Stock> {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
+    // Symbol, name and sector are fixed here; StockController renames and updates
+    // them in the store, which keeps search and the stock file in step
     public String getSymbol() { return symbol; }
-    public void setSymbol(String symbol) { this.symbol = symbol; }
     
     public String getCompanyName() { return companyName; }
-    public void setCompanyName(String companyName) { this.companyName = companyName; }
     
     public String getSector() { return sector; }
-    public void setSector(String sector) { this.sector = sector; }
     
     public double getCurrentPrice() { return currentPrice; }
     public void setCurrentPrice(double currentPrice) {
@@ -90,34 +89,34 @@ public class Stock implements Serializable, Comparable<Stock> {
     
     // Check if stock is a gainer
     public boolean isGainer() {
-        return changePercent > 0;
+        return getChangePercent() > 0;
     }
     
     // Check if stock is a loser
     public boolean isLoser() {
-        return changePercent < 0;
+        return getChangePercent() < 0;
     }
     
     @Override
     public int compareTo(Stock other) {
-        return this.symbol.compareTo(other.symbol);
+        return getSymbol().compareTo(other.getSymbol());
     }
     
     @Override
     public String toString() {
-        return String.format("%s - %s (Rs. %.2f)", symbol, companyName, currentPrice);
+        return String.format("%s - %s (Rs. %.2f)", getSymbol(), getCompanyName(), getCurrentPrice());
     }
     
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
+        if (!(obj instanceof Stock)) return false;
         Stock stock = (Stock) obj;
-        return symbol.equalsIgnoreCase(stock.symbol);
+        return getSymbol().equalsIgnoreCase(stock.getSymbol());
     }
     
     @Override
     public int hashCode() {
-        return symbol.toLowerCase().hashCode();
+        return getSymbol().toLowerCase().hashCode();
     }
 }
@@ -2,13 +2,20 @@ package model;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User Model - Represents a user in the NepseInsider system
  * Handles user authentication and profile data
+ *
+ * The balance is an atomic count of paisa: reads never lock and deposits add with
+ * one atomic step. Pending buy orders reserve part of it; reservations are not saved
+ * (orders are not), and only the unreserved rest can be withdrawn or reserved again.
+ * Methods that check the available amount lock the user, so a reservation and a
+ * withdrawal can never both take the same paisa.
  */
 public class User implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     public enum UserRole {
         ADMIN, USER
@@ -26,7 +33,8 @@ public class User implements Serializable {
     private String phone;
     private UserRole role;
     private UserStatus status;
-    private double balance;
+    private final AtomicLong balancePaisa = new AtomicLong();   // Fixed-point, 1 rupee = 100 paisa
+    private transient long reservedPaisa;   // Held for pending buy orders; guarded by this
     private LocalDateTime createdDate;
     private LocalDateTime lastLogin;
     
@@ -39,7 +47,6 @@ public class User implements Serializable {
         this.fullName = fullName;
         this.role = UserRole.USER;
         this.status = UserStatus.ACTIVE;
-        this.balance = 0.0;
         this.createdDate = LocalDateTime.now();
     }
     
@@ -78,8 +85,10 @@ public class User implements Serializable {
     public UserStatus getStatus() { return status; }
     public void setStatus(UserStatus status) { this.status = status; }
     
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public double getBalance() { return balancePaisa.get() / 100.0; }
+    public void setBalance(double balance) { balancePaisa.set(toPaisa(balance)); }
+    public long getBalancePaisa() { return balancePaisa.get(); }
+    public synchronized long getReservedPaisa() { return reservedPaisa; }
     
     public LocalDateTime getCreatedDate() { return createdDate; }
     public LocalDateTime getLastLogin() { return lastLogin; }
@@ -102,18 +111,67 @@ public class User implements Serializable {
     
     // Deposit balance
     public void deposit(double amount) {
-        if (amount > 0) {
-            this.balance += amount;
+        depositPaisa(toPaisa(amount));
+    }
+    
+    public void depositPaisa(long paisa) {
+        if (paisa > 0) {
+            balancePaisa.addAndGet(paisa);
         }
     }
     
-    // Withdraw balance
+    // Withdraw balance; false (and no change) if it would dip into reserved funds
     public boolean withdraw(double amount) {
-        if (amount > 0 && amount <= balance) {
-            this.balance -= amount;
-            return true;
+        return withdrawPaisa(toPaisa(amount));
+    }
+    
+    // Compare-and-set debit (deposits do not lock, so one may land in between)
+    public synchronized boolean withdrawPaisa(long paisa) {
+        if (paisa <= 0) {
+            return false;
+        }
+        while (true) {
+            long current = balancePaisa.get();
+            if (paisa > current - reservedPaisa) {
+                return false;
+            }
+            if (balancePaisa.compareAndSet(current, current - paisa)) {
+                return true;
+            }
+        }
+    }
+    
+    // Hold back part of the available balance for a pending buy order
+    public synchronized boolean reservePaisa(long paisa) {
+        if (paisa < 0 || paisa > balancePaisa.get() - reservedPaisa) {
+            return false;
         }
-        return false;
+        reservedPaisa += paisa;
+        return true;
+    }
+    
+    // Give back reserved funds an order did not use
+    public synchronized void releasePaisa(long paisa) {
+        reservedPaisa = Math.max(0, reservedPaisa - paisa);
+    }
+    
+    // Pay for a fill out of reserved funds (a replayed fill has no reservation left)
+    public synchronized boolean spendReservedPaisa(long paisa) {
+        while (true) {
+            long current = balancePaisa.get();
+            if (paisa < 0 || paisa > current) {
+                return false;
+            }
+            if (balancePaisa.compareAndSet(current, current - paisa)) {
+                reservedPaisa = Math.max(0, reservedPaisa - paisa);
+                return true;
+            }
+        }
+    }
+    
+    // Rupees to paisa, rounded to the nearest paisa
+    public static long toPaisa(double rupees) {
+        return Math.round(rupees * 100);
     }
     
     @Override
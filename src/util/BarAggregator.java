@@ -0,0 +1,314 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Bar Aggregator for NepseInsider
+ * Streams trades into rolling OHLCV bars at several resolutions per symbol.
+ * Each (symbol, resolution) pair keeps its bars in parallel primitive arrays. The
+ * arrays grow lazily up to the resolution's capacity and then act as a ring that
+ * overwrites the oldest bar. Bar start times only move forward, so time-range reads
+ * binary search the ring instead of re-aggregating ticks.
+ *
+ * As a StockStore listener it folds in every executed trade. Edits to a stock's
+ * price or volume are not trades and do not move the bars.
+ */
+public class BarAggregator implements StockStore.Listener {
+    
+    private static final long NEPAL_OFFSET_MILLIS = (5 * 60 + 45) * 60 * 1000L;   // UTC+05:45
+    
+    /**
+     * Bar sizes. Daily bars follow the Nepal trading day.
+     */
+    public enum Resolution {
+        S1(1000L, 6 * 60 * 60),          // Six hours of seconds
+        M1(60 * 1000L, 7 * 24 * 60),     // A week of minutes
+        M5(5 * 60 * 1000L, 30 * 24 * 12), // A month of five-minute bars
+        D1(24 * 60 * 60 * 1000L, 5 * 365);
+        
+        private final long millis;
+        private final int capacity;
+        
+        Resolution(long millis, int capacity) {
+            this.millis = millis;
+            this.capacity = capacity;
+        }
+        
+        public long getMillis() {
+            return millis;
+        }
+        
+        public int getCapacity() {
+            return capacity;
+        }
+        
+        // Start of the bar containing a timestamp (bars align to Nepal midnight)
+        public long bucket(long timestamp) {
+            return Math.floorDiv(timestamp + NEPAL_OFFSET_MILLIS, millis) * millis - NEPAL_OFFSET_MILLIS;
+        }
+    }
+    
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+    
+    private final LongSupplier clock;
+    private volatile BarSeries[][] series = new BarSeries[64][];   // [row][resolution]
+    
+    public BarAggregator(StockStore store) {
+        this(store, System::currentTimeMillis);
+    }
+    
+    /**
+     * @param store Store to follow (may be null when updates are pushed directly)
+     * @param clock Time source for updates taken from store events
+     */
+    public BarAggregator(StockStore store, LongSupplier clock) {
+        this.clock = clock;
+        if (store != null) {
+            store.addListener(this);
+        }
+    }
+    
+    /**
+     * Fold a trade or price update into every resolution
+     */
+    public void update(int row, long timestamp, double price, long quantity) {
+        BarSeries[] all = seriesFor(row);
+        synchronized (all) {
+            for (BarSeries bars : all) {
+                bars.update(timestamp, price, quantity);
+            }
+        }
+    }
+    
+    /**
+     * Bars that start in [from, to), oldest first
+     */
+    public Bars range(int row, Resolution resolution, long from, long to) {
+        Bars result = new Bars(resolution);
+        BarSeries[][] current = series;
+        if (row < 0 || row >= current.length || current[row] == null || from >= to) {
+            return result;
+        }
+        BarSeries[] all = current[row];
+        synchronized (all) {
+            all[resolution.ordinal()].copy(from, to, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Drop all bars for a row
+     */
+    public void clear(int row) {
+        BarSeries[][] current = series;
+        if (row < current.length && current[row] != null) {
+            BarSeries[] all = current[row];
+            synchronized (all) {
+                for (BarSeries bars : all) {
+                    bars.clear();
+                }
+            }
+        }
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+        clear(row);
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+    }
+    
+    @Override
+    public void tradeRecorded(int row, double price, long quantity) {
+        update(row, clock.getAsLong(), price, quantity);
+    }
+    
+    // ==================== Internals ====================
+    
+    private BarSeries[] seriesFor(int row) {
+        BarSeries[][] current = series;
+        if (row < current.length && current[row] != null) {
+            return current[row];
+        }
+        synchronized (this) {
+            current = series;
+            if (row >= current.length) {
+                current = Arrays.copyOf(current, Math.max(row + 1, current.length * 2));
+            }
+            if (current[row] == null) {
+                BarSeries[] all = new BarSeries[RESOLUTIONS.length];
+                for (Resolution resolution : RESOLUTIONS) {
+                    all[resolution.ordinal()] = new BarSeries(resolution);
+                }
+                current[row] = all;
+            }
+            series = current;
+            return current[row];
+        }
+    }
+    
+    /**
+     * Ring of bars for one symbol at one resolution
+     */
+    private static final class BarSeries {
+        private final Resolution resolution;
+        private long[] starts = new long[0];
+        private double[] opens = new double[0];
+        private double[] highs = new double[0];
+        private double[] lows = new double[0];
+        private double[] closes = new double[0];
+        private long[] volumes = new long[0];
+        private int head;    // Index of the oldest bar
+        private int count;
+        
+        BarSeries(Resolution resolution) {
+            this.resolution = resolution;
+        }
+        
+        void update(long timestamp, double price, long quantity) {
+            long start = resolution.bucket(timestamp);
+            if (count > 0) {
+                int last = index(count - 1);
+                if (start <= starts[last]) {
+                    // Current bar (a late update folds into it rather than reopening an old bar)
+                    highs[last] = Math.max(highs[last], price);
+                    lows[last] = Math.min(lows[last], price);
+                    closes[last] = price;
+                    volumes[last] += quantity;
+                    return;
+                }
+            }
+            int slot = nextSlot();
+            starts[slot] = start;
+            opens[slot] = price;
+            highs[slot] = price;
+            lows[slot] = price;
+            closes[slot] = price;
+            volumes[slot] = quantity;
+        }
+        
+        private int nextSlot() {
+            if (count < starts.length) {
+                return index(count++);
+            }
+            if (starts.length < resolution.capacity) {
+                grow(Math.min(resolution.capacity, Math.max(16, starts.length * 2)));
+                return index(count++);
+            }
+            int slot = head;   // Full: overwrite the oldest bar
+            head = (head + 1) % starts.length;
+            return slot;
+        }
+        
+        // Re-lays the ring out from index 0 while growing (head is reset last)
+        private void grow(int capacity) {
+            starts = unroll(starts, capacity);
+            opens = unroll(opens, capacity);
+            highs = unroll(highs, capacity);
+            lows = unroll(lows, capacity);
+            closes = unroll(closes, capacity);
+            volumes = unroll(volumes, capacity);
+            head = 0;
+        }
+        
+        private long[] unroll(long[] from, int capacity) {
+            long[] to = new long[capacity];
+            for (int i = 0; i < count; i++) {
+                to[i] = from[(head + i) % from.length];
+            }
+            return to;
+        }
+        
+        private double[] unroll(double[] from, int capacity) {
+            double[] to = new double[capacity];
+            for (int i = 0; i < count; i++) {
+                to[i] = from[(head + i) % from.length];
+            }
+            return to;
+        }
+        
+        private int index(int i) {
+            return (head + i) % starts.length;
+        }
+        
+        void copy(long from, long to, Bars out) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[index(mid)] < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < count; i++) {
+                int slot = index(i);
+                if (starts[slot] >= to) {
+                    break;
+                }
+                out.add(starts[slot], opens[slot], highs[slot], lows[slot], closes[slot], volumes[slot]);
+            }
+        }
+        
+        void clear() {
+            head = 0;
+            count = 0;
+        }
+    }
+    
+    /**
+     * A copied run of bars, oldest first
+     */
+    public static class Bars {
+        private final Resolution resolution;
+        private long[] starts = new long[16];
+        private double[] opens = new double[16];
+        private double[] highs = new double[16];
+        private double[] lows = new double[16];
+        private double[] closes = new double[16];
+        private long[] volumes = new long[16];
+        private int size;
+        
+        Bars(Resolution resolution) {
+            this.resolution = resolution;
+        }
+        
+        void add(long start, double open, double high, double low, double close, long volume) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                opens = Arrays.copyOf(opens, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                closes = Arrays.copyOf(closes, capacity);
+                volumes = Arrays.copyOf(volumes, capacity);
+            }
+            starts[size] = start;
+            opens[size] = open;
+            highs[size] = high;
+            lows[size] = low;
+            closes[size] = close;
+            volumes[size] = volume;
+            size++;
+        }
+        
+        public Resolution getResolution() { return resolution; }
+        public int size() { return size; }
+        public long getStart(int i) { return starts[i]; }
+        public double getOpen(int i) { return opens[i]; }
+        public double getHigh(int i) { return highs[i]; }
+        public double getLow(int i) { return lows[i]; }
+        public double getClose(int i) { return closes[i]; }
+        public long getVolume(int i) { return volumes[i]; }
+    }
+}
@@ -1,8 +1,16 @@
 package util;
 
 import model.Stock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * Custom Data Structures for NepseInsider
@@ -240,4 +248,258 @@ public class DataStructures {
             }
         }
     }
+    
+    /**
+     * Id-keyed table that keeps insertion order - for admin entities (deposits,
+     * tickets, ...) that are listed in creation order but looked up by id.
+     * Items sit in an array in the order they were added; an IntIntMap (no boxing)
+     * maps each id to its slot, so get/remove are O(1) (amortized). Removing leaves a
+     * null tombstone, and the remove that makes tombstones outnumber live items
+     * compacts the array, so a listing never walks more than twice the live items.
+     * Iteration skips tombstones; do not add or remove while iterating.
+     */
+    public static class IdTable<T> implements Iterable<T> {
+        private final ToIntFunction<T> idOf;
+        private final PrimitiveCollections.IntIntMap slotById;
+        private Object[] slots;
+        private int used;    // Slots handed out, including tombstones
+        private int live;
+        
+        public IdTable(ToIntFunction<T> idOf) {
+            this(idOf, 16);
+        }
+        
+        public IdTable(ToIntFunction<T> idOf, int capacity) {
+            this.idOf = idOf;
+            this.slotById = new PrimitiveCollections.IntIntMap(capacity, -1);
+            this.slots = new Object[Math.max(capacity, 1)];
+        }
+        
+        /**
+         * Append an item
+         * @return false if an item with the same id is already present
+         */
+        public boolean add(T item) {
+            int id = idOf.applyAsInt(item);
+            if (slotById.containsKey(id)) {
+                return false;
+            }
+            if (used == slots.length) {
+                slots = Arrays.copyOf(slots, used * 2);
+            }
+            slotById.put(id, used);
+            slots[used++] = item;
+            live++;
+            return true;
+        }
+        
+        @SuppressWarnings("unchecked")
+        public T get(int id) {
+            int slot = slotById.get(id);
+            return slot < 0 ? null : (T) slots[slot];
+        }
+        
+        public boolean contains(int id) {
+            return slotById.containsKey(id);
+        }
+        
+        /**
+         * @return The removed item, or null if no item has that id
+         */
+        @SuppressWarnings("unchecked")
+        public T remove(int id) {
+            int slot = slotById.remove(id);
+            if (slot < 0) {
+                return null;
+            }
+            T item = (T) slots[slot];
+            slots[slot] = null;
+            live--;
+            if (slot == used - 1) {
+                used--;
+            }
+            // Listing walks every slot up to used, so never let it walk mostly tombstones
+            if (used - live > live) {
+                compact();
+            }
+            return item;
+        }
+        
+        public int size() {
+            return live;
+        }
+        
+        public boolean isEmpty() {
+            return live == 0;
+        }
+        
+        public void clear() {
+            Arrays.fill(slots, 0, used, null);
+            slotById.clear();
+            used = 0;
+            live = 0;
+        }
+        
+        /**
+         * Copy of the items in insertion order
+         */
+        @SuppressWarnings("unchecked")
+        public List<T> toList() {
+            List<T> list = new ArrayList<>(live);
+            for (int i = 0; i < used; i++) {
+                if (slots[i] != null) {
+                    list.add((T) slots[i]);
+                }
+            }
+            return list;
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int next = advance(0);
+                
+                private int advance(int from) {
+                    while (from < used && slots[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+                
+                @Override
+                public boolean hasNext() {
+                    return next < used;
+                }
+                
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (next >= used) {
+                        throw new NoSuchElementException();
+                    }
+                    T item = (T) slots[next];
+                    next = advance(next + 1);
+                    return item;
+                }
+            };
+        }
+        
+        // Slide live items over the tombstones and re-point their ids
+        @SuppressWarnings("unchecked")
+        private void compact() {
+            int to = 0;
+            for (int from = 0; from < used; from++) {
+                Object item = slots[from];
+                if (item != null) {
+                    if (to != from) {
+                        slots[to] = item;
+                        slotById.put(idOf.applyAsInt((T) item), to);
+                    }
+                    to++;
+                }
+            }
+            Arrays.fill(slots, to, used, null);
+            used = to;
+        }
+    }
+    
+    /**
+     * IdTable that also files every item under its status, for workflows such as
+     * PENDING -> APPROVED. Each status has its own insertion-ordered partition, so
+     * listing or counting one status never scans the others. Status changes must go
+     * through setStatus() so the item moves between partitions.
+     */
+    public static class StatusTable<T, S extends Enum<S>> implements Iterable<T> {
+        private final ToIntFunction<T> idOf;
+        private final Function<T, S> statusOf;
+        private final BiConsumer<T, S> statusSetter;
+        private final IdTable<T> all;
+        private final EnumMap<S, IdTable<T>> partitions;
+        
+        /**
+         * @param statusOf Reads an item's status
+         * @param statusSetter Writes an item's status (called by setStatus)
+         */
+        public StatusTable(Class<S> statusType, ToIntFunction<T> idOf, Function<T, S> statusOf, BiConsumer<T, S> statusSetter) {
+            this.idOf = idOf;
+            this.statusOf = statusOf;
+            this.statusSetter = statusSetter;
+            this.all = new IdTable<>(idOf);
+            this.partitions = new EnumMap<>(statusType);
+            for (S status : statusType.getEnumConstants()) {
+                partitions.put(status, new IdTable<>(idOf, 4));
+            }
+        }
+        
+        public boolean add(T item) {
+            if (!all.add(item)) {
+                return false;
+            }
+            partitions.get(statusOf.apply(item)).add(item);
+            return true;
+        }
+        
+        public T get(int id) {
+            return all.get(id);
+        }
+        
+        public T remove(int id) {
+            T item = all.remove(id);
+            if (item != null) {
+                partitions.get(statusOf.apply(item)).remove(id);
+            }
+            return item;
+        }
+        
+        /**
+         * Change an item's status and move it to that partition - O(1)
+         */
+        public void setStatus(T item, S status) {
+            S current = statusOf.apply(item);
+            if (current == status) {
+                return;
+            }
+            int id = idOf.applyAsInt(item);
+            if (all.contains(id)) {
+                partitions.get(current).remove(id);
+                partitions.get(status).add(item);
+            }
+            statusSetter.accept(item, status);
+        }
+        
+        /**
+         * Items with a status, in the order they reached it
+         */
+        public List<T> withStatus(S status) {
+            return partitions.get(status).toList();
+        }
+        
+        public int count(S status) {
+            return partitions.get(status).size();
+        }
+        
+        public int size() {
+            return all.size();
+        }
+        
+        public boolean isEmpty() {
+            return all.isEmpty();
+        }
+        
+        public void clear() {
+            all.clear();
+            for (IdTable<T> partition : partitions.values()) {
+                partition.clear();
+            }
+        }
+        
+        public List<T> toList() {
+            return all.toList();
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return all.iterator();
+        }
+    }
 }
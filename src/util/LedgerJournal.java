@@ -0,0 +1,480 @@
+package util;
+
+import util.ValidationUtils.ValidationResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ledger Journal for NepseInsider
+ * Makes controller state (deposits, withdrawals, tickets, users, ...) durable. Every
+ * state-changing call runs through commit(): the change is applied and, if it succeeds,
+ * recorded as a logical command (participant, op, arguments) in a WriteAheadLog, both
+ * under the journal's lock. Log order is therefore the order changes were applied in,
+ * and a snapshot never holds a change without its record. commit() returns success
+ * only once the record is durable; concurrent callers share fsyncs through the log's
+ * group commit. Threads that must not wait on the disk (the matching engine's loops)
+ * use the commit() overload that reports durability through a callback instead.
+ *
+ * If the log cannot be written, commit() returns an error and the journal stops
+ * accepting changes (fail-stop): the failed change may be in memory but not on disk,
+ * so every later commit is refused until a restart recovers from the log.
+ *
+ * A new journal (no snapshot yet) lets each participant seed its starting data, which
+ * the first snapshot then keeps; later starts recover it instead of seeding again.
+ *
+ * Every SNAPSHOT_INTERVAL records the snapshot thread serializes all participants into
+ * ledger.snapshot, rolls the log and deletes the segments the snapshot covers.
+ * Recovery restores the snapshot and replays only the commands after it, with now()
+ * returning each command's original time so replayed records keep their dates.
+ *
+ * Participants replay a command by calling the same method again; commit() only
+ * applies the change while replaying, so replay never writes to the log. A replayed
+ * command that is rejected fails recovery rather than silently losing the change.
+ */
+public class LedgerJournal implements AutoCloseable {
+    
+    public static final int SNAPSHOT_INTERVAL = 10000;
+    
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+    private static final int SNAPSHOT_VERSION = 1;
+    
+    // Argument type tags
+    private static final byte T_NULL = 0;
+    private static final byte T_INT = 1;
+    private static final byte T_LONG = 2;
+    private static final byte T_DOUBLE = 3;
+    private static final byte T_BOOLEAN = 4;
+    private static final byte T_STRING = 5;
+    private static final byte T_INT_ARRAY = 6;
+    private static final byte T_LONG_ARRAY = 7;
+    private static final byte T_STRING_ARRAY = 8;
+    
+    /**
+     * A controller whose state the journal keeps
+     */
+    public interface Participant {
+        /** Called once before recovery; the participant records its changes here from then on */
+        void attach(LedgerJournal journal);
+        
+        /** Unique name stored with each of its commands */
+        String journalName();
+        
+        /** Copy of the complete state for a snapshot */
+        Serializable snapshotState();
+        
+        /** Replace the state with a snapshot taken by snapshotState() */
+        void restoreState(Serializable state);
+        
+        /** Apply a recorded command again; an error means the recovered state has diverged */
+        ValidationResult replay(String op, Object[] args);
+        
+        /** Add starting data to a new journal; called once, before its first snapshot */
+        default void seed() {
+        }
+    }
+    
+    private final Path directory;
+    private final Map<String, Participant> participants = new LinkedHashMap<>();
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ledger-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private WriteAheadLog log;
+    private int sinceSnapshot;
+    private IOException failure;   // Set once the log could not be written; guarded by this
+    private volatile boolean replaying;
+    private volatile long commandTime;   // Time of the command being applied or replayed
+    
+    private LedgerJournal(Path directory, Participant... members) {
+        this.directory = directory;
+        for (Participant p : members) {
+            participants.put(p.journalName(), p);
+            p.attach(this);
+        }
+    }
+    
+    /**
+     * Recover the participants from a directory and start journaling their changes.
+     * Without a snapshot, their current state becomes the first one.
+     * @throws IOException if the snapshot or log cannot be read
+     */
+    public static LedgerJournal open(Path directory, Participant... members) throws IOException {
+        LedgerJournal journal = new LedgerJournal(directory, members);
+        journal.recover();
+        return journal;
+    }
+    
+    // ==================== Recording ====================
+    
+    /**
+     * Apply a change and record it as a command, then wait until the record is durable.
+     * Nothing is recorded if the change fails. While replaying, only applies the change.
+     * @param change Validates and applies the change; runs under the journal's lock
+     * @return The change's result, or an error if it could not be made durable
+     */
+    public ValidationResult commit(Participant source, Supplier<ValidationResult> change, String op, Object... args) {
+        if (replaying) {
+            return change.get();
+        }
+        Applied applied = apply(source, change, op, args);
+        if (applied.lsn == 0) {
+            return applied.result;
+        }
+        try {
+            log.sync(applied.lsn);
+        } catch (IOException e) {
+            synchronized (this) {
+                return fail(e);
+            }
+        }
+        return applied.result;
+    }
+    
+    /**
+     * Like commit(), but without waiting: the change is applied and its record queued
+     * before this returns, and onDurable is told from the log's writer thread once the
+     * record is on disk (success) or could not be written (an error, and the journal
+     * stops accepting changes). For threads that must not block on the disk.
+     * @param onDurable Called only if the change was applied; should be short
+     * @return The change's result (an error means nothing was applied or recorded)
+     */
+    public ValidationResult commit(Participant source, Supplier<ValidationResult> change,
+            Consumer<ValidationResult> onDurable, String op, Object... args) {
+        if (replaying) {
+            return change.get();
+        }
+        Applied applied = apply(source, change, op, args);
+        if (applied.lsn != 0 && onDurable != null) {
+            log.whenDurable(applied.lsn, error -> {
+                ValidationResult durable;
+                if (error == null) {
+                    durable = ValidationResult.success();
+                } else {
+                    synchronized (this) {
+                        durable = fail(error);
+                    }
+                }
+                onDurable.accept(durable);
+            });
+        }
+        return applied.result;
+    }
+    
+    // Apply the change and append its record, both under the lock, so log order is
+    // apply order. Every SNAPSHOT_INTERVAL records a snapshot is handed to the
+    // snapshot thread, so no committing thread pays for serializing the state.
+    private synchronized Applied apply(Participant source, Supplier<ValidationResult> change, String op, Object[] args) {
+        if (failure != null) {
+            return new Applied(readOnly(), 0);
+        }
+        byte[] payload;
+        try {
+            payload = encode(source.journalName(), op, args);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new Applied(ValidationResult.error("Change not saved: " + e.getMessage()), 0);
+        }
+        commandTime = System.currentTimeMillis();
+        ValidationResult result = change.get();
+        if (!result.isValid()) {
+            return new Applied(result, 0);
+        }
+        long lsn;
+        try {
+            lsn = log.append(commandTime, payload);
+        } catch (IOException e) {
+            return new Applied(fail(e), 0);
+        }
+        if (++sinceSnapshot >= SNAPSHOT_INTERVAL) {
+            sinceSnapshot = 0;
+            snapshotWriter.execute(this::snapshot);
+        }
+        return new Applied(result, lsn);
+    }
+    
+    private static final class Applied {
+        final ValidationResult result;
+        final long lsn;   // 0 if nothing was recorded
+        
+        Applied(ValidationResult result, long lsn) {
+            this.result = result;
+            this.lsn = lsn;
+        }
+    }
+    
+    /**
+     * Time of the command being applied (the time stored with its record, so a replay
+     * sees the same value), or the current time outside commit()
+     */
+    public LocalDateTime now() {
+        if (replaying || Thread.holdsLock(this)) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(commandTime), ZoneId.systemDefault());
+        }
+        return LocalDateTime.now();
+    }
+    
+    public boolean isReplaying() {
+        return replaying;
+    }
+    
+    /**
+     * Write a snapshot now and drop the log it covers
+     */
+    public void compact() throws IOException {
+        byte[] state;
+        long lsn;
+        synchronized (this) {
+            lsn = log.lastLsn();
+            state = serializeState(lsn);
+            sinceSnapshot = 0;
+        }
+        log.sync(lsn);
+        log.roll();
+        writeSnapshot(state, lsn);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+    
+    // Snapshot thread: serialization still takes the journal lock, for a state that
+    // matches the log exactly, but never on a thread that is committing
+    private void snapshot() {
+        try {
+            compact();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Caller holds this. Fail-stop: the change may be applied but not durable.
+    private ValidationResult fail(IOException e) {
+        e.printStackTrace();
+        if (failure == null) {
+            failure = e;
+        }
+        return readOnly();
+    }
+    
+    private ValidationResult readOnly() {
+        return ValidationResult.error("Change not saved: the ledger could not be written (" + failure.getMessage()
+                + "). No further changes are accepted until the application is restarted.");
+    }
+    
+    // ==================== Recovery ====================
+    
+    private void recover() throws IOException {
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        long snapshotLsn = 0;
+        boolean hasSnapshot = Files.exists(snapshotPath);
+        if (hasSnapshot) {
+            snapshotLsn = restoreSnapshot(Files.readAllBytes(snapshotPath));
+        } else {
+            for (Participant p : participants.values()) {
+                p.seed();
+            }
+        }
+        replaying = true;
+        try {
+            log = WriteAheadLog.open(directory, snapshotLsn, this::replayRecord);
+        } finally {
+            replaying = false;
+        }
+        if (!hasSnapshot) {
+            compact();
+        } else {
+            sinceSnapshot = (int) Math.min(SNAPSHOT_INTERVAL, log.lastLsn() - snapshotLsn);
+        }
+    }
+    
+    private void replayRecord(long lsn, long timestamp, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Participant target = participants.get(in.readUTF());
+        String op = in.readUTF();
+        Object[] args = new Object[in.readUnsignedShort()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readArg(in);
+        }
+        if (target == null) {
+            return;   // Participant no longer registered
+        }
+        commandTime = timestamp;
+        ValidationResult result;
+        try {
+            result = target.replay(op, args);
+        } catch (RuntimeException e) {
+            throw new IOException("Could not replay " + op + " at lsn " + lsn, e);
+        }
+        if (!result.isValid()) {
+            // The command succeeded when it was recorded, so the state has diverged
+            throw new IOException(op + " at lsn " + lsn + " was rejected on replay: " + result.getErrorMessage());
+        }
+    }
+    
+    // ==================== Snapshots ====================
+    
+    private byte[] serializeState(long lsn) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(lsn);
+            out.writeInt(participants.size());
+            for (Participant p : participants.values()) {
+                out.writeUTF(p.journalName());
+                out.writeObject(p.snapshotState());
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    private long restoreSnapshot(byte[] data) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported ledger snapshot version");
+            }
+            long lsn = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Participant p = participants.get(in.readUTF());
+                Serializable state = (Serializable) in.readObject();
+                if (p != null) {
+                    p.restoreState(state);
+                }
+            }
+            return lsn;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Ledger snapshot has unknown classes", e);
+        }
+    }
+    
+    // Written beside the old snapshot and renamed over it, so a crash leaves one or the other
+    private void writeSnapshot(byte[] state, long lsn) {
+        try {
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            Files.write(temp, state);
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.deleteBefore(lsn);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // ==================== Encoding ====================
+    
+    private static byte[] encode(String participant, String op, Object[] args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(participant);
+        out.writeUTF(op);
+        out.writeShort(args.length);
+        for (Object arg : args) {
+            writeArg(out, arg);
+        }
+        return bytes.toByteArray();
+    }
+    
+    // Enums are stored by name and come back as strings
+    private static void writeArg(DataOutputStream out, Object arg) throws IOException {
+        if (arg == null) {
+            out.writeByte(T_NULL);
+        } else if (arg instanceof Integer) {
+            out.writeByte(T_INT);
+            out.writeInt((Integer) arg);
+        } else if (arg instanceof Long) {
+            out.writeByte(T_LONG);
+            out.writeLong((Long) arg);
+        } else if (arg instanceof Double) {
+            out.writeByte(T_DOUBLE);
+            out.writeDouble((Double) arg);
+        } else if (arg instanceof Boolean) {
+            out.writeByte(T_BOOLEAN);
+            out.writeBoolean((Boolean) arg);
+        } else if (arg instanceof String || arg instanceof Enum) {
+            out.writeByte(T_STRING);
+            out.writeUTF(arg instanceof Enum ? ((Enum<?>) arg).name() : (String) arg);
+        } else if (arg instanceof int[]) {
+            int[] values = (int[]) arg;
+            out.writeByte(T_INT_ARRAY);
+            out.writeInt(values.length);
+            for (int v : values) {
+                out.writeInt(v);
+            }
+        } else if (arg instanceof long[]) {
+            long[] values = (long[]) arg;
+            out.writeByte(T_LONG_ARRAY);
+            out.writeInt(values.length);
+            for (long v : values) {
+                out.writeLong(v);
+            }
+        } else if (arg instanceof String[]) {
+            String[] values = (String[]) arg;
+            out.writeByte(T_STRING_ARRAY);
+            out.writeInt(values.length);
+            for (String v : values) {
+                out.writeUTF(v);
+            }
+        } else {
+            throw new IOException("Cannot journal argument of type " + arg.getClass().getName());
+        }
+    }
+    
+    private static Object readArg(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case T_NULL: return null;
+            case T_INT: return in.readInt();
+            case T_LONG: return in.readLong();
+            case T_DOUBLE: return in.readDouble();
+            case T_BOOLEAN: return in.readBoolean();
+            case T_STRING: return in.readUTF();
+            case T_INT_ARRAY:
+                int[] values = new int[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readInt();
+                }
+                return values;
+            case T_LONG_ARRAY:
+                long[] longs = new long[in.readInt()];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = in.readLong();
+                }
+                return longs;
+            case T_STRING_ARRAY:
+                String[] strings = new String[in.readInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = in.readUTF();
+                }
+                return strings;
+            default: throw new IOException("Unknown argument tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package util;
+
+import model.Stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Memory-Mapped Stock File for NepseInsider
+ * Persists the stock universe as fixed-size records in a memory-mapped file. Record
+ * i is StockStore row i, so loading is one sequential pass over the mapping. Dead
+ * rows are kept as dead records, which keeps row numbers (and tick journals keyed by
+ * row) stable across restarts.
+ *
+ * As a StockStore listener it writes each change into its record in place. A price
+ * tick is a handful of stores into mapped memory; the OS writes the pages back, and
+ * flush() forces them to disk.
+ *
+ * Layout: 64-byte header (magic, version, record size, record count), then records.
+ */
+public class MappedStockFile implements StockStore.Listener, AutoCloseable {
+    
+    private static final int MAGIC = 0x4E455053;   // "NEPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 256;
+    private static final int INITIAL_RECORDS = 1024;
+    
+    // Header offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_COUNT = 12;
+    
+    // Record offsets
+    private static final int LIVE = 0;
+    private static final int ID = 4;
+    private static final int PRICE = 8;
+    private static final int PREVIOUS_PRICE = 16;
+    private static final int MARKET_CAP = 24;
+    private static final int CHANGE_PERCENT = 32;
+    private static final int VOLUME = 40;
+    private static final int YEAR_LISTED = 48;
+    private static final int ADDED_DATE = 56;
+    private static final int SYMBOL = 64;        // Length-prefixed UTF-8 text fields
+    private static final int SYMBOL_SIZE = 24;
+    private static final int SECTOR = 88;
+    private static final int SECTOR_SIZE = 64;
+    private static final int NAME = 152;
+    private static final int NAME_SIZE = 104;
+    
+    private final FileChannel channel;
+    private final boolean existed;
+    private StockStore store;
+    private volatile MappedByteBuffer buffer;
+    
+    private MappedStockFile(FileChannel channel, boolean existed, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.existed = existed;
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Open (or create) a stock file
+     * @throws IOException if the file cannot be mapped or is not a stock file
+     */
+    public static MappedStockFile open(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        boolean existed = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = existed ? channel.size() : HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (existed) {
+                if (buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != VERSION
+                        || buffer.getInt(H_RECORD_SIZE) != RECORD_SIZE) {
+                    throw new IOException("Not a NepseInsider stock file: " + path);
+                }
+            } else {
+                buffer.putInt(H_MAGIC, MAGIC);
+                buffer.putInt(H_VERSION, VERSION);
+                buffer.putInt(H_RECORD_SIZE, RECORD_SIZE);
+                buffer.putInt(H_COUNT, 0);
+            }
+            return new MappedStockFile(channel, existed, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return true if the file held data when it was opened
+     */
+    public boolean hasData() {
+        return existed && buffer.getInt(H_COUNT) > 0;
+    }
+    
+    /**
+     * Load every record into an empty store, keeping row numbers. Call before attach().
+     * @return Number of live stocks loaded
+     */
+    public int loadInto(StockStore target) {
+        ByteBuffer b = buffer;
+        int count = b.getInt(H_COUNT);
+        for (int row = 0; row < count; row++) {
+            int base = HEADER_SIZE + row * RECORD_SIZE;
+            String symbol = readText(b, base + SYMBOL, SYMBOL_SIZE);
+            if (symbol.isEmpty()) {
+                symbol = "#" + row;   // Never-written slot; keep the row as a dead placeholder
+            }
+            LocalDateTime added = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(b.getLong(base + ADDED_DATE)), ZoneId.systemDefault());
+            Stock stock = new Stock(b.getInt(base + ID), symbol, readText(b, base + NAME, NAME_SIZE),
+                    readText(b, base + SECTOR, SECTOR_SIZE), b.getDouble(base + PRICE), b.getDouble(base + MARKET_CAP),
+                    b.getLong(base + VOLUME), b.getInt(base + YEAR_LISTED));
+            stock.setPreviousPrice(b.getDouble(base + PREVIOUS_PRICE));
+            stock.setChangePercent(b.getDouble(base + CHANGE_PERCENT));
+            stock.setAddedDate(added);
+            target.add(stock);
+            if (b.get(base + LIVE) == 0) {
+                target.remove(row);
+            }
+        }
+        return target.liveCount();
+    }
+    
+    /**
+     * Start following a store: write its current rows and every later change
+     */
+    public void attach(StockStore source) {
+        this.store = source;
+        int n = source.size();
+        for (int row = 0; row < n; row++) {
+            writeRow(row);
+        }
+        source.addListener(this);
+    }
+    
+    /**
+     * Rewrite a whole record (text fields are not covered by change events)
+     */
+    public void writeRow(int row) {
+        ByteBuffer b = ensureRecord(row);
+        int base = HEADER_SIZE + row * RECORD_SIZE;
+        b.putInt(base + ID, store.id(row));
+        b.putDouble(base + PRICE, store.price(row));
+        b.putDouble(base + PREVIOUS_PRICE, store.previousPrice(row));
+        b.putDouble(base + MARKET_CAP, store.marketCap(row));
+        b.putDouble(base + CHANGE_PERCENT, store.changePercent(row));
+        b.putLong(base + VOLUME, store.volume(row));
+        b.putInt(base + YEAR_LISTED, store.yearListed(row));
+        LocalDateTime added = store.addedDate(row);
+        b.putLong(base + ADDED_DATE, added == null ? 0 : added.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        writeText(b, base + SYMBOL, SYMBOL_SIZE, store.symbol(row));
+        writeText(b, base + SECTOR, SECTOR_SIZE, store.sector(row));
+        writeText(b, base + NAME, NAME_SIZE, store.companyName(row));
+        b.put(base + LIVE, (byte) (store.isLive(row) ? 1 : 0));
+    }
+    
+    /**
+     * Force mapped changes to disk
+     */
+    public void flush() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.removeListener(this);
+        }
+        flush();
+        channel.close();
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+        writeRow(row);
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+        buffer.put(HEADER_SIZE + row * RECORD_SIZE + LIVE, (byte) 0);
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+        ByteBuffer b = buffer;
+        int base = HEADER_SIZE + row * RECORD_SIZE;
+        switch (field) {
+            case PRICE: b.putDouble(base + PRICE, newValue); break;
+            case PREVIOUS_PRICE: b.putDouble(base + PREVIOUS_PRICE, newValue); break;
+            case CHANGE_PERCENT: b.putDouble(base + CHANGE_PERCENT, newValue); break;
+            case MARKET_CAP: b.putDouble(base + MARKET_CAP, newValue); break;
+            case VOLUME: b.putLong(base + VOLUME, (long) newValue); break;
+            case YEAR_LISTED: b.putInt(base + YEAR_LISTED, (int) newValue); break;
+            default: break;
+        }
+    }
+    
+    // ==================== Internals ====================
+    
+    // Make sure the mapping covers a record and the header counts it
+    private synchronized ByteBuffer ensureRecord(int row) {
+        long required = HEADER_SIZE + (long) (row + 1) * RECORD_SIZE;
+        if (required > buffer.capacity()) {
+            long size = buffer.capacity();
+            while (size < required) {
+                size = HEADER_SIZE + (size - HEADER_SIZE) * 2;
+            }
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not grow stock file", e);
+            }
+        }
+        if (row >= buffer.getInt(H_COUNT)) {
+            buffer.putInt(H_COUNT, row + 1);
+        }
+        return buffer;
+    }
+    
+    private static String readText(ByteBuffer b, int offset, int fieldSize) {
+        int length = b.getShort(offset);
+        if (length < 0 || length > fieldSize - 2) {
+            return "";   // Damaged field
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = b.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Writes as much of the text as fits, never splitting a character
+    private static void writeText(ByteBuffer b, int offset, int fieldSize, String text) {
+        String value = text == null ? "" : text;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > fieldSize - 2) {
+            value = value.substring(0, value.length() - 1);
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+        b.putShort(offset, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            b.put(offset + 2 + i, bytes[i]);
+        }
+    }
+}
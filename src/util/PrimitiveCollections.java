@@ -0,0 +1,472 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Primitive Collections for NepseInsider
+ * Small int/long keyed containers that avoid boxing on hot paths (search postings,
+ * row lookups). None of them are thread-safe; owners guard them with their own locks.
+ */
+public class PrimitiveCollections {
+    
+    /**
+     * Growable list of ints
+     */
+    public static class IntList {
+        private int[] items;
+        private int size;
+        
+        public IntList() {
+            this(8);
+        }
+        
+        public IntList(int capacity) {
+            items = new int[Math.max(capacity, 1)];
+        }
+        
+        public void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+        
+        /**
+         * Insert into a list kept in ascending order; appending a new maximum is O(1)
+         * @return false if the value was already present
+         */
+        public boolean addSorted(int value) {
+            if (size == 0 || items[size - 1] < value) {
+                add(value);
+                return true;
+            }
+            int at = Arrays.binarySearch(items, 0, size, value);
+            if (at >= 0) {
+                return false;
+            }
+            at = -at - 1;
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            System.arraycopy(items, at, items, at + 1, size - at);
+            items[at] = value;
+            size++;
+            return true;
+        }
+        
+        public int get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return items[index];
+        }
+        
+        // Remove the first occurrence of a value, keeping order
+        public boolean removeValue(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    System.arraycopy(items, i + 1, items, i, size - i - 1);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // Binary search; only valid on a list built with addSorted
+        public boolean containsSorted(int value) {
+            return Arrays.binarySearch(items, 0, size, value) >= 0;
+        }
+        
+        public boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public boolean isEmpty() {
+            return size == 0;
+        }
+        
+        public void clear() {
+            size = 0;
+        }
+        
+        public int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+    
+    /**
+     * Open-addressing hash map from long keys to int values (linear probing)
+     */
+    public static class LongIntMap {
+        private static final long FREE = Long.MIN_VALUE;
+        
+        private long[] keys;
+        private int[] values;
+        private int size;
+        private final int missing;
+        
+        /**
+         * @param missing Value returned by get() for absent keys
+         */
+        public LongIntMap(int missing) {
+            this.missing = missing;
+            keys = new long[16];
+            values = new int[16];
+            Arrays.fill(keys, FREE);
+        }
+        
+        public int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return values[i];
+                }
+                if (k == FREE) {
+                    return missing;
+                }
+            }
+        }
+        
+        public void put(long key, int value) {
+            if (key == FREE) {
+                throw new IllegalArgumentException("Reserved key");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (keys[i] == FREE) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * @return The removed value, or the missing value if the key was absent
+         */
+        public int remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == FREE) {
+                    return missing;
+                }
+                i = (i + 1) & mask;
+            }
+            int removed = values[i];
+            // Backward shift, as in IntIntMap.remove
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = FREE;
+            size--;
+            return removed;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+    
+    /**
+     * Open-addressing hash map from int keys to int values (linear probing).
+     * Removal shifts later entries back instead of leaving tombstones, so lookups
+     * stay short however many keys have come and gone.
+     */
+    public static class IntIntMap {
+        private static final int FREE = Integer.MIN_VALUE;
+        
+        private int[] keys;
+        private int[] values;
+        private int size;
+        private final int missing;
+        
+        /**
+         * @param missing Value returned by get() and remove() for absent keys
+         */
+        public IntIntMap(int missing) {
+            this(16, missing);
+        }
+        
+        public IntIntMap(int expected, int missing) {
+            this.missing = missing;
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+        
+        public int get(int key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == key) {
+                    return values[i];
+                }
+                if (k == FREE) {
+                    return missing;
+                }
+            }
+        }
+        
+        public boolean containsKey(int key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == key) {
+                    return true;
+                }
+                if (k == FREE) {
+                    return false;
+                }
+            }
+        }
+        
+        public void put(int key, int value) {
+            if (key == FREE) {
+                throw new IllegalArgumentException("Reserved key");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (keys[i] == FREE) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * @return The removed value, or the missing value if the key was absent
+         */
+        public int remove(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == FREE) {
+                    return missing;
+                }
+                i = (i + 1) & mask;
+            }
+            int removed = values[i];
+            // Shift back any later entry of the probe run that may no longer be reachable
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = FREE;
+            size--;
+            return removed;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public void clear() {
+            Arrays.fill(keys, FREE);
+            size = 0;
+        }
+        
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private static int slot(int key, int mask) {
+            int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+    
+    /**
+     * Open-addressing hash set of ints (linear probing, backward-shift removal).
+     * Not thread-safe.
+     */
+    public static class IntSet {
+        private static final int FREE = Integer.MIN_VALUE;
+        
+        private int[] keys;
+        private int size;
+        
+        public IntSet() {
+            this(8);
+        }
+        
+        public IntSet(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+        
+        public boolean contains(int value) {
+            int mask = keys.length - 1;
+            for (int i = IntIntMap.slot(value, mask); ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == value) {
+                    return true;
+                }
+                if (k == FREE) {
+                    return false;
+                }
+            }
+        }
+        
+        /**
+         * @return false if the value was already present
+         */
+        public boolean add(int value) {
+            if (value == FREE) {
+                throw new IllegalArgumentException("Reserved value");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            for (int i = IntIntMap.slot(value, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == value) {
+                    return false;
+                }
+                if (keys[i] == FREE) {
+                    keys[i] = value;
+                    size++;
+                    return true;
+                }
+            }
+        }
+        
+        /**
+         * @return false if the value was not present
+         */
+        public boolean remove(int value) {
+            int mask = keys.length - 1;
+            int i = IntIntMap.slot(value, mask);
+            while (keys[i] != value) {
+                if (keys[i] == FREE) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = IntIntMap.slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = FREE;
+            size--;
+            return true;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public boolean isEmpty() {
+            return size == 0;
+        }
+        
+        public void clear() {
+            Arrays.fill(keys, FREE);
+            size = 0;
+        }
+        
+        // Values in table order
+        public int[] toArray() {
+            int[] out = new int[size];
+            int n = 0;
+            for (int k : keys) {
+                if (k != FREE) {
+                    out[n++] = k;
+                }
+            }
+            return out;
+        }
+        
+        private void rehash(int capacity) {
+            int[] old = keys;
+            keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int k : old) {
+                if (k != FREE) {
+                    add(k);
+                }
+            }
+        }
+    }
+}
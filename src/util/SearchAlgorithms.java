@@ -15,6 +15,10 @@ public class SearchAlgorithms {
      * Binary Search - O(log n) time complexity
      * Requires sorted list by the search criteria
      * Used for exact matches on sorted data
+     *
+     * These methods sort a copy of the list on every call (O(n log n)). For lookups on
+     * live market data use StockController's range queries, which probe persistent
+     * sorted indexes instead.
      */
     public static class BinarySearch {
         
@@ -2,7 +2,14 @@ package util;
 
 import model.Stock;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Sorting Algorithms for NepseInsider
@@ -21,57 +28,120 @@ public class SortAlgorithms {
      * Enum for sort criteria
      */
     public enum SortCriteria {
-        SYMBOL, NAME, PRICE, MARKET_CAP, VOLUME, YEAR, CHANGE_PERCENT
+        SYMBOL, NAME, PRICE, MARKET_CAP, VOLUME, YEAR, CHANGE_PERCENT, SECTOR
     }
     
     /**
-     * QuickSort Implementation - O(n log n) average case
-     * Efficient for most datasets, in-place sorting
+     * Composite sort plan - an ordered list of (criteria, order) keys, e.g.
+     * sector, then change % descending, then volume descending.
+     * Plans are immutable and interned, so each distinct plan is compiled once:
+     * its key extractors and comparator are built up front and reused on every sort.
      */
-    public static class QuickSort {
+    public static final class SortPlan {
+        
+        private static final Map<String, SortPlan> CACHE = new ConcurrentHashMap<>();
+        
+        private final SortCriteria[] criteria;
+        private final SortOrder[] orders;
+        private final String signature;
+        private final Comparator<Stock> comparator;
+        
+        private SortPlan(SortCriteria[] criteria, SortOrder[] orders, String signature) {
+            this.criteria = criteria;
+            this.orders = orders;
+            this.signature = signature;
+            this.comparator = compileComparator(criteria, orders);
+        }
         
         /**
-         * Sort stocks by specified criteria
-         * @param stocks List to sort (modified in place)
-         * @param criteria Sort criteria
-         * @param order Sort order
+         * Single-key plan
          */
-        public static void sort(List<Stock> stocks, SortCriteria criteria, SortOrder order) {
-            if (stocks == null || stocks.size() <= 1) {
-                return;
-            }
-            
-            quickSort(stocks, 0, stocks.size() - 1, criteria, order);
+        public static SortPlan of(SortCriteria criteria, SortOrder order) {
+            return intern(new SortCriteria[] {criteria}, new SortOrder[] {order});
         }
         
-        private static void quickSort(List<Stock> stocks, int low, int high, 
-                SortCriteria criteria, SortOrder order) {
-            if (low < high) {
-                int pivotIndex = partition(stocks, low, high, criteria, order);
-                quickSort(stocks, low, pivotIndex - 1, criteria, order);
-                quickSort(stocks, pivotIndex + 1, high, criteria, order);
+        /**
+         * This plan with one more tie-breaking key
+         */
+        public SortPlan then(SortCriteria next, SortOrder order) {
+            SortCriteria[] c = Arrays.copyOf(criteria, criteria.length + 1);
+            SortOrder[] o = Arrays.copyOf(orders, orders.length + 1);
+            c[criteria.length] = next;
+            o[orders.length] = order;
+            return intern(c, o);
+        }
+        
+        private static SortPlan intern(SortCriteria[] criteria, SortOrder[] orders) {
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < criteria.length; i++) {
+                if (criteria[i] == null || orders[i] == null) {
+                    throw new IllegalArgumentException("Sort key and order are required");
+                }
+                key.append(criteria[i]).append(orders[i] == SortOrder.ASCENDING ? '+' : '-').append(',');
             }
+            String signature = key.toString();
+            return CACHE.computeIfAbsent(signature, k -> new SortPlan(criteria, orders, k));
         }
         
-        private static int partition(List<Stock> stocks, int low, int high, 
-                SortCriteria criteria, SortOrder order) {
-            Stock pivot = stocks.get(high);
-            int i = low - 1;
-            
-            for (int j = low; j < high; j++) {
-                if (shouldSwap(stocks.get(j), pivot, criteria, order)) {
-                    i++;
-                    swap(stocks, i, j);
+        public int size() {
+            return criteria.length;
+        }
+        
+        public SortCriteria getCriteria(int level) {
+            return criteria[level];
+        }
+        
+        public SortOrder getOrder(int level) {
+            return orders[level];
+        }
+        
+        /**
+         * Compiled comparator for this plan (for callers that need a Comparator;
+         * KeySort sorts on extracted keys instead)
+         */
+        public Comparator<Stock> comparator() {
+            return comparator;
+        }
+        
+        @Override
+        public String toString() {
+            return signature;
+        }
+        
+        private static Comparator<Stock> compileComparator(SortCriteria[] criteria, SortOrder[] orders) {
+            Comparator<Stock> result = null;
+            for (int i = 0; i < criteria.length; i++) {
+                SortCriteria c = criteria[i];
+                Comparator<Stock> level;
+                if (isText(c)) {
+                    level = (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(textKey(a, c), textKey(b, c));
+                } else {
+                    level = Comparator.comparingDouble(stock -> numericKey(stock, c));
+                }
+                if (orders[i] == SortOrder.DESCENDING) {
+                    level = level.reversed();
                 }
+                result = result == null ? level : result.thenComparing(level);
             }
-            
-            swap(stocks, i + 1, high);
-            return i + 1;
+            return result;
         }
+    }
+    
+    /**
+     * QuickSort Implementation - O(n log n)
+     * In-place sorting; runs on the KeySort engine, so it is also stable and does not
+     * degrade on input that is already sorted
+     */
+    public static class QuickSort {
         
-        private static boolean shouldSwap(Stock a, Stock b, SortCriteria criteria, SortOrder order) {
-            int comparison = compare(a, b, criteria);
-            return order == SortOrder.ASCENDING ? comparison < 0 : comparison > 0;
+        /**
+         * Sort stocks by specified criteria
+         * @param stocks List to sort (modified in place)
+         * @param criteria Sort criteria
+         * @param order Sort order
+         */
+        public static void sort(List<Stock> stocks, SortCriteria criteria, SortOrder order) {
+            KeySort.sort(stocks, criteria, order);
         }
         
         /**
@@ -122,56 +192,22 @@ public class SortAlgorithms {
             }
             
             List<Stock> result = new ArrayList<>(stocks);
-            mergeSort(result, 0, result.size() - 1, criteria, order);
+            KeySort.sort(result, criteria, order);
             return result;
         }
         
-        private static void mergeSort(List<Stock> stocks, int left, int right,
-                SortCriteria criteria, SortOrder order) {
-            if (left < right) {
-                int mid = left + (right - left) / 2;
-                
-                mergeSort(stocks, left, mid, criteria, order);
-                mergeSort(stocks, mid + 1, right, criteria, order);
-                
-                merge(stocks, left, mid, right, criteria, order);
-            }
-        }
-        
-        private static void merge(List<Stock> stocks, int left, int mid, int right,
-                SortCriteria criteria, SortOrder order) {
-            // Create temp arrays
-            List<Stock> leftArray = new ArrayList<>();
-            List<Stock> rightArray = new ArrayList<>();
-            
-            for (int i = left; i <= mid; i++) {
-                leftArray.add(stocks.get(i));
-            }
-            for (int i = mid + 1; i <= right; i++) {
-                rightArray.add(stocks.get(i));
-            }
-            
-            // Merge back
-            int i = 0, j = 0, k = left;
-            
-            while (i < leftArray.size() && j < rightArray.size()) {
-                int comparison = compare(leftArray.get(i), rightArray.get(j), criteria);
-                boolean takeLeft = order == SortOrder.ASCENDING ? comparison <= 0 : comparison >= 0;
-                
-                if (takeLeft) {
-                    stocks.set(k++, leftArray.get(i++));
-                } else {
-                    stocks.set(k++, rightArray.get(j++));
-                }
+        /**
+         * Sort stocks by a composite plan
+         * @return New sorted list (original unchanged)
+         */
+        public static List<Stock> sort(List<Stock> stocks, SortPlan plan) {
+            if (stocks == null || stocks.size() <= 1) {
+                return stocks;
             }
             
-            // Copy remaining elements
-            while (i < leftArray.size()) {
-                stocks.set(k++, leftArray.get(i++));
-            }
-            while (j < rightArray.size()) {
-                stocks.set(k++, rightArray.get(j++));
-            }
+            List<Stock> result = new ArrayList<>(stocks);
+            KeySort.sort(result, plan);
+            return result;
         }
         
         /**
@@ -197,38 +233,246 @@ public class SortAlgorithms {
     }
     
     /**
-     * Compare two stocks based on criteria
+     * KeySort - the sort engine behind QuickSort and MergeSort
+     * Reads each stock's sort key once into a primitive array, then runs a stable merge
+     * sort over an int permutation, so comparisons never go back through the Stock
+     * getters or List.get/set. Already-ordered runs are detected and skipped, which
+     * makes re-sorting sorted input O(n). Large inputs split across the fork/join pool.
      */
-    private static int compare(Stock a, Stock b, SortCriteria criteria) {
+    public static class KeySort {
+        
+        private static final int INSERTION_THRESHOLD = 32;
+        private static final int PARALLEL_THRESHOLD = 1 << 13;
+        
+        /**
+         * Sort stocks in place (stable)
+         */
+        public static void sort(List<Stock> stocks, SortCriteria criteria, SortOrder order) {
+            sort(stocks, SortPlan.of(criteria, order));
+        }
+        
+        /**
+         * Sort stocks in place by a composite plan (stable)
+         */
+        public static void sort(List<Stock> stocks, SortPlan plan) {
+            if (stocks == null || stocks.size() <= 1) {
+                return;
+            }
+            Stock[] items = stocks.toArray(new Stock[0]);
+            int[] perm = permutation(items, plan);
+            for (int i = 0; i < perm.length; i++) {
+                stocks.set(i, items[perm[i]]);
+            }
+        }
+        
+        /**
+         * Sorted order of the given stocks, leaving the array untouched
+         * @return perm where items[perm[0]] is the first stock in sorted order
+         */
+        public static int[] permutation(Stock[] items, SortPlan plan) {
+            Keys keys = Keys.extract(items, plan);
+            int n = items.length;
+            int[] perm = new int[n];
+            for (int i = 0; i < n; i++) {
+                perm[i] = i;
+            }
+            int[] buffer = new int[n];
+            if (n > PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                ForkJoinPool.commonPool().invoke(new SortTask(keys, perm, buffer, 0, n));
+            } else {
+                mergeSort(keys, perm, buffer, 0, n);
+            }
+            return perm;
+        }
+        
+        // Sorts perm[lo, hi)
+        private static void mergeSort(Keys keys, int[] perm, int[] buffer, int lo, int hi) {
+            if (hi - lo <= INSERTION_THRESHOLD) {
+                insertionSort(keys, perm, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            mergeSort(keys, perm, buffer, lo, mid);
+            mergeSort(keys, perm, buffer, mid, hi);
+            merge(keys, perm, buffer, lo, mid, hi);
+        }
+        
+        private static void insertionSort(Keys keys, int[] perm, int lo, int hi) {
+            for (int i = lo + 1; i < hi; i++) {
+                int item = perm[i];
+                int j = i - 1;
+                while (j >= lo && keys.compare(perm[j], item) > 0) {
+                    perm[j + 1] = perm[j];
+                    j--;
+                }
+                perm[j + 1] = item;
+            }
+        }
+        
+        // Merge sorted perm[lo, mid) and perm[mid, hi); ties take the left run (stable)
+        private static void merge(Keys keys, int[] perm, int[] buffer, int lo, int mid, int hi) {
+            if (keys.compare(perm[mid - 1], perm[mid]) <= 0) {
+                return;   // Already in order
+            }
+            System.arraycopy(perm, lo, buffer, lo, mid - lo);
+            int i = lo, j = mid, k = lo;
+            while (i < mid && j < hi) {
+                perm[k++] = keys.compare(buffer[i], perm[j]) <= 0 ? buffer[i++] : perm[j++];
+            }
+            while (i < mid) {
+                perm[k++] = buffer[i++];
+            }
+        }
+        
+        private static final class SortTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            
+            private final Keys keys;
+            private final int[] perm;
+            private final int[] buffer;
+            private final int lo;
+            private final int hi;
+            
+            SortTask(Keys keys, int[] perm, int[] buffer, int lo, int hi) {
+                this.keys = keys;
+                this.perm = perm;
+                this.buffer = buffer;
+                this.lo = lo;
+                this.hi = hi;
+            }
+            
+            @Override
+            protected void compute() {
+                if (hi - lo <= PARALLEL_THRESHOLD) {
+                    mergeSort(keys, perm, buffer, lo, hi);
+                    return;
+                }
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SortTask(keys, perm, buffer, lo, mid), new SortTask(keys, perm, buffer, mid, hi));
+                merge(keys, perm, buffer, lo, mid, hi);
+            }
+        }
+        
+        /**
+         * Sort keys read once per stock, one double column per plan level. Text keys
+         * (symbol, name, sector) become dense ranks in case-insensitive order, so a
+         * comparison is a loop of Double.compare over the levels.
+         */
+        private static final class Keys {
+            private final double[][] columns;
+            private final boolean[] descending;
+            
+            private Keys(double[][] columns, boolean[] descending) {
+                this.columns = columns;
+                this.descending = descending;
+            }
+            
+            static Keys extract(Stock[] items, SortPlan plan) {
+                int levels = plan.size();
+                double[][] columns = new double[levels][];
+                boolean[] descending = new boolean[levels];
+                for (int level = 0; level < levels; level++) {
+                    SortCriteria criteria = plan.getCriteria(level);
+                    descending[level] = plan.getOrder(level) == SortOrder.DESCENDING;
+                    columns[level] = isText(criteria) ? textRanks(items, criteria) : numbers(items, criteria);
+                }
+                return new Keys(columns, descending);
+            }
+            
+            private static double[] numbers(Stock[] items, SortCriteria criteria) {
+                double[] keys = new double[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    keys[i] = numericKey(items[i], criteria);
+                }
+                return keys;
+            }
+            
+            // Rank of each item's text among the distinct values (equal ignoring case = same rank)
+            private static double[] textRanks(Stock[] items, SortCriteria criteria) {
+                Map<String, Integer> codes = new HashMap<>();
+                List<String> distinct = new ArrayList<>();
+                int[] itemCodes = new int[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    String text = textKey(items[i], criteria);
+                    Integer code = codes.get(text);
+                    if (code == null) {
+                        code = distinct.size();
+                        codes.put(text, code);
+                        distinct.add(text);
+                    }
+                    itemCodes[i] = code;
+                }
+                
+                Integer[] byText = new Integer[distinct.size()];
+                for (int i = 0; i < byText.length; i++) {
+                    byText[i] = i;
+                }
+                Arrays.sort(byText, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(distinct.get(a), distinct.get(b)));
+                double[] rankOfCode = new double[byText.length];
+                int rank = 0;
+                for (int i = 0; i < byText.length; i++) {
+                    if (i > 0 && String.CASE_INSENSITIVE_ORDER.compare(distinct.get(byText[i - 1]), distinct.get(byText[i])) != 0) {
+                        rank++;
+                    }
+                    rankOfCode[byText[i]] = rank;
+                }
+                
+                double[] keys = new double[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    keys[i] = rankOfCode[itemCodes[i]];
+                }
+                return keys;
+            }
+            
+            int compare(int a, int b) {
+                for (int level = 0; level < columns.length; level++) {
+                    int comparison = Double.compare(columns[level][a], columns[level][b]);
+                    if (comparison != 0) {
+                        return descending[level] ? -comparison : comparison;
+                    }
+                }
+                return 0;
+            }
+        }
+    }
+    
+    private static boolean isText(SortCriteria criteria) {
+        return criteria == SortCriteria.SYMBOL || criteria == SortCriteria.NAME || criteria == SortCriteria.SECTOR;
+    }
+    
+    private static String textKey(Stock stock, SortCriteria criteria) {
         switch (criteria) {
             case SYMBOL:
-                return a.getSymbol().compareToIgnoreCase(b.getSymbol());
+                return stock.getSymbol();
             case NAME:
-                return a.getCompanyName().compareToIgnoreCase(b.getCompanyName());
+                return stock.getCompanyName();
+            case SECTOR:
+                return stock.getSector();
+            default:
+                return "";
+        }
+    }
+    
+    /**
+     * Numeric sort key of a stock for the given criteria
+     */
+    private static double numericKey(Stock stock, SortCriteria criteria) {
+        switch (criteria) {
             case PRICE:
-                return Double.compare(a.getCurrentPrice(), b.getCurrentPrice());
+                return stock.getCurrentPrice();
             case MARKET_CAP:
-                return Double.compare(a.getMarketCap(), b.getMarketCap());
+                return stock.getMarketCap();
             case VOLUME:
-                return Long.compare(a.getVolume(), b.getVolume());
+                return stock.getVolume();
             case YEAR:
-                return Integer.compare(a.getYearListed(), b.getYearListed());
+                return stock.getYearListed();
             case CHANGE_PERCENT:
-                return Double.compare(a.getChangePercent(), b.getChangePercent());
+                return stock.getChangePercent();
             default:
                 return 0;
         }
     }
     
-    /**
-     * Swap two elements in list
-     */
-    private static void swap(List<Stock> stocks, int i, int j) {
-        Stock temp = stocks.get(i);
-        stocks.set(i, stocks.get(j));
-        stocks.set(j, temp);
-    }
-    
     /**
      * Utility method to get sorted copy without modifying original
      */
@@ -0,0 +1,135 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted Index for NepseInsider
+ * Keeps the live rows of a StockStore ordered by one numeric field, maintained
+ * incrementally from store change events. Reading the k highest or lowest rows walks
+ * only k entries of a skip list, however many stocks the store holds.
+ */
+public class SortedIndex implements StockStore.Listener {
+    
+    private final StockStore store;
+    private final StockStore.Field field;
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+    
+    /**
+     * Build an index over the store's live rows and keep it current
+     * @param store Store to follow
+     * @param field Field to order rows by
+     */
+    public SortedIndex(StockStore store, StockStore.Field field) {
+        this.store = store;
+        this.field = field;
+        store.addListener(this);
+        int n = store.size();
+        for (int row = 0; row < n; row++) {
+            if (store.isLive(row)) {
+                entries.add(new Entry(store.value(row, field), row));
+            }
+        }
+    }
+    
+    public StockStore.Field getField() {
+        return field;
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    // ==================== Queries ====================
+    
+    /**
+     * Rows with the highest keys above a threshold, highest first
+     * @param limit Maximum number of rows
+     * @param above Exclusive lower bound on the key
+     */
+    public int[] highest(int limit, double above) {
+        return collect(entries.descendingSet().headSet(new Entry(above, Integer.MAX_VALUE), false), limit);
+    }
+    
+    /**
+     * Rows with the lowest keys below a threshold, lowest first
+     * @param limit Maximum number of rows
+     * @param below Exclusive upper bound on the key
+     */
+    public int[] lowest(int limit, double below) {
+        return collect(entries.headSet(new Entry(below, Integer.MIN_VALUE), false), limit);
+    }
+    
+    /**
+     * Rows whose key lies in [from, to], in ascending key order
+     */
+    public int[] range(double from, double to) {
+        if (Double.compare(from, to) > 0) {
+            return new int[0];
+        }
+        return collect(entries.subSet(new Entry(from, Integer.MIN_VALUE), true,
+                new Entry(to, Integer.MAX_VALUE), true), Integer.MAX_VALUE);
+    }
+    
+    private static int[] collect(NavigableSet<Entry> view, int limit) {
+        int[] rows = new int[Math.max(0, Math.min(limit, 16))];
+        int count = 0;
+        Iterator<Entry> it = view.iterator();
+        while (count < limit && it.hasNext()) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[count++] = it.next().row;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+        entries.add(new Entry(store.value(row, field), row));
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+        entries.remove(new Entry(store.value(row, field), row));
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field changed, double oldValue, double newValue) {
+        if (changed == field) {
+            entries.remove(new Entry(oldValue, row));
+            entries.add(new Entry(newValue, row));
+        }
+    }
+    
+    // Key/row pair; the row breaks ties so equal keys stay distinct entries
+    private static final class Entry implements Comparable<Entry> {
+        final double key;
+        final int row;
+        
+        Entry(double key, int row) {
+            this.key = key;
+            this.row = row;
+        }
+        
+        @Override
+        public int compareTo(Entry other) {
+            int byKey = Double.compare(key, other.key);
+            return byKey != 0 ? byKey : Integer.compare(row, other.row);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && compareTo((Entry) obj) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Double.hashCode(key) * 31 + row;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Startup Timeline for NepseInsider
+ * Records named steps of application startup with the time since the JVM started,
+ * and prints them once the first frame has been painted. Off unless the system
+ * property nepse.startup.log is true, so marking a step costs nothing normally.
+ *
+ * With nepse.startup.benchmark=true the timeline is printed and the application exits
+ * right after the first paint; the startup-benchmark Ant target runs it that way.
+ */
+public final class StartupTimeline {
+    
+    public static final boolean BENCHMARK = Boolean.getBoolean("nepse.startup.benchmark");
+    public static final boolean ENABLED = BENCHMARK || Boolean.getBoolean("nepse.startup.log");
+    
+    private static final long JVM_START = ENABLED ? ManagementFactory.getRuntimeMXBean().getStartTime() : 0;
+    private static final List<String> steps = new ArrayList<>();   // Guarded by itself
+    private static final AtomicBoolean finished = new AtomicBoolean();
+    
+    private StartupTimeline() {
+    }
+    
+    /**
+     * Record a step (any thread)
+     */
+    public static void mark(String step) {
+        if (!ENABLED) {
+            return;
+        }
+        String line = String.format("%7d ms  %-36s [%s]", System.currentTimeMillis() - JVM_START, step,
+                Thread.currentThread().getName());
+        synchronized (steps) {
+            steps.add(line);
+        }
+    }
+    
+    /**
+     * Record the first paint and print the timeline; later calls do nothing
+     */
+    public static void firstPaint() {
+        if (!ENABLED || !finished.compareAndSet(false, true)) {
+            return;
+        }
+        mark("first paint");
+        synchronized (steps) {
+            System.out.println("Startup timeline (since JVM start):");
+            for (String line : steps) {
+                System.out.println(line);
+            }
+        }
+        if (BENCHMARK) {
+            System.exit(0);
+        }
+    }
+}
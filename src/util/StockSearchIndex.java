@@ -0,0 +1,370 @@
+package util;
+
+import util.PrimitiveCollections.IntList;
+import util.PrimitiveCollections.LongIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stock Search Index for NepseInsider
+ * Type-ahead search over symbols and company names. The index holds:
+ *  - a prefix trie over symbols
+ *  - a trigram inverted index over symbols and company names
+ *
+ * Queries are case insensitive substring matches, the same as LinearSearch.searchByName.
+ * Results are ranked: exact symbol, symbol prefix, symbol substring, company name word
+ * prefix, then company name substring. Store row order breaks ties within a rank.
+ * Text is case-folded once when it is indexed; a query folds its characters into a
+ * scratch array and compares in place, so it never builds lower-cased Strings.
+ *
+ * Entries are keyed by StockStore row. The owner keeps the index in sync on add,
+ * update and delete. Reads share a read lock; changes take the write lock.
+ */
+public class StockSearchIndex {
+    
+    private static final int EXACT_SYMBOL = 0;
+    private static final int SYMBOL_PREFIX = 1;
+    private static final int SYMBOL_CONTAINS = 2;
+    private static final int NAME_PREFIX = 3;
+    private static final int NAME_CONTAINS = 4;
+    private static final int RANKS = 5;
+    private static final int NO_MATCH = -1;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final TrieNode symbolTrie = new TrieNode();
+    private final LongIntMap trigramSlots = new LongIntMap(-1);   // Trigram -> postings slot
+    private final List<IntList> postings = new ArrayList<>();
+    
+    // Row lists (all rows, trie nodes, postings) are kept in ascending row order
+    private final IntList rows = new IntList();   // Indexed rows
+    private String[] symbols = new String[64];   // Case-folded
+    private String[] names = new String[64];     // Case-folded
+    
+    // ==================== Maintenance ====================
+    
+    public void add(int row, String symbol, String companyName) {
+        lock.writeLock().lock();
+        try {
+            if (row < symbols.length && symbols[row] != null) {
+                removeInternal(row);
+            }
+            addInternal(row, fold(symbol), fold(companyName));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void update(int row, String symbol, String companyName) {
+        add(row, symbol, companyName);
+    }
+    
+    public void remove(int row) {
+        lock.writeLock().lock();
+        try {
+            if (row < symbols.length && symbols[row] != null) {
+                removeInternal(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void addInternal(int row, String symbol, String companyName) {
+        if (row >= symbols.length) {
+            int capacity = Math.max(row + 1, symbols.length * 2);
+            symbols = Arrays.copyOf(symbols, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        symbols[row] = symbol;
+        names[row] = companyName;
+        rows.addSorted(row);
+        
+        TrieNode node = symbolTrie;
+        for (int i = 0; i < symbol.length(); i++) {
+            node = node.childOrCreate(symbol.charAt(i));
+            node.rows.addSorted(row);
+        }
+        
+        addTrigrams(row, symbol);
+        addTrigrams(row, companyName);
+    }
+    
+    private void removeInternal(int row) {
+        String symbol = symbols[row];
+        TrieNode node = symbolTrie;
+        for (int i = 0; i < symbol.length() && node != null; i++) {
+            node = node.child(symbol.charAt(i));
+            if (node != null) {
+                node.rows.removeValue(row);
+            }
+        }
+        
+        removeTrigrams(row, symbol);
+        removeTrigrams(row, names[row]);
+        rows.removeValue(row);
+        symbols[row] = null;
+        names[row] = null;
+    }
+    
+    private void addTrigrams(int row, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long key = trigram(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+            int slot = trigramSlots.get(key);
+            if (slot < 0) {
+                slot = postings.size();
+                postings.add(new IntList(4));
+                trigramSlots.put(key, slot);
+            }
+            postings.get(slot).addSorted(row);
+        }
+    }
+    
+    private void removeTrigrams(int row, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            int slot = trigramSlots.get(trigram(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+            if (slot >= 0) {
+                postings.get(slot).removeValue(row);
+            }
+        }
+    }
+    
+    // ==================== Search ====================
+    
+    /**
+     * Ranked search
+     * @param query Text to look for (surrounding whitespace ignored)
+     * @param limit Maximum number of rows to return
+     * @return Matching rows, best first
+     */
+    public int[] search(String query, int limit) {
+        if (query == null || limit <= 0) {
+            return new int[0];
+        }
+        int start = 0;
+        int end = query.length();
+        while (start < end && Character.isWhitespace(query.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(query.charAt(end - 1))) end--;
+        if (start == end) {
+            return new int[0];
+        }
+        char[] q = new char[end - start];
+        for (int i = 0; i < q.length; i++) {
+            q[i] = fold(query.charAt(start + i));
+        }
+        
+        IntList[] buckets = new IntList[RANKS];
+        for (int i = 0; i < RANKS; i++) {
+            buckets[i] = new IntList();
+        }
+        
+        lock.readLock().lock();
+        try {
+            if (q.length >= 3) {
+                searchTrigrams(q, buckets);
+            } else {
+                searchShort(q, limit, buckets);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        int total = 0;
+        for (IntList bucket : buckets) {
+            total += bucket.size();
+        }
+        int[] result = new int[Math.min(total, limit)];
+        int count = 0;
+        for (int rank = 0; rank < RANKS && count < result.length; rank++) {
+            IntList bucket = buckets[rank];
+            for (int i = 0; i < bucket.size() && count < result.length; i++) {
+                result[count++] = bucket.get(i);
+            }
+        }
+        return result;
+    }
+    
+    // Candidates come from the query's rarest trigram and must appear in every other
+    // trigram's postings (a cheap binary search) before the text itself is compared
+    private void searchTrigrams(char[] q, IntList[] buckets) {
+        IntList[] lists = new IntList[q.length - 2];
+        int best = 0;
+        for (int i = 0; i < lists.length; i++) {
+            int slot = trigramSlots.get(trigram(q[i], q[i + 1], q[i + 2]));
+            if (slot < 0) {
+                return;
+            }
+            lists[i] = postings.get(slot);
+            if (lists[i].size() < lists[best].size()) {
+                best = i;
+            }
+        }
+        IntList candidates = lists[best];
+        for (int i = 0; i < candidates.size(); i++) {
+            int row = candidates.get(i);
+            if (!inAll(lists, best, row)) {
+                continue;
+            }
+            int rank = classify(row, q);
+            if (rank != NO_MATCH) {
+                buckets[rank].add(row);
+            }
+        }
+    }
+    
+    private static boolean inAll(IntList[] lists, int skip, int row) {
+        for (int i = 0; i < lists.length; i++) {
+            if (i != skip && !lists[i].containsSorted(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // One- and two-letter queries have no trigram, so they go rank by rank and stop as
+    // soon as the better ranks already fill the limit: symbol prefixes from the trie,
+    // then symbol substrings, and only then a pass over company names
+    private void searchShort(char[] q, int limit, IntList[] buckets) {
+        TrieNode node = symbolTrie;
+        for (int i = 0; i < q.length && node != null; i++) {
+            node = node.child(q[i]);
+        }
+        int found = 0;
+        if (node != null) {
+            for (int i = 0; i < node.rows.size(); i++) {
+                int row = node.rows.get(i);
+                buckets[symbols[row].length() == q.length ? EXACT_SYMBOL : SYMBOL_PREFIX].add(row);
+            }
+            found = node.rows.size();
+        }
+        if (found >= limit) {
+            return;
+        }
+        
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            if (indexOf(symbols[row], 0, q) > 0) {
+                buckets[SYMBOL_CONTAINS].add(row);
+            }
+        }
+        if (found + buckets[SYMBOL_CONTAINS].size() >= limit) {
+            return;
+        }
+        
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            if (indexOf(symbols[row], 0, q) < 0) {
+                int rank = classifyName(names[row], q);
+                if (rank != NO_MATCH) {
+                    buckets[rank].add(row);
+                }
+            }
+        }
+    }
+    
+    private int classify(int row, char[] q) {
+        int at = indexOf(symbols[row], 0, q);
+        if (at == 0) {
+            return symbols[row].length() == q.length ? EXACT_SYMBOL : SYMBOL_PREFIX;
+        }
+        if (at > 0) {
+            return SYMBOL_CONTAINS;
+        }
+        return classifyName(names[row], q);
+    }
+    
+    private static int classifyName(String name, char[] q) {
+        int at = indexOf(name, 0, q);
+        if (at < 0) {
+            return NO_MATCH;
+        }
+        while (at >= 0) {
+            if (at == 0 || !Character.isLetterOrDigit(name.charAt(at - 1))) {
+                return NAME_PREFIX;
+            }
+            at = indexOf(name, at + 1, q);
+        }
+        return NAME_CONTAINS;
+    }
+    
+    // ==================== Helpers ====================
+    
+    // First position at or after from where folded text contains the folded query
+    private static int indexOf(String text, int from, char[] q) {
+        int max = text.length() - q.length;
+        char first = q[0];
+        for (int i = text.indexOf(first, from); i >= 0 && i <= max; i = text.indexOf(first, i + 1)) {
+            int j = 1;
+            while (j < q.length && text.charAt(i + j) == q[j]) {
+                j++;
+            }
+            if (j == q.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static long trigram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+    
+    // Same folding as String.regionMatches(ignoreCase)
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    
+    private static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(text.charAt(i));
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Symbol trie node. Each node lists the rows whose symbol starts with its path.
+     */
+    private static final class TrieNode {
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        final IntList rows = new IntList(2);
+        
+        TrieNode child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+        
+        TrieNode childOrCreate(char key) {
+            TrieNode existing = child(key);
+            if (existing != null) {
+                return existing;
+            }
+            TrieNode node = new TrieNode();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = node;
+            return node;
+        }
+    }
+}
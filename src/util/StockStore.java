@@ -0,0 +1,792 @@
+package util;
+
+import model.Stock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Columnar Stock Store for NepseInsider
+ * Keeps the stock universe in parallel primitive arrays (one column per field)
+ * so aggregates and filters run as tight array loops instead of walking Stock objects.
+ *
+ * Rows are append-only slots: deleting a stock only marks its row dead, so a row
+ * number (and the Stock view handed out for it) stays valid for the life of the store.
+ *
+ * Thread safety: readers never lock. Column arrays are published as a versioned
+ * snapshot (replaced, never resized in place) and the row count is published after
+ * a row is fully written. Value writers lock a stripe chosen by row (one row per
+ * symbol); structural changes (add, remove, rename) are serialized on the store itself.
+ *
+ * Listeners are told about every numeric change, and once about every executed trade,
+ * while the row's stripe is held, so the events for one row always arrive in order.
+ * They must be quick and must not write back into the store.
+ */
+public class StockStore {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int STRIPES = 16;   // Power of two
+    
+    private final Dictionary symbols = new Dictionary();
+    private final Dictionary sectors = new Dictionary();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    
+    private volatile Columns columns;
+    private volatile int size;
+    private volatile int liveCount;
+    
+    // Symbol code -> live row (or -1)
+    private volatile int[] rowBySymbol;
+    
+    private volatile Listener[] listeners = new Listener[0];
+    
+    public StockStore() {
+        this(INITIAL_CAPACITY);
+    }
+    
+    public StockStore(int capacity) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        columns = new Columns(Math.max(capacity, 1));
+        int[] bySymbol = new int[Math.max(capacity, 1)];
+        Arrays.fill(bySymbol, -1);
+        rowBySymbol = bySymbol;
+    }
+    
+    // ==================== Rows ====================
+    
+    /**
+     * Copy a stock into a new row
+     * @param stock Source stock (its values are copied, the object is not kept)
+     * @return Live view of the new row
+     */
+    public synchronized Stock add(Stock stock) {
+        int row = appendRow(stock.getId(), stock.getSymbol(), stock.getCompanyName(), stock.getSector(),
+                stock.getCurrentPrice(), stock.getMarketCap(), stock.getVolume(), stock.getYearListed(),
+                stock.getPreviousPrice(), stock.getChangePercent(), stock.getAddedDate());
+        return columns.views[row];
+    }
+    
+    /**
+     * Append a new row
+     * @return Live view of the new row
+     */
+    public synchronized Stock add(int id, String symbol, String companyName, String sector,
+            double price, double marketCap, long volume, int yearListed) {
+        int row = appendRow(id, symbol, companyName, sector, price, marketCap, volume, yearListed,
+                price, 0.0, LocalDateTime.now());
+        return columns.views[row];
+    }
+    
+    // Caller holds the store monitor
+    private int appendRow(int id, String symbol, String companyName, String sector,
+            double price, double marketCap, long volume, int yearListed,
+            double previousPrice, double changePercent, LocalDateTime addedDate) {
+        String key = normalize(symbol);
+        if (find(key) >= 0) {
+            throw new IllegalArgumentException("Duplicate symbol: " + key);
+        }
+        
+        int row = size;
+        ensureCapacity(row + 1);
+        int symbolCode = symbols.intern(key);
+        ensureSymbolCapacity(symbolCode + 1);
+        
+        Columns c = columns;
+        c.live[row] = true;
+        c.ids[row] = id;
+        c.symbolCodes[row] = symbolCode;
+        c.sectorCodes[row] = sectors.intern(sector);
+        c.companyNames[row] = companyName;
+        c.prices[row] = price;
+        c.previousPrices[row] = previousPrice;
+        c.marketCaps[row] = marketCap;
+        c.changePercents[row] = changePercent;
+        c.volumes[row] = volume;
+        c.yearsListed[row] = yearListed;
+        c.addedDates[row] = addedDate != null ? addedDate : LocalDateTime.now();
+        c.views[row] = new StockView(row);
+        rowBySymbol[symbolCode] = row;
+        
+        liveCount++;
+        size = row + 1;   // Publish the fully written row
+        
+        ReentrantLock lock = lockRow(row);
+        try {
+            for (Listener listener : listeners) {
+                listener.rowAdded(row);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return row;
+    }
+    
+    /**
+     * Mark a row as deleted. The row keeps its last values for any view still held.
+     * @return true if the row was live
+     */
+    public synchronized boolean remove(int row) {
+        Columns c = columns;
+        if (row < 0 || row >= size || !c.live[row]) {
+            return false;
+        }
+        rowBySymbol[c.symbolCodes[row]] = -1;
+        liveCount--;
+        
+        ReentrantLock lock = lockRow(row);
+        try {
+            c.live[row] = false;
+            for (Listener listener : listeners) {
+                listener.rowRemoved(row);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Find the live row for a symbol (case insensitive)
+     * @return Row number, or -1 if not found
+     */
+    public int find(String symbol) {
+        if (symbol == null) {
+            return -1;
+        }
+        int code = symbols.code(normalize(symbol));
+        int[] bySymbol = rowBySymbol;
+        return code < 0 || code >= bySymbol.length ? -1 : bySymbol[code];
+    }
+    
+    public Stock get(int row) {
+        return columns.views[row];
+    }
+    
+    /**
+     * The row behind one of this store's views, without a symbol lookup
+     * @return Row number, or -1 if the stock is not a view of this store
+     */
+    public int rowOf(Stock stock) {
+        if (stock instanceof StockView) {
+            int row = ((StockView) stock).row;
+            Stock[] views = columns.views;
+            if (row < views.length && views[row] == stock) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    public boolean isLive(int row) {
+        return row >= 0 && row < size && columns.live[row];
+    }
+    
+    // Number of row slots ever allocated (live and dead)
+    public int size() {
+        return size;
+    }
+    
+    // Number of live stocks
+    public int liveCount() {
+        return liveCount;
+    }
+    
+    // Views of all live rows in insertion order
+    public List<Stock> views() {
+        int n = size;
+        Columns c = columns;
+        List<Stock> result = new ArrayList<>(n);
+        for (int row = 0; row < n; row++) {
+            if (c.live[row]) {
+                result.add(c.views[row]);
+            }
+        }
+        return result;
+    }
+    
+    // ==================== Column Access ====================
+    
+    public int id(int row) { return columns.ids[row]; }
+    public String symbol(int row) { return symbols.value(columns.symbolCodes[row]); }
+    public String companyName(int row) { return columns.companyNames[row]; }
+    public String sector(int row) { return sectors.value(columns.sectorCodes[row]); }
+    public int sectorCode(int row) { return columns.sectorCodes[row]; }
+    public double price(int row) { return columns.prices[row]; }
+    public double previousPrice(int row) { return columns.previousPrices[row]; }
+    public double marketCap(int row) { return columns.marketCaps[row]; }
+    public double changePercent(int row) { return columns.changePercents[row]; }
+    public long volume(int row) { return columns.volumes[row]; }
+    public int yearListed(int row) { return columns.yearsListed[row]; }
+    public LocalDateTime addedDate(int row) { return columns.addedDates[row]; }
+    
+    // Numeric column value by field
+    public double value(int row, Field field) {
+        Columns c = columns;
+        switch (field) {
+            case PRICE: return c.prices[row];
+            case PREVIOUS_PRICE: return c.previousPrices[row];
+            case CHANGE_PERCENT: return c.changePercents[row];
+            case MARKET_CAP: return c.marketCaps[row];
+            case VOLUME: return c.volumes[row];
+            case YEAR_LISTED: return c.yearsListed[row];
+            default: throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+    
+    public void setId(int row, int id) {
+        ReentrantLock lock = lockRow(row);
+        try { columns.ids[row] = id; } finally { lock.unlock(); }
+    }
+    
+    public void setCompanyName(int row, String name) {
+        ReentrantLock lock = lockRow(row);
+        try { columns.companyNames[row] = name; } finally { lock.unlock(); }
+    }
+    
+    public void setSector(int row, String sector) {
+        ReentrantLock lock = lockRow(row);
+        try { columns.sectorCodes[row] = sectors.intern(sector); } finally { lock.unlock(); }
+    }
+    
+    public void setPreviousPrice(int row, double price) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            double old = c.previousPrices[row];
+            c.previousPrices[row] = price;
+            fireChanged(c, row, Field.PREVIOUS_PRICE, old, price);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void setMarketCap(int row, double marketCap) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            double old = c.marketCaps[row];
+            c.marketCaps[row] = marketCap;
+            fireChanged(c, row, Field.MARKET_CAP, old, marketCap);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void setChangePercent(int row, double changePercent) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            double old = c.changePercents[row];
+            c.changePercents[row] = changePercent;
+            fireChanged(c, row, Field.CHANGE_PERCENT, old, changePercent);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void setVolume(int row, long volume) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            long old = c.volumes[row];
+            c.volumes[row] = volume;
+            fireChanged(c, row, Field.VOLUME, old, volume);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void setYearListed(int row, int year) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            int old = c.yearsListed[row];
+            c.yearsListed[row] = year;
+            fireChanged(c, row, Field.YEAR_LISTED, old, year);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void setAddedDate(int row, LocalDateTime date) {
+        ReentrantLock lock = lockRow(row);
+        try { columns.addedDates[row] = date; } finally { lock.unlock(); }
+    }
+    
+    /**
+     * Set the current price, shifting the old price to previous and recalculating change %
+     * (same semantics as Stock.setCurrentPrice)
+     */
+    public void setPrice(int row, double price) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            writePrice(columns, row, price);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Apply an executed trade: the price moves to the trade price (if it differs) and
+     * the quantity is added to volume, under one lock so readers see both or neither
+     */
+    public void recordTrade(int row, double price, long quantity) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            if (c.prices[row] != price) {
+                writePrice(c, row, price);
+            }
+            long old = c.volumes[row];
+            c.volumes[row] = old + quantity;
+            fireChanged(c, row, Field.VOLUME, old, old + quantity);
+            fireTrade(c, row, price, quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Update the editable fields of a row as one write, so concurrent readers of the
+     * same stock never mix an old sector with a new price from the same edit
+     */
+    public void update(int row, String companyName, String sector, double price,
+            double marketCap, long volume, int yearListed) {
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            c.companyNames[row] = companyName;
+            c.sectorCodes[row] = sectors.intern(sector);
+            writePrice(c, row, price);
+            
+            double oldMarketCap = c.marketCaps[row];
+            long oldVolume = c.volumes[row];
+            int oldYear = c.yearsListed[row];
+            c.marketCaps[row] = marketCap;
+            c.volumes[row] = volume;
+            c.yearsListed[row] = yearListed;
+            fireChanged(c, row, Field.MARKET_CAP, oldMarketCap, marketCap);
+            fireChanged(c, row, Field.VOLUME, oldVolume, volume);
+            fireChanged(c, row, Field.YEAR_LISTED, oldYear, yearListed);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Caller holds the row's stripe
+    private void writePrice(Columns c, int row, double price) {
+        double previous = c.prices[row];
+        double oldPrevious = c.previousPrices[row];
+        double oldChange = c.changePercents[row];
+        c.previousPrices[row] = previous;
+        c.prices[row] = price;
+        if (previous != 0) {
+            c.changePercents[row] = ((price - previous) / previous) * 100;
+        }
+        fireChanged(c, row, Field.PRICE, previous, price);
+        fireChanged(c, row, Field.PREVIOUS_PRICE, oldPrevious, previous);
+        fireChanged(c, row, Field.CHANGE_PERCENT, oldChange, c.changePercents[row]);
+    }
+    
+    /**
+     * Rename a row's symbol, keeping the symbol lookup in sync. The search index and
+     * the stock file are not store listeners; StockController.renameStock updates them.
+     */
+    public synchronized void setSymbol(int row, String symbol) {
+        String key = normalize(symbol);
+        int existing = find(key);
+        if (existing == row) {
+            return;
+        }
+        if (existing >= 0) {
+            throw new IllegalArgumentException("Duplicate symbol: " + key);
+        }
+        int code = symbols.intern(key);
+        ensureSymbolCapacity(code + 1);
+        
+        ReentrantLock lock = lockRow(row);
+        try {
+            Columns c = columns;
+            if (c.live[row]) {
+                rowBySymbol[c.symbolCodes[row]] = -1;
+                rowBySymbol[code] = row;
+            }
+            c.symbolCodes[row] = code;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // ==================== Aggregates & Filters ====================
+    
+    public double totalMarketCap() {
+        int n = size;
+        Columns c = columns;
+        double total = 0;
+        for (int row = 0; row < n; row++) {
+            if (c.live[row]) {
+                total += c.marketCaps[row];
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Count live stocks per sector code
+     * @return Array indexed by sector code
+     */
+    public int[] sectorCounts() {
+        int n = size;
+        Columns c = columns;
+        int[] counts = new int[sectors.size()];
+        for (int row = 0; row < n; row++) {
+            int code = c.sectorCodes[row];
+            if (c.live[row] && code < counts.length) {
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Stock count per sector, in the order sectors were first seen
+     */
+    public Map<String, Integer> countBySector() {
+        int[] counts = sectorCounts();
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(sectors.value(code), counts[code]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Sectors that have at least one live stock, in the order they were first seen
+     */
+    public List<String> sectorNames() {
+        return new ArrayList<>(countBySector().keySet());
+    }
+    
+    /**
+     * Filter by name/symbol, sector and price range in a single pass over the columns.
+     * Sector matching is resolved once per distinct sector, not once per row.
+     * @param name Partial name or symbol (null/empty = any)
+     * @param sector Partial sector (null/empty = any)
+     * @param minPrice Minimum price
+     * @param maxPrice Maximum price
+     * @return Views of matching rows in insertion order
+     */
+    public List<Stock> filter(String name, String sector, double minPrice, double maxPrice) {
+        List<Stock> results = new ArrayList<>();
+        String nameQuery = name == null ? "" : name.trim();
+        String sectorQuery = sector == null ? "" : sector.trim();
+        
+        int n = size;
+        Columns c = columns;
+        
+        boolean[] sectorMatches = null;
+        if (!sectorQuery.isEmpty()) {
+            sectorMatches = new boolean[sectors.size()];
+            for (int code = 0; code < sectorMatches.length; code++) {
+                sectorMatches[code] = containsIgnoreCase(sectors.value(code), sectorQuery);
+            }
+        }
+        
+        for (int row = 0; row < n; row++) {
+            if (!c.live[row]) continue;
+            double price = c.prices[row];
+            if (price < minPrice || price > maxPrice) continue;
+            if (sectorMatches != null) {
+                int code = c.sectorCodes[row];
+                if (code >= sectorMatches.length || !sectorMatches[code]) continue;
+            }
+            if (!nameQuery.isEmpty()
+                    && !containsIgnoreCase(c.companyNames[row], nameQuery)
+                    && !containsIgnoreCase(symbols.value(c.symbolCodes[row]), nameQuery)) continue;
+            results.add(c.views[row]);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Case-insensitive substring test that does not allocate lower-cased copies
+     */
+    public static boolean containsIgnoreCase(String text, String query) {
+        if (text == null) {
+            return false;
+        }
+        int max = text.length() - query.length();
+        for (int i = 0; i <= max; i++) {
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // ==================== Listeners ====================
+    
+    public synchronized void addListener(Listener listener) {
+        Listener[] current = listeners;
+        Listener[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = listener;
+        listeners = next;
+    }
+    
+    public synchronized void removeListener(Listener listener) {
+        List<Listener> next = new ArrayList<>(Arrays.asList(listeners));
+        next.remove(listener);
+        listeners = next.toArray(new Listener[0]);
+    }
+    
+    // Caller holds the row's stripe. Dead rows and no-op writes are not reported.
+    private void fireChanged(Columns c, int row, Field field, double oldValue, double newValue) {
+        Listener[] current = listeners;
+        if (current.length == 0 || !c.live[row] || Double.compare(oldValue, newValue) == 0) {
+            return;
+        }
+        for (Listener listener : current) {
+            listener.valueChanged(row, field, oldValue, newValue);
+        }
+    }
+    
+    // Caller holds the row's stripe
+    private void fireTrade(Columns c, int row, double price, long quantity) {
+        if (!c.live[row]) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.tradeRecorded(row, price, quantity);
+        }
+    }
+    
+    /**
+     * Numeric columns that listeners and indexes can follow
+     */
+    public enum Field {
+        PRICE, PREVIOUS_PRICE, CHANGE_PERCENT, MARKET_CAP, VOLUME, YEAR_LISTED
+    }
+    
+    /**
+     * Receives row and value changes. Called with the row's stripe held.
+     */
+    public interface Listener {
+        void rowAdded(int row);
+        void rowRemoved(int row);
+        void valueChanged(int row, Field field, double oldValue, double newValue);
+        
+        /**
+         * One executed trade, after its price and volume changes have been reported.
+         * Edits to price or volume are not trades and do not come through here.
+         */
+        default void tradeRecorded(int row, double price, long quantity) {
+        }
+    }
+    
+    // ==================== Internals ====================
+    
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+    
+    private ReentrantLock lockRow(int row) {
+        ReentrantLock lock = stripes[row & (STRIPES - 1)];
+        lock.lock();
+        return lock;
+    }
+    
+    // Caller holds the store monitor. Growing copies every column, so all stripes are
+    // held to keep a concurrent value write from landing in the old arrays.
+    private void ensureCapacity(int required) {
+        if (required <= columns.live.length) {
+            return;
+        }
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            columns = columns.grow(Math.max(required, columns.live.length * 2));
+        } finally {
+            for (ReentrantLock lock : stripes) {
+                lock.unlock();
+            }
+        }
+    }
+    
+    // Caller holds the store monitor
+    private void ensureSymbolCapacity(int required) {
+        int[] current = rowBySymbol;
+        if (required <= current.length) {
+            return;
+        }
+        int[] grown = Arrays.copyOf(current, Math.max(required, current.length * 2));
+        Arrays.fill(grown, current.length, grown.length, -1);
+        rowBySymbol = grown;
+    }
+    
+    /**
+     * One version of the column arrays. A new version is published whenever the
+     * store grows, so a reader holding an older version still sees consistent arrays.
+     */
+    private static final class Columns {
+        final boolean[] live;
+        final int[] ids;
+        final int[] symbolCodes;
+        final int[] sectorCodes;
+        final String[] companyNames;
+        final double[] prices;
+        final double[] previousPrices;
+        final double[] marketCaps;
+        final double[] changePercents;
+        final long[] volumes;
+        final int[] yearsListed;
+        final LocalDateTime[] addedDates;
+        final StockView[] views;
+        
+        Columns(int capacity) {
+            live = new boolean[capacity];
+            ids = new int[capacity];
+            symbolCodes = new int[capacity];
+            sectorCodes = new int[capacity];
+            companyNames = new String[capacity];
+            prices = new double[capacity];
+            previousPrices = new double[capacity];
+            marketCaps = new double[capacity];
+            changePercents = new double[capacity];
+            volumes = new long[capacity];
+            yearsListed = new int[capacity];
+            addedDates = new LocalDateTime[capacity];
+            views = new StockView[capacity];
+        }
+        
+        private Columns(Columns from, int capacity) {
+            live = Arrays.copyOf(from.live, capacity);
+            ids = Arrays.copyOf(from.ids, capacity);
+            symbolCodes = Arrays.copyOf(from.symbolCodes, capacity);
+            sectorCodes = Arrays.copyOf(from.sectorCodes, capacity);
+            companyNames = Arrays.copyOf(from.companyNames, capacity);
+            prices = Arrays.copyOf(from.prices, capacity);
+            previousPrices = Arrays.copyOf(from.previousPrices, capacity);
+            marketCaps = Arrays.copyOf(from.marketCaps, capacity);
+            changePercents = Arrays.copyOf(from.changePercents, capacity);
+            volumes = Arrays.copyOf(from.volumes, capacity);
+            yearsListed = Arrays.copyOf(from.yearsListed, capacity);
+            addedDates = Arrays.copyOf(from.addedDates, capacity);
+            views = Arrays.copyOf(from.views, capacity);
+        }
+        
+        Columns grow(int capacity) {
+            return new Columns(this, capacity);
+        }
+    }
+    
+    /**
+     * Interned string dictionary - maps each distinct string to a dense int code.
+     * Lookups are lock-free; interning a new value is synchronized.
+     */
+    public static class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int size;
+        
+        public int intern(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            synchronized (this) {
+                code = codes.get(value);
+                if (code == null) {
+                    code = size;
+                    String[] current = values;
+                    if (code == current.length) {
+                        current = Arrays.copyOf(current, current.length * 2);
+                    }
+                    current[code] = value;
+                    values = current;
+                    size = code + 1;
+                    codes.put(value, code);
+                }
+                return code;
+            }
+        }
+        
+        public int code(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+        
+        public String value(int code) {
+            return values[code];
+        }
+        
+        public int size() {
+            return size;
+        }
+    }
+    
+    /**
+     * Stock facade over one row of the store.
+     * Reads and writes go straight to the columns; serializing a view writes a
+     * detached Stock copy instead.
+     */
+    private final class StockView extends Stock {
+        private static final long serialVersionUID = 1L;
+        
+        private final int row;
+        
+        StockView(int row) {
+            this.row = row;
+        }
+        
+        @Override public int getId() { return id(row); }
+        @Override public void setId(int id) { StockStore.this.setId(row, id); }
+        
+        @Override public String getSymbol() { return symbol(row); }
+        
+        @Override public String getCompanyName() { return companyName(row); }
+        
+        @Override public String getSector() { return sector(row); }
+        
+        @Override public double getCurrentPrice() { return price(row); }
+        @Override public void setCurrentPrice(double currentPrice) { setPrice(row, currentPrice); }
+        
+        @Override public double getPreviousPrice() { return previousPrice(row); }
+        @Override public void setPreviousPrice(double previousPrice) { StockStore.this.setPreviousPrice(row, previousPrice); }
+        
+        @Override public double getMarketCap() { return marketCap(row); }
+        @Override public void setMarketCap(double marketCap) { StockStore.this.setMarketCap(row, marketCap); }
+        
+        @Override public long getVolume() { return volume(row); }
+        @Override public void setVolume(long volume) { StockStore.this.setVolume(row, volume); }
+        
+        @Override public int getYearListed() { return yearListed(row); }
+        @Override public void setYearListed(int yearListed) { StockStore.this.setYearListed(row, yearListed); }
+        
+        @Override public LocalDateTime getAddedDate() { return addedDate(row); }
+        @Override public void setAddedDate(LocalDateTime addedDate) { StockStore.this.setAddedDate(row, addedDate); }
+        
+        @Override public double getChangePercent() { return changePercent(row); }
+        @Override public void setChangePercent(double changePercent) { StockStore.this.setChangePercent(row, changePercent); }
+        
+        // Detach from the store when serialized
+        private Object writeReplace() {
+            Stock copy = new Stock(getId(), getSymbol(), getCompanyName(), getSector(),
+                    getCurrentPrice(), getMarketCap(), getVolume(), getYearListed());
+            copy.setPreviousPrice(getPreviousPrice());
+            copy.setChangePercent(getChangePercent());
+            copy.setAddedDate(getAddedDate());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Tick Journal for NepseInsider
+ * Appends every executed trade to a memory-mapped file per trading day
+ * (ticks-yyyyMMdd.dat, Nepal time). Records have a fixed size and are keyed by
+ * StockStore row, so replaying a day at startup is a single sequential scan.
+ *
+ * It records the same events that TickStore and BarAggregator consume, one record
+ * per trade, so replaying the journal rebuilds both of them.
+ *
+ * Trades arrive on the store's writing threads with a row stripe held, so they are
+ * only put on a lock-free queue there. A "tick-journal" thread drains the queue and
+ * does all file work: writing records, growing the mapping, moving to the next day's
+ * file and deleting files older than KEEP_DAYS.
+ *
+ * Layout: 16-byte header (magic, version, record count), then 32-byte records
+ * (row, timestamp, price, quantity).
+ */
+public class TickJournal implements StockStore.Listener, AutoCloseable {
+    
+    private static final int MAGIC = 0x4E455054;   // "NEPT"
+    private static final int VERSION = 2;   // 1 wrote a price record and a volume record per trade
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int INITIAL_RECORDS = 64 * 1024;
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int KEEP_DAYS = 7;   // Only today's file is replayed; older ones are kept to inspect
+    
+    private final Path directory;
+    private final StockStore store;
+    private final LongSupplier clock;
+    private final Queue<Tick> queue = new ConcurrentLinkedQueue<>();
+    
+    private volatile Thread writer;
+    private volatile boolean idle;       // Writer is parked, waiting for ticks
+    private volatile boolean running;
+    
+    // File state below is guarded by this (held by the writer while it drains)
+    private long day = Long.MIN_VALUE;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long count;
+    
+    /**
+     * @param directory Directory holding the daily journal files
+     * @param store Store whose updates are journaled (the listener is added by attach())
+     * @param clock Time source, shared with the tick store so replays line up
+     */
+    public TickJournal(Path directory, StockStore store, LongSupplier clock) {
+        this.directory = directory;
+        this.store = store;
+        this.clock = clock;
+    }
+    
+    /**
+     * Start the writer thread and begin journaling the store's trades
+     */
+    public void attach() {
+        running = true;
+        Thread t = new Thread(this::writeLoop, "tick-journal");
+        t.setDaemon(true);
+        writer = t;
+        t.start();
+        store.addListener(this);
+    }
+    
+    /**
+     * Replay today's journal into the tick store and bar aggregator
+     * @return Number of records replayed
+     * @throws IOException if the journal exists but cannot be read
+     */
+    public synchronized long replay(TickStore ticks, BarAggregator bars) throws IOException {
+        open(TickStore.tradingDay(clock.getAsLong()));
+        for (long i = 0; i < count; i++) {
+            int offset = (int) (HEADER_SIZE + i * RECORD_SIZE);
+            int row = buffer.getInt(offset);
+            long timestamp = buffer.getLong(offset + 8);
+            double price = buffer.getDouble(offset + 16);
+            long quantity = buffer.getLong(offset + 24);
+            if (row < 0 || row >= store.size()) {
+                continue;   // Not a row of this universe
+            }
+            ticks.append(row, timestamp, price, quantity);
+            bars.update(row, timestamp, price, quantity);
+        }
+        return count;
+    }
+    
+    /**
+     * Empty today's journal (used when the stock universe was rebuilt, so old rows no longer match)
+     * @throws IOException if the journal cannot be opened
+     */
+    public synchronized void truncate() throws IOException {
+        open(TickStore.tradingDay(clock.getAsLong()));
+        count = 0;
+        buffer.putLong(8, 0);
+    }
+    
+    /**
+     * Queue one record for the writer thread (any thread, never blocks)
+     */
+    public void append(int row, long timestamp, double price, long quantity) {
+        queue.offer(new Tick(row, timestamp, price, quantity));
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    /**
+     * Write out everything queued so far and force it to disk
+     */
+    public synchronized void flush() {
+        drain();
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        store.removeListener(this);
+        running = false;
+        Thread t = writer;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            flush();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+    }
+    
+    @Override
+    public void tradeRecorded(int row, double price, long quantity) {
+        append(row, clock.getAsLong(), price, quantity);
+    }
+    
+    // ==================== Writer ====================
+    
+    private void writeLoop() {
+        while (running) {
+            if (drain() == 0) {
+                idle = true;
+                if (queue.isEmpty() && running) {   // Recheck: a tick may have come in before idle was set
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+    }
+    
+    // Write out the queued ticks and publish them with one header update
+    private synchronized int drain() {
+        int written = 0;
+        Tick tick;
+        while ((tick = queue.poll()) != null) {
+            try {
+                write(tick);
+                written++;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (written > 0) {
+            buffer.putLong(8, count);
+        }
+        return written;
+    }
+    
+    private void write(Tick tick) throws IOException {
+        long tickDay = TickStore.tradingDay(tick.timestamp);
+        if (tickDay > day) {
+            if (buffer != null) {
+                buffer.putLong(8, count);   // Publish the finished day before leaving it
+            }
+            open(tickDay);
+        }
+        long required = HEADER_SIZE + (count + 1) * RECORD_SIZE;
+        if (required > buffer.capacity()) {
+            remap(HEADER_SIZE + (buffer.capacity() - HEADER_SIZE) * 2L);
+        }
+        int offset = (int) (HEADER_SIZE + count * RECORD_SIZE);
+        buffer.putInt(offset, tick.row);
+        buffer.putLong(offset + 8, tick.timestamp);
+        buffer.putDouble(offset + 16, tick.price);
+        buffer.putLong(offset + 24, tick.quantity);
+        count++;
+    }
+    
+    // ==================== Internals ====================
+    
+    private void open(long tradingDay) throws IOException {
+        if (tradingDay == day && channel != null) {
+            return;
+        }
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+        }
+        Files.createDirectories(directory);
+        Path path = directory.resolve(fileName(tradingDay));
+        boolean existed = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        day = tradingDay;
+        prune(tradingDay);
+        remap(existed ? channel.size() : HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+        if (existed && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+            count = Math.min(buffer.getLong(8), (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, 0);
+            count = 0;
+        }
+    }
+    
+    private void remap(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Tick journal full for the day");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    
+    // Delete day files older than KEEP_DAYS (names sort by date)
+    private void prune(long today) {
+        String oldest = fileName(today - KEEP_DAYS + 1);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.matches("ticks-\\d{8}\\.dat") && name.compareTo(oldest) < 0;
+            }).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Trading days count from Nepal midnight, so day * 24h read as UTC is the local date
+    private static String fileName(long tradingDay) {
+        String date = Instant.ofEpochMilli(tradingDay * 24L * 60 * 60 * 1000).atOffset(ZoneOffset.UTC).format(FILE_DATE);
+        return "ticks-" + date + ".dat";
+    }
+    
+    /**
+     * A trade waiting for the writer
+     */
+    private static final class Tick {
+        final int row;
+        final long timestamp;
+        final double price;
+        final long quantity;
+        
+        Tick(int row, long timestamp, double price, long quantity) {
+            this.row = row;
+            this.timestamp = timestamp;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Tick Store for NepseInsider
+ * Intraday tick history (timestamp, price, quantity) per StockStore row, kept in
+ * fixed-size primitive segments. Appends are O(1): a full segment is followed by a
+ * new one, so a symbol keeps every tick of the trading day however busy it is. When a
+ * new trading day starts, the symbol's segments go back to a shared pool, so after
+ * the first day a steady feed allocates nothing.
+ *
+ * Timestamps within a day never go backwards (a late tick is clamped to the last
+ * timestamp), so time-range reads binary search first across segments, then within one.
+ *
+ * As a StockStore listener it records one tick per executed trade. Edits to a stock's
+ * price or volume are not trades and leave no tick.
+ */
+public class TickStore implements StockStore.Listener {
+    
+    public static final int DEFAULT_SEGMENT_SIZE = 1024;
+    
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long NEPAL_OFFSET_MILLIS = (5 * 60 + 45) * 60 * 1000L;   // UTC+05:45
+    
+    private final int segmentSize;
+    private final LongSupplier clock;
+    private final ArrayDeque<Segment> pool = new ArrayDeque<>();
+    
+    private volatile Series[] series = new Series[64];   // By store row, created on first tick
+    
+    public TickStore(StockStore store) {
+        this(store, DEFAULT_SEGMENT_SIZE, System::currentTimeMillis);
+    }
+    
+    /**
+     * @param store Store to follow (may be null when ticks are only appended directly)
+     * @param segmentSize Ticks per segment
+     * @param clock Time source for ticks recorded from store events
+     */
+    public TickStore(StockStore store, int segmentSize, LongSupplier clock) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.segmentSize = segmentSize;
+        this.clock = clock;
+        if (store != null) {
+            store.addListener(this);
+        }
+    }
+    
+    // ==================== Writes ====================
+    
+    /**
+     * Append a tick - O(1)
+     */
+    public void append(int row, long timestamp, double price, long quantity) {
+        Series s = seriesFor(row);
+        synchronized (s) {
+            s.append(timestamp, price, quantity);
+        }
+    }
+    
+    /**
+     * Drop a row's ticks and return its segments to the pool
+     */
+    public void clear(int row) {
+        Series[] current = series;
+        if (row < current.length && current[row] != null) {
+            Series s = current[row];
+            synchronized (s) {
+                s.recycleAll();
+            }
+        }
+    }
+    
+    // ==================== Reads ====================
+    
+    public int count(int row) {
+        Series s = existing(row);
+        if (s == null) {
+            return 0;
+        }
+        synchronized (s) {
+            return s.tickCount();
+        }
+    }
+    
+    /**
+     * Visit the ticks with from <= timestamp < to in time order without copying them.
+     * The row is locked while visiting, so the visitor should be quick.
+     * @return Number of ticks visited
+     */
+    public int forEach(int row, long from, long to, TickVisitor visitor) {
+        Series s = existing(row);
+        if (s == null || from >= to) {
+            return 0;
+        }
+        synchronized (s) {
+            int visited = 0;
+            int[] position = s.seek(from);
+            for (int seg = position[0]; seg < s.count; seg++) {
+                Segment segment = s.segment(seg);
+                for (int i = seg == position[0] ? position[1] : 0; i < segment.size; i++) {
+                    long ts = segment.timestamps[i];
+                    if (ts >= to) {
+                        return visited;
+                    }
+                    visitor.visit(ts, segment.prices[i], segment.quantities[i]);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+    
+    /**
+     * Copy out the ticks with from <= timestamp < to
+     */
+    public Ticks range(int row, long from, long to) {
+        Ticks ticks = new Ticks();
+        forEach(row, from, to, ticks::add);
+        return ticks;
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+        clear(row);
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+    }
+    
+    @Override
+    public void tradeRecorded(int row, double price, long quantity) {
+        append(row, clock.getAsLong(), price, quantity);
+    }
+    
+    // ==================== Internals ====================
+    
+    // Trading day number in Nepal time
+    static long tradingDay(long timestamp) {
+        return Math.floorDiv(timestamp + NEPAL_OFFSET_MILLIS, DAY_MILLIS);
+    }
+    
+    private Series existing(int row) {
+        Series[] current = series;
+        return row >= 0 && row < current.length ? current[row] : null;
+    }
+    
+    private Series seriesFor(int row) {
+        Series s = existing(row);
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            Series[] current = series;
+            if (row >= current.length) {
+                current = Arrays.copyOf(current, Math.max(row + 1, current.length * 2));
+            }
+            if (current[row] == null) {
+                current[row] = new Series();
+            }
+            series = current;
+            return current[row];
+        }
+    }
+    
+    private Segment acquire() {
+        synchronized (pool) {
+            Segment segment = pool.poll();
+            if (segment != null) {
+                return segment;
+            }
+        }
+        return new Segment(segmentSize);
+    }
+    
+    private void release(Segment segment) {
+        segment.size = 0;
+        synchronized (pool) {
+            pool.push(segment);
+        }
+    }
+    
+    /**
+     * One symbol's ticks for the current trading day, in segments
+     */
+    private final class Series {
+        Segment[] segments = new Segment[4];
+        int count;
+        long day = Long.MIN_VALUE;
+        
+        Segment segment(int index) {
+            return segments[index];
+        }
+        
+        Segment tail() {
+            return count == 0 ? null : segment(count - 1);
+        }
+        
+        void append(long timestamp, double price, long quantity) {
+            long tickDay = tradingDay(timestamp);
+            if (tickDay < day && count > 0) {
+                timestamp = tail().lastTimestamp();   // Late tick from the previous day
+            } else if (tickDay != day) {
+                recycleAll();
+                day = tickDay;
+            }
+            
+            Segment tail = tail();
+            if (tail != null && tail.size > 0 && timestamp < tail.lastTimestamp()) {
+                timestamp = tail.lastTimestamp();
+            }
+            if (tail == null || tail.size == segmentSize) {
+                if (count == segments.length) {
+                    segments = Arrays.copyOf(segments, count * 2);
+                }
+                tail = acquire();
+                segments[count++] = tail;
+            }
+            tail.append(timestamp, price, quantity);
+        }
+        
+        void recycleAll() {
+            for (int i = 0; i < count; i++) {
+                release(segments[i]);
+                segments[i] = null;
+            }
+            count = 0;
+        }
+        
+        int tickCount() {
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                total += segment(i).size;
+            }
+            return total;
+        }
+        
+        // {segment, index} of the first tick with timestamp >= from ({count, 0} if none)
+        int[] seek(long from) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (segment(mid).lastTimestamp() < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo == count) {
+                return new int[] {count, 0};
+            }
+            Segment segment = segment(lo);
+            int left = 0;
+            int right = segment.size;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (segment.timestamps[mid] < from) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            return new int[] {lo, left};
+        }
+    }
+    
+    /**
+     * Fixed-size block of ticks in parallel primitive arrays
+     */
+    private static final class Segment {
+        final long[] timestamps;
+        final double[] prices;
+        final long[] quantities;
+        int size;
+        
+        Segment(int capacity) {
+            timestamps = new long[capacity];
+            prices = new double[capacity];
+            quantities = new long[capacity];
+        }
+        
+        void append(long timestamp, double price, long quantity) {
+            timestamps[size] = timestamp;
+            prices[size] = price;
+            quantities[size] = quantity;
+            size++;
+        }
+        
+        long lastTimestamp() {
+            return timestamps[size - 1];
+        }
+    }
+    
+    /**
+     * Receives ticks from forEach
+     */
+    public interface TickVisitor {
+        void visit(long timestamp, double price, long quantity);
+    }
+    
+    /**
+     * A copied run of ticks, in time order
+     */
+    public static class Ticks {
+        private long[] timestamps = new long[16];
+        private double[] prices = new double[16];
+        private long[] quantities = new long[16];
+        private int size;
+        
+        void add(long timestamp, double price, long quantity) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            timestamps[size] = timestamp;
+            prices[size] = price;
+            quantities[size] = quantity;
+            size++;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public long getTimestamp(int index) {
+            return timestamps[index];
+        }
+        
+        public double getPrice(int index) {
+            return prices[index];
+        }
+        
+        public long getQuantity(int index) {
+            return quantities[index];
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-Ahead Log for NepseInsider
+ * Append-only log of opaque payloads with group commit. Callers append under a short
+ * lock and then wait for their record to become durable. A single writer thread
+ * drains everything appended so far with one write and one fsync, so N concurrent
+ * commits cost one fsync instead of N. Callers that must not block can ask to be
+ * told instead (whenDurable), from the writer thread once the fsync is done.
+ *
+ * The log is split into segments (wal-<first lsn>.log). roll() starts a new segment
+ * and deleteBefore() drops segments a snapshot has made obsolete.
+ *
+ * Record layout: length (int), CRC32 of the body (int), then the body: lsn (long),
+ * timestamp (long), payload. Reading stops at the first short or corrupt record,
+ * which is where a crash tore the last write; open() truncates it away.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_HEADER = 16;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+    
+    private final Path directory;
+    private final Thread writer;
+    
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream(64 * 1024);
+    private long lastLsn;          // Last lsn handed out
+    private long durableLsn;       // Last lsn forced to disk
+    private boolean writing;
+    private boolean closed;
+    private IOException failure;
+    // whenDurable() actions, lowest lsn first
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.lsn));
+    
+    private WriteAheadLog(Path directory, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        this.channel = openSegment(lastLsn + 1);
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Receives records during recovery
+     */
+    public interface RecordVisitor {
+        void visit(long lsn, long timestamp, byte[] payload) throws IOException;
+    }
+    
+    /**
+     * Open a log directory: visit every intact record after afterLsn in order, cut off
+     * a torn tail, and start appending after the last record found
+     * @param afterLsn Records up to and including this lsn are skipped (already in a snapshot)
+     * @throws IOException if the directory cannot be read or a visitor fails
+     */
+    public static WriteAheadLog open(Path directory, long afterLsn, RecordVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+        long[] last = {afterLsn};
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long intact = scan(segment, afterLsn, visitor, last);
+            if (intact < Files.size(segment)) {
+                // Torn record: keep what was intact and drop any later segments
+                try (FileChannel c = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    c.truncate(intact);
+                }
+                for (int j = i + 1; j < segments.size(); j++) {
+                    Files.deleteIfExists(segments.get(j));
+                }
+                break;
+            }
+        }
+        return new WriteAheadLog(directory, last[0]);
+    }
+    
+    // ==================== Writes ====================
+    
+    /**
+     * Queue a record for the next group commit
+     * @return The record's lsn, to pass to sync()
+     */
+    public synchronized long append(long timestamp, byte[] payload) throws IOException {
+        checkOpen();
+        long lsn = ++lastLsn;
+        int length = BODY_HEADER + payload.length;
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.putLong(lsn).putLong(timestamp).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        header.putInt(length).putInt((int) crc.getValue());
+        pending.write(header.array(), 0, RECORD_HEADER);
+        pending.write(body.array(), 0, length);
+        notifyAll();
+        return lsn;
+    }
+    
+    /**
+     * Wait until every record up to lsn is on disk
+     * @throws IOException if the writer failed or the log was closed first
+     */
+    public synchronized void sync(long lsn) throws IOException {
+        while (durableLsn < lsn) {
+            checkOpen();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the log", e);
+            }
+        }
+    }
+    
+    /**
+     * Run an action once every record up to lsn is on disk, without waiting for it.
+     * The action runs on the log's writer thread (or at once if the record is already
+     * durable) and gets null, or the error that kept the record from reaching disk.
+     * It should be short: the next group commit waits for it.
+     */
+    public void whenDurable(long lsn, Consumer<IOException> action) {
+        IOException error;
+        synchronized (this) {
+            if (durableLsn >= lsn) {
+                error = null;
+            } else {
+                try {
+                    checkOpen();
+                    waiters.add(new Waiter(lsn, action));
+                    return;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        action.accept(error);
+    }
+    
+    /**
+     * Append a record and wait for it to be durable
+     */
+    public long commit(long timestamp, byte[] payload) throws IOException {
+        long lsn = append(timestamp, payload);
+        sync(lsn);
+        return lsn;
+    }
+    
+    /**
+     * Finish the current segment and start a new one at the next lsn
+     * @return The last lsn in the finished segment
+     */
+    public synchronized long roll() throws IOException {
+        while (durableLsn < lastLsn || writing) {
+            checkOpen();
+            waitQuietly();
+        }
+        checkOpen();
+        channel.close();
+        channel = openSegment(lastLsn + 1);
+        return lastLsn;
+    }
+    
+    /**
+     * Delete whole segments whose records all have lsn <= upTo
+     */
+    public void deleteBefore(long upTo) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            // A segment ends where the next one starts
+            if (firstLsn(segments.get(i + 1)) - 1 <= upTo) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+    
+    public synchronized long lastLsn() {
+        return lastLsn;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync(lastLsn);
+            } finally {
+                closed = true;
+                notifyAll();
+            }
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+    }
+    
+    // ==================== Writer Thread ====================
+    
+    private void writeLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            FileChannel target;
+            long batchLsn;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    waitQuietly();
+                }
+                if (pending.size() == 0) {
+                    notifyWaiters();
+                    return;   // Closed and drained
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchLsn = lastLsn;
+                target = channel;
+                writing = true;
+            }
+            IOException error = null;
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+                while (bytes.hasRemaining()) {
+                    target.write(bytes);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                batch.reset();
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableLsn = batchLsn;
+                }
+                notifyAll();
+            }
+            notifyWaiters();
+        }
+    }
+    
+    // Writer thread: run the whenDurable() actions whose records are on disk, or all
+    // of them once the log has failed or closed
+    private void notifyWaiters() {
+        List<Waiter> ready = new ArrayList<>();
+        long durable;
+        IOException error = null;
+        synchronized (this) {
+            durable = durableLsn;
+            try {
+                checkOpen();
+            } catch (IOException e) {
+                error = e;
+            }
+            while (!waiters.isEmpty() && (error != null || waiters.peek().lsn <= durable)) {
+                ready.add(waiters.poll());
+            }
+        }
+        for (Waiter waiter : ready) {
+            try {
+                waiter.action.accept(waiter.lsn <= durable ? null : error);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private static final class Waiter {
+        final long lsn;
+        final Consumer<IOException> action;
+        
+        Waiter(long lsn, Consumer<IOException> action) {
+            this.lsn = lsn;
+            this.action = action;
+        }
+    }
+    
+    // ==================== Internals ====================
+    
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Write-ahead log is closed");
+        }
+    }
+    
+    private void waitQuietly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("wal-%019d.log", firstLsn));
+        return FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+    
+    // Segments in lsn order
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path p : stream) {
+                segments.add(p);
+            }
+        }
+        Collections.sort(segments);   // Zero-padded names sort by lsn
+        return segments;
+    }
+    
+    /**
+     * Visit a segment's records, raising last[0] to the highest lsn seen
+     * @return Length of the intact prefix (the file size unless the last write was torn)
+     */
+    private static long scan(Path segment, long afterLsn, RecordVisitor visitor, long[] last) throws IOException {
+        byte[] data = Files.readAllBytes(segment);
+        ByteBuffer b = ByteBuffer.wrap(data);
+        CRC32 crc = new CRC32();
+        while (b.remaining() > 0) {
+            int start = b.position();
+            if (b.remaining() < RECORD_HEADER) {
+                return start;
+            }
+            int length = b.getInt();
+            int checksum = b.getInt();
+            if (length < BODY_HEADER || length > MAX_RECORD || length > b.remaining()) {
+                return start;
+            }
+            crc.reset();
+            crc.update(data, b.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            long lsn = b.getLong();
+            long timestamp = b.getLong();
+            byte[] payload = new byte[length - BODY_HEADER];
+            b.get(payload);
+            last[0] = Math.max(last[0], lsn);
+            if (lsn > afterLsn) {
+                visitor.visit(lsn, timestamp, payload);
+            }
+        }
+        return data.length;
+    }
+}
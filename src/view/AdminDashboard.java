@@ -11,8 +11,9 @@ import java.awt.event.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.function.Supplier;
 
-public class AdminDashboard extends JPanel {
+public class AdminDashboard extends JPanel implements RefreshScheduler.Refreshable {
     
     private MainFrame mainFrame;
     private UserController userController;
@@ -23,6 +24,10 @@ public class AdminDashboard extends JPanel {
     private CardLayout cardLayout;
     private String currentMenu = "Dashboard";
     private Map<String, JPanel> menuItems = new HashMap<>();
+    private final User owner;   // The admin this dashboard was built for
+    private final List<TableBinding> tables = new ArrayList<>();
+    private final Map<String, JLabel> statValues = new HashMap<>();   // By card title
+    private final Map<String, Supplier<JPanel>> tabs = new HashMap<>();   // Tabs not built yet, by menu name
     
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     
@@ -47,9 +52,19 @@ public class AdminDashboard extends JPanel {
         this.userController = UserController.getInstance();
         this.stockController = StockController.getInstance();
         this.adminController = AdminController.getInstance();
+        this.owner = userController.getCurrentUser();
         setBackground(CONTENT_BG);
         setLayout(new BorderLayout());
         initComponents();
+        refreshStats();
+        RefreshScheduler.getInstance().follow(this);
+    }
+    
+    /**
+     * Whether this dashboard shows the given user's session (otherwise build a new one)
+     */
+    public boolean isBuiltFor(User user) {
+        return owner == user;
     }
     
     private void initComponents() {
@@ -60,20 +75,21 @@ public class AdminDashboard extends JPanel {
         contentPanel = new JPanel(cardLayout);
         contentPanel.setBackground(CONTENT_BG);
         
+        // Only the overview is built up front; each other tab is built when first opened
         contentPanel.add(createDashboardPanel(), "Dashboard");
-        contentPanel.add(createCategoriesPanel(), "Categories");
-        contentPanel.add(createSubCategoriesPanel(), "SubCategories");
-        contentPanel.add(createMarketsPanel(), "Markets");
-        contentPanel.add(createUpcomingMarketsPanel(), "Upcoming Markets");
-        contentPanel.add(createLiveMarketsPanel(), "Live Markets");
-        contentPanel.add(createUsersPanel(), "Manage Users");
-        contentPanel.add(createStocksPanel(), "Manage Stocks");
-        contentPanel.add(createDepositsPanel(), "Deposits");
-        contentPanel.add(createWithdrawalsPanel(), "Withdrawals");
-        contentPanel.add(createCommentsPanel(), "Comments");
-        contentPanel.add(createTicketsPanel(), "Support Tickets");
-        contentPanel.add(createReportsPanel(), "Reports");
-        contentPanel.add(createSubscribersPanel(), "Subscribers");
+        tabs.put("Categories", this::createCategoriesPanel);
+        tabs.put("SubCategories", this::createSubCategoriesPanel);
+        tabs.put("Markets", this::createMarketsPanel);
+        tabs.put("Upcoming Markets", this::createUpcomingMarketsPanel);
+        tabs.put("Live Markets", this::createLiveMarketsPanel);
+        tabs.put("Manage Users", this::createUsersPanel);
+        tabs.put("Manage Stocks", this::createStocksPanel);
+        tabs.put("Deposits", this::createDepositsPanel);
+        tabs.put("Withdrawals", this::createWithdrawalsPanel);
+        tabs.put("Comments", this::createCommentsPanel);
+        tabs.put("Support Tickets", this::createTicketsPanel);
+        tabs.put("Reports", this::createReportsPanel);
+        tabs.put("Subscribers", this::createSubscribersPanel);
         
         add(contentPanel, BorderLayout.CENTER);
     }
@@ -201,6 +217,10 @@ public class AdminDashboard extends JPanel {
             ((JPanel)newItem.getComponent(0)).setBackground(GREEN);
             ((JLabel)newItem.getComponent(1)).setForeground(Color.WHITE);
         }
+        Supplier<JPanel> unbuilt = tabs.remove(menu);
+        if (unbuilt != null) {
+            contentPanel.add(unbuilt.get(), menu);
+        }
         cardLayout.show(contentPanel, menu);
     }
     
@@ -225,11 +245,10 @@ public class AdminDashboard extends JPanel {
         stats1.setMaximumSize(new Dimension(Integer.MAX_VALUE, 110));
         stats1.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        Map<String, Object> stats = adminController.getDashboardStats();
-        stats1.add(createStatCard("Total Users", String.valueOf(userController.getTotalUsers()), BLUE));
-        stats1.add(createStatCard("Total Stocks", String.valueOf(stockController.getTotalStocks()), GREEN));
-        stats1.add(createStatCard("Categories", String.valueOf(stats.get("totalCategories")), GOLD));
-        stats1.add(createStatCard("Subscribers", String.valueOf(stats.get("totalSubscribers")), CYAN));
+        stats1.add(createStatCard("Total Users", "", BLUE));
+        stats1.add(createStatCard("Total Stocks", "", GREEN));
+        stats1.add(createStatCard("Categories", "", GOLD));
+        stats1.add(createStatCard("Subscribers", "", CYAN));
         content.add(stats1);
         content.add(Box.createVerticalStrut(15));
         
@@ -237,10 +256,10 @@ public class AdminDashboard extends JPanel {
         stats2.setOpaque(false);
         stats2.setMaximumSize(new Dimension(Integer.MAX_VALUE, 110));
         stats2.setAlignmentX(Component.LEFT_ALIGNMENT);
-        stats2.add(createStatCard("Pending Deposits", String.valueOf(stats.get("pendingDeposits")), ORANGE));
-        stats2.add(createStatCard("Pending Withdrawals", String.valueOf(stats.get("pendingWithdrawals")), RED));
-        stats2.add(createStatCard("Open Tickets", String.valueOf(stats.get("openTickets")), BLUE));
-        stats2.add(createStatCard("Pending Comments", String.valueOf(stats.get("pendingComments")), TEXT_GRAY));
+        stats2.add(createStatCard("Pending Deposits", "", ORANGE));
+        stats2.add(createStatCard("Pending Withdrawals", "", RED));
+        stats2.add(createStatCard("Open Tickets", "", BLUE));
+        stats2.add(createStatCard("Pending Comments", "", TEXT_GRAY));
         content.add(stats2);
         
         JScrollPane scroll = new JScrollPane(content);
@@ -263,9 +282,22 @@ public class AdminDashboard extends JPanel {
         titleLabel.setForeground(TEXT_GRAY);
         card.add(valueLabel, BorderLayout.CENTER);
         card.add(titleLabel, BorderLayout.SOUTH);
+        statValues.put(title, valueLabel);
         return card;
     }
     
+    private void refreshStats() {
+        Map<String, Object> stats = adminController.getDashboardStats();
+        statValues.get("Total Users").setText(String.valueOf(userController.getTotalUsers()));
+        statValues.get("Total Stocks").setText(String.valueOf(stockController.getTotalStocks()));
+        statValues.get("Categories").setText(String.valueOf(stats.get("totalCategories")));
+        statValues.get("Subscribers").setText(String.valueOf(stats.get("totalSubscribers")));
+        statValues.get("Pending Deposits").setText(String.valueOf(stats.get("pendingDeposits")));
+        statValues.get("Pending Withdrawals").setText(String.valueOf(stats.get("pendingWithdrawals")));
+        statValues.get("Open Tickets").setText(String.valueOf(stats.get("openTickets")));
+        statValues.get("Pending Comments").setText(String.valueOf(stats.get("pendingComments")));
+    }
+    
     private JButton createActionButton(String text, Color bgColor) {
         JButton btn = new JButton(text);
         btn.setBackground(bgColor);
@@ -291,7 +323,15 @@ public class AdminDashboard extends JPanel {
         header.setFont(new Font("Segoe UI", Font.BOLD, 13));
     }
     
-    private JPanel createManagementPanel(String title, String[] columns, Object[][] data, JButton[] buttons) {
+    private JPanel createManagementPanel(String title, String[] columns, Supplier<Object[][]> rows, JButton[] buttons) {
+        return createManagementPanel(title, columns, rows, buttons, false);
+    }
+    
+    /**
+     * @param stockRows Rows read from the stock store: refreshed on a query thread and
+     *                  on stock ticks (AdminController data must stay on the event thread)
+     */
+    private JPanel createManagementPanel(String title, String[] columns, Supplier<Object[][]> rows, JButton[] buttons, boolean stockRows) {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(CONTENT_BG);
         panel.setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
@@ -309,15 +349,16 @@ public class AdminDashboard extends JPanel {
         for (JButton btn : buttons) buttonPanel.add(btn);
         
         JButton refreshBtn = createActionButton("Refresh", ORANGE);
-        refreshBtn.addActionListener(e -> { mainFrame.showAdminDashboard(); showSuccess("Refreshed!"); });
+        refreshBtn.addActionListener(e -> { refresh(); showSuccess("Refreshed!"); });
         buttonPanel.add(refreshBtn);
         
         headerPanel.add(titleLabel, BorderLayout.WEST);
         headerPanel.add(buttonPanel, BorderLayout.EAST);
         
-        JTable table = new JTable(new DefaultTableModel(data, columns) {
+        DefaultTableModel model = new DefaultTableModel(rows.get(), columns) {
             public boolean isCellEditable(int r, int c) { return false; }
-        });
+        };
+        JTable table = new JTable(model);
         styleTable(table);
         
         JScrollPane scrollPane = new JScrollPane(table);
@@ -326,23 +367,27 @@ public class AdminDashboard extends JPanel {
         
         panel.add(headerPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
+        tables.add(new TableBinding(panel, model, rows, stockRows ? QueryExecutor.getInstance().latest() : null));
         return panel;
     }
     
-    private JPanel createCategoriesPanel() {
+    private Object[][] categoryRows() {
         List<AdminController.Category> cats = adminController.getAllCategories();
         Object[][] data = new Object[cats.size()][4];
         for (int i = 0; i < cats.size(); i++) {
             AdminController.Category c = cats.get(i);
             data[i] = new Object[]{c.id, c.name, c.description, c.active ? "Active" : "Inactive"};
         }
-        
+        return data;
+    }
+    
+    private JPanel createCategoriesPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             String name = JOptionPane.showInputDialog(this, "Category Name:");
             if (name != null && !name.isEmpty()) {
                 adminController.addCategory(name, JOptionPane.showInputDialog(this, "Description:"));
-                showSuccess("Added!"); mainFrame.showAdminDashboard();
+                showSuccess("Added!"); refresh();
             }
         });
         
@@ -353,7 +398,7 @@ public class AdminDashboard extends JPanel {
                 String name = JOptionPane.showInputDialog(this, "New Name:");
                 String desc = JOptionPane.showInputDialog(this, "New Description:");
                 adminController.updateCategory(id, name, desc, true);
-                showSuccess("Updated!"); mainFrame.showAdminDashboard();
+                showSuccess("Updated!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
@@ -363,28 +408,31 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Category ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteCategory(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Categories Management", new String[]{"ID", "Name", "Description", "Status"}, data, new JButton[]{addBtn, editBtn, deleteBtn});
+        return createManagementPanel("Categories Management", new String[]{"ID", "Name", "Description", "Status"}, this::categoryRows, new JButton[]{addBtn, editBtn, deleteBtn});
     }
     
-    private JPanel createSubCategoriesPanel() {
+    private Object[][] subCategoryRows() {
         List<AdminController.SubCategory> subs = adminController.getAllSubCategories();
         Object[][] data = new Object[subs.size()][4];
         for (int i = 0; i < subs.size(); i++) {
             AdminController.SubCategory s = subs.get(i);
             data[i] = new Object[]{s.id, s.categoryId, s.name, s.description};
         }
-        
+        return data;
+    }
+    
+    private JPanel createSubCategoriesPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             try {
                 int catId = Integer.parseInt(JOptionPane.showInputDialog(this, "Category ID:"));
                 adminController.addSubCategory(catId, JOptionPane.showInputDialog(this, "Name:"), JOptionPane.showInputDialog(this, "Description:"));
-                showSuccess("Added!"); mainFrame.showAdminDashboard();
+                showSuccess("Added!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
@@ -394,22 +442,25 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "SubCategory ID:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteSubCategory(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("SubCategories", new String[]{"ID", "Category ID", "Name", "Description"}, data, new JButton[]{addBtn, deleteBtn});
+        return createManagementPanel("SubCategories", new String[]{"ID", "Category ID", "Name", "Description"}, this::subCategoryRows, new JButton[]{addBtn, deleteBtn});
     }
     
-    private JPanel createMarketsPanel() {
+    private Object[][] marketRows() {
         List<AdminController.MarketData> markets = adminController.getAllMarkets();
         Object[][] data = new Object[markets.size()][5];
         for (int i = 0; i < markets.size(); i++) {
             AdminController.MarketData m = markets.get(i);
             data[i] = new Object[]{m.id, m.name, String.format("%.2f", m.indexValue), String.format("%+.2f%%", m.changePercent), m.status};
         }
-        
+        return data;
+    }
+    
+    private JPanel createMarketsPanel() {
         JButton updateBtn = createActionButton("Update", BLUE);
         updateBtn.addActionListener(e -> {
             try {
@@ -417,26 +468,29 @@ public class AdminDashboard extends JPanel {
                 double val = Double.parseDouble(JOptionPane.showInputDialog(this, "New Index Value:"));
                 double change = Double.parseDouble(JOptionPane.showInputDialog(this, "Change:"));
                 adminController.updateMarketIndex(id, val, change);
-                showSuccess("Updated!"); mainFrame.showAdminDashboard();
+                showSuccess("Updated!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
-        return createManagementPanel("Markets", new String[]{"ID", "Name", "Index", "Change %", "Status"}, data, new JButton[]{updateBtn});
+        return createManagementPanel("Markets", new String[]{"ID", "Name", "Index", "Change %", "Status"}, this::marketRows, new JButton[]{updateBtn});
     }
     
-    private JPanel createUpcomingMarketsPanel() {
+    private Object[][] upcomingMarketRows() {
         List<AdminController.UpcomingMarket> list = adminController.getAllUpcomingMarkets();
         Object[][] data = new Object[list.size()][6];
         for (int i = 0; i < list.size(); i++) {
             AdminController.UpcomingMarket u = list.get(i);
             data[i] = new Object[]{u.id, u.companyName, u.symbol, u.type, u.eventDate, u.status};
         }
-        
+        return data;
+    }
+    
+    private JPanel createUpcomingMarketsPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             adminController.addUpcomingMarket(JOptionPane.showInputDialog(this, "Company:"), JOptionPane.showInputDialog(this, "Symbol:"),
                 JOptionPane.showInputDialog(this, "Type:"), JOptionPane.showInputDialog(this, "Date:"), 100, 100000);
-            showSuccess("Added!"); mainFrame.showAdminDashboard();
+            showSuccess("Added!"); refresh();
         });
         
         JButton deleteBtn = createActionButton("Delete", RED);
@@ -445,33 +499,50 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteUpcomingMarket(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Upcoming IPO/FPO", new String[]{"ID", "Company", "Symbol", "Type", "Date", "Status"}, data, new JButton[]{addBtn, deleteBtn});
+        JButton bonusBtn = createActionButton("Allot Bonus", BLUE);
+        bonusBtn.addActionListener(e -> {
+            try {
+                int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Bonus event ID:"));
+                double percent = Double.parseDouble(JOptionPane.showInputDialog(this, "Bonus shares per 100 held (%):"));
+                ValidationResult result = adminController.allotBonusShares(id, percent);
+                if (result.isValid()) { showSuccess("Bonus shares allotted!"); refresh(); }
+                else showError(result.getErrorMessage());
+            } catch (Exception ex) { showError("Invalid input"); }
+        });
+        
+        return createManagementPanel("Upcoming IPO/FPO", new String[]{"ID", "Company", "Symbol", "Type", "Date", "Status"}, this::upcomingMarketRows, new JButton[]{addBtn, deleteBtn, bonusBtn});
     }
     
-    private JPanel createLiveMarketsPanel() {
+    private Object[][] liveMarketRows() {
         AdminController.MarketData m = adminController.getPrimaryMarket();
-        Object[][] data = m != null ? new Object[][]{{m.id, m.name, String.format("%.2f", m.indexValue), m.volume, "LIVE"}} : new Object[][]{};
-        return createManagementPanel("Live Markets", new String[]{"ID", "Name", "Index", "Volume", "Status"}, data, new JButton[]{});
+        return m != null ? new Object[][]{{m.id, m.name, String.format("%.2f", m.indexValue), m.volume, "LIVE"}} : new Object[][]{};
     }
     
-    private JPanel createUsersPanel() {
+    private JPanel createLiveMarketsPanel() {
+        return createManagementPanel("Live Markets", new String[]{"ID", "Name", "Index", "Volume", "Status"}, this::liveMarketRows, new JButton[]{});
+    }
+    
+    private Object[][] userRows() {
         List<User> users = userController.getAllUsers();
         Object[][] data = new Object[users.size()][6];
         for (int i = 0; i < users.size(); i++) {
             User u = users.get(i);
             data[i] = new Object[]{u.getId(), u.getUsername(), u.getEmail() != null ? u.getEmail() : "-", u.getRole(), u.getStatus(), String.format("Rs. %,.2f", u.getBalance())};
         }
-        
+        return data;
+    }
+    
+    private JPanel createUsersPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             userController.addUser(JOptionPane.showInputDialog(this, "Username:"), JOptionPane.showInputDialog(this, "Password:"),
                 JOptionPane.showInputDialog(this, "Email:"), JOptionPane.showInputDialog(this, "Full Name:"), User.UserRole.USER);
-            showSuccess("Added!"); mainFrame.showAdminDashboard();
+            showSuccess("Added!"); refresh();
         });
         
         JButton editBtn = createActionButton("Edit Status", BLUE);
@@ -481,7 +552,7 @@ public class AdminDashboard extends JPanel {
             String status = (String) JOptionPane.showInputDialog(this, "Status:", "Edit", JOptionPane.PLAIN_MESSAGE, null, opts, opts[0]);
             if (status != null) {
                 userController.updateUserStatus(un, User.UserStatus.valueOf(status));
-                showSuccess("Updated!"); mainFrame.showAdminDashboard();
+                showSuccess("Updated!"); refresh();
             }
         });
         
@@ -490,27 +561,30 @@ public class AdminDashboard extends JPanel {
             String un = JOptionPane.showInputDialog(this, "Username to delete:");
             if (un != null && JOptionPane.showConfirmDialog(this, "Delete " + un + "?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                 userController.deleteUser(un);
-                showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                showSuccess("Deleted!"); refresh();
             }
         });
         
-        return createManagementPanel("User Management", new String[]{"ID", "Username", "Email", "Role", "Status", "Balance"}, data, new JButton[]{addBtn, editBtn, deleteBtn});
+        return createManagementPanel("User Management", new String[]{"ID", "Username", "Email", "Role", "Status", "Balance"}, this::userRows, new JButton[]{addBtn, editBtn, deleteBtn});
     }
     
-    private JPanel createStocksPanel() {
+    private Object[][] stockRows() {
         List<Stock> stocks = stockController.getAllStocks();
         Object[][] data = new Object[stocks.size()][6];
         for (int i = 0; i < stocks.size(); i++) {
             Stock s = stocks.get(i);
             data[i] = new Object[]{s.getId(), s.getSymbol(), s.getCompanyName(), s.getSector(), String.format("Rs. %,.2f", s.getCurrentPrice()), String.format("%+.2f%%", s.getChangePercent())};
         }
-        
+        return data;
+    }
+    
+    private JPanel createStocksPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             try {
                 stockController.addStock(JOptionPane.showInputDialog(this, "Symbol:"), JOptionPane.showInputDialog(this, "Company:"),
                     JOptionPane.showInputDialog(this, "Sector:"), Double.parseDouble(JOptionPane.showInputDialog(this, "Price:")), 0, 0, 2020);
-                showSuccess("Added!"); mainFrame.showAdminDashboard();
+                showSuccess("Added!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
@@ -520,7 +594,7 @@ public class AdminDashboard extends JPanel {
                 String sym = JOptionPane.showInputDialog(this, "Symbol to edit:");
                 stockController.updateStock(sym, JOptionPane.showInputDialog(this, "Company:"), JOptionPane.showInputDialog(this, "Sector:"),
                     Double.parseDouble(JOptionPane.showInputDialog(this, "New Price:")), 0, 0, 2020);
-                showSuccess("Updated!"); mainFrame.showAdminDashboard();
+                showSuccess("Updated!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
@@ -529,37 +603,53 @@ public class AdminDashboard extends JPanel {
             String sym = JOptionPane.showInputDialog(this, "Symbol to delete:");
             if (sym != null && JOptionPane.showConfirmDialog(this, "Delete " + sym + "?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                 stockController.deleteStock(sym);
-                showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                showSuccess("Deleted!"); refresh();
             }
         });
         
-        return createManagementPanel("Stock Management", new String[]{"ID", "Symbol", "Company", "Sector", "Price", "Change"}, data, new JButton[]{addBtn, editBtn, deleteBtn});
+        return createManagementPanel("Stock Management", new String[]{"ID", "Symbol", "Company", "Sector", "Price", "Change"}, this::stockRows, new JButton[]{addBtn, editBtn, deleteBtn}, true);
     }
     
-    private JPanel createDepositsPanel() {
+    private Object[][] depositRows() {
         List<AdminController.DepositTransaction> deps = adminController.getAllDeposits();
         Object[][] data = new Object[deps.size()][6];
         for (int i = 0; i < deps.size(); i++) {
             AdminController.DepositTransaction d = deps.get(i);
             data[i] = new Object[]{d.id, d.username, String.format("Rs. %,.2f", d.amount), d.paymentMethod, d.status, d.createdDate.format(DATE_FORMAT)};
         }
-        
+        return data;
+    }
+    
+    private JPanel createDepositsPanel() {
         JButton approveBtn = createActionButton("Approve", GREEN);
         approveBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Deposit ID to approve:"));
                 adminController.approveDeposit(id);
-                showSuccess("Approved! Balance credited."); mainFrame.showAdminDashboard();
+                showSuccess("Approved! Balance credited."); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
+        JButton approveAllBtn = createActionButton("Approve All", GREEN);
+        approveAllBtn.addActionListener(e -> {
+            List<AdminController.DepositTransaction> pending = adminController.getPendingDeposits();
+            if (pending.isEmpty()) { showError("No pending deposits"); return; }
+            if (JOptionPane.showConfirmDialog(this, "Approve " + pending.size() + " pending deposits?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                int[] ids = new int[pending.size()];
+                for (int i = 0; i < ids.length; i++) ids[i] = pending.get(i).id;
+                ValidationResult result = adminController.approveDeposits(ids);
+                if (result.isValid()) { showSuccess("Approved " + ids.length + " deposits!"); refresh(); }
+                else showError(result.getErrorMessage());
+            }
+        });
+        
         JButton rejectBtn = createActionButton("Reject", ORANGE);
         rejectBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Deposit ID to reject:"));
                 String reason = JOptionPane.showInputDialog(this, "Reason:");
                 adminController.rejectDeposit(id, reason);
-                showSuccess("Rejected!"); mainFrame.showAdminDashboard();
+                showSuccess("Rejected!"); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
@@ -569,38 +659,54 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Deposit ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteDeposit(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Deposits", new String[]{"ID", "User", "Amount", "Method", "Status", "Date"}, data, new JButton[]{approveBtn, rejectBtn, deleteBtn});
+        return createManagementPanel("Deposits", new String[]{"ID", "User", "Amount", "Method", "Status", "Date"}, this::depositRows, new JButton[]{approveBtn, approveAllBtn, rejectBtn, deleteBtn});
     }
     
-    private JPanel createWithdrawalsPanel() {
+    private Object[][] withdrawalRows() {
         List<AdminController.WithdrawalTransaction> wits = adminController.getAllWithdrawals();
         Object[][] data = new Object[wits.size()][6];
         for (int i = 0; i < wits.size(); i++) {
             AdminController.WithdrawalTransaction w = wits.get(i);
             data[i] = new Object[]{w.id, w.username, String.format("Rs. %,.2f", w.amount), w.bankName, w.status, w.createdDate.format(DATE_FORMAT)};
         }
-        
+        return data;
+    }
+    
+    private JPanel createWithdrawalsPanel() {
         JButton approveBtn = createActionButton("Approve", GREEN);
         approveBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Withdrawal ID to approve:"));
                 adminController.approveWithdrawal(id);
-                showSuccess("Approved! Balance deducted."); mainFrame.showAdminDashboard();
+                showSuccess("Approved! Balance deducted."); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
+        JButton approveAllBtn = createActionButton("Approve All", GREEN);
+        approveAllBtn.addActionListener(e -> {
+            List<AdminController.WithdrawalTransaction> pending = adminController.getPendingWithdrawals();
+            if (pending.isEmpty()) { showError("No pending withdrawals"); return; }
+            if (JOptionPane.showConfirmDialog(this, "Approve " + pending.size() + " pending withdrawals?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                int[] ids = new int[pending.size()];
+                for (int i = 0; i < ids.length; i++) ids[i] = pending.get(i).id;
+                ValidationResult result = adminController.approveWithdrawals(ids);
+                if (result.isValid()) { showSuccess("Approved " + ids.length + " withdrawals!"); refresh(); }
+                else showError(result.getErrorMessage());
+            }
+        });
+        
         JButton rejectBtn = createActionButton("Reject", ORANGE);
         rejectBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Withdrawal ID to reject:"));
                 String reason = JOptionPane.showInputDialog(this, "Reason:");
                 adminController.rejectWithdrawal(id, reason);
-                showSuccess("Rejected!"); mainFrame.showAdminDashboard();
+                showSuccess("Rejected!"); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
@@ -610,28 +716,31 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Withdrawal ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteWithdrawal(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Withdrawals", new String[]{"ID", "User", "Amount", "Bank", "Status", "Date"}, data, new JButton[]{approveBtn, rejectBtn, deleteBtn});
+        return createManagementPanel("Withdrawals", new String[]{"ID", "User", "Amount", "Bank", "Status", "Date"}, this::withdrawalRows, new JButton[]{approveBtn, approveAllBtn, rejectBtn, deleteBtn});
     }
     
-    private JPanel createCommentsPanel() {
+    private Object[][] commentRows() {
         List<AdminController.CommentData> comms = adminController.getAllComments();
         Object[][] data = new Object[comms.size()][5];
         for (int i = 0; i < comms.size(); i++) {
             AdminController.CommentData c = comms.get(i);
             data[i] = new Object[]{c.id, c.username, c.stockSymbol, c.content, c.status};
         }
-        
+        return data;
+    }
+    
+    private JPanel createCommentsPanel() {
         JButton approveBtn = createActionButton("Approve", GREEN);
         approveBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Comment ID to approve:"));
                 adminController.approveComment(id);
-                showSuccess("Approved!"); mainFrame.showAdminDashboard();
+                showSuccess("Approved!"); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
@@ -640,7 +749,7 @@ public class AdminDashboard extends JPanel {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Comment ID to reject:"));
                 adminController.rejectComment(id);
-                showSuccess("Rejected!"); mainFrame.showAdminDashboard();
+                showSuccess("Rejected!"); refresh();
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
@@ -650,29 +759,32 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Comment ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete comment?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteComment(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Comments", new String[]{"ID", "User", "Stock", "Comment", "Status"}, data, new JButton[]{approveBtn, rejectBtn, deleteBtn});
+        return createManagementPanel("Comments", new String[]{"ID", "User", "Stock", "Comment", "Status"}, this::commentRows, new JButton[]{approveBtn, rejectBtn, deleteBtn});
     }
     
-    private JPanel createTicketsPanel() {
+    private Object[][] ticketRows() {
         List<AdminController.SupportTicket> ticks = adminController.getAllTickets();
         Object[][] data = new Object[ticks.size()][5];
         for (int i = 0; i < ticks.size(); i++) {
             AdminController.SupportTicket t = ticks.get(i);
             data[i] = new Object[]{t.id, t.username, t.subject, t.status, t.createdDate.format(DATE_FORMAT)};
         }
-        
+        return data;
+    }
+    
+    private JPanel createTicketsPanel() {
         JButton replyBtn = createActionButton("Reply", BLUE);
         replyBtn.addActionListener(e -> {
             try {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Ticket ID:"));
                 String reply = JOptionPane.showInputDialog(this, "Your Reply:");
                 adminController.replyToTicket(id, reply);
-                showSuccess("Reply sent!"); mainFrame.showAdminDashboard();
+                showSuccess("Reply sent!"); refresh();
             } catch (Exception ex) { showError("Invalid input"); }
         });
         
@@ -682,35 +794,38 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Ticket ID to delete:"));
                 if (JOptionPane.showConfirmDialog(this, "Delete ticket?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.deleteTicket(id);
-                    showSuccess("Deleted!"); mainFrame.showAdminDashboard();
+                    showSuccess("Deleted!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Support Tickets", new String[]{"ID", "User", "Subject", "Status", "Date"}, data, new JButton[]{replyBtn, deleteBtn});
+        return createManagementPanel("Support Tickets", new String[]{"ID", "User", "Subject", "Status", "Date"}, this::ticketRows, new JButton[]{replyBtn, deleteBtn});
     }
     
     private JPanel createReportsPanel() {
         Object[][] data = {{"1", "Daily Summary", "System", "2025-12-24", "Complete"}, {"2", "Weekly Report", "Admin", "2025-12-20", "Complete"}};
         JButton genBtn = createActionButton("Generate", GREEN);
         genBtn.addActionListener(e -> showSuccess("Report generation started!"));
-        return createManagementPanel("Reports", new String[]{"ID", "Type", "By", "Date", "Status"}, data, new JButton[]{genBtn});
+        return createManagementPanel("Reports", new String[]{"ID", "Type", "By", "Date", "Status"}, () -> data, new JButton[]{genBtn});
     }
     
-    private JPanel createSubscribersPanel() {
+    private Object[][] subscriberRows() {
         List<AdminController.Subscriber> subs = adminController.getAllSubscribers();
         Object[][] data = new Object[subs.size()][4];
         for (int i = 0; i < subs.size(); i++) {
             AdminController.Subscriber s = subs.get(i);
             data[i] = new Object[]{s.id, s.email, s.active ? "Active" : "Inactive", s.subscribedDate.format(DATE_FORMAT)};
         }
-        
+        return data;
+    }
+    
+    private JPanel createSubscribersPanel() {
         JButton addBtn = createActionButton("+ Add", GREEN);
         addBtn.addActionListener(e -> {
             String email = JOptionPane.showInputDialog(this, "Email:");
             if (email != null) {
                 adminController.addSubscriber(email);
-                showSuccess("Added!"); mainFrame.showAdminDashboard();
+                showSuccess("Added!"); refresh();
             }
         });
         
@@ -720,12 +835,62 @@ public class AdminDashboard extends JPanel {
                 int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Subscriber ID to remove:"));
                 if (JOptionPane.showConfirmDialog(this, "Remove subscriber?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     adminController.removeSubscriber(id);
-                    showSuccess("Removed!"); mainFrame.showAdminDashboard();
+                    showSuccess("Removed!"); refresh();
                 }
             } catch (Exception ex) { showError("Invalid ID"); }
         });
         
-        return createManagementPanel("Subscribers", new String[]{"ID", "Email", "Status", "Date"}, data, new JButton[]{addBtn, deleteBtn});
+        return createManagementPanel("Subscribers", new String[]{"ID", "Email", "Status", "Date"}, this::subscriberRows, new JButton[]{addBtn, deleteBtn});
+    }
+    
+    // ==================== Refresh ====================
+    
+    /**
+     * Re-read every table and stat in place, keeping the open page and selections
+     * (after an admin action, or when the dashboard is shown again)
+     */
+    public void refresh() {
+        refreshStats();
+        for (TableBinding binding : tables) {
+            binding.reload();
+        }
+    }
+    
+    // Stock ticks: only stock rows move (admin data changes through refresh()), and
+    // only while their page is on screen
+    @Override
+    public void refreshData() {
+        for (TableBinding binding : tables) {
+            if (binding.query != null && binding.panel.isShowing()) {
+                binding.reload();
+            }
+        }
+    }
+    
+    /**
+     * A management table, where its rows come from, and the query thread that reads
+     * them (null for admin rows, read on the event thread and not following ticks)
+     */
+    private static class TableBinding {
+        final JPanel panel;
+        final DefaultTableModel model;
+        final Supplier<Object[][]> rows;
+        final QueryExecutor.Latest<Object[][]> query;
+        
+        TableBinding(JPanel panel, DefaultTableModel model, Supplier<Object[][]> rows, QueryExecutor.Latest<Object[][]> query) {
+            this.panel = panel;
+            this.model = model;
+            this.rows = rows;
+            this.query = query;
+        }
+        
+        void reload() {
+            if (query != null) {
+                query.run(rows, data -> UIConstants.setRows(model, data));
+            } else {
+                UIConstants.setRows(model, rows.get());
+            }
+        }
     }
     
     private void showSuccess(String msg) { JOptionPane.showMessageDialog(this, msg, "Success", JOptionPane.INFORMATION_MESSAGE); }
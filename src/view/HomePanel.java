@@ -11,13 +11,30 @@ import java.util.List;
 
 /**
  * HomePanel - Landing page with modern design
+ * Built once; refresh() and live stock changes only update the labels in place.
  */
-public class HomePanel extends JPanel {
+public class HomePanel extends JPanel implements RefreshScheduler.Refreshable {
+    
+    private static final int RECENT_CARDS = 5;
+    private static final int MOVER_ROWS = 5;
     
     private MainFrame mainFrame;
     private StockController stockController;
     private AdminController adminController;
     
+    private NavigationBar navigationBar;
+    private JPanel nepseItem;
+    private JLabel nepseValue;
+    private JLabel nepseChange;
+    private JLabel totalStocksValue;
+    private JLabel marketCapValue;
+    private JLabel gainersValue;
+    private JLabel sectorsValue;
+    private final StockLabels[] recentCards = new StockLabels[RECENT_CARDS];
+    private final StockLabels[] gainerRows = new StockLabels[MOVER_ROWS];
+    private final StockLabels[] loserRows = new StockLabels[MOVER_ROWS];
+    private final QueryExecutor.Latest<Stats> statsQuery = QueryExecutor.getInstance().latest();
+    
     public HomePanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         this.stockController = StockController.getInstance();
@@ -27,11 +44,15 @@ public class HomePanel extends JPanel {
         setLayout(new BorderLayout());
         
         initComponents();
+        showPrimaryMarket();
+        showStats(loadStats());   // First paint complete; later refreshes load in the background
+        RefreshScheduler.getInstance().follow(this);
     }
     
     private void initComponents() {
         // Navigation bar
-        add(new NavigationBar(mainFrame, MainFrame.HOME), BorderLayout.NORTH);
+        navigationBar = new NavigationBar(mainFrame, MainFrame.HOME);
+        add(navigationBar, BorderLayout.NORTH);
         
         // Main content
         JPanel content = new JPanel();
@@ -102,14 +123,14 @@ public class HomePanel extends JPanel {
         subtitle.setFont(UIConstants.FONT_BODY);
         subtitle.setAlignmentX(Component.CENTER_ALIGNMENT);
         subtitle.setBorder(BorderFactory.createEmptyBorder(20, 0, 30, 0));
-
+        
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 0));
         buttonPanel.setOpaque(false);
-
+        
         JButton exploreBtn = UIConstants.createPrimaryButton("Explore Markets");
         exploreBtn.setPreferredSize(new Dimension(160, 45));
         exploreBtn.addActionListener(e -> mainFrame.showMarkets());
-
+        
         // Login button with white background and black text
         JButton loginBtn = new JButton("Login");
         loginBtn.setBackground(Color.WHITE);
@@ -122,7 +143,7 @@ public class HomePanel extends JPanel {
         loginBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
         loginBtn.setPreferredSize(new Dimension(120, 45));
         loginBtn.addActionListener(e -> mainFrame.showLogin());
-
+        
         // Hover effect
         loginBtn.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent e) {
@@ -132,7 +153,7 @@ public class HomePanel extends JPanel {
                 loginBtn.setBackground(Color.WHITE);
             }
         });
-
+        
         buttonPanel.add(exploreBtn);
         buttonPanel.add(loginBtn);
         
@@ -151,10 +172,10 @@ public class HomePanel extends JPanel {
         ticker.setBackground(UIConstants.BACKGROUND_SECONDARY);
         ticker.setPreferredSize(new Dimension(0, 50));
         
-        AdminController.MarketData market = adminController.getPrimaryMarket();
-        if (market != null) {
-            ticker.add(createTickerItem("NEPSE", market.indexValue, market.changePercent));
-        }
+        nepseValue = new JLabel();
+        nepseChange = new JLabel();
+        nepseItem = createTickerItem("NEPSE", nepseValue, nepseChange);
+        ticker.add(nepseItem);
         ticker.add(createTickerItem("Sensitive", 458.32, 1.20));
         ticker.add(createTickerItem("Float", 142.56, -0.50));
         ticker.add(createTickerItem("Banking", 1245.80, 0.80));
@@ -164,6 +185,13 @@ public class HomePanel extends JPanel {
     }
     
     private JPanel createTickerItem(String name, double value, double change) {
+        JLabel valueLabel = new JLabel();
+        JLabel changeLabel = new JLabel();
+        setTicker(valueLabel, changeLabel, value, change);
+        return createTickerItem(name, valueLabel, changeLabel);
+    }
+    
+    private JPanel createTickerItem(String name, JLabel valueLabel, JLabel changeLabel) {
         JPanel item = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
         item.setOpaque(false);
         
@@ -171,12 +199,9 @@ public class HomePanel extends JPanel {
         nameLabel.setForeground(UIConstants.TEXT_MUTED);
         nameLabel.setFont(UIConstants.FONT_SMALL);
         
-        JLabel valueLabel = new JLabel(String.format("%.2f", value));
         valueLabel.setForeground(UIConstants.TEXT_PRIMARY);
         valueLabel.setFont(UIConstants.FONT_BODY_BOLD);
         
-        JLabel changeLabel = new JLabel(String.format("%+.2f%%", change));
-        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
         changeLabel.setFont(UIConstants.FONT_SMALL);
         
         item.add(nameLabel);
@@ -186,20 +211,30 @@ public class HomePanel extends JPanel {
         return item;
     }
     
+    private static void setTicker(JLabel valueLabel, JLabel changeLabel, double value, double change) {
+        valueLabel.setText(String.format("%.2f", value));
+        changeLabel.setText(String.format("%+.2f%%", change));
+        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+    }
+    
     private JPanel createStatsSection() {
         JPanel section = new JPanel(new GridLayout(1, 4, 20, 0));
         section.setBackground(UIConstants.BACKGROUND_DARK);
         section.setBorder(BorderFactory.createEmptyBorder(40, 80, 40, 80));
         
-        section.add(createStatCard("Total Stocks", String.valueOf(stockController.getTotalStocks()), UIConstants.ACCENT_CYAN));
-        section.add(createStatCard("Market Cap", UIConstants.formatLargeNumber(stockController.getTotalMarketCap()), UIConstants.PRIMARY_GREEN));
-        section.add(createStatCard("Top Gainers", String.valueOf(stockController.getTopGainers(10).size()), UIConstants.SUCCESS));
-        section.add(createStatCard("Active Sectors", String.valueOf(stockController.getAllSectors().size()), UIConstants.GOLD));
+        totalStocksValue = new JLabel();
+        marketCapValue = new JLabel();
+        gainersValue = new JLabel();
+        sectorsValue = new JLabel();
+        section.add(createStatCard("Total Stocks", totalStocksValue, UIConstants.ACCENT_CYAN));
+        section.add(createStatCard("Market Cap", marketCapValue, UIConstants.PRIMARY_GREEN));
+        section.add(createStatCard("Top Gainers", gainersValue, UIConstants.SUCCESS));
+        section.add(createStatCard("Active Sectors", sectorsValue, UIConstants.GOLD));
         
         return section;
     }
     
-    private JPanel createStatCard(String title, String value, Color accent) {
+    private JPanel createStatCard(String title, JLabel valueLabel, Color accent) {
         JPanel card = new JPanel(new BorderLayout()) {
             @Override
             protected void paintComponent(Graphics g) {
@@ -215,7 +250,6 @@ public class HomePanel extends JPanel {
         card.setOpaque(false);
         card.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         
-        JLabel valueLabel = new JLabel(value);
         valueLabel.setForeground(UIConstants.TEXT_PRIMARY);
         valueLabel.setFont(UIConstants.FONT_STAT_VALUE);
         
@@ -239,12 +273,12 @@ public class HomePanel extends JPanel {
         title.setFont(UIConstants.FONT_SUBHEADING);
         title.setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0));
         
-        JPanel cardsPanel = new JPanel(new GridLayout(1, 5, 15, 0));
+        JPanel cardsPanel = new JPanel(new GridLayout(1, RECENT_CARDS, 15, 0));
         cardsPanel.setOpaque(false);
         
-        List<Stock> stocks = stockController.getAllStocks();
-        for (int i = 0; i < Math.min(5, stocks.size()); i++) {
-            cardsPanel.add(createStockCard(stocks.get(i)));
+        for (int i = 0; i < RECENT_CARDS; i++) {
+            recentCards[i] = createStockCard();
+            cardsPanel.add(recentCards[i].panel);
         }
         
         section.add(title, BorderLayout.NORTH);
@@ -253,7 +287,7 @@ public class HomePanel extends JPanel {
         return section;
     }
     
-    private JPanel createStockCard(Stock stock) {
+    private StockLabels createStockCard() {
         JPanel card = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
@@ -268,30 +302,25 @@ public class HomePanel extends JPanel {
         card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
         card.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
         
-        JLabel symbol = new JLabel(stock.getSymbol());
-        symbol.setForeground(UIConstants.PRIMARY_GREEN);
-        symbol.setFont(UIConstants.FONT_BODY_BOLD);
+        StockLabels labels = new StockLabels(card);
+        labels.symbol.setForeground(UIConstants.PRIMARY_GREEN);
+        labels.symbol.setFont(UIConstants.FONT_BODY_BOLD);
         
-        JLabel name = new JLabel(stock.getCompanyName());
-        name.setForeground(UIConstants.TEXT_MUTED);
-        name.setFont(UIConstants.FONT_SMALL);
+        labels.name.setForeground(UIConstants.TEXT_MUTED);
+        labels.name.setFont(UIConstants.FONT_SMALL);
         
-        JLabel price = new JLabel(UIConstants.formatCurrency(stock.getCurrentPrice()));
-        price.setForeground(UIConstants.TEXT_PRIMARY);
-        price.setFont(UIConstants.FONT_BODY_BOLD);
-        price.setBorder(BorderFactory.createEmptyBorder(10, 0, 5, 0));
+        labels.price.setForeground(UIConstants.TEXT_PRIMARY);
+        labels.price.setFont(UIConstants.FONT_BODY_BOLD);
+        labels.price.setBorder(BorderFactory.createEmptyBorder(10, 0, 5, 0));
         
-        double change = stock.getChangePercent();
-        JLabel changeLabel = new JLabel((change >= 0 ? "▲ " : "▼ ") + String.format("%.2f%%", Math.abs(change)));
-        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
-        changeLabel.setFont(UIConstants.FONT_SMALL);
+        labels.change.setFont(UIConstants.FONT_SMALL);
         
-        card.add(symbol);
-        card.add(name);
-        card.add(price);
-        card.add(changeLabel);
+        card.add(labels.symbol);
+        card.add(labels.name);
+        card.add(labels.price);
+        card.add(labels.change);
         
-        return card;
+        return labels;
     }
     
     private JPanel createGainersLosersSection() {
@@ -299,13 +328,13 @@ public class HomePanel extends JPanel {
         section.setBackground(UIConstants.BACKGROUND_DARK);
         section.setBorder(BorderFactory.createEmptyBorder(30, 80, 50, 80));
         
-        section.add(createGLPanel("Top Gainers", stockController.getTopGainers(5), true));
-        section.add(createGLPanel("Top Losers", stockController.getTopLosers(5), false));
+        section.add(createGLPanel("Top Gainers", gainerRows, true));
+        section.add(createGLPanel("Top Losers", loserRows, false));
         
         return section;
     }
     
-    private JPanel createGLPanel(String title, List<Stock> stocks, boolean isGainers) {
+    private JPanel createGLPanel(String title, StockLabels[] rows, boolean isGainers) {
         JPanel panel = new JPanel(new BorderLayout()) {
             @Override
             protected void paintComponent(Graphics g) {
@@ -328,22 +357,22 @@ public class HomePanel extends JPanel {
         listPanel.setLayout(new BoxLayout(listPanel, BoxLayout.Y_AXIS));
         listPanel.setOpaque(false);
         
-        for (Stock stock : stocks) {
+        for (int i = 0; i < rows.length; i++) {
             JPanel row = new JPanel(new BorderLayout());
             row.setOpaque(false);
             row.setBorder(BorderFactory.createEmptyBorder(8, 0, 8, 0));
             
-            JLabel symbolLabel = new JLabel(stock.getSymbol() + " - " + stock.getCompanyName());
-            symbolLabel.setForeground(UIConstants.TEXT_PRIMARY);
-            symbolLabel.setFont(UIConstants.FONT_BODY);
+            StockLabels labels = new StockLabels(row);
+            labels.symbol.setForeground(UIConstants.TEXT_PRIMARY);
+            labels.symbol.setFont(UIConstants.FONT_BODY);
             
-            JLabel changeLabel = new JLabel(String.format("%+.2f%%", stock.getChangePercent()));
-            changeLabel.setForeground(isGainers ? UIConstants.SUCCESS : UIConstants.DANGER);
-            changeLabel.setFont(UIConstants.FONT_BODY_BOLD);
+            labels.change.setForeground(isGainers ? UIConstants.SUCCESS : UIConstants.DANGER);
+            labels.change.setFont(UIConstants.FONT_BODY_BOLD);
             
-            row.add(symbolLabel, BorderLayout.WEST);
-            row.add(changeLabel, BorderLayout.EAST);
+            row.add(labels.symbol, BorderLayout.WEST);
+            row.add(labels.change, BorderLayout.EAST);
             
+            rows[i] = labels;
             listPanel.add(row);
         }
         
@@ -353,10 +382,106 @@ public class HomePanel extends JPanel {
         return panel;
     }
     
+    // ==================== Refresh ====================
+    
     public void refresh() {
-        removeAll();
-        initComponents();
-        revalidate();
-        repaint();
+        navigationBar.refresh();
+        refreshData();
+    }
+    
+    /**
+     * Market data from the admin side is read here; the stock scans (totals, movers)
+     * run on a query thread and are applied when they come back
+     */
+    @Override
+    public void refreshData() {
+        showPrimaryMarket();
+        statsQuery.run(this::loadStats, this::showStats);
+    }
+    
+    private void showPrimaryMarket() {
+        AdminController.MarketData market = adminController.getPrimaryMarket();
+        nepseItem.setVisible(market != null);
+        if (market != null) {
+            setTicker(nepseValue, nepseChange, market.indexValue, market.changePercent);
+        }
+    }
+    
+    // Query thread
+    private Stats loadStats() {
+        Stats stats = new Stats();
+        stats.totalStocks = stockController.getTotalStocks();
+        stats.marketCap = stockController.getTotalMarketCap();
+        stats.gainers = stockController.getTopGainers(10).size();
+        stats.sectors = stockController.getAllSectors().size();
+        List<Stock> stocks = stockController.getAllStocks();
+        stats.recent = new java.util.ArrayList<>(stocks.subList(0, Math.min(RECENT_CARDS, stocks.size())));
+        stats.topGainers = stockController.getTopGainers(MOVER_ROWS);
+        stats.topLosers = stockController.getTopLosers(MOVER_ROWS);
+        return stats;
+    }
+    
+    private void showStats(Stats stats) {
+        totalStocksValue.setText(String.valueOf(stats.totalStocks));
+        marketCapValue.setText(UIConstants.formatLargeNumber(stats.marketCap));
+        gainersValue.setText(String.valueOf(stats.gainers));
+        sectorsValue.setText(String.valueOf(stats.sectors));
+        
+        List<Stock> stocks = stats.recent;
+        for (int i = 0; i < RECENT_CARDS; i++) {
+            StockLabels card = recentCards[i];
+            card.panel.setVisible(i < stocks.size());
+            if (i < stocks.size()) {
+                Stock stock = stocks.get(i);
+                double change = stock.getChangePercent();
+                card.symbol.setText(stock.getSymbol());
+                card.name.setText(stock.getCompanyName());
+                card.price.setText(UIConstants.formatCurrency(stock.getCurrentPrice()));
+                card.change.setText((change >= 0 ? "▲ " : "▼ ") + String.format("%.2f%%", Math.abs(change)));
+                card.change.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+            }
+        }
+        
+        fillMovers(gainerRows, stats.topGainers);
+        fillMovers(loserRows, stats.topLosers);
+    }
+    
+    private static void fillMovers(StockLabels[] rows, List<Stock> stocks) {
+        for (int i = 0; i < rows.length; i++) {
+            rows[i].panel.setVisible(i < stocks.size());
+            if (i < stocks.size()) {
+                Stock stock = stocks.get(i);
+                rows[i].symbol.setText(stock.getSymbol() + " - " + stock.getCompanyName());
+                rows[i].change.setText(String.format("%+.2f%%", stock.getChangePercent()));
+            }
+        }
+    }
+    
+    /**
+     * Everything the page shows about stocks, gathered off the event thread
+     */
+    private static class Stats {
+        int totalStocks;
+        double marketCap;
+        int gainers;
+        int sectors;
+        List<Stock> recent;
+        List<Stock> topGainers;
+        List<Stock> topLosers;
+    }
+    
+    /**
+     * The labels of one stock card or row, kept so refreshes can update them
+     */
+    private static class StockLabels {
+        final JPanel panel;
+        final JLabel symbol = new JLabel();
+        final JLabel name = new JLabel();
+        final JLabel price = new JLabel();
+        final JLabel change = new JLabel();
+        
+        StockLabels(JPanel panel) {
+            this.panel = panel;
+        }
     }
 }
@@ -1,12 +1,17 @@
 package view;
 
 import controller.UserController;
+import util.StartupTimeline;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.function.Supplier;
 
 /**
  * MainFrame - Main application window with navigation
+ * Every page is built once, the first time it is shown, so startup only pays for the
+ * home page. Navigating refreshes the page's data in place; the dashboards are only
+ * rebuilt when a different user logs in.
  */
 public class MainFrame extends JFrame {
     
@@ -45,6 +50,7 @@ public class MainFrame extends JFrame {
         }
         
         initComponents();
+        StartupTimeline.mark("main frame built");
         
         setExtendedState(JFrame.MAXIMIZED_BOTH);
         setVisible(true);
@@ -52,48 +58,52 @@ public class MainFrame extends JFrame {
     
     private void initComponents() {
         cardLayout = new CardLayout();
-        mainPanel = new JPanel(cardLayout);
+        mainPanel = new JPanel(cardLayout) {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                StartupTimeline.firstPaint();
+            }
+        };
         mainPanel.setBackground(UIConstants.BACKGROUND_DARK);
         
-        // Initialize all panels
-        homePanel = new HomePanel(this);
-        loginPanel = new LoginPanel(this);
-        marketsPanel = new MarketsPanel(this);
-        stocksPanel = new StocksPanel(this);
-        portfolioPanel = new PortfolioPanel(this);
-        adminDashboard = new AdminDashboard(this);
-        userDashboard = new UserDashboard(this);
-        
-        // Add panels
-        mainPanel.add(homePanel, HOME);
-        mainPanel.add(loginPanel, LOGIN);
-        mainPanel.add(marketsPanel, MARKETS);
-        mainPanel.add(stocksPanel, STOCKS);
-        mainPanel.add(portfolioPanel, PORTFOLIO);
-        mainPanel.add(adminDashboard, ADMIN);
-        mainPanel.add(userDashboard, USER_DASHBOARD);
-        
         add(mainPanel);
         
+        // Pages are built the first time they are shown; only Home is needed to start
         showHome();
     }
     
+    // Build a page and add it to the card layout, unless it already exists
+    private <T extends JPanel> T page(T existing, String name, Supplier<T> factory) {
+        if (existing != null) {
+            return existing;
+        }
+        T panel = factory.get();
+        mainPanel.add(panel, name);
+        StartupTimeline.mark("built page " + name);
+        return panel;
+    }
+    
     public void showHome() {
+        homePanel = page(homePanel, HOME, () -> new HomePanel(this));
         homePanel.refresh();
         cardLayout.show(mainPanel, HOME);
     }
     
     public void showLogin() {
+        loginPanel = page(loginPanel, LOGIN, () -> new LoginPanel(this));
         loginPanel.reset();
         cardLayout.show(mainPanel, LOGIN);
     }
     
     public void showMarkets() {
+        marketsPanel = page(marketsPanel, MARKETS, () -> new MarketsPanel(this));
         marketsPanel.refresh();
         cardLayout.show(mainPanel, MARKETS);
     }
     
     public void showStocks() {
+        stocksPanel = page(stocksPanel, STOCKS, () -> new StocksPanel(this));
         stocksPanel.refresh();
         cardLayout.show(mainPanel, STOCKS);
     }
@@ -103,22 +113,34 @@ public class MainFrame extends JFrame {
             showLogin();
             return;
         }
+        portfolioPanel = page(portfolioPanel, PORTFOLIO, () -> new PortfolioPanel(this));
         portfolioPanel.refresh();
         cardLayout.show(mainPanel, PORTFOLIO);
     }
     
     public void showAdminDashboard() {
-        // Refresh admin dashboard
-        mainPanel.remove(adminDashboard);
-        adminDashboard = new AdminDashboard(this);
-        mainPanel.add(adminDashboard, ADMIN);
+        if (adminDashboard != null && adminDashboard.isBuiltFor(userController.getCurrentUser())) {
+            adminDashboard.refresh();
+        } else {
+            if (adminDashboard != null) {
+                RefreshScheduler.getInstance().unfollow(adminDashboard);
+                mainPanel.remove(adminDashboard);
+            }
+            adminDashboard = page(null, ADMIN, () -> new AdminDashboard(this));
+        }
         cardLayout.show(mainPanel, ADMIN);
     }
     
     public void showUserDashboard() {
-        mainPanel.remove(userDashboard);
-        userDashboard = new UserDashboard(this);
-        mainPanel.add(userDashboard, USER_DASHBOARD);
+        if (userDashboard != null && userDashboard.isBuiltFor(userController.getCurrentUser())) {
+            userDashboard.refresh();
+        } else {
+            if (userDashboard != null) {
+                RefreshScheduler.getInstance().unfollow(userDashboard);
+                mainPanel.remove(userDashboard);
+            }
+            userDashboard = page(null, USER_DASHBOARD, () -> new UserDashboard(this));
+        }
         cardLayout.show(mainPanel, USER_DASHBOARD);
     }
     
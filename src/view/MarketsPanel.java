@@ -7,18 +7,30 @@ import model.Stock;
 import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MarketsPanel - Shows market overview and indices
+ * Built once; refresh() updates the index card and sector table in place.
  */
 public class MarketsPanel extends JPanel {
     
+    private static final String[] SECTOR_COLUMNS = {"Sector", "Companies", "Turnover", "Change %"};
+    private static final double[] SECTOR_CHANGES = {1.25, -0.85, 2.10, 0.55, -1.20, 1.80};
+    
     private MainFrame mainFrame;
     private AdminController adminController;
     private StockController stockController;
     
+    private NavigationBar navigationBar;
+    private JPanel nepseCard;
+    private JLabel nepseValue;
+    private JLabel nepseChange;
+    private DefaultTableModel sectorModel;
+    private final Map<String, String> sectorTurnover = new ConcurrentHashMap<>();   // Stays put across refreshes
+    private final QueryExecutor.Latest<Object[][]> sectorQuery = QueryExecutor.getInstance().latest();
+    
     public MarketsPanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         this.adminController = AdminController.getInstance();
@@ -28,10 +40,12 @@ public class MarketsPanel extends JPanel {
         setLayout(new BorderLayout());
         
         initComponents();
+        refreshData();
     }
     
     private void initComponents() {
-        add(new NavigationBar(mainFrame, MainFrame.MARKETS), BorderLayout.NORTH);
+        navigationBar = new NavigationBar(mainFrame, MainFrame.MARKETS);
+        add(navigationBar, BorderLayout.NORTH);
         
         JPanel content = new JPanel();
         content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
@@ -52,10 +66,10 @@ public class MarketsPanel extends JPanel {
         indicesPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
         indicesPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        AdminController.MarketData nepse = adminController.getPrimaryMarket();
-        if (nepse != null) {
-            indicesPanel.add(createIndexCard("NEPSE Index", nepse.indexValue, nepse.change, nepse.changePercent));
-        }
+        nepseValue = new JLabel();
+        nepseChange = new JLabel();
+        nepseCard = createIndexCard("NEPSE Index", nepseValue, nepseChange);
+        indicesPanel.add(nepseCard);
         indicesPanel.add(createIndexCard("Sensitive Index", 458.32, 6.22, 1.38));
         indicesPanel.add(createIndexCard("Float Index", 142.56, -0.72, -0.50));
         
@@ -105,6 +119,13 @@ public class MarketsPanel extends JPanel {
     }
     
     private JPanel createIndexCard(String name, double value, double change, double changePercent) {
+        JLabel valueLabel = new JLabel();
+        JLabel changeLabel = new JLabel();
+        setIndex(valueLabel, changeLabel, value, change, changePercent);
+        return createIndexCard(name, valueLabel, changeLabel);
+    }
+    
+    private JPanel createIndexCard(String name, JLabel valueLabel, JLabel changeLabel) {
         JPanel card = new JPanel();
         card.setBackground(UIConstants.BACKGROUND_CARD);
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -117,12 +138,9 @@ public class MarketsPanel extends JPanel {
         nameLabel.setForeground(UIConstants.TEXT_SECONDARY);
         nameLabel.setFont(UIConstants.FONT_BODY);
         
-        JLabel valueLabel = new JLabel(String.format("%.2f", value));
         valueLabel.setForeground(UIConstants.TEXT_PRIMARY);
         valueLabel.setFont(new Font("Segoe UI", Font.BOLD, 28));
         
-        JLabel changeLabel = new JLabel(String.format("%+.2f (%+.2f%%)", change, changePercent));
-        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
         changeLabel.setFont(UIConstants.FONT_BODY_BOLD);
         
         card.add(nameLabel);
@@ -134,6 +152,12 @@ public class MarketsPanel extends JPanel {
         return card;
     }
     
+    private static void setIndex(JLabel valueLabel, JLabel changeLabel, double value, double change, double changePercent) {
+        valueLabel.setText(String.format("%.2f", value));
+        changeLabel.setText(String.format("%+.2f (%+.2f%%)", change, changePercent));
+        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+    }
+    
     private JPanel createSummaryCard(String label, String value) {
         JPanel card = new JPanel(new BorderLayout());
         card.setBackground(UIConstants.BACKGROUND_CARD);
@@ -161,29 +185,14 @@ public class MarketsPanel extends JPanel {
         panel.setOpaque(false);
         panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 350));
         
-        String[] columns = {"Sector", "Companies", "Turnover", "Change %"};
-        
-        Map<String, Integer> sectorMap = stockController.getStocksBySector();
-        Object[][] data = new Object[sectorMap.size()][4];
-        
-        int i = 0;
-        double[] changes = {1.25, -0.85, 2.10, 0.55, -1.20, 1.80};
-        for (Map.Entry<String, Integer> entry : sectorMap.entrySet()) {
-            data[i][0] = entry.getKey();
-            data[i][1] = entry.getValue();
-            data[i][2] = "Rs. " + (Math.random() * 500 + 100) + " M";
-            data[i][3] = String.format("%+.2f%%", changes[i % changes.length]);
-            i++;
-        }
-        
-        DefaultTableModel model = new DefaultTableModel(data, columns) {
+        sectorModel = new DefaultTableModel(SECTOR_COLUMNS, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return false;
             }
         };
         
-        JTable table = new JTable(model);
+        JTable table = new JTable(sectorModel);
         UIConstants.styleTable(table);
         
         JScrollPane scrollPane = UIConstants.createScrollPane(table);
@@ -194,10 +203,32 @@ public class MarketsPanel extends JPanel {
         return panel;
     }
     
+    // Any thread
+    private Object[][] sectorRows() {
+        Map<String, Integer> sectorMap = stockController.getStocksBySector();
+        Object[][] data = new Object[sectorMap.size()][];
+        
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : sectorMap.entrySet()) {
+            String turnover = sectorTurnover.computeIfAbsent(entry.getKey(), k -> "Rs. " + (Math.random() * 500 + 100) + " M");
+            data[i] = new Object[] {entry.getKey(), entry.getValue(), turnover,
+                String.format("%+.2f%%", SECTOR_CHANGES[i % SECTOR_CHANGES.length])};
+            i++;
+        }
+        return data;
+    }
+    
     public void refresh() {
-        removeAll();
-        initComponents();
-        revalidate();
-        repaint();
+        navigationBar.refresh();
+        refreshData();
+    }
+    
+    private void refreshData() {
+        AdminController.MarketData nepse = adminController.getPrimaryMarket();
+        nepseCard.setVisible(nepse != null);
+        if (nepse != null) {
+            setIndex(nepseValue, nepseChange, nepse.indexValue, nepse.change, nepse.changePercent);
+        }
+        sectorQuery.run(this::sectorRows, rows -> UIConstants.setRows(sectorModel, rows));
     }
 }
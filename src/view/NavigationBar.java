@@ -1,6 +1,7 @@
 package view;
 
 import controller.UserController;
+import model.User;
 
 import javax.swing.*;
 import java.awt.*;
@@ -14,6 +15,8 @@ public class NavigationBar extends JPanel {
     private MainFrame mainFrame;
     private UserController userController;
     private String currentPage;
+    private JPanel rightPanel;
+    private User shownUser;   // Whose login state the right side shows
     
     public NavigationBar(MainFrame mainFrame, String currentPage) {
         this.mainFrame = mainFrame;
@@ -61,9 +64,29 @@ public class NavigationBar extends JPanel {
         centerPanel.add(createNavLink("About", "ABOUT"));
         
         // Right - Login/User info
-        JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+        rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
         rightPanel.setOpaque(false);
+        fillUserPanel();
         
+        add(leftPanel, BorderLayout.WEST);
+        add(centerPanel, BorderLayout.CENTER);
+        add(rightPanel, BorderLayout.EAST);
+    }
+    
+    /**
+     * Bring the login area up to date (rebuilt only if the user changed)
+     */
+    public void refresh() {
+        if (shownUser != userController.getCurrentUser()) {
+            rightPanel.removeAll();
+            fillUserPanel();
+            rightPanel.revalidate();
+            rightPanel.repaint();
+        }
+    }
+    
+    private void fillUserPanel() {
+        shownUser = userController.getCurrentUser();
         if (userController.isLoggedIn()) {
             JLabel userLabel = new JLabel("Hello, " + userController.getCurrentUser().getUsername());
             userLabel.setForeground(UIConstants.TEXT_PRIMARY);
@@ -90,10 +113,6 @@ public class NavigationBar extends JPanel {
             loginBtn.addActionListener(e -> mainFrame.showLogin());
             rightPanel.add(loginBtn);
         }
-        
-        add(leftPanel, BorderLayout.WEST);
-        add(centerPanel, BorderLayout.CENTER);
-        add(rightPanel, BorderLayout.EAST);
     }
     
     private JLabel createNavLink(String text, String page) {
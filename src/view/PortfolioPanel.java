@@ -1,9 +1,11 @@
 package view;
 
+import controller.PortfolioController;
 import controller.UserController;
 import controller.StockController;
 import model.User;
 import model.Stock;
+import model.Portfolio.Valuation;
 
 import javax.swing.*;
 import javax.swing.table.*;
@@ -12,34 +14,54 @@ import java.util.List;
 
 /**
  * PortfolioPanel - User portfolio view
+ * Built once; refreshes update the cards and holdings table in place, and follow
+ * price changes so the valuation stays live while the panel is showing.
  */
-public class PortfolioPanel extends JPanel {
+public class PortfolioPanel extends JPanel implements RefreshScheduler.Refreshable {
+    
+    private static final int WATCHLIST_CARDS = 4;
     
     private MainFrame mainFrame;
     private UserController userController;
     private StockController stockController;
+    private PortfolioController portfolioController;
+    
+    private NavigationBar navigationBar;
+    private JLabel balanceValue;
+    private JLabel investedValue;
+    private JLabel currentValue;
+    private JLabel profitLossValue;
+    private DefaultTableModel holdingsModel;
+    private Valuation shownValuation;   // Valuations are reused until something changes
+    private final JLabel[][] watchlistLabels = new JLabel[WATCHLIST_CARDS][];
+    private final JPanel[] watchlistCards = new JPanel[WATCHLIST_CARDS];
+    private final QueryExecutor.Latest<Holdings> holdingsQuery = QueryExecutor.getInstance().latest();
     
     public PortfolioPanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
         this.userController = UserController.getInstance();
         this.stockController = StockController.getInstance();
+        this.portfolioController = PortfolioController.getInstance();
         
         setBackground(UIConstants.BACKGROUND_DARK);
         setLayout(new BorderLayout());
         
         initComponents();
+        User user = userController.getCurrentUser();
+        balanceValue.setText(UIConstants.formatCurrency(user != null ? user.getBalance() : 0));
+        showHoldings(loadHoldings(user, null));   // First paint complete
+        RefreshScheduler.getInstance().follow(this);
     }
     
     private void initComponents() {
-        add(new NavigationBar(mainFrame, MainFrame.PORTFOLIO), BorderLayout.NORTH);
+        navigationBar = new NavigationBar(mainFrame, MainFrame.PORTFOLIO);
+        add(navigationBar, BorderLayout.NORTH);
         
         JPanel content = new JPanel();
         content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
         content.setBackground(UIConstants.BACKGROUND_DARK);
         content.setBorder(BorderFactory.createEmptyBorder(30, 50, 30, 50));
         
-        User user = userController.getCurrentUser();
-        
         // Title
         JLabel title = new JLabel("My Portfolio");
         title.setForeground(UIConstants.GOLD);
@@ -54,11 +76,14 @@ public class PortfolioPanel extends JPanel {
         summaryPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
         summaryPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        double balance = user != null ? user.getBalance() : 0;
-        summaryPanel.add(createSummaryCard("Available Balance", UIConstants.formatCurrency(balance), UIConstants.PRIMARY_GREEN));
-        summaryPanel.add(createSummaryCard("Invested Amount", UIConstants.formatCurrency(75000), UIConstants.INFO));
-        summaryPanel.add(createSummaryCard("Current Value", UIConstants.formatCurrency(82500), UIConstants.SUCCESS));
-        summaryPanel.add(createSummaryCard("Total Profit/Loss", "+Rs. 7,500 (10%)", UIConstants.SUCCESS));
+        balanceValue = new JLabel();
+        investedValue = new JLabel();
+        currentValue = new JLabel();
+        profitLossValue = new JLabel();
+        summaryPanel.add(createSummaryCard("Available Balance", balanceValue, UIConstants.PRIMARY_GREEN));
+        summaryPanel.add(createSummaryCard("Invested Amount", investedValue, UIConstants.INFO));
+        summaryPanel.add(createSummaryCard("Current Value", currentValue, UIConstants.SUCCESS));
+        summaryPanel.add(createSummaryCard("Total Profit/Loss", profitLossValue, UIConstants.SUCCESS));
         
         content.add(summaryPanel);
         content.add(Box.createVerticalStrut(30));
@@ -73,20 +98,14 @@ public class PortfolioPanel extends JPanel {
         
         // Holdings table
         String[] columns = {"Symbol", "Company", "Quantity", "Avg. Price", "Current Price", "Value", "P/L %"};
-        Object[][] data = {
-            {"NABIL", "Nabil Bank Limited", 50, "Rs. 1,200.00", "Rs. 1,250.00", "Rs. 62,500", "+4.17%"},
-            {"NICA", "NIC Asia Bank", 100, "Rs. 900.00", "Rs. 850.00", "Rs. 85,000", "-5.56%"},
-            {"CHCL", "Chilime Hydropower", 30, "Rs. 680.00", "Rs. 720.00", "Rs. 21,600", "+5.88%"}
-        };
-        
-        DefaultTableModel model = new DefaultTableModel(data, columns) {
+        holdingsModel = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return false;
             }
         };
         
-        JTable table = new JTable(model);
+        JTable table = new JTable(holdingsModel);
         UIConstants.styleTable(table);
         
         // Custom renderer for P/L column
@@ -130,10 +149,10 @@ public class PortfolioPanel extends JPanel {
         watchlistPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
         watchlistPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        List<Stock> stocks = stockController.getAllStocks();
-        for (int i = 0; i < Math.min(4, stocks.size()); i++) {
-            Stock s = stocks.get(i);
-            watchlistPanel.add(createWatchlistCard(s));
+        for (int i = 0; i < WATCHLIST_CARDS; i++) {
+            watchlistLabels[i] = new JLabel[] {new JLabel(), new JLabel(), new JLabel()};
+            watchlistCards[i] = createWatchlistCard(watchlistLabels[i]);
+            watchlistPanel.add(watchlistCards[i]);
         }
         
         content.add(watchlistPanel);
@@ -146,7 +165,7 @@ public class PortfolioPanel extends JPanel {
         add(mainScroll, BorderLayout.CENTER);
     }
     
-    private JPanel createSummaryCard(String label, String value, Color accent) {
+    private JPanel createSummaryCard(String label, JLabel valueComp, Color accent) {
         JPanel card = new JPanel();
         card.setBackground(UIConstants.BACKGROUND_CARD);
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -159,7 +178,6 @@ public class PortfolioPanel extends JPanel {
         labelComp.setForeground(UIConstants.TEXT_SECONDARY);
         labelComp.setFont(UIConstants.FONT_SMALL);
         
-        JLabel valueComp = new JLabel(value);
         valueComp.setForeground(UIConstants.TEXT_PRIMARY);
         valueComp.setFont(UIConstants.FONT_SUBHEADING);
         
@@ -170,7 +188,8 @@ public class PortfolioPanel extends JPanel {
         return card;
     }
     
-    private JPanel createWatchlistCard(Stock stock) {
+    // labels: symbol, price, change
+    private JPanel createWatchlistCard(JLabel[] labels) {
         JPanel card = new JPanel();
         card.setBackground(UIConstants.BACKGROUND_CARD);
         card.setBorder(BorderFactory.createLineBorder(UIConstants.BORDER_COLOR, 1));
@@ -180,17 +199,15 @@ public class PortfolioPanel extends JPanel {
             BorderFactory.createEmptyBorder(15, 15, 15, 15)
         ));
         
-        JLabel symbol = new JLabel(stock.getSymbol());
+        JLabel symbol = labels[0];
         symbol.setForeground(UIConstants.PRIMARY_GREEN);
         symbol.setFont(UIConstants.FONT_BODY_BOLD);
         
-        JLabel price = new JLabel(UIConstants.formatCurrency(stock.getCurrentPrice()));
+        JLabel price = labels[1];
         price.setForeground(UIConstants.TEXT_PRIMARY);
         price.setFont(UIConstants.FONT_BODY);
         
-        double change = stock.getChangePercent();
-        JLabel changeLabel = new JLabel(String.format("%+.2f%%", change));
-        changeLabel.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+        JLabel changeLabel = labels[2];
         changeLabel.setFont(UIConstants.FONT_SMALL);
         
         card.add(symbol);
@@ -202,10 +219,76 @@ public class PortfolioPanel extends JPanel {
         return card;
     }
     
+    // ==================== Refresh ====================
+    
     public void refresh() {
-        removeAll();
-        initComponents();
-        revalidate();
-        repaint();
+        navigationBar.refresh();
+        refreshData();
+    }
+    
+    /**
+     * The user and balance are read here; the valuation and its rows are built on a
+     * query thread and applied when they come back
+     */
+    @Override
+    public void refreshData() {
+        User user = userController.getCurrentUser();
+        balanceValue.setText(UIConstants.formatCurrency(user != null ? user.getBalance() : 0));
+        Valuation shown = shownValuation;
+        holdingsQuery.run(() -> loadHoldings(user, shown), this::showHoldings);
+    }
+    
+    // Query thread: rows are only formatted when the valuation changed
+    private Holdings loadHoldings(User user, Valuation shown) {
+        Holdings holdings = new Holdings();
+        holdings.valuation = portfolioController.getValuation(user);
+        if (holdings.valuation != shown) {
+            List<Valuation.Line> lines = holdings.valuation.getLines();
+            holdings.rows = new Object[lines.size()][];
+            for (int i = 0; i < lines.size(); i++) {
+                Valuation.Line line = lines.get(i);
+                holdings.rows[i] = new Object[] {line.getSymbol(), line.getCompanyName(), line.getQuantity(),
+                    String.format("Rs. %,.2f", line.getBuyPrice()), String.format("Rs. %,.2f", line.getCurrentPrice()),
+                    String.format("Rs. %,.0f", line.getValue()), String.format("%+.2f%%", line.getProfitLossPercent())};
+            }
+        }
+        List<Stock> stocks = stockController.getAllStocks();
+        holdings.watchlist = new java.util.ArrayList<>(stocks.subList(0, Math.min(WATCHLIST_CARDS, stocks.size())));
+        return holdings;
+    }
+    
+    private void showHoldings(Holdings holdings) {
+        Valuation valuation = holdings.valuation;
+        if (holdings.rows != null && valuation != shownValuation) {
+            shownValuation = valuation;
+            double pl = valuation.getProfitLoss();
+            investedValue.setText(UIConstants.formatCurrency(valuation.getInvested()));
+            currentValue.setText(UIConstants.formatCurrency(valuation.getValue()));
+            profitLossValue.setText(String.format("%sRs. %,.0f (%.1f%%)", pl >= 0 ? "+" : "-", Math.abs(pl), valuation.getProfitLossPercent()));
+            profitLossValue.setForeground(pl >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+            UIConstants.setRows(holdingsModel, holdings.rows);
+        }
+        
+        List<Stock> stocks = holdings.watchlist;
+        for (int i = 0; i < WATCHLIST_CARDS; i++) {
+            watchlistCards[i].setVisible(i < stocks.size());
+            if (i < stocks.size()) {
+                Stock stock = stocks.get(i);
+                double change = stock.getChangePercent();
+                watchlistLabels[i][0].setText(stock.getSymbol());
+                watchlistLabels[i][1].setText(UIConstants.formatCurrency(stock.getCurrentPrice()));
+                watchlistLabels[i][2].setText(String.format("%+.2f%%", change));
+                watchlistLabels[i][2].setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+            }
+        }
+    }
+    
+    /**
+     * A valuation with its table rows (null if it was already shown) and the watchlist
+     */
+    private static class Holdings {
+        Valuation valuation;
+        Object[][] rows;
+        List<Stock> watchlist;
     }
 }
@@ -0,0 +1,165 @@
+package view;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * QueryExecutor - Runs view queries off the Swing event thread
+ *
+ * Views split a refresh into a query (reads controllers, formats rows; runs here)
+ * and an apply step (touches components; runs on the event thread with the result).
+ * Queries run on virtual threads when the JVM has them (looked up reflectively so
+ * the code still builds for Java 11), otherwise on a small pool of daemon threads.
+ *
+ * A Latest channel keeps only the newest query of a view: starting one cancels the
+ * one before it, and a result that is no longer the newest is dropped instead of
+ * being applied. Long queries can check Thread.interrupted() to stop early.
+ *
+ * Only thread-safe controllers may be queried here (StockController and
+ * PortfolioController are); AdminController and UserController stay on the event thread.
+ */
+public class QueryExecutor {
+    
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    
+    private QueryExecutor() {
+        ExecutorService virtual = virtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtual != null ? virtual : platformExecutor();
+    }
+    
+    private static class Holder {
+        static final QueryExecutor INSTANCE = new QueryExecutor();
+    }
+    
+    public static QueryExecutor getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * Run a query and hand its result to onResult on the event thread
+     */
+    public <T> Future<?> submit(Supplier<T> query, Consumer<T> onResult) {
+        return executor.submit(() -> {
+            try {
+                T result = query.get();
+                SwingUtilities.invokeLater(() -> onResult.accept(result));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+    
+    /**
+     * A new latest-wins channel for one view
+     */
+    public <T> Latest<T> latest() {
+        return new Latest<>(this);
+    }
+    
+    // Executors.newVirtualThreadPerTaskExecutor() on Java 21+, else null
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private static ExecutorService platformExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "view-query-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Runs one query at a time for a view; each new query supersedes the last
+     */
+    public static final class Latest<T> {
+        private final QueryExecutor owner;
+        private final AtomicLong generation = new AtomicLong();
+        private Future<?> running;   // Guarded by this
+        
+        private Latest(QueryExecutor owner) {
+            this.owner = owner;
+        }
+        
+        /**
+         * Start a query, cancelling the previous one; onResult runs on the event
+         * thread only if no newer query has been started by then
+         */
+        public void run(Supplier<T> query, Consumer<T> onResult) {
+            stream(publish -> query.get(), onResult);
+        }
+        
+        /**
+         * Like run(), but the query may also publish partial results as it goes;
+         * each reaches onResult under the same latest-wins rule, then the final one
+         */
+        public void stream(Function<Consumer<T>, T> query, Consumer<T> onResult) {
+            long ticket = generation.incrementAndGet();
+            Consumer<T> deliver = result -> {
+                if (generation.get() == ticket && !Thread.currentThread().isInterrupted()) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (generation.get() == ticket) {
+                            onResult.accept(result);
+                        }
+                    });
+                }
+            };
+            Future<?> next = owner.executor.submit(() -> {
+                if (generation.get() != ticket) {
+                    return;
+                }
+                try {
+                    deliver.accept(query.apply(deliver));
+                } catch (RuntimeException e) {
+                    if (generation.get() == ticket) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            Future<?> previous;
+            synchronized (this) {
+                previous = running;
+                running = next;
+            }
+            if (previous != null) {
+                previous.cancel(true);
+            }
+        }
+        
+        /**
+         * Drop whatever is running or waiting to be applied
+         */
+        public void cancel() {
+            generation.incrementAndGet();
+            Future<?> previous;
+            synchronized (this) {
+                previous = running;
+                running = null;
+            }
+            if (previous != null) {
+                previous.cancel(true);
+            }
+        }
+    }
+}
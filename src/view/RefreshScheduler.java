@@ -0,0 +1,147 @@
+package view;
+
+import controller.StockController;
+import util.StockStore;
+
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RefreshScheduler - Coalesces view refreshes into at most one pass per frame
+ *
+ * Views are built once and refresh their data in place. Instead of refreshing on
+ * every change, they ask the scheduler: the first request arms a one-shot 16 ms Swing
+ * timer, and everything requested before it fires is refreshed once, on the event
+ * thread. A burst of thousands of price ticks therefore costs one refresh per view
+ * per frame, and views that are not on screen are skipped (navigation refreshes them).
+ *
+ * Views that show stock data can follow() the store instead of requesting on each
+ * change; the store listener only sets a flag, so ticks stay cheap on the writer.
+ */
+public class RefreshScheduler {
+    
+    public static final int FRAME_MILLIS = 16;   // About 60 refreshes a second at most
+    
+    /**
+     * A view whose data can be refreshed without rebuilding it
+     */
+    public interface Refreshable {
+        void refreshData();
+        
+        // Components get this from Component.isShowing()
+        default boolean isShowing() {
+            return true;
+        }
+    }
+    
+    private final Timer timer;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Set<Refreshable> requested = new LinkedHashSet<>();   // Guarded by itself
+    private final List<Refreshable> followers = new CopyOnWriteArrayList<>();
+    private volatile boolean stocksChanged;
+    private long frames;
+    
+    private RefreshScheduler() {
+        timer = new Timer(FRAME_MILLIS, e -> flush());
+        timer.setRepeats(false);
+        StockController.getInstance().getStore().addListener(new StockStore.Listener() {
+            @Override
+            public void rowAdded(int row) {
+                stocksChanged();
+            }
+            
+            @Override
+            public void rowRemoved(int row) {
+                stocksChanged();
+            }
+            
+            @Override
+            public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+                stocksChanged();
+            }
+        });
+    }
+    
+    private static class Holder {
+        static final RefreshScheduler INSTANCE = new RefreshScheduler();
+    }
+    
+    public static RefreshScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    /**
+     * Refresh a view in the next frame (any thread)
+     */
+    public void request(Refreshable view) {
+        synchronized (requested) {
+            requested.add(view);
+        }
+        schedule();
+    }
+    
+    /**
+     * Refresh a view in the frame after any stock change
+     */
+    public void follow(Refreshable view) {
+        followers.add(view);
+    }
+    
+    public void unfollow(Refreshable view) {
+        followers.remove(view);
+    }
+    
+    /**
+     * Frames flushed so far (event thread)
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+    
+    // Called by store writers with a row locked: just flag it and arm the timer
+    private void stocksChanged() {
+        if (!stocksChanged) {
+            stocksChanged = true;
+        }
+        schedule();
+    }
+    
+    private void schedule() {
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            timer.start();
+        }
+    }
+    
+    // Event thread. Re-armed before draining, so a change during the pass gets the next frame.
+    private void flush() {
+        scheduled.set(false);
+        List<Refreshable> due;
+        synchronized (requested) {
+            due = new ArrayList<>(requested);
+            requested.clear();
+        }
+        if (stocksChanged) {
+            stocksChanged = false;
+            for (Refreshable view : followers) {
+                if (!due.contains(view)) {
+                    due.add(view);
+                }
+            }
+        }
+        frames++;
+        for (Refreshable view : due) {
+            if (view.isShowing()) {
+                try {
+                    view.refreshData();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package view;
+
+import model.Stock;
+import util.PrimitiveCollections.IntIntMap;
+import util.PrimitiveCollections.IntList;
+import util.StockStore;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * StockTableModel - Table model read straight from the StockStore columns
+ *
+ * The model holds only the store rows to show, in display order. Cells return raw
+ * numbers and are formatted by the renderers from install(), so only the rows in
+ * view are ever formatted, and only when painted.
+ *
+ * The model listens to the store. Changes arrive on whichever thread wrote them and
+ * are collected per row as a bitmask of changed columns. One flush per frame (through
+ * the RefreshScheduler) fires fireTableCellUpdated for just those cells, so a burst of
+ * ticks on the same stock costs one repaint. The same flush drops rows whose stocks
+ * were deleted and deals with stocks that were added: the owner's rows-added action
+ * re-filters (a new stock may or may not belong in the view), or, without one, the
+ * new rows are appended.
+ */
+public class StockTableModel extends AbstractTableModel implements StockStore.Listener, RefreshScheduler.Refreshable {
+    
+    public static final int SYMBOL = 0;
+    public static final int COMPANY = 1;
+    public static final int SECTOR = 2;
+    public static final int PRICE = 3;
+    public static final int CHANGE = 4;
+    public static final int MARKET_CAP = 5;
+    public static final int VOLUME = 6;
+    
+    private static final String[] COLUMNS = {"Symbol", "Company Name", "Sector", "Price", "Change %", "Market Cap", "Volume"};
+    
+    private final StockStore store;
+    private int[] rows = new int[0];   // Store rows in display order (Swing thread only)
+    
+    // Guarded by lock: written by store writers, drained on the Swing thread
+    private final Object lock = new Object();
+    private final IntIntMap positions = new IntIntMap(-1);   // Store row -> table row
+    private IntList dirtyRows = new IntList();
+    private final IntIntMap dirtyColumns = new IntIntMap(0);   // Store row -> column bitmask
+    private IntList addedRows = new IntList();
+    private boolean rowsRemoved;
+    private boolean flushScheduled;
+    private Runnable rowsAddedAction;   // Swing thread
+    
+    public StockTableModel(StockStore store) {
+        this.store = store;
+        store.addListener(this);
+    }
+    
+    /**
+     * Stop following the store (call when the table is thrown away)
+     */
+    public void dispose() {
+        store.removeListener(this);
+    }
+    
+    /**
+     * Show these stocks, in this order
+     */
+    public void setStocks(List<Stock> stocks) {
+        setRows(rowsOf(stocks));
+    }
+    
+    /**
+     * Store rows of these stocks, in order (any thread; the store reads lock-free)
+     */
+    public int[] rowsOf(List<Stock> stocks) {
+        int[] next = new int[stocks.size()];
+        int n = 0;
+        for (Stock stock : stocks) {
+            int row = store.find(stock.getSymbol());
+            if (row >= 0) {
+                next[n++] = row;
+            }
+        }
+        return n == next.length ? next : java.util.Arrays.copyOf(next, n);
+    }
+    
+    /**
+     * Show these store rows, in this order (Swing thread)
+     */
+    public void setRows(int[] storeRows) {
+        rows = storeRows;
+        synchronized (lock) {
+            positions.clear();
+            for (int i = 0; i < rows.length; i++) {
+                positions.put(rows[i], i);
+            }
+        }
+        fireTableDataChanged();
+    }
+    
+    /**
+     * Run this (on the Swing thread) instead of appending when stocks are added to the
+     * store, for views that filter or order their rows
+     */
+    public void setRowsAddedAction(Runnable action) {
+        rowsAddedAction = action;
+    }
+    
+    public Stock getStockAt(int tableRow) {
+        return store.get(rows[tableRow]);
+    }
+    
+    // ==================== Table Model ====================
+    
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case PRICE: case CHANGE: case MARKET_CAP: return Double.class;
+            case VOLUME: return Long.class;
+            default: return String.class;
+        }
+    }
+    
+    @Override
+    public Object getValueAt(int tableRow, int column) {
+        int row = rows[tableRow];
+        switch (column) {
+            case SYMBOL: return store.symbol(row);
+            case COMPANY: return store.companyName(row);
+            case SECTOR: return store.sector(row);
+            case PRICE: return store.price(row);
+            case CHANGE: return store.changePercent(row);
+            case MARKET_CAP: return store.marketCap(row);
+            case VOLUME: return store.volume(row);
+            default: return null;
+        }
+    }
+    
+    // ==================== Store Events ====================
+    
+    @Override
+    public void rowAdded(int row) {
+        synchronized (lock) {
+            addedRows.add(row);
+            if (!scheduleFlush()) {
+                return;
+            }
+        }
+        RefreshScheduler.getInstance().request(this);
+    }
+    
+    @Override
+    public void rowRemoved(int row) {
+        synchronized (lock) {
+            if (positions.get(row) < 0) {
+                return;   // Not shown
+            }
+            rowsRemoved = true;
+            if (!scheduleFlush()) {
+                return;
+            }
+        }
+        RefreshScheduler.getInstance().request(this);
+    }
+    
+    // Caller holds lock; true if the caller must request the flush
+    private boolean scheduleFlush() {
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+    
+    @Override
+    public void valueChanged(int row, StockStore.Field field, double oldValue, double newValue) {
+        int column = columnOf(field);
+        if (column < 0) {
+            return;
+        }
+        synchronized (lock) {
+            if (positions.get(row) < 0) {
+                return;   // Not shown
+            }
+            int mask = dirtyColumns.get(row);
+            if (mask == 0) {
+                dirtyRows.add(row);
+            }
+            dirtyColumns.put(row, mask | (1 << column));
+            if (!scheduleFlush()) {
+                return;
+            }
+        }
+        RefreshScheduler.getInstance().request(this);
+    }
+    
+    private static int columnOf(StockStore.Field field) {
+        switch (field) {
+            case PRICE: return PRICE;
+            case CHANGE_PERCENT: return CHANGE;
+            case MARKET_CAP: return MARKET_CAP;
+            case VOLUME: return VOLUME;
+            default: return -1;
+        }
+    }
+    
+    // Swing thread: rows added and removed first, then one cell event per changed
+    // cell, however many ticks hit it
+    @Override
+    public void refreshData() {
+        IntList added;
+        boolean removed;
+        synchronized (lock) {
+            added = addedRows;
+            addedRows = new IntList();
+            removed = rowsRemoved;
+            rowsRemoved = false;
+        }
+        if (removed) {
+            dropDeletedRows();
+        }
+        if (added.size() > 0) {
+            if (rowsAddedAction != null) {
+                rowsAddedAction.run();
+            } else {
+                appendRows(added);
+            }
+        }
+        
+        IntList drained;
+        int[] masks;
+        int[] tableRows;
+        synchronized (lock) {
+            drained = dirtyRows;
+            dirtyRows = new IntList();
+            masks = new int[drained.size()];
+            tableRows = new int[drained.size()];
+            for (int i = 0; i < drained.size(); i++) {
+                int row = drained.get(i);
+                masks[i] = dirtyColumns.remove(row);
+                tableRows[i] = positions.get(row);
+            }
+            flushScheduled = false;
+        }
+        for (int i = 0; i < masks.length; i++) {
+            if (tableRows[i] < 0) {
+                continue;   // Filtered out since
+            }
+            for (int mask = masks[i]; mask != 0; mask &= mask - 1) {
+                fireTableCellUpdated(tableRows[i], Integer.numberOfTrailingZeros(mask));
+            }
+        }
+    }
+    
+    // Swing thread: remove the rows of deleted stocks and renumber the rest
+    private void dropDeletedRows() {
+        int[] kept = new int[rows.length];
+        IntList dropped = new IntList();
+        int n = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (store.isLive(rows[i])) {
+                kept[n++] = rows[i];
+            } else {
+                dropped.add(i);
+            }
+        }
+        if (dropped.size() == 0) {
+            return;
+        }
+        rows = java.util.Arrays.copyOf(kept, n);
+        synchronized (lock) {
+            positions.clear();
+            for (int i = 0; i < rows.length; i++) {
+                positions.put(rows[i], i);
+            }
+        }
+        // Highest first, so each index still names the row it did before
+        for (int i = dropped.size() - 1; i >= 0; i--) {
+            fireTableRowsDeleted(dropped.get(i), dropped.get(i));
+        }
+    }
+    
+    // Swing thread
+    private void appendRows(IntList added) {
+        int first = rows.length;
+        int[] next = java.util.Arrays.copyOf(rows, first + added.size());
+        int n = first;
+        synchronized (lock) {
+            for (int i = 0; i < added.size(); i++) {
+                int row = added.get(i);
+                if (store.isLive(row) && positions.get(row) < 0) {
+                    positions.put(row, n);
+                    next[n++] = row;
+                }
+            }
+        }
+        if (n > first) {
+            rows = n == next.length ? next : java.util.Arrays.copyOf(next, n);
+            fireTableRowsInserted(first, n - 1);
+        }
+    }
+    
+    // ==================== Rendering ====================
+    
+    /**
+     * Install the formatting renderers for this model's columns
+     */
+    public static void install(JTable table) {
+        TableColumnModel columns = table.getColumnModel();
+        columns.getColumn(PRICE).setCellRenderer(new FormatRenderer(PRICE));
+        columns.getColumn(CHANGE).setCellRenderer(new FormatRenderer(CHANGE));
+        columns.getColumn(MARKET_CAP).setCellRenderer(new FormatRenderer(MARKET_CAP));
+        columns.getColumn(VOLUME).setCellRenderer(new FormatRenderer(VOLUME));
+    }
+    
+    /**
+     * Formats a numeric cell as it is painted
+     */
+    private static class FormatRenderer extends DefaultTableCellRenderer {
+        private final int column;
+        
+        FormatRenderer(int column) {
+            this.column = column;
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
+            if (column == CHANGE && value != null) {
+                double change = (Double) value;
+                c.setForeground(change >= 0 ? UIConstants.SUCCESS : UIConstants.DANGER);
+            } else if (!isSelected) {
+                c.setForeground(UIConstants.TEXT_PRIMARY);
+            }
+            c.setBackground(isSelected ? UIConstants.PRIMARY_GREEN : UIConstants.BACKGROUND_CARD);
+            return c;
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            if (value == null) {
+                setText("");
+                return;
+            }
+            switch (column) {
+                case PRICE:
+                    setText(UIConstants.formatCurrency((Double) value));
+                    break;
+                case CHANGE:
+                    double change = (Double) value;
+                    setText(String.format("%s%.2f%%", change >= 0 ? "▲ " : "▼ ", Math.abs(change)));
+                    break;
+                case MARKET_CAP:
+                    setText(UIConstants.formatLargeNumber((Double) value));
+                    break;
+                default:
+                    setText(String.format("%,d", (Long) value));
+                    break;
+            }
+        }
+    }
+}
@@ -2,26 +2,41 @@ package view;
 
 import controller.StockController;
 import model.Stock;
+import util.PrimitiveCollections.IntList;
+import util.SortAlgorithms.SortCriteria;
 import util.SortAlgorithms.SortOrder;
+import util.SortAlgorithms.SortPlan;
+import util.StockStore;
 
 import javax.swing.*;
-import javax.swing.table.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.awt.event.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * StocksPanel - Browse and search stocks
  */
 public class StocksPanel extends JPanel {
     
+    private static final int SEARCH_DELAY_MILLIS = 150;   // Quiet time after a keystroke before searching
+    private static final int SCAN_CHUNK = 4096;           // Stocks checked between cancellation checks
+    private static final long PUBLISH_NANOS = RefreshScheduler.FRAME_MILLIS * 1_000_000L;
+    
     private MainFrame mainFrame;
     private StockController stockController;
     private JTable stockTable;
-    private DefaultTableModel tableModel;
+    private StockTableModel tableModel;
     private JTextField searchField;
     private JComboBox<String> sectorFilter;
     private JComboBox<String> sortBy;
+    private NavigationBar navigationBar;
+    private List<String> shownSectors;
+    private final QueryExecutor.Latest<Filtered> filterQuery = QueryExecutor.getInstance().latest();
+    private Timer searchDelay;
+    private Filtered shown;   // Last complete filter, refined when the query grows (Swing thread)
     
     public StocksPanel(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
@@ -34,7 +49,8 @@ public class StocksPanel extends JPanel {
     }
     
     private void initComponents() {
-        add(new NavigationBar(mainFrame, MainFrame.STOCKS), BorderLayout.NORTH);
+        navigationBar = new NavigationBar(mainFrame, MainFrame.STOCKS);
+        add(navigationBar, BorderLayout.NORTH);
         
         JPanel content = new JPanel(new BorderLayout());
         content.setBackground(UIConstants.BACKGROUND_DARK);
@@ -56,28 +72,35 @@ public class StocksPanel extends JPanel {
         searchField = UIConstants.createTextField();
         searchField.setPreferredSize(new Dimension(200, 38));
         searchField.putClientProperty("JTextField.placeholderText", "Search stocks...");
-        searchField.addKeyListener(new KeyAdapter() {
+        searchDelay = new Timer(SEARCH_DELAY_MILLIS, e -> filterStocks());
+        searchDelay.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchDelay.restart();
+            }
+            
             @Override
-            public void keyReleased(KeyEvent e) {
-                filterStocks();
+            public void removeUpdate(DocumentEvent e) {
+                searchDelay.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchDelay.restart();
             }
         });
 
 // Sector filter
-        List<String> sectors = stockController.getAllSectors();
-        String[] sectorArray = new String[sectors.size() + 1];
-        sectorArray[0] = "All Sectors";
-        for (int i = 0; i < sectors.size(); i++) {
-            sectorArray[i + 1] = sectors.get(i);
-        }
-        sectorFilter = new JComboBox<>(sectorArray);
+        shownSectors = stockController.getAllSectors();
+        sectorFilter = new JComboBox<>(sectorItems(shownSectors));
         sectorFilter.setBackground(Color.WHITE);
         sectorFilter.setForeground(Color.BLACK);
         sectorFilter.setPreferredSize(new Dimension(150, 38));
         sectorFilter.addActionListener(e -> filterStocks());
-
+        
         // Sort by
-        String[] sortOptions = {"Symbol", "Price (Low-High)", "Price (High-Low)", "Change %"};
+        String[] sortOptions = {"Symbol", "Price (Low-High)", "Price (High-Low)", "Change %", "Sector, Change %"};
         sortBy = new JComboBox<>(sortOptions);
         sortBy.setBackground(Color.WHITE);
         sortBy.setForeground(Color.BLACK);
@@ -96,41 +119,13 @@ public class StocksPanel extends JPanel {
         
         content.add(headerPanel, BorderLayout.NORTH);
         
-        // Stock table
-        String[] columns = {"Symbol", "Company Name", "Sector", "Price", "Change %", "Market Cap", "Volume"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
+        // Stock table: reads the store directly and repaints only the cells that change
+        tableModel = new StockTableModel(stockController.getStore());
         stockTable = new JTable(tableModel);
         UIConstants.styleTable(stockTable);
-        
-        // Custom renderer for change column
-        stockTable.getColumnModel().getColumn(4).setCellRenderer(new DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                if (value != null) {
-                    String val = value.toString();
-                    if (val.startsWith("+") || val.startsWith("▲")) {
-                        c.setForeground(UIConstants.SUCCESS);
-                    } else if (val.startsWith("-") || val.startsWith("▼")) {
-                        c.setForeground(UIConstants.DANGER);
-                    } else {
-                        c.setForeground(UIConstants.TEXT_PRIMARY);
-                    }
-                }
-                if (isSelected) {
-                    c.setBackground(UIConstants.PRIMARY_GREEN);
-                } else {
-                    c.setBackground(UIConstants.BACKGROUND_CARD);
-                }
-                return c;
-            }
-        });
+        StockTableModel.install(stockTable);
+        // A new stock may belong in the current search and sector, in sort order
+        tableModel.setRowsAddedAction(this::refilter);
         
         loadStocks(stockController.getAllStocks());
         
@@ -142,53 +137,104 @@ public class StocksPanel extends JPanel {
         add(content, BorderLayout.CENTER);
     }
     
-    private void loadStocks(List<Stock> stocks) {
-        tableModel.setRowCount(0);
-        
-        for (Stock stock : stocks) {
-            double change = stock.getChangePercent();
-            String changeStr = String.format("%s%.2f%%", change >= 0 ? "▲ " : "▼ ", Math.abs(change));
-            
-            Object[] row = {
-                stock.getSymbol(),
-                stock.getCompanyName(),
-                stock.getSector(),
-                UIConstants.formatCurrency(stock.getCurrentPrice()),
-                changeStr,
-                UIConstants.formatLargeNumber(stock.getMarketCap()),
-                String.format("%,d", stock.getVolume())
-            };
-            tableModel.addRow(row);
+    private static String[] sectorItems(List<String> sectors) {
+        String[] sectorArray = new String[sectors.size() + 1];
+        sectorArray[0] = "All Sectors";
+        for (int i = 0; i < sectors.size(); i++) {
+            sectorArray[i + 1] = sectors.get(i);
         }
+        return sectorArray;
+    }
+    
+    private void loadStocks(List<Stock> stocks) {
+        tableModel.setStocks(stocks);
     }
     
+    /**
+     * Filter on a query thread. Typing again cancels a filter still running and only
+     * the newest result reaches the table; matches stream in as the scan goes. A new
+     * query starts from the search index's matches, and a query that extends the
+     * last one only re-checks the stocks that matched it.
+     */
     private void filterStocks() {
-        String searchText = searchField.getText().trim().toLowerCase();
+        searchDelay.stop();
+        String searchText = searchField.getText().trim();
         String selectedSector = (String) sectorFilter.getSelectedItem();
+        List<Stock> order = stockController.getDisplayOrder();
         
-        List<Stock> allStocks = stockController.getAllStocks();
-        List<Stock> filtered = new java.util.ArrayList<>();
+        // Substring matches only shrink as the query grows, so the last matches are enough
+        Filtered last = shown;
+        boolean refine = last != null && last.order == order && last.sector.equals(selectedSector)
+                && !last.text.isEmpty() && StockStore.containsIgnoreCase(searchText, last.text);
         
-        for (Stock stock : allStocks) {
-            boolean matchesSearch = searchText.isEmpty() || 
-                stock.getSymbol().toLowerCase().contains(searchText) ||
-                stock.getCompanyName().toLowerCase().contains(searchText);
+        filterQuery.stream(publish -> {
+            // The index matches the same substrings; only an empty query walks every stock
+            List<Stock> candidates = refine ? last.matches
+                    : searchText.isEmpty() ? order : stockController.searchByName(searchText, order);
+            return findStocks(searchText, selectedSector, order, candidates, publish);
+        }, filtered -> {
+            if (filtered != null) {
+                tableModel.setRows(filtered.rows);
+                if (filtered.matches != null) {
+                    shown = filtered;
+                }
+            }
+        });
+    }
+    
+    // Query thread: scans in chunks, checking for cancellation and publishing what has
+    // matched so far at most once a frame
+    private Filtered findStocks(String searchText, String selectedSector, List<Stock> order,
+                                List<Stock> candidates, Consumer<Filtered> publish) {
+        StockStore store = stockController.getStore();
+        boolean allSectors = "All Sectors".equals(selectedSector);
+        List<Stock> matches = new ArrayList<>();
+        IntList rows = new IntList();
+        long nextPublish = System.nanoTime() + PUBLISH_NANOS;
+        
+        for (int i = 0; i < candidates.size(); i++) {
+            Stock stock = candidates.get(i);
+            boolean matchesSearch = searchText.isEmpty()
+                    || StockStore.containsIgnoreCase(stock.getSymbol(), searchText)
+                    || StockStore.containsIgnoreCase(stock.getCompanyName(), searchText);
             
-            boolean matchesSector = "All Sectors".equals(selectedSector) ||
-                stock.getSector().equals(selectedSector);
+            boolean matchesSector = allSectors || selectedSector.equals(stock.getSector());
             
             if (matchesSearch && matchesSector) {
-                filtered.add(stock);
+                int row = store.find(stock.getSymbol());
+                if (row >= 0) {
+                    matches.add(stock);
+                    rows.add(row);
+                }
+            }
+            
+            if (i % SCAN_CHUNK == SCAN_CHUNK - 1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;   // Superseded
+                }
+                long now = System.nanoTime();
+                if (now >= nextPublish) {
+                    publish.accept(new Filtered(searchText, selectedSector, order, null, rows.toArray()));
+                    nextPublish = now + PUBLISH_NANOS;
+                }
             }
         }
         
-        loadStocks(filtered);
+        return new Filtered(searchText, selectedSector, order, matches, rows.toArray());
     }
     
     private void sortStocks() {
         String selected = (String) sortBy.getSelectedItem();
-        List<Stock> stocks = stockController.getAllStocks();
         
+        // Sorting reorders the shared list, so it is not cancelled part way
+        QueryExecutor.getInstance().submit(() -> {
+            sortStocks(selected);
+            return null;
+        }, done -> filterStocks());
+    }
+    
+    // Query thread
+    private void sortStocks(String selected) {
         switch (selected) {
             case "Price (Low-High)":
                 stockController.sortByPrice(SortOrder.ASCENDING);
@@ -199,18 +245,56 @@ public class StocksPanel extends JPanel {
             case "Change %":
                 stockController.sortByChangePercent(SortOrder.DESCENDING);
                 break;
+            case "Sector, Change %":
+                stockController.sortBy(SortPlan.of(SortCriteria.SECTOR, SortOrder.ASCENDING)
+                        .then(SortCriteria.CHANGE_PERCENT, SortOrder.DESCENDING)
+                        .then(SortCriteria.VOLUME, SortOrder.DESCENDING));
+                break;
             default:
                 // Symbol - default order
                 break;
         }
-        
-        filterStocks();
     }
     
+    /**
+     * Re-apply the current search, sector and sort to the stock list. The table model
+     * already follows price changes and deletions, and re-filters by itself when
+     * stocks are added, so this only matters for edits made in place.
+     */
     public void refresh() {
-        removeAll();
-        initComponents();
-        revalidate();
-        repaint();
+        navigationBar.refresh();
+        refilter();
+    }
+    
+    private void refilter() {
+        List<String> sectors = stockController.getAllSectors();
+        if (!sectors.equals(shownSectors)) {
+            shownSectors = sectors;
+            Object selected = sectorFilter.getSelectedItem();
+            sectorFilter.setModel(new DefaultComboBoxModel<>(sectorItems(sectors)));
+            sectorFilter.setSelectedItem(sectors.contains(selected) ? selected : "All Sectors");
+        }
+        shown = null;   // Names and sectors may have been edited in place
+        filterStocks();
+    }
+    
+    /**
+     * The outcome of one filter: the table rows, plus the matching stocks when the
+     * scan finished (null for a partial result)
+     */
+    private static class Filtered {
+        final String text;
+        final String sector;
+        final List<Stock> order;
+        final List<Stock> matches;
+        final int[] rows;
+        
+        Filtered(String text, String sector, List<Stock> order, List<Stock> matches, int[] rows) {
+            this.text = text;
+            this.sector = sector;
+            this.order = order;
+            this.matches = matches;
+            this.rows = rows;
+        }
     }
 }
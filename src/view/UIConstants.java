@@ -199,6 +199,28 @@ public class UIConstants {
         return scrollPane;
     }
     
+    /**
+     * Bring a table model to these rows in place: only cells that differ are set,
+     * and rows are added or dropped at the end, so selection and scroll survive
+     */
+    public static void setRows(DefaultTableModel model, Object[][] rows) {
+        int common = Math.min(model.getRowCount(), rows.length);
+        int columns = model.getColumnCount();
+        for (int r = 0; r < common; r++) {
+            for (int c = 0; c < columns && c < rows[r].length; c++) {
+                if (!java.util.Objects.equals(model.getValueAt(r, c), rows[r][c])) {
+                    model.setValueAt(rows[r][c], r, c);
+                }
+            }
+        }
+        if (model.getRowCount() > rows.length) {
+            model.setRowCount(rows.length);
+        }
+        for (int r = common; r < rows.length; r++) {
+            model.addRow(rows[r]);
+        }
+    }
+    
     public static void showError(Component parent, String message) {
         JOptionPane.showMessageDialog(parent, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
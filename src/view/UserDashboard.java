@@ -3,36 +3,48 @@ package view;
 import controller.UserController;
 import controller.StockController;
 import controller.AdminController;
+import controller.PortfolioController;
 import model.User;
 import model.Stock;
 import model.Portfolio.PortfolioItem;
+import model.Portfolio.TradeRecord;
+import model.Portfolio.Valuation;
+import engine.MatchingEngine;
 
 import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 
 /**
  * UserDashboard - Enhanced Dashboard with Buy, Sell, Deposit, Withdraw
+ * Built once per login; balances, stats and tables are refreshed in place after
+ * trades and on price changes.
  */
-public class UserDashboard extends JPanel {
+public class UserDashboard extends JPanel implements RefreshScheduler.Refreshable {
     
     private MainFrame mainFrame;
     private UserController userController;
     private StockController stockController;
     private AdminController adminController;
+    private PortfolioController portfolioController;
     
     private JPanel contentPanel;
     private CardLayout cardLayout;
     private String currentMenu = "Dashboard";
     private Map<String, JPanel> menuItems = new HashMap<>();
-    
-    private List<PortfolioItem> userHoldings = new ArrayList<>();
-    private List<TransactionRecord> transactionHistory = new ArrayList<>();
+    private final User owner;   // The user this dashboard was built for
+    private JLabel balanceLabel;
+    private JLabel depositBalance;
+    private JLabel withdrawBalance;
+    private DefaultTableModel portfolioModel;
+    private DefaultTableModel tradesModel;
+    private final Map<String, JLabel> statValues = new HashMap<>();   // By card title
+    private final QueryExecutor.Latest<Account> accountQuery = QueryExecutor.getInstance().latest();
+    private long shownVersion = -1;   // Portfolio version last sent to the query thread
     
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     
@@ -56,24 +68,22 @@ public class UserDashboard extends JPanel {
         this.userController = UserController.getInstance();
         this.stockController = StockController.getInstance();
         this.adminController = AdminController.getInstance();
-        initializeSamplePortfolio();
+        this.portfolioController = PortfolioController.getInstance();
+        this.owner = userController.getCurrentUser();
         setBackground(CONTENT_BG);
         setLayout(new BorderLayout());
         initComponents();
+        showBalance();
+        shownVersion = portfolioController.getPortfolio(owner).getVersion();
+        showAccount(loadAccount());   // First paint complete; later refreshes load in the background
+        RefreshScheduler.getInstance().follow(this);
     }
     
-    private void initializeSamplePortfolio() {
-        User user = userController.getCurrentUser();
-        if (user != null) {
-            Stock nabil = stockController.getStock("NABIL");
-            Stock nica = stockController.getStock("NICA");
-            Stock upper = stockController.getStock("UPPER");
-            if (nabil != null) userHoldings.add(new PortfolioItem(nabil, 50, 1200.00));
-            if (nica != null) userHoldings.add(new PortfolioItem(nica, 100, 820.00));
-            if (upper != null) userHoldings.add(new PortfolioItem(upper, 75, 560.00));
-            transactionHistory.add(new TransactionRecord(1, "BUY", "NABIL", 50, 1200.00, LocalDateTime.now().minusDays(5)));
-            transactionHistory.add(new TransactionRecord(2, "BUY", "NICA", 100, 820.00, LocalDateTime.now().minusDays(3)));
-        }
+    /**
+     * Whether this dashboard shows the given user's session (otherwise build a new one)
+     */
+    public boolean isBuiltFor(User user) {
+        return owner == user;
     }
     
     private void initComponents() {
@@ -112,7 +122,7 @@ public class UserDashboard extends JPanel {
         rightPanel.setOpaque(false);
         User user = userController.getCurrentUser();
         
-        JLabel balanceLabel = new JLabel("Balance: " + UIConstants.formatCurrency(user != null ? user.getBalance() : 0));
+        balanceLabel = new JLabel();
         balanceLabel.setForeground(GREEN);
         balanceLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
         
@@ -249,14 +259,10 @@ public class UserDashboard extends JPanel {
         stats.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
         stats.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        double balance = user != null ? user.getBalance() : 0;
-        double portfolioValue = userHoldings.stream().mapToDouble(PortfolioItem::getCurrentValue).sum();
-        double todayPL = userHoldings.stream().mapToDouble(PortfolioItem::getProfitLoss).sum();
-        
-        stats.add(createStatCard("Account Balance", UIConstants.formatCurrency(balance), BLUE));
-        stats.add(createStatCard("Portfolio Value", UIConstants.formatCurrency(portfolioValue), GREEN));
-        stats.add(createStatCard("Today's P/L", String.format("%s%.2f", todayPL >= 0 ? "+" : "", todayPL), todayPL >= 0 ? GREEN : RED));
-        stats.add(createStatCard("Holdings", userHoldings.size() + " Stocks", GOLD));
+        stats.add(createStatCard("Account Balance", "", BLUE));
+        stats.add(createStatCard("Portfolio Value", "", GREEN));
+        stats.add(createStatCard("Today's P/L", "", GREEN));
+        stats.add(createStatCard("Holdings", "", GOLD));
         content.add(stats);
         content.add(Box.createVerticalStrut(25));
         
@@ -305,19 +311,10 @@ public class UserDashboard extends JPanel {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0));
         
-        Object[][] data = new Object[userHoldings.size()][7];
-        for (int i = 0; i < userHoldings.size(); i++) {
-            PortfolioItem item = userHoldings.get(i);
-            Stock stock = item.getStock();
-            double pl = item.getProfitLoss();
-            data[i] = new Object[]{stock.getSymbol(), stock.getCompanyName(), item.getQuantity(),
-                String.format("Rs. %,.2f", item.getBuyPrice()), String.format("Rs. %,.2f", stock.getCurrentPrice()),
-                String.format("Rs. %,.2f", item.getCurrentValue()), String.format("%s%.2f", pl >= 0 ? "+" : "", pl)};
-        }
-        
-        JTable table = new JTable(new DefaultTableModel(data, new String[]{"Symbol", "Company", "Qty", "Buy Price", "Current", "Value", "P/L"}) {
+        portfolioModel = new DefaultTableModel(new String[]{"Symbol", "Company", "Qty", "Buy Price", "Current", "Value", "P/L"}, 0) {
             public boolean isCellEditable(int r, int c) { return false; }
-        });
+        };
+        JTable table = new JTable(portfolioModel);
         styleTable(table);
         
         JScrollPane sp = new JScrollPane(table);
@@ -390,25 +387,17 @@ public class UserDashboard extends JPanel {
                 int qty = Integer.parseInt(qtyField.getText().trim());
                 if (qty <= 0) { showError("Quantity must be positive"); return; }
                 Stock selected = allStocks.get(idx);
-                double total = selected.getCurrentPrice() * qty;
                 User user = userController.getCurrentUser();
-                if (user.getBalance() < total) { showError("Insufficient balance! Need Rs. " + String.format("%,.2f", total)); return; }
-                
-                user.withdraw(total);
-                boolean found = false;
-                for (PortfolioItem item : userHoldings) {
-                    if (item.getStock().getSymbol().equals(selected.getSymbol())) {
-                        int newQty = item.getQuantity() + qty;
-                        double avgPrice = ((item.getBuyPrice() * item.getQuantity()) + total) / newQty;
-                        item.setQuantity(newQty);
-                        item.setBuyPrice(avgPrice);
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) userHoldings.add(new PortfolioItem(selected, qty, selected.getCurrentPrice()));
-                transactionHistory.add(new TransactionRecord(transactionHistory.size() + 1, "BUY", selected.getSymbol(), qty, selected.getCurrentPrice(), LocalDateTime.now()));
-                showSuccess("Successfully bought " + qty + " shares of " + selected.getSymbol() + "!");
+                // Marketable limit 1% above the last price; the engine reserves the worst case and refunds the rest
+                long limit = User.toPaisa(selected.getCurrentPrice() * 1.01);
+                MatchingEngine.getInstance().buy(selected.getSymbol(), user, qty, limit, fill -> {
+                    if (fill.isRejected()) { showError(fill.getRejectReason() + " (order needs up to Rs. " + String.format("%,.2f", limit * qty / 100.0) + ")"); return; }
+                    if (fill.getFilled() == 0) { showError("No sellers within 1% of the last price"); return; }
+                    int filled = (int) fill.getFilled();
+                    double fillPrice = fill.getAveragePrice() / 100.0;
+                    RefreshScheduler.getInstance().request(this);
+                    showSuccess("Successfully bought " + filled + " shares of " + selected.getSymbol() + " at Rs. " + String.format("%,.2f", fillPrice) + "!");
+                });
                 qtyField.setText("");
             } catch (NumberFormatException ex) { showError("Enter a valid quantity"); }
         });
@@ -440,13 +429,12 @@ public class UserDashboard extends JPanel {
         formCard.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(BORDER_COLOR), BorderFactory.createEmptyBorder(25, 25, 25, 25)));
         formCard.setMaximumSize(new Dimension(500, 400));
         
-        String[] holdingOptions = new String[userHoldings.size()];
-        for (int i = 0; i < userHoldings.size(); i++) {
-            PortfolioItem item = userHoldings.get(i);
-            holdingOptions[i] = item.getStock().getSymbol() + " - " + item.getQuantity() + " shares @ Rs. " + String.format("%.2f", item.getStock().getCurrentPrice());
+        // Holdings as listed in the combo, refreshed after each sale
+        List<PortfolioItem> listed = new ArrayList<>(portfolioController.getHoldings(userController.getCurrentUser()));
+        JComboBox<String> stockCombo = new JComboBox<>();
+        for (PortfolioItem h : listed) {
+            stockCombo.addItem(h.getStock().getSymbol() + " - " + h.getQuantity() + " shares @ Rs. " + String.format("%.2f", h.getStock().getCurrentPrice()));
         }
-        
-        JComboBox<String> stockCombo = new JComboBox<>(holdingOptions);
         JTextField qtyField = new JTextField();
         qtyField.setBackground(SIDEBAR_BG);
         qtyField.setForeground(TEXT_WHITE);
@@ -460,9 +448,9 @@ public class UserDashboard extends JPanel {
             public void keyReleased(KeyEvent e) {
                 try {
                     int idx = stockCombo.getSelectedIndex();
-                    if (idx >= 0 && idx < userHoldings.size()) {
+                    if (idx >= 0 && idx < listed.size()) {
                         int qty = Integer.parseInt(qtyField.getText().trim());
-                        double price = userHoldings.get(idx).getStock().getCurrentPrice();
+                        double price = listed.get(idx).getStock().getCurrentPrice();
                         totalLabel.setText("Total: Rs. " + String.format("%,.2f", price * qty));
                     }
                 } catch (Exception ex) { totalLabel.setText("Total: Rs. 0.00"); }
@@ -481,29 +469,34 @@ public class UserDashboard extends JPanel {
         JButton sellBtn = createActionButton("Sell Now", ORANGE);
         sellBtn.addActionListener(e -> {
             try {
-                if (userHoldings.isEmpty()) { showError("No stocks to sell"); return; }
                 int idx = stockCombo.getSelectedIndex();
+                if (idx < 0 || idx >= listed.size()) { showError("No stocks to sell"); return; }
                 int qty = Integer.parseInt(qtyField.getText().trim());
+                String symbol = listed.get(idx).getStock().getSymbol();
                 if (qty <= 0) { showError("Quantity must be positive"); return; }
-                PortfolioItem item = userHoldings.get(idx);
-                if (qty > item.getQuantity()) { showError("You only have " + item.getQuantity() + " shares"); return; }
-                
-                double total = item.getStock().getCurrentPrice() * qty;
                 User user = userController.getCurrentUser();
-                user.deposit(total);
-                String symbol = item.getStock().getSymbol();
-                if (qty == item.getQuantity()) userHoldings.remove(idx);
-                else item.setQuantity(item.getQuantity() - qty);
-                
-                transactionHistory.add(new TransactionRecord(transactionHistory.size() + 1, "SELL", symbol, qty, item.getStock().getCurrentPrice(), LocalDateTime.now()));
-                showSuccess("Sold " + qty + " shares for Rs. " + String.format("%,.2f", total));
+                // Marketable limit 1% below the last price; the engine reserves the shares,
+                // so a second click cannot sell them again
+                long limit = User.toPaisa(listed.get(idx).getStock().getCurrentPrice() * 0.99);
+                MatchingEngine.getInstance().sell(symbol, user, qty, limit, fill -> {
+                    RefreshScheduler.getInstance().request(this);
+                    if (fill.isRejected()) {
+                        showError(fill.getRejectReason());
+                    } else if (fill.getFilled() == 0) {
+                        showError("No buyers within 1% of the last price");
+                    } else {
+                        showSuccess("Sold " + fill.getFilled() + " shares for Rs. " + String.format("%,.2f", fill.getNotional() / 100.0));
+                    }
+                    
+                    // Refresh combo
+                    listed.clear();
+                    listed.addAll(portfolioController.getHoldings(user));
+                    stockCombo.removeAllItems();
+                    for (PortfolioItem h : listed) {
+                        stockCombo.addItem(h.getStock().getSymbol() + " - " + h.getQuantity() + " shares @ Rs. " + String.format("%.2f", h.getStock().getCurrentPrice()));
+                    }
+                });
                 qtyField.setText("");
-                
-                // Refresh combo
-                stockCombo.removeAllItems();
-                for (PortfolioItem h : userHoldings) {
-                    stockCombo.addItem(h.getStock().getSymbol() + " - " + h.getQuantity() + " shares @ Rs. " + String.format("%.2f", h.getStock().getCurrentPrice()));
-                }
             } catch (NumberFormatException ex) { showError("Enter a valid quantity"); }
         });
         formCard.add(sellBtn);
@@ -535,9 +528,9 @@ public class UserDashboard extends JPanel {
         formCard.setMaximumSize(new Dimension(500, 350));
         
         User user = userController.getCurrentUser();
-        JLabel balanceInfo = new JLabel("Current Balance: " + UIConstants.formatCurrency(user != null ? user.getBalance() : 0));
-        balanceInfo.setForeground(GREEN);
-        balanceInfo.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        depositBalance = new JLabel();
+        depositBalance.setForeground(GREEN);
+        depositBalance.setFont(new Font("Segoe UI", Font.BOLD, 14));
         
         JTextField amtField = new JTextField();
         amtField.setBackground(SIDEBAR_BG);
@@ -546,7 +539,7 @@ public class UserDashboard extends JPanel {
         
         JComboBox<String> methodCombo = new JComboBox<>(new String[]{"Bank Transfer", "eSewa", "Khalti", "IME Pay", "Connect IPS"});
         
-        formCard.add(balanceInfo);
+        formCard.add(depositBalance);
         formCard.add(Box.createVerticalStrut(20));
         formCard.add(new JLabel("Amount (Rs.):") {{ setForeground(TEXT_GRAY); }});
         formCard.add(amtField);
@@ -595,9 +588,9 @@ public class UserDashboard extends JPanel {
         formCard.setMaximumSize(new Dimension(500, 450));
         
         User user = userController.getCurrentUser();
-        JLabel balanceInfo = new JLabel("Available Balance: " + UIConstants.formatCurrency(user != null ? user.getBalance() : 0));
-        balanceInfo.setForeground(GREEN);
-        balanceInfo.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        withdrawBalance = new JLabel();
+        withdrawBalance.setForeground(GREEN);
+        withdrawBalance.setFont(new Font("Segoe UI", Font.BOLD, 14));
         
         JTextField amtField = new JTextField();
         amtField.setBackground(SIDEBAR_BG);
@@ -611,7 +604,7 @@ public class UserDashboard extends JPanel {
         accField.setForeground(TEXT_WHITE);
         accField.setCaretColor(TEXT_WHITE);
         
-        formCard.add(balanceInfo);
+        formCard.add(withdrawBalance);
         formCard.add(Box.createVerticalStrut(20));
         formCard.add(new JLabel("Amount (Rs.):") {{ setForeground(TEXT_GRAY); }});
         formCard.add(amtField);
@@ -660,15 +653,10 @@ public class UserDashboard extends JPanel {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0));
         
-        Object[][] data = new Object[transactionHistory.size()][6];
-        for (int i = 0; i < transactionHistory.size(); i++) {
-            TransactionRecord t = transactionHistory.get(i);
-            data[i] = new Object[]{t.id, t.type, t.symbol, t.quantity, String.format("Rs. %,.2f", t.price), t.date.format(DATE_FORMAT)};
-        }
-        
-        JTable table = new JTable(new DefaultTableModel(data, new String[]{"ID", "Type", "Symbol", "Qty", "Price", "Date"}) {
+        tradesModel = new DefaultTableModel(new String[]{"ID", "Type", "Symbol", "Qty", "Price", "Date"}, 0) {
             public boolean isCellEditable(int r, int c) { return false; }
-        });
+        };
+        JTable table = new JTable(tradesModel);
         styleTable(table);
         
         JScrollPane sp = new JScrollPane(table);
@@ -693,9 +681,81 @@ public class UserDashboard extends JPanel {
         titleLabel.setForeground(TEXT_GRAY);
         card.add(valueLabel, BorderLayout.CENTER);
         card.add(titleLabel, BorderLayout.SOUTH);
+        statValues.put(title, valueLabel);
         return card;
     }
     
+    // ==================== Refresh ====================
+    
+    public void refresh() {
+        refreshData();
+    }
+    
+    /**
+     * Balances are read here; the valuation and trade rows are only rebuilt, on a
+     * query thread, when a trade or a mark of a held symbol moved the portfolio
+     */
+    @Override
+    public void refreshData() {
+        showBalance();
+        long version = portfolioController.getPortfolio(owner).getVersion();
+        if (version != shownVersion) {
+            shownVersion = version;
+            accountQuery.run(this::loadAccount, this::showAccount);
+        }
+    }
+    
+    private void showBalance() {
+        double balance = owner != null ? owner.getBalance() : 0;
+        balanceLabel.setText("Balance: " + UIConstants.formatCurrency(balance));
+        depositBalance.setText("Current Balance: " + UIConstants.formatCurrency(balance));
+        withdrawBalance.setText("Available Balance: " + UIConstants.formatCurrency(balance));
+        statValues.get("Account Balance").setText(UIConstants.formatCurrency(balance));
+    }
+    
+    // Query thread
+    private Account loadAccount() {
+        Account account = new Account();
+        account.valuation = portfolioController.getValuation(owner);
+        List<Valuation.Line> lines = account.valuation.getLines();
+        account.holdings = new Object[lines.size()][7];
+        for (int i = 0; i < lines.size(); i++) {
+            Valuation.Line line = lines.get(i);
+            double pl = line.getProfitLoss();
+            account.holdings[i] = new Object[]{line.getSymbol(), line.getCompanyName(), line.getQuantity(),
+                String.format("Rs. %,.2f", line.getBuyPrice()), String.format("Rs. %,.2f", line.getCurrentPrice()),
+                String.format("Rs. %,.2f", line.getValue()), String.format("%s%.2f", pl >= 0 ? "+" : "", pl)};
+        }
+        
+        List<TradeRecord> trades = portfolioController.getTrades(owner);
+        account.trades = new Object[trades.size()][6];
+        for (int i = 0; i < trades.size(); i++) {
+            TradeRecord t = trades.get(i);
+            account.trades[i] = new Object[]{t.getId(), t.getType(), t.getSymbol(), t.getQuantity(), String.format("Rs. %,.2f", t.getPrice()), t.getDate().format(DATE_FORMAT)};
+        }
+        return account;
+    }
+    
+    private void showAccount(Account account) {
+        Valuation valuation = account.valuation;
+        double todayPL = valuation.getProfitLoss();
+        statValues.get("Portfolio Value").setText(UIConstants.formatCurrency(valuation.getValue()));
+        statValues.get("Today's P/L").setText(String.format("%s%.2f", todayPL >= 0 ? "+" : "", todayPL));
+        statValues.get("Today's P/L").setForeground(todayPL >= 0 ? GREEN : RED);
+        statValues.get("Holdings").setText(valuation.getHoldingsCount() + " Stocks");
+        UIConstants.setRows(portfolioModel, account.holdings);
+        UIConstants.setRows(tradesModel, account.trades);
+    }
+    
+    /**
+     * The owner's valuation with its holding and trade rows, built off the event thread
+     */
+    private static class Account {
+        Valuation valuation;
+        Object[][] holdings;
+        Object[][] trades;
+    }
+    
     private JButton createActionButton(String text, Color bg) {
         JButton btn = new JButton(text);
         btn.setBackground(bg);
@@ -722,11 +782,4 @@ public class UserDashboard extends JPanel {
     
     private void showSuccess(String msg) { JOptionPane.showMessageDialog(this, msg, "Success", JOptionPane.INFORMATION_MESSAGE); }
     private void showError(String msg) { JOptionPane.showMessageDialog(this, msg, "Error", JOptionPane.ERROR_MESSAGE); }
-    
-    private static class TransactionRecord {
-        int id; String type; String symbol; int quantity; double price; LocalDateTime date;
-        TransactionRecord(int id, String type, String symbol, int qty, double price, LocalDateTime date) {
-            this.id = id; this.type = type; this.symbol = symbol; this.quantity = qty; this.price = price; this.date = date;
-        }
-    }
 }
@@ -0,0 +1,117 @@
+package controller;
+
+import controller.AdminController.UpcomingMarket;
+import model.Portfolio.PortfolioItem;
+import model.Portfolio.TradeRecord;
+import model.User;
+import util.LedgerJournal;
+import util.ValidationUtils.ValidationResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * PortfolioControllerTest - Holdings kept by the ledger journal
+ */
+public class PortfolioControllerTest {
+    
+    private Path directory;
+    private final AdminController admin = AdminController.getInstance();
+    private final UserController users = UserController.getInstance();
+    private final PortfolioController portfolios = PortfolioController.getInstance();
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ledger");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    @Test
+    public void seedsOnceAndRecoversHoldings() throws Exception {
+        User user = users.getUser("khrishman");
+        LedgerJournal journal = open();
+        assertEquals(50, holding(user, "NABIL"));
+        assertEquals(2, portfolios.getTrades(user).size());
+        journal.close();
+        
+        // A clean restart restores the snapshot instead of seeding again
+        journal = open();
+        assertEquals(50, holding(user, "NABIL"));
+        assertEquals(75, holding(user, "UPPER"));
+        assertEquals(2, portfolios.getTrades(user).size());
+        
+        assertTrue(admin.addUpcomingMarket("Nabil Bank", "NABIL", "Bonus Share", "2026-01-01", 0, 0).isValid());
+        List<UpcomingMarket> events = admin.getAllUpcomingMarkets();
+        assertTrue(admin.allotBonusShares(events.get(events.size() - 1).id, 10).isValid());
+        assertEquals(55, holding(user, "NABIL"));
+        
+        // Fills settle cash and shares for both sides in one journaled command
+        User buyer = users.getUser("john");
+        int buyerHolding = holding(buyer, "UPPER");
+        assertTrue(user.reservePaisa(40_000));
+        settle("NABIL", new String[] {"khrishman"}, new int[] {4}, new long[] {40_000});
+        assertTrue(portfolios.reserveShares(user, "UPPER", 5).isValid());
+        assertTrue(buyer.reservePaisa(25_000));
+        settle("UPPER", new String[] {"john", "khrishman"}, new int[] {5, -5}, new long[] {25_000, 25_000});
+        // A leg that cannot settle rejects the whole command
+        assertFalse(portfolios.settle("UPPER", new String[] {"john", "nosuchuser"}, new int[] {1, -1},
+                new long[] {5_000, 5_000}, null).isValid());
+        long balance = user.getBalancePaisa();
+        long buyerBalance = buyer.getBalancePaisa();
+        List<TradeRecord> trades = portfolios.getTrades(user);
+        
+        // Restart without a clean shutdown: the bonus and the fills are replayed onto the snapshot
+        LedgerJournal recovered = open();
+        try {
+            assertEquals(59, holding(user, "NABIL"));
+            assertEquals(70, holding(user, "UPPER"));
+            assertEquals(100, holding(user, "NICA"));
+            assertEquals(buyerHolding + 5, holding(buyer, "UPPER"));
+            assertEquals(balance, user.getBalancePaisa());
+            assertEquals(buyerBalance, buyer.getBalancePaisa());
+            List<TradeRecord> recoveredTrades = portfolios.getTrades(user);
+            assertEquals(trades.size(), recoveredTrades.size());
+            TradeRecord bonus = recoveredTrades.get(recoveredTrades.size() - 3);
+            assertEquals("BONUS", bonus.getType());
+            assertEquals(5, bonus.getQuantity());
+            assertEquals(trades.get(trades.size() - 3).getDate(), bonus.getDate());
+        } finally {
+            recovered.close();
+            journal.close();
+        }
+    }
+    
+    private LedgerJournal open() throws IOException {
+        return LedgerJournal.open(directory, admin, users, portfolios);
+    }
+    
+    // Settle and wait until the record is on disk
+    private void settle(String symbol, String[] usernames, int[] quantities, long[] notionals) throws Exception {
+        CompletableFuture<ValidationResult> durable = new CompletableFuture<>();
+        assertTrue(portfolios.settle(symbol, usernames, quantities, notionals, durable::complete).isValid());
+        assertTrue(durable.get(5, TimeUnit.SECONDS).isValid());
+    }
+    
+    private int holding(User user, String symbol) {
+        PortfolioItem item = portfolios.getPortfolio(user).getHolding(symbol);
+        return item == null ? 0 : item.getQuantity();
+    }
+}
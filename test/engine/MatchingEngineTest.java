@@ -0,0 +1,166 @@
+package engine;
+
+import controller.PortfolioController;
+import controller.StockController;
+import controller.UserController;
+import engine.OrderBook.Execution;
+import engine.OrderBook.Side;
+import model.Stock;
+import model.User;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * MatchingEngineTest - Reservations and house liquidity
+ */
+public class MatchingEngineTest {
+    
+    private static final String SYMBOL = "NABIL";
+    
+    private static MatchingEngine engine;
+    private static PortfolioController portfolios;
+    private static Stock stock;
+    
+    @BeforeClass
+    public static void setUpClass() {
+        engine = MatchingEngine.getInstance();
+        engine.setCallbackExecutor(Runnable::run);
+        portfolios = PortfolioController.getInstance();
+        stock = StockController.getInstance().getStock(SYMBOL);
+        assertNotNull(stock);
+    }
+    
+    @Test
+    public void sellNeedsUnreservedShares() throws Exception {
+        User user = account("engineseller", 1_000_000);
+        assertRejected(submit(Side.SELL, 1, 10, user, true), "0 shares");
+        
+        Execution bought = submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 10, user, true);
+        assertEquals(10, bought.getFilled());
+        long balance = user.getBalancePaisa();
+        long high = User.toPaisa(stock.getCurrentPrice() * 10);
+        Execution resting = submit(Side.SELL, high, 10, user, false);
+        assertEquals(10, resting.getResting());
+        assertRejected(submit(Side.SELL, 1, 1, user, true), "0 shares");
+        
+        engine.cancel(SYMBOL, resting.getOrderId());
+        Execution sold = submit(Side.SELL, 1, 10, user, true);
+        assertFalse(sold.getRejectReason(), sold.isRejected());
+        assertEquals(10, sold.getFilled());
+        assertNull(portfolios.getPortfolio(user).getHolding(SYMBOL));
+        assertEquals(balance + sold.getNotional(), user.getBalancePaisa());
+        assertEquals(0, user.getReservedPaisa());
+    }
+    
+    @Test
+    public void buyOrdersThatCannotBeReservedAreRejected() throws Exception {
+        User user = account("enginebuyer", 1_000_000);
+        assertRejected(submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 10, user, false), "immediate-or-cancel");
+        assertRejected(submit(Side.BUY, Long.MAX_VALUE / 8, 10, user, false), "too large");
+        assertRejected(submit(Side.BUY, 1, (long) Integer.MAX_VALUE + 1, user, true), "too large");
+        assertEquals(User.toPaisa(1_000_000), user.getBalancePaisa());
+    }
+    
+    @Test
+    public void marketBuyReservesItsWalkAndLeavesThePriceAlone() throws Exception {
+        User user = account("enginemarket", 1_000_000);
+        double price = stock.getCurrentPrice();
+        long volume = stock.getVolume();
+        
+        Execution bought = submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 25, user, true);
+        
+        assertFalse(bought.getRejectReason(), bought.isRejected());
+        assertEquals(25, bought.getFilled());
+        assertEquals(User.toPaisa(1_000_000) - bought.getNotional(), user.getBalancePaisa());
+        assertEquals(0, user.getReservedPaisa());
+        assertEquals(25, portfolios.getPortfolio(user).getHolding(SYMBOL).getQuantity());
+        // Filled by house liquidity, which is not a trade on the tape
+        assertEquals(price, stock.getCurrentPrice(), 0);
+        assertEquals(volume, stock.getVolume());
+    }
+    
+    @Test
+    public void sweepSettlesEveryRestingAccountItFills() throws Exception {
+        User first = account("enginemakera", 1_000_000);
+        User second = account("enginemakerb", 1_000_000);
+        User taker = account("enginetaker", 5_000_000);
+        for (User maker : new User[] {first, second}) {
+            assertEquals(10, submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 10, maker, true).getFilled());
+        }
+        long ask = engine.quote(SYMBOL)[1];
+        long firstBalance = first.getBalancePaisa();
+        long secondBalance = second.getBalancePaisa();
+        assertEquals(10, submit(Side.SELL, ask, 10, first, false).getResting());
+        assertEquals(10, submit(Side.SELL, ask, 10, second, false).getResting());
+        
+        // Takes the house's shares at the ask, then both resting sells behind them
+        Execution swept = submit(Side.BUY, ask, 100_000, taker, true);
+        
+        assertFalse(swept.getRejectReason(), swept.isRejected());
+        assertTrue(swept.getFilled() > 20);
+        assertEquals(swept.getFilled(), portfolios.getPortfolio(taker).getHolding(SYMBOL).getQuantity());
+        assertEquals(User.toPaisa(5_000_000) - swept.getNotional(), taker.getBalancePaisa());
+        for (User maker : new User[] {first, second}) {
+            assertNull(portfolios.getPortfolio(maker).getHolding(SYMBOL));
+            assertEquals(0, maker.getReservedPaisa());
+        }
+        assertEquals(firstBalance + 10 * ask, first.getBalancePaisa());
+        assertEquals(secondBalance + 10 * ask, second.getBalancePaisa());
+        assertEquals(0, taker.getReservedPaisa());
+    }
+    
+    @Test
+    public void deletingAnAccountCancelsItsRestingOrders() throws Exception {
+        User leaving = account("engineleaver", 1_000_000);
+        long bid = engine.quote(SYMBOL)[0];
+        assertEquals(10, submit(Side.BUY, bid, 10, leaving, false).getResting());
+        assertEquals(10 * bid, leaving.getReservedPaisa());
+        
+        assertTrue(UserController.getInstance().deleteUser("engineleaver").isValid());
+        
+        assertEquals(0, leaving.getReservedPaisa());
+        assertRejected(submit(Side.BUY, bid, 1, leaving, false), "Account closed");
+    }
+    
+    @Test
+    public void failedOrderIsRejectedAndHandsBackItsReservation() throws Exception {
+        User broken = new User(999_999, "enginebroken", "secret123", "broken@example.com", "Broken") {
+            @Override
+            public int getId() {
+                throw new IllegalStateException("broken account");
+            }
+        };
+        broken.setBalance(1_000_000);
+        
+        Execution failed = submit(Side.BUY, engine.quote(SYMBOL)[1], 10, broken, true);
+        
+        assertRejected(failed, "broken account");
+        assertEquals(0, broken.getReservedPaisa());
+        assertEquals(User.toPaisa(1_000_000), broken.getBalancePaisa());
+        // The loop carries on with the next event
+        assertFalse(submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 1, account("engineafter", 1_000_000), true).isRejected());
+    }
+    
+    private static User account(String username, double balance) {
+        UserController users = UserController.getInstance();
+        assertTrue(users.register(username, "secret123", username + "@example.com", "Engine Test").isValid());
+        User user = users.getUser(username);
+        user.setBalance(balance);
+        return user;
+    }
+    
+    private static Execution submit(Side side, long limit, long quantity, User account, boolean immediateOrCancel) throws Exception {
+        CompletableFuture<Execution> result = new CompletableFuture<>();
+        engine.submit(SYMBOL, side, limit, quantity, account, immediateOrCancel, result::complete);
+        return result.get(5, TimeUnit.SECONDS);
+    }
+    
+    private static void assertRejected(Execution execution, String reason) {
+        assertTrue("expected a rejection", execution.isRejected());
+        assertTrue(execution.getRejectReason(), execution.getRejectReason().contains(reason));
+    }
+}
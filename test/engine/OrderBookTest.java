@@ -0,0 +1,133 @@
+package engine;
+
+import engine.OrderBook.Execution;
+import engine.OrderBook.Side;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * OrderBookTest - Price-time priority matching
+ */
+public class OrderBookTest {
+    
+    private OrderBook book;
+    private final List<long[]> fills = new ArrayList<>();   // {maker owner, price, quantity}
+    private final OrderBook.TradeListener recorder =
+            (taker, maker, takerOwner, makerOwner, side, price, quantity) -> fills.add(new long[] {makerOwner, price, quantity});
+    
+    @Before
+    public void setUp() {
+        book = new OrderBook("TEST");
+    }
+    
+    @Test
+    public void betterPriceFillsFirst() {
+        book.submit(Side.SELL, 10100, 5, 1, false, null);
+        book.submit(Side.SELL, 10000, 5, 2, false, null);
+        book.submit(Side.SELL, 10200, 5, 3, false, null);
+        
+        Execution execution = book.submit(Side.BUY, 10200, 12, 9, true, recorder);
+        
+        assertFill(0, 2, 10000, 5);
+        assertFill(1, 1, 10100, 5);
+        assertFill(2, 3, 10200, 2);
+        assertEquals(12, execution.getFilled());
+        assertEquals(5 * 10000 + 5 * 10100 + 2 * 10200, execution.getNotional());
+    }
+    
+    @Test
+    public void samePriceFillsInArrivalOrder() {
+        book.submit(Side.BUY, 10000, 5, 1, false, null);
+        book.submit(Side.BUY, 10000, 5, 2, false, null);
+        book.submit(Side.BUY, 10000, 5, 3, false, null);
+        
+        book.submit(Side.SELL, 10000, 7, 9, true, recorder);
+        book.submit(Side.SELL, 10000, 4, 9, true, recorder);
+        
+        assertFill(0, 1, 10000, 5);
+        assertFill(1, 2, 10000, 2);
+        assertFill(2, 2, 10000, 3);
+        assertFill(3, 3, 10000, 1);
+        assertEquals(4, book.levelQuantity(Side.BUY, 0));
+    }
+    
+    @Test
+    public void fillsAtTheRestingOrdersPrice() {
+        book.submit(Side.BUY, 10500, 10, 1, false, null);
+        
+        Execution execution = book.submit(Side.SELL, 10000, 10, 9, true, recorder);
+        
+        assertFill(0, 1, 10500, 10);
+        assertEquals(10500, execution.getAveragePrice());
+        assertEquals(10500, book.lastTradePrice());
+    }
+    
+    @Test
+    public void limitStopsMatchingAndRestsTheRemainder() {
+        book.submit(Side.SELL, 10000, 5, 1, false, null);
+        book.submit(Side.SELL, 10100, 5, 2, false, null);
+        
+        Execution execution = book.submit(Side.BUY, 10000, 8, 9, false, recorder);
+        
+        assertEquals(1, fills.size());
+        assertEquals(5, execution.getFilled());
+        assertEquals(3, execution.getResting());
+        assertEquals(10000, book.bestBid());
+        assertEquals(10100, book.bestAsk());
+    }
+    
+    @Test
+    public void immediateOrCancelNeverRests() {
+        book.submit(Side.SELL, 10000, 5, 1, false, null);
+        
+        Execution execution = book.submit(Side.BUY, 10000, 8, 9, true, recorder);
+        
+        assertEquals(5, execution.getFilled());
+        assertEquals(0, execution.getResting());
+        assertEquals(3, execution.getCancelled());
+        assertEquals(0, book.bestBid());
+        assertEquals(0, book.openOrders());
+    }
+    
+    @Test
+    public void cancelledOrderLosesItsPlace() {
+        long first = book.submit(Side.SELL, 10000, 5, 1, false, null).getOrderId();
+        book.submit(Side.SELL, 10000, 5, 2, false, null);
+        
+        assertEquals(5, book.cancel(first));
+        assertEquals(0, book.cancel(first));
+        book.submit(Side.BUY, 10000, 5, 9, true, recorder);
+        
+        assertEquals(1, fills.size());
+        assertFill(0, 2, 10000, 5);
+        assertEquals(0, book.levelCount(Side.SELL));
+    }
+    
+    @Test
+    public void costToBuyMatchesTheWalk() {
+        book.submit(Side.SELL, 10000, 5, 1, false, null);
+        book.submit(Side.SELL, 10100, 5, 2, false, null);
+        book.submit(Side.SELL, 10300, 5, 3, false, null);
+        
+        long cost = book.costToBuy(OrderBook.marketPrice(Side.BUY), 12);
+        assertEquals(book.costToBuy(10200, 12) + 2 * 10300, cost);
+        assertEquals(cost, book.submit(Side.BUY, OrderBook.marketPrice(Side.BUY), 12, 9, true, null).getNotional());
+    }
+    
+    @Test(expected = ArithmeticException.class)
+    public void costToBuyOverflowThrows() {
+        book.submit(Side.SELL, OrderBook.marketPrice(Side.BUY), 5, 1, false, null);
+        book.costToBuy(OrderBook.marketPrice(Side.BUY), 5);
+    }
+    
+    private void assertFill(int index, long makerOwner, long price, long quantity) {
+        long[] fill = fills.get(index);
+        assertEquals("maker of fill " + index, makerOwner, fill[0]);
+        assertEquals("price of fill " + index, price, fill[1]);
+        assertEquals("quantity of fill " + index, quantity, fill[2]);
+    }
+}
@@ -0,0 +1,120 @@
+package util;
+
+import util.DataStructures.IdTable;
+import util.DataStructures.StatusTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * DataStructuresTest - Id-keyed admin tables
+ */
+public class DataStructuresTest {
+    
+    private enum Status { PENDING, APPROVED, REJECTED }
+    
+    private static class Request {
+        final int id;
+        Status status = Status.PENDING;
+        
+        Request(int id) {
+            this.id = id;
+        }
+    }
+    
+    @Test
+    public void removingMostItemsKeepsLookupsAndOrder() {
+        IdTable<int[]> table = new IdTable<>(item -> item[0]);
+        for (int id = 1; id <= 1000; id++) {
+            assertTrue(table.add(new int[] {id}));
+        }
+        // Drains the way a bulk approval drains a partition, compacting on the way
+        for (int id = 1; id <= 990; id++) {
+            assertEquals(id, table.remove(id)[0]);
+            assertNull(table.get(id));
+        }
+        
+        assertEquals(10, table.size());
+        List<Integer> ids = new ArrayList<>();
+        for (int[] item : table) {
+            ids.add(item[0]);
+        }
+        assertEquals(10, ids.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(991 + i, (int) ids.get(i));
+            assertEquals(991 + i, table.get(991 + i)[0]);
+        }
+        assertTrue(table.add(new int[] {2000}));
+        assertEquals(2000, table.toList().get(10)[0]);
+    }
+    
+    @Test
+    public void removedIdsAreGoneUntilAddedAgain() {
+        IdTable<int[]> table = new IdTable<>(item -> item[0]);
+        for (int id = 1; id <= 5; id++) {
+            table.add(new int[] {id});
+        }
+        assertFalse(table.add(new int[] {3}));
+        assertEquals(3, table.remove(3)[0]);
+        assertNull(table.get(3));
+        assertFalse(table.contains(3));
+        assertNull(table.remove(3));
+        
+        assertTrue(table.add(new int[] {3}));
+        assertEquals(3, table.get(3)[0]);
+        assertEquals(Arrays.asList(1, 2, 4, 5, 3), ids(table.toList()));
+    }
+    
+    @Test
+    public void statusChangesMoveItemsBetweenPartitions() {
+        StatusTable<Request, Status> table = new StatusTable<>(Status.class, r -> r.id, r -> r.status, (r, s) -> r.status = s);
+        List<Request> requests = new ArrayList<>();
+        for (int id = 1; id <= 6; id++) {
+            Request request = new Request(id);
+            requests.add(request);
+            assertTrue(table.add(request));
+        }
+        table.setStatus(requests.get(4), Status.APPROVED);
+        table.setStatus(requests.get(1), Status.APPROVED);
+        table.setStatus(requests.get(2), Status.REJECTED);
+        table.setStatus(requests.get(1), Status.APPROVED);   // Already there: stays put
+        
+        assertEquals(Status.APPROVED, requests.get(4).status);
+        assertEquals(Arrays.asList(1, 4, 6), requestIds(table.withStatus(Status.PENDING)));
+        assertEquals(Arrays.asList(5, 2), requestIds(table.withStatus(Status.APPROVED)));   // In the order approved
+        assertEquals(Arrays.asList(3), requestIds(table.withStatus(Status.REJECTED)));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), requestIds(table.toList()));
+        
+        // Removing a moved item takes it out of the partition it moved to
+        assertSame(requests.get(4), table.remove(5));
+        assertNull(table.get(5));
+        assertEquals(Arrays.asList(2), requestIds(table.withStatus(Status.APPROVED)));
+        assertEquals(3, table.count(Status.PENDING));
+        assertEquals(5, table.size());
+        
+        // An item that is not in the table only has its status set
+        Request outside = new Request(7);
+        table.setStatus(outside, Status.APPROVED);
+        assertEquals(Status.APPROVED, outside.status);
+        assertEquals(1, table.count(Status.APPROVED));
+    }
+    
+    private static List<Integer> ids(List<int[]> items) {
+        List<Integer> ids = new ArrayList<>();
+        for (int[] item : items) {
+            ids.add(item[0]);
+        }
+        return ids;
+    }
+    
+    private static List<Integer> requestIds(List<Request> requests) {
+        List<Integer> ids = new ArrayList<>();
+        for (Request request : requests) {
+            ids.add(request.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,246 @@
+package util;
+
+import controller.AdminController;
+import controller.AdminController.DepositTransaction;
+import controller.AdminController.WithdrawalTransaction;
+import controller.UserController;
+import model.User;
+import model.User.UserStatus;
+import util.ValidationUtils.ValidationResult;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * LedgerJournalTest - Recovery of journaled state after a crash
+ * A crash is simulated by copying the journal directory while the journal is still
+ * open (every successful commit is durable by then) and recovering from the copy.
+ */
+public class LedgerJournalTest {
+    
+    private Path directory;
+    private Path crashImage;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ledger");
+        crashImage = Files.createTempDirectory("ledger-crash");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        delete(directory);
+        delete(crashImage);
+    }
+    
+    @Test
+    public void recoversControllerStateAfterCrash() throws IOException {
+        AdminController admin = AdminController.getInstance();
+        UserController users = UserController.getInstance();
+        LedgerJournal journal = LedgerJournal.open(directory, admin, users);
+        
+        assertValid(users.register("journaltest", "secret123", "journaltest@example.com", "Journal Test"));
+        assertValid(admin.createDeposit("journaltest", 5000.25, "Bank Transfer"));
+        assertValid(admin.createDeposit("journaltest", 1200.00, "eSewa"));
+        assertValid(admin.createDeposit("journaltest", 10.00, "eSewa"));
+        List<DepositTransaction> deposits = admin.getAllDeposits();
+        int first = deposits.get(deposits.size() - 3).id;
+        assertValid(admin.approveDeposits(new int[] {first, first + 1}));
+        assertValid(admin.rejectDeposit(first + 2, "Duplicate"));
+        assertValid(admin.createWithdrawal("journaltest", 700.50, "NIC Asia", "0012"));
+        List<WithdrawalTransaction> withdrawals = admin.getAllWithdrawals();
+        assertValid(admin.approveWithdrawal(withdrawals.get(withdrawals.size() - 1).id));
+        assertFalse(admin.approveWithdrawal(withdrawals.get(withdrawals.size() - 1).id).isValid());
+        assertValid(users.updateUserStatus("journaltest", UserStatus.SUSPENDED));
+        
+        long balance = users.getUser("journaltest").getBalancePaisa();
+        String expectedDeposits = describeDeposits(admin.getAllDeposits());
+        String expectedWithdrawals = describeWithdrawals(admin.getAllWithdrawals());
+        assertEquals(549975, balance);
+        
+        copy(directory, crashImage);
+        LedgerJournal recovered = LedgerJournal.open(crashImage, admin, users);
+        try {
+            User user = users.getUser("journaltest");
+            assertNotNull(user);
+            assertEquals(balance, user.getBalancePaisa());
+            assertEquals(UserStatus.SUSPENDED, user.getStatus());
+            assertEquals(expectedDeposits, describeDeposits(admin.getAllDeposits()));
+            assertEquals(expectedWithdrawals, describeWithdrawals(admin.getAllWithdrawals()));
+        } finally {
+            recovered.close();
+            journal.close();
+        }
+    }
+    
+    @Test
+    public void rejectedChangeIsNotRecorded() throws IOException {
+        Counter counter = new Counter();
+        LedgerJournal journal = LedgerJournal.open(directory, counter);
+        assertValid(counter.add(5));
+        assertFalse(counter.add(-1).isValid());
+        assertValid(counter.add(2));
+        journal.close();
+        
+        Counter recovered = new Counter();
+        LedgerJournal.open(directory, recovered).close();
+        assertEquals(7, recovered.total);
+    }
+    
+    @Test
+    public void commandRejectedOnReplayFailsRecovery() throws IOException {
+        Counter counter = new Counter();
+        LedgerJournal journal = LedgerJournal.open(directory, counter);
+        assertValid(counter.add(5));
+        journal.close();
+        
+        Counter diverged = new Counter();
+        diverged.rejectReplay = true;
+        try {
+            LedgerJournal.open(directory, diverged).close();
+            fail("Recovery should fail when a replayed command is rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("rejected on replay"));
+        }
+    }
+    
+    @Test
+    public void commitWithoutWaitingReportsDurability() throws Exception {
+        Counter counter = new Counter();
+        LedgerJournal journal = LedgerJournal.open(directory, counter);
+        CompletableFuture<ValidationResult> durable = new CompletableFuture<>();
+        assertValid(journal.commit(counter, () -> counter.apply(4), durable::complete, "add", 4));
+        assertFalse(journal.commit(counter, () -> counter.apply(-1), result -> fail("Rejected change reported"),
+                "add", -1).isValid());
+        assertValid(durable.get(5, TimeUnit.SECONDS));
+        
+        copy(directory, crashImage);
+        Counter recovered = new Counter();
+        LedgerJournal.open(crashImage, recovered).close();
+        journal.close();
+        assertEquals(4, recovered.total);
+    }
+    
+    @Test
+    public void snapshotIsTakenOffTheCommittingThread() throws Exception {
+        Counter counter = new Counter();
+        LedgerJournal journal = LedgerJournal.open(directory, counter);
+        counter.snapshotThreads.clear();   // The first snapshot is written by open()
+        CompletableFuture<ValidationResult> last = new CompletableFuture<>();
+        for (int i = 1; i <= LedgerJournal.SNAPSHOT_INTERVAL; i++) {
+            assertValid(journal.commit(counter, () -> counter.apply(1),
+                    i == LedgerJournal.SNAPSHOT_INTERVAL ? last::complete : result -> { }, "add", 1));
+        }
+        assertValid(last.get(5, TimeUnit.SECONDS));
+        journal.close();
+        
+        assertEquals(1, counter.snapshotThreads.size());
+        assertEquals("ledger-snapshot", counter.snapshotThreads.get(0));
+        Counter recovered = new Counter();
+        LedgerJournal.open(directory, recovered).close();
+        assertEquals(LedgerJournal.SNAPSHOT_INTERVAL, recovered.total);
+    }
+    
+    // ==================== Helpers ====================
+    
+    /**
+     * Minimal participant: a total that only accepts positive additions
+     */
+    private static class Counter implements LedgerJournal.Participant {
+        private LedgerJournal journal;
+        int total;
+        boolean rejectReplay;
+        final List<String> snapshotThreads = new CopyOnWriteArrayList<>();
+        
+        ValidationResult add(int amount) {
+            return journal.commit(this, () -> apply(amount), "add", amount);
+        }
+        
+        ValidationResult apply(int amount) {
+            if (amount <= 0) return ValidationResult.error("Amount must be positive");
+            total += amount;
+            return ValidationResult.success();
+        }
+        
+        @Override
+        public void attach(LedgerJournal journal) {
+            this.journal = journal;
+        }
+        
+        @Override
+        public String journalName() {
+            return "counter";
+        }
+        
+        @Override
+        public Serializable snapshotState() {
+            snapshotThreads.add(Thread.currentThread().getName());
+            return total;
+        }
+        
+        @Override
+        public void restoreState(Serializable state) {
+            total = (Integer) state;
+        }
+        
+        @Override
+        public ValidationResult replay(String op, Object[] args) {
+            if (rejectReplay) {
+                return ValidationResult.error("Diverged");
+            }
+            return add((Integer) args[0]);
+        }
+    }
+    
+    private static void assertValid(ValidationResult result) {
+        assertTrue(result.getErrorMessage(), result.isValid());
+    }
+    
+    private static String describeDeposits(List<DepositTransaction> deposits) {
+        StringBuilder sb = new StringBuilder();
+        for (DepositTransaction d : deposits) {
+            sb.append(d.id).append(' ').append(d.username).append(' ').append(d.amount).append(' ')
+                    .append(d.status).append(' ').append(d.remarks).append(' ')
+                    .append(d.createdDate).append(' ').append(d.processedDate).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static String describeWithdrawals(List<WithdrawalTransaction> withdrawals) {
+        StringBuilder sb = new StringBuilder();
+        for (WithdrawalTransaction w : withdrawals) {
+            sb.append(w.id).append(' ').append(w.username).append(' ').append(w.amount).append(' ')
+                    .append(w.status).append(' ').append(w.createdDate).append(' ')
+                    .append(w.processedDate).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+    
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import util.PrimitiveCollections.IntIntMap;
+import util.PrimitiveCollections.LongIntMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * PrimitiveCollectionsTest - Open-addressing maps and their backward-shift removal
+ */
+public class PrimitiveCollectionsTest {
+    
+    private static final int MISSING = -1;
+    private static final int MASK = 15;   // A new map has 16 slots and holds 8 keys before it grows
+    
+    @Test
+    public void intMapRemovalShiftsRunsBackAcrossTheWrap() {
+        // Three keys homed in the last slot run over the end; the fourth is homed in slot 0
+        List<Integer> last = intKeysHomedAt(MASK, 3);
+        int first = intKeysHomedAt(0, 1).get(0);
+        IntIntMap map = new IntIntMap(MISSING);
+        for (int key : last) {
+            map.put(key, key + 1);
+        }
+        map.put(first, first + 1);
+        
+        assertEquals(last.get(0) + 1, map.remove(last.get(0)));
+        assertEquals(MISSING, map.get(last.get(0)));
+        assertFalse(map.containsKey(last.get(0)));
+        assertEquals(last.get(1) + 1, map.get(last.get(1)));
+        assertEquals(last.get(2) + 1, map.get(last.get(2)));
+        assertEquals(first + 1, map.get(first));
+        
+        assertEquals(last.get(1) + 1, map.remove(last.get(1)));
+        assertEquals(last.get(2) + 1, map.get(last.get(2)));
+        assertEquals(first + 1, map.get(first));
+        assertEquals(2, map.size());
+        assertEquals(MISSING, map.remove(last.get(1)));
+    }
+    
+    @Test
+    public void intMapKeysCanBeRemovedAndPutBack() {
+        List<Integer> keys = intKeysHomedAt(3, 4);
+        IntIntMap map = new IntIntMap(MISSING);
+        for (int key : keys) {
+            map.put(key, 1);
+        }
+        map.remove(keys.get(1));
+        map.put(keys.get(1), 2);
+        map.put(keys.get(3), 3);
+        
+        assertEquals(4, map.size());
+        assertEquals(1, map.get(keys.get(0)));
+        assertEquals(2, map.get(keys.get(1)));
+        assertEquals(1, map.get(keys.get(2)));
+        assertEquals(3, map.get(keys.get(3)));
+    }
+    
+    @Test
+    public void longMapRemovalShiftsRunsBackAcrossTheWrap() {
+        List<Long> last = longKeysHomedAt(MASK, 3);
+        long first = longKeysHomedAt(0, 1).get(0);
+        LongIntMap map = new LongIntMap(MISSING);
+        for (int i = 0; i < last.size(); i++) {
+            map.put(last.get(i), i);
+        }
+        map.put(first, 10);
+        
+        assertEquals(0, map.remove(last.get(0)));
+        assertEquals(MISSING, map.get(last.get(0)));
+        assertEquals(1, map.get(last.get(1)));
+        assertEquals(2, map.get(last.get(2)));
+        assertEquals(10, map.get(first));
+        
+        assertEquals(2, map.remove(last.get(2)));
+        assertEquals(1, map.get(last.get(1)));
+        assertEquals(10, map.get(first));
+        assertEquals(2, map.size());
+        assertEquals(MISSING, map.remove(last.get(2)));
+    }
+    
+    @Test
+    public void mapsAgreeWithHashMapUnderChurn() {
+        Random random = new Random(42);
+        IntIntMap ints = new IntIntMap(MISSING);
+        LongIntMap longs = new LongIntMap(MISSING);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(64) - 32;   // Few keys, so runs collide and removals shift
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                int want = removed == null ? MISSING : removed;
+                assertEquals(want, ints.remove(key));
+                assertEquals(want, longs.remove((long) key << 32));
+            } else {
+                expected.put(key, step);
+                ints.put(key, step);
+                longs.put((long) key << 32, step);
+            }
+            assertEquals(expected.size(), ints.size());
+            assertEquals(expected.size(), longs.size());
+        }
+        for (int key = -32; key < 32; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? MISSING : value, ints.get(key));
+            assertEquals(value == null ? MISSING : value, longs.get((long) key << 32));
+        }
+    }
+    
+    // Keys whose home slot in a new map is the given one (the maps' own slot functions)
+    private static List<Integer> intKeysHomedAt(int slot, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 1; keys.size() < count; key++) {
+            int h = key * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & MASK) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+    
+    private static List<Long> longKeysHomedAt(int slot, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            if (((int) (h ^ (h >>> 32)) & MASK) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}